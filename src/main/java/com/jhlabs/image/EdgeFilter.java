@@ -16,12 +16,10 @@ limitations under the License.
 
 package com.jhlabs.image;
 
-import java.awt.Rectangle;
-
 /**
  * An edge-detection filter.
  */
-public class EdgeFilter extends WholeImageFilter {
+public class EdgeFilter extends NeighborhoodFilter {
     public static final float R2 = (float) Math.sqrt(2);
 
     public static final float[] ROBERTS_V = {
@@ -89,26 +87,29 @@ public class EdgeFilter extends WholeImageFilter {
     }
 
     @Override
-    protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
-        pt = createProgressTracker(height);
+    protected int getRadius() {
+        return 1;
+    }
 
+    @Override
+    protected void filterRows(int width, int height, int[] inPixels, int inStartY,
+                              int[] outPixels, int startY, int endY) {
         int index = 0;
-        int[] outPixels = new int[width * height];
 
-        for (int y = 0; y < height; y++) {
+        for (int y = startY; y < endY; y++) {
             for (int x = 0; x < width; x++) {
                 int r = 0, g = 0, b = 0;
                 int rh = 0, gh = 0, bh = 0;
                 int rv = 0, gv = 0, bv = 0;
-                int a = inPixels[y * width + x] & 0xff000000;
+                int a = inPixels[(y - inStartY) * width + x] & 0xff000000;
 
                 for (int row = -1; row <= 1; row++) {
                     int iy = y + row;
                     int ioffset;
                     if (0 <= iy && iy < height) {
-                        ioffset = iy * width;
+                        ioffset = (iy - inStartY) * width;
                     } else {
-                        ioffset = y * width;
+                        ioffset = (y - inStartY) * width;
                     }
                     int moffset = 3 * (row + 1) + 1;
                     for (int col = -1; col <= 1; col++) {
@@ -139,10 +140,7 @@ public class EdgeFilter extends WholeImageFilter {
                 b = PixelUtils.clamp(b);
                 outPixels[index++] = a | (r << 16) | (g << 8) | b;
             }
-            pt.unitDone();
         }
-        finishProgressTracker();
-        return outPixels;
     }
 
     @Override
@@ -16,12 +16,10 @@ limitations under the License.
 
 package com.jhlabs.image;
 
-import java.awt.Rectangle;
-
 /**
  * A class to emboss an image.
  */
-public class EmbossFilter extends WholeImageFilter {
+public class EmbossFilter extends NeighborhoodFilter {
     private static final float pixelScale = 255.9f;
 
     private float azimuth = 135.0f * ImageMath.PI / 180.0f, elevation = 30.0f * ImageMath.PI / 180.0f;
@@ -65,20 +63,23 @@ public class EmbossFilter extends WholeImageFilter {
     }
 
     @Override
-    protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
-        pt = createProgressTracker(height);
+    protected int getRadius() {
+        // the normals are calculated from the two rows below
+        return 2;
+    }
 
+    @Override
+    protected void filterRows(int width, int height, int[] inPixels, int inStartY,
+                              int[] outPixels, int startY, int endY) {
         int index = 0;
-        int[] outPixels = new int[width * height];
-
-        int[] bumpPixels;
-        int bumpMapWidth, bumpMapHeight;
-
-        bumpMapWidth = width;
-        bumpMapHeight = height;
-        bumpPixels = new int[bumpMapWidth * bumpMapHeight];
-        for (int i = 0; i < inPixels.length; i++) {
-            bumpPixels[i] = PixelUtils.brightness(inPixels[i]);
+        int inIndex = (startY - inStartY) * width;
+
+        // the brightness of the filtered rows and the two rows below them
+        int bumpMapWidth = width;
+        int bumpMapHeight = Math.min(endY + 2, height) - startY;
+        int[] bumpPixels = new int[bumpMapWidth * bumpMapHeight];
+        for (int i = 0; i < bumpPixels.length; i++) {
+            bumpPixels[i] = PixelUtils.brightness(inPixels[inIndex + i]);
         }
 
         int Nx, Ny, Nz, Lx, Ly, Lz, Nz2, NzLz, NdotL;
@@ -96,7 +97,7 @@ public class EmbossFilter extends WholeImageFilter {
 
         int bumpIndex = 0;
 
-        for (int y = 0; y < height; y++, bumpIndex += bumpMapWidth) {
+        for (int y = startY; y < endY; y++, bumpIndex += bumpMapWidth) {
             int s1 = bumpIndex;
             int s2 = s1 + bumpMapWidth;
             int s3 = s2 + bumpMapWidth;
@@ -117,7 +118,7 @@ public class EmbossFilter extends WholeImageFilter {
                     shade = background;
                 }
 
-                int rgb = inPixels[index];
+                int rgb = inPixels[inIndex++];
                 int a = rgb & 0xff000000;
                 if (emboss) {
                     int r = (rgb >> 16) & 0xff;
@@ -131,11 +132,7 @@ public class EmbossFilter extends WholeImageFilter {
                     outPixels[index++] = a | (shade << 16) | (shade << 8) | shade;
                 }
             }
-            pt.unitDone();
         }
-        finishProgressTracker();
-
-        return outPixels;
     }
 
     @Override
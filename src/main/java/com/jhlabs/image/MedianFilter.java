@@ -16,12 +16,10 @@ limitations under the License.
 
 package com.jhlabs.image;
 
-import java.awt.Rectangle;
-
 /**
  * A filter which performs a 3x3 median operation. Useful for removing dust and noise.
  */
-public class MedianFilter extends WholeImageFilter {
+public class MedianFilter extends NeighborhoodFilter {
     public MedianFilter(String filterName) {
         super(filterName);
     }
@@ -68,23 +66,26 @@ public class MedianFilter extends WholeImageFilter {
     }
 
     @Override
-    protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
+    protected int getRadius() {
+        return 1;
+    }
+
+    @Override
+    protected void filterRows(int width, int height, int[] inPixels, int inStartY,
+                              int[] outPixels, int startY, int endY) {
         int index = 0;
         int[] argb = new int[9];
         int[] r = new int[9];
         int[] g = new int[9];
         int[] b = new int[9];
-        int[] outPixels = new int[width * height];
-
-        pt = createProgressTracker(height);
 
-        for (int y = 0; y < height; y++) {
+        for (int y = startY; y < endY; y++) {
             for (int x = 0; x < width; x++) {
                 int k = 0;
                 for (int dy = -1; dy <= 1; dy++) {
                     int iy = y + dy;
                     if (0 <= iy && iy < height) {
-                        int ioffset = iy * width;
+                        int ioffset = (iy - inStartY) * width;
                         for (int dx = -1; dx <= 1; dx++) {
                             int ix = x + dx;
                             if (0 <= ix && ix < width) {
@@ -105,10 +106,7 @@ public class MedianFilter extends WholeImageFilter {
                 }
                 outPixels[index++] = argb[rgbMedian(r, g, b)];
             }
-            pt.unitDone();
         }
-        finishProgressTracker();
-        return outPixels;
     }
 
     @Override
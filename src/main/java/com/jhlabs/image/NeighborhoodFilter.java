@@ -0,0 +1,110 @@
+/*
+Copyright 2023 Laszlo Balazs-Csiki
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jhlabs.image;
+
+import pixelitor.ThreadPool;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A superclass for the filters where an output pixel depends only on the
+ * input pixels within a given radius. The image is processed in horizontal
+ * strips: each strip is read from the source image together with the rows
+ * within the radius around it (its halos), filtered and written into the
+ * destination image. The strips are filtered in parallel, and because they
+ * have a limited number of pixels, the memory used in addition to the source
+ * and destination images is proportional to the strip size, and not to
+ * the image size, as with the full-size pixel arrays of {@link WholeImageFilter}.
+ */
+public abstract class NeighborhoodFilter extends AbstractBufferedImageOp {
+    private static final int MIN_BAND_HEIGHT = 8;
+
+    // the maximum number of filtered pixels in a strip
+    private static final int MAX_STRIP_PIXELS = 1 << 20;
+
+    protected NeighborhoodFilter(String filterName) {
+        super(filterName);
+    }
+
+    /**
+     * Returns the maximum distance (horizontally or vertically)
+     * of the input pixels that an output pixel depends on.
+     */
+    protected abstract int getRadius();
+
+    /**
+     * Filters the rows from startY (inclusive) to endY (exclusive).
+     * The input pixels start with the row inStartY, and contain all the rows
+     * of the image within the radius of the filtered rows. The output pixels
+     * start with the row startY. It's called concurrently for different strips,
+     * therefore it can't modify the state of the filter.
+     */
+    protected abstract void filterRows(int width, int height, int[] inPixels, int inStartY,
+                                       int[] outPixels, int startY, int endY);
+
+    @Override
+    public final BufferedImage filter(BufferedImage src, BufferedImage dst) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        if (dst == null) {
+            dst = createCompatibleDestImage(src, null);
+        } else if (dst == src) {
+            // otherwise the halos could be read from already filtered rows
+            src = ImageUtils.copyImage(src);
+        }
+        BufferedImage finalSrc = src;
+        BufferedImage finalDst = dst;
+
+        pt = createProgressTracker(height);
+        int radius = getRadius();
+
+        // a band shorter than its halos would mostly read the rows of other bands
+        int minBandHeight = Math.max(MIN_BAND_HEIGHT, 2 * radius + 1);
+        int maxStripHeight = Math.max(minBandHeight, MAX_STRIP_PIXELS / width);
+
+        // the progress is reported only from the calling thread
+        Thread caller = Thread.currentThread();
+        AtomicInteger rowsDone = new AtomicInteger();
+        ThreadPool.forEachBand(height, minBandHeight, (bandStart, bandEnd) -> {
+            // the buffers are reused for all the strips of the band
+            int stripHeight = Math.min(bandEnd - bandStart, maxStripHeight);
+            int[] inPixels = new int[width * Math.min(height, stripHeight + 2 * radius)];
+            int[] outPixels = new int[width * stripHeight];
+
+            for (int startY = bandStart; startY < bandEnd; startY += stripHeight) {
+                int endY = Math.min(bandEnd, startY + stripHeight);
+                int inStartY = Math.max(0, startY - radius);
+                int inEndY = Math.min(height, endY + radius);
+
+                getRGB(finalSrc, 0, inStartY, width, inEndY - inStartY, inPixels);
+                filterRows(width, height, inPixels, inStartY, outPixels, startY, endY);
+                setRGB(finalDst, 0, startY, width, endY - startY, outPixels);
+
+                rowsDone.addAndGet(endY - startY);
+                if (Thread.currentThread() == caller) {
+                    pt.unitsDone(rowsDone.getAndSet(0));
+                }
+            }
+        });
+        pt.unitsDone(rowsDone.getAndSet(0));
+
+        finishProgressTracker();
+        return dst;
+    }
+}
@@ -16,11 +16,6 @@ limitations under the License.
 
 package com.jhlabs.image;
 
-import pixelitor.ThreadPool;
-
-import java.awt.*;
-import java.util.concurrent.Future;
-
 /**
  * A filter which produces a "oil-painting" effect.
  *
@@ -29,7 +24,7 @@ import java.util.concurrent.Future;
  * http://supercomputingblog.com/graphics/oil-painting-algorithm/
  * to use only one intensity-histogram.
  */
-public class OilFilter extends WholeImageFilter {
+public class OilFilter extends NeighborhoodFilter {
     private int rangeX = 3;
     private int rangeY = 3;
     private int levels = 256;
@@ -67,29 +62,27 @@ public class OilFilter extends WholeImageFilter {
     }
 
     @Override
-    protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
-        int[] outPixels = new int[width * height];
-
-        pt = createProgressTracker(height);
-        Future<?>[] futures = new Future[height];
-        for (int y = 0; y < height; y++) {
-            int finalY = y;
-            Runnable lineTask = () -> calculateLine(width, height, inPixels, outPixels, finalY);
-            futures[y] = ThreadPool.submit(lineTask);
-        }
-
-        ThreadPool.waitFor(futures, pt);
-        finishProgressTracker();
-
-        return outPixels;
+    protected int getRadius() {
+        return Math.max(rangeX, rangeY);
     }
 
-    private void calculateLine(int width, int height, int[] inPixels, int[] outPixels, int y) {
-        int index = y * width;
+    @Override
+    protected void filterRows(int width, int height, int[] inPixels, int inStartY,
+                              int[] outPixels, int startY, int endY) {
         int[] rTotal = new int[levels];
         int[] gTotal = new int[levels];
         int[] bTotal = new int[levels];
         int[] histogram = new int[levels];
+        for (int y = startY; y < endY; y++) {
+            calculateLine(width, height, inPixels, inStartY, outPixels, (y - startY) * width, y,
+                rTotal, gTotal, bTotal, histogram);
+        }
+    }
+
+    private void calculateLine(int width, int height, int[] inPixels, int inStartY,
+                               int[] outPixels, int outIndex, int y,
+                               int[] rTotal, int[] gTotal, int[] bTotal, int[] histogram) {
+        int inIndex = (y - inStartY) * width;
         for (int x = 0; x < width; x++) {
             // The idea is that for each pixel the most frequently occuring
             // intensity value in its neighborhood is found, and this will determine
@@ -102,7 +95,7 @@ public class OilFilter extends WholeImageFilter {
             for (int row = -rangeY; row <= rangeY; row++) {
                 int iy = y + row;
                 if (0 <= iy && iy < height) {
-                    int ioffset = iy * width;
+                    int ioffset = (iy - inStartY) * width;
                     for (int col = -rangeX; col <= rangeX; col++) {
                         int ix = x + col;
                         if (0 <= ix && ix < width) {
@@ -148,8 +141,9 @@ public class OilFilter extends WholeImageFilter {
 //                g = PixelUtils.clamp(g);
 //                b = PixelUtils.clamp(b);
 
-            outPixels[index] = (inPixels[index] & 0xff000000) | (r << 16) | (g << 8) | b;
-            index++;
+            outPixels[outIndex] = (inPixels[inIndex] & 0xff000000) | (r << 16) | (g << 8) | b;
+            outIndex++;
+            inIndex++;
         }
     }
 
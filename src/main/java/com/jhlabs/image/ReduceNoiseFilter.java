@@ -16,13 +16,11 @@ limitations under the License.
 
 package com.jhlabs.image;
 
-import java.awt.Rectangle;
-
 /**
  * A filter which performs reduces noise by looking at each pixel's 8 neighbours, and if it's a minimum or maximum,
  * replacing it by the next minimum or maximum of the neighbours.
  */
-public class ReduceNoiseFilter extends WholeImageFilter {
+public class ReduceNoiseFilter extends NeighborhoodFilter {
     public ReduceNoiseFilter(String filterName) {
         super(filterName);
     }
@@ -52,26 +50,30 @@ public class ReduceNoiseFilter extends WholeImageFilter {
     }
 
     @Override
-    protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
+    protected int getRadius() {
+        return 1;
+    }
+
+    @Override
+    protected void filterRows(int width, int height, int[] inPixels, int inStartY,
+                              int[] outPixels, int startY, int endY) {
         int index = 0;
+        int inIndex = (startY - inStartY) * width;
         int[] r = new int[9];
         int[] g = new int[9];
         int[] b = new int[9];
-        int[] outPixels = new int[width * height];
 
-        pt = createProgressTracker(height);
-
-        for (int y = 0; y < height; y++) {
+        for (int y = startY; y < endY; y++) {
             for (int x = 0; x < width; x++) {
                 int k = 0;
-                int irgb = inPixels[index];
+                int irgb = inPixels[inIndex];
                 int ir = (irgb >> 16) & 0xff;
                 int ig = (irgb >> 8) & 0xff;
                 int ib = irgb & 0xff;
                 for (int dy = -1; dy <= 1; dy++) {
                     int iy = y + dy;
                     if (0 <= iy && iy < height) {
-                        int ioffset = iy * width;
+                        int ioffset = (iy - inStartY) * width;
                         for (int dx = -1; dx <= 1; dx++) {
                             int ix = x + dx;
                             if (0 <= ix && ix < width) {
@@ -95,15 +97,11 @@ public class ReduceNoiseFilter extends WholeImageFilter {
                         }
                     }
                 }
-                outPixels[index] = (inPixels[index] & 0xff000000) | (smooth(r) << 16) | (smooth(g) << 8) | smooth(b);
+                outPixels[index] = (inPixels[inIndex] & 0xff000000) | (smooth(r) << 16) | (smooth(g) << 8) | smooth(b);
                 index++;
+                inIndex++;
             }
-            pt.unitDone();
         }
-
-        finishProgressTracker();
-
-        return outPixels;
     }
 
     @Override
@@ -22,7 +22,8 @@ import java.awt.image.ColorModel;
 
 /**
  * A filter which acts as a superclass for filters which need to have the whole image in memory
- * to do their stuff.
+ * to do their stuff. The filters which only need the neighborhood of each pixel should
+ * extend {@link NeighborhoodFilter}, which filters the rows in parallel.
  */
 public abstract class WholeImageFilter extends AbstractBufferedImageOp {
     /**
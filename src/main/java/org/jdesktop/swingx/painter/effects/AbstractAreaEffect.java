@@ -23,14 +23,17 @@
 package org.jdesktop.swingx.painter.effects;
 
 import com.jhlabs.image.ImageMath;
+import pixelitor.ThreadPool;
 import pixelitor.colors.Colors;
 import pixelitor.filters.gui.UserPreset;
+import pixelitor.utils.DistanceTransform;
+import pixelitor.utils.ImageUtils;
 
 import java.awt.*;
-import java.awt.geom.Area;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serial;
@@ -45,7 +48,10 @@ import java.util.Objects;
  * @author joshy
  */
 public class AbstractAreaEffect implements AreaEffect {
-    private static final boolean debug = false;
+    private static final int MIN_BAND_HEIGHT = 16;
+
+    // the extra pixels around the calculated area
+    private static final int EDGE_MARGIN = 2;
 
     // for compatibility with pixelitor versions before 4.2.0
     @Serial
@@ -66,12 +72,6 @@ public class AbstractAreaEffect implements AreaEffect {
 
     @Override
     public void apply(Graphics2D g, Shape clipShape, int width, int height) {
-        // opacity support added by lbalazscs
-        Composite savedComposite = g.getComposite();
-        if (opacity < 1.0f) {
-            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
-        }
-
         // create a rect to hold the bounds
         Rectangle2D clipShapeBounds = clipShape.getBounds2D();
 
@@ -80,78 +80,174 @@ public class AbstractAreaEffect implements AreaEffect {
             return;
         }
 
-        width = (int) (clipShapeBounds.getWidth() + clipShapeBounds.getX());
-        height = (int) (clipShapeBounds.getHeight() + clipShapeBounds.getY());
-        Rectangle effectBounds = new Rectangle(0, 0,
-            (int) (width + getEffectWidth() * 2 + 1),
-            (int) (height + getEffectWidth() * 2 + 1));
-
+        // lbalazscs: instead of drawing the shape many times with
+        // different strokes, the effect is calculated from the
+        // distance transform of the rasterized shape
+        Rectangle effectBounds = calcEffectBounds(g, clipShapeBounds);
         if (effectBounds.isEmpty()) {
-            // check added by lbalazscs
-            // this can be empty even if the clip shape bounds is not
-            // when the clip shape starts at large negative coordinates
             return;
         }
 
-        // Apply the border glow effect
+        BufferedImage effectImage = getClipImage(effectBounds);
+        renderEffect(effectImage, clipShape, effectBounds);
+
+        // opacity support added by lbalazscs
+        Composite savedComposite = g.getComposite();
+        if (opacity < 1.0f) {
+            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
+        }
+        g.drawImage(effectImage, effectBounds.x, effectBounds.y, null);
+        g.setComposite(savedComposite);
+    }
+
+    /**
+     * Returns the area (in the coordinate system of the shape)
+     * where the effect can be visible.
+     */
+    private Rectangle calcEffectBounds(Graphics2D g, Rectangle2D shapeBounds) {
+        double reach = getEffectReach() + EDGE_MARGIN;
+        Rectangle2D area;
+        if (isShapeMasked() && isRenderInsideShape()) {
+            area = new Rectangle2D.Double(
+                shapeBounds.getX() - EDGE_MARGIN, shapeBounds.getY() - EDGE_MARGIN,
+                shapeBounds.getWidth() + 2 * EDGE_MARGIN, shapeBounds.getHeight() + 2 * EDGE_MARGIN);
+        } else {
+            area = new Rectangle2D.Double(
+                shapeBounds.getX() + offset.getX() - reach,
+                shapeBounds.getY() + offset.getY() - reach,
+                shapeBounds.getWidth() + 2 * reach,
+                shapeBounds.getHeight() + 2 * reach);
+        }
+
+        // there is no need to calculate the invisible parts, but the
+        // shape must be rasterized within the reach of the visible pixels
+        Rectangle clip = g.getClipBounds();
+        if (clip != null) {
+            int r = (int) Math.ceil(reach);
+            clip.grow(r, r);
+            Rectangle2D.intersect(area, clip, area);
+        }
+
+        int x = (int) Math.floor(area.getX());
+        int y = (int) Math.floor(area.getY());
+        int w = (int) Math.ceil(area.getMaxX()) - x;
+        int h = (int) Math.ceil(area.getMaxY()) - y;
+        if (w <= 0 || h <= 0) {
+            return new Rectangle();
+        }
+        return new Rectangle(x, y, w, h);
+    }
+
+    /**
+     * Renders the effect into the given image, which corresponds
+     * to the given bounds in the coordinate system of the shape.
+     */
+    private void renderEffect(BufferedImage effectImage, Shape shape, Rectangle bounds) {
+        int width = bounds.width;
+        int height = bounds.height;
+
+        double offsetX = offset.getX();
+        double offsetY = offset.getY();
+        boolean hasOffset = offsetX != 0 || offsetY != 0;
+        // the working buffers are not kept between the renders,
+        // because together they need about 16 bytes per pixel
+        byte[] offsetCoverage = rasterize(shape, bounds, offsetX, offsetY);
+        byte[] maskCoverage = null;
         if (isShapeMasked()) {
-            BufferedImage clipImage = getClipImage(effectBounds);
-            Graphics2D g2 = clipImage.createGraphics();
-
-            // lbalazscs: moved here from getClipImage
-            // in order to avoid two createGraphics calls
-            g2.clearRect(0, 0, clipImage.getWidth(), clipImage.getHeight());
-
-            try {
-                // clear the buffer
-                g2.setPaint(Color.BLACK);
-                g2.setComposite(AlphaComposite.Clear);
-                g2.fillRect(0, 0, effectBounds.width, effectBounds.height);
-
-                if (debug) {
-                    g2.setPaint(Color.WHITE);
-                    g2.setComposite(AlphaComposite.SrcOver);
-                    g2.drawRect(0, 0, effectBounds.width - 1,
-                        effectBounds.height - 1);
+            maskCoverage = hasOffset ? rasterize(shape, bounds, 0, 0) : offsetCoverage;
+        }
+
+        int numPixels = width * height;
+        boolean[] in = new boolean[numPixels];
+        boolean[] out = new boolean[numPixels];
+        for (int i = 0; i < numPixels; i++) {
+            boolean pixelIn = (offsetCoverage[i] & 0xFF) >= 128;
+            in[i] = pixelIn;
+            out[i] = !pixelIn;
+        }
+        float[] distFromIn = DistanceTransform.calcSquaredDistances(in, width, height);
+        float[] distFromOut = DistanceTransform.calcSquaredDistances(out, width, height);
+
+        boolean inside = isRenderInsideShape();
+        boolean fill = isShouldFillShape() && !inside;
+        int brushRGB = brushColor.getRGB() & 0x00_FF_FF_FF;
+        double reach = getEffectReach() + EDGE_MARGIN;
+        double reach2 = reach * reach;
+        int[] pixels = ImageUtils.getPixelArray(effectImage);
+        byte[] mask = maskCoverage;
+
+        ThreadPool.forEachBand(height, MIN_BAND_HEIGHT, (startY, endY) -> {
+            for (int i = startY * width, end = endY * width; i < end; i++) {
+                int coverage = offsetCoverage[i] & 0xFF;
+                double sqDist = coverage >= 128 ? distFromOut[i] : distFromIn[i];
+
+                int argb = 0;
+                if (sqDist <= reach2) {
+                    // the distance of the pixel center from the edge of the shape
+                    double dist;
+                    if (coverage > 0 && coverage < 255) {
+                        dist = Math.abs(coverage / 255.0 - 0.5);
+                    } else {
+                        dist = Math.sqrt(sqDist) - 0.5;
+                    }
+                    argb = calcEffectColor(dist);
                 }
 
-                // turn on smoothing
-                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                    RenderingHints.VALUE_ANTIALIAS_ON);
-                g2.translate(getEffectWidth() - getOffset().getX(),
-                    getEffectWidth() - getOffset().getY());
-                paintBorderGlow(g2, clipShape, width, height);
-
-                // clip out the parts we don't want
-                g2.setComposite(AlphaComposite.Clear);
-                g2.setColor(Color.WHITE);
-                if (isRenderInsideShape()) {
-                    // clip the outside
-                    Area area = new Area(effectBounds);
-                    area.subtract(new Area(clipShape));
-                    g2.fill(area);
-                } else {
-                    // clip the inside
-                    g2.fill(clipShape);
+                double alpha = (argb >>> 24) / 255.0;
+                if (fill) {
+                    // the shape is filled with the brush color under the effect
+                    double fillAlpha = coverage / 255.0;
+                    alpha = 1 - (1 - alpha) * (1 - fillAlpha);
+                    if (alpha > 0) {
+                        argb = brushRGB;
+                    }
                 }
-            } finally {
-                // draw the final image
-                g2.dispose();
+                if (mask != null) {
+                    double maskAlpha = (mask[i] & 0xFF) / 255.0;
+                    alpha *= inside ? maskAlpha : 1 - maskAlpha;
+                }
+                pixels[i] = ((int) (alpha * 255 + 0.5) << 24) | (argb & 0x00_FF_FF_FF);
             }
+        });
+    }
 
-            int drawX = (int) (-getEffectWidth() + getOffset().getX());
-            int drawY = (int) (-getEffectWidth() + getOffset().getY());
-            g.drawImage(clipImage, drawX, drawY, null);
-        } else {
-            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            paintBorderGlow(g, clipShape, width, height);
-        }
+    // returns the antialiased coverage of the (translated) shape
+    private static byte[] rasterize(Shape shape, Rectangle bounds, double tx, double ty) {
+        BufferedImage img = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.translate(tx - bounds.x, ty - bounds.y);
+        g.setColor(Color.WHITE);
+        g.fill(shape);
+        g.dispose();
+        return ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+    }
 
-        //g.setColor(Color.MAGENTA);
-        //g.draw(clipShape.getBounds2D());
-        //g.drawRect(0,0,width,height);
+    /**
+     * Returns the maximum distance from the edge of the shape where this
+     * effect is visible. The width of the strokes in the original
+     * algorithm was at most the effect width, so the distance is half of it.
+     */
+    protected double getEffectReach() {
+        return effectWidthDouble / 2.0;
+    }
 
-        g.setComposite(savedComposite);
+    /**
+     * Returns the ARGB color of the effect at the given distance from the edge.
+     * The alpha is the same as what the original algorithm produced by drawing
+     * the shape with {@code steps} widening strokes of 1/steps opacity:
+     * the number of strokes covering a point decreases linearly with the distance.
+     */
+    protected int calcEffectColor(double dist) {
+        double halfWidth = effectWidthDouble / 2.0;
+        if (dist >= halfWidth) {
+            return 0;
+        }
+        int steps = Math.max(1, getBrushSteps());
+        double numStrokes = steps * (halfWidth - Math.max(0, dist)) / halfWidth;
+        double alpha = 1 - Math.pow(1 - 1.0 / steps, numStrokes);
+        alpha *= brushColor.getAlpha() / 255.0;
+        return ((int) (alpha * 255 + 0.5) << 24) | (brushColor.getRGB() & 0x00_FF_FF_FF);
     }
 
     private transient BufferedImage _clipImage = null;
@@ -168,92 +264,6 @@ public class AbstractAreaEffect implements AreaEffect {
         return _clipImage;
     }
 
-
-    /*
-    private BufferedImage createClipImage(Shape s, Graphics2D g, int width, int height) {
-        // Create a translucent intermediate image in which we can perform
-        // the soft clipping
-
-        GraphicsConfiguration gc = g.getDeviceConfiguration();
-        BufferedImage img = gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
-        Graphics2D g2 = img.createGraphics();
-
-        // Clear the image so all pixels have zero alpha
-        g2.setComposite(AlphaComposite.Clear);
-        g2.fillRect(0, 0, width, height);
-
-        // Render our clip shape into the image.  Note that we enable
-        // antialiasing to achieve the soft clipping effect.  Try
-        // commenting out the line that enables antialiasing, and
-        // you will see that you end up with the usual hard clipping.
-        g2.setComposite(AlphaComposite.Src);
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2.setColor(Color.WHITE);
-        g2.fill(s);
-        g2.dispose();
-
-        return img;
-    }*/
-
-
-    /* draws the actual shaded border to the specified graphics
-     */
-
-    /**
-     * Paints the border glow
-     *
-     * @param g2
-     * @param clipShape
-     * @param width
-     * @param height
-     */
-    protected void paintBorderGlow(Graphics2D g2,
-                                   Shape clipShape, int width, int height) {
-
-        int steps = getBrushSteps();
-        boolean inside = isRenderInsideShape();
-
-        g2.setPaint(getBrushColor());
-        g2.translate(offset.getX(), offset.getY());
-
-        if (isShouldFillShape()) {
-            // set the inside/outside mode
-            if (inside) {
-                g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_ATOP, 1f));
-                Area a1 = new Area(new Rectangle(
-                    (int) -offset.getX() - 20,
-                    (int) -offset.getY() - 20,
-                    width + 40, height + 40));
-                Area a2 = new Area(clipShape);
-                a1.subtract(a2);
-                g2.fill(a1);
-            } else {
-                g2.setComposite(AlphaComposite.getInstance(AlphaComposite.DST_OVER, 1f));
-                g2.fill(clipShape);
-            }
-        }
-
-        // set the inside/outside mode
-        /*
-        if(inside) {
-            g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_ATOP, brushAlpha));
-        } else {
-            g2.setComposite(AlphaComposite.getInstance(AlphaComposite.DST_OVER, brushAlpha));
-        }*/
-        float brushAlpha = 1.0f / steps;
-        g2.setComposite(AlphaComposite.getInstance(AlphaComposite.DST_OVER, brushAlpha));
-
-        // draw the effect
-        for (float i = 0; i < steps; i = i + 1f) {
-            float brushWidth = (float) (i * effectWidthDouble / steps);
-            g2.setStroke(new BasicStroke(brushWidth,
-                BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-            g2.draw(clipShape);
-        }
-        g2.translate(-offset.getX(), -offset.getY());
-
-    }
-
     /**
      * Holds value of property brushColor.
      */
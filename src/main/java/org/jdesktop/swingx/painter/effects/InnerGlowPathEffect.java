@@ -22,10 +22,8 @@
 
 package org.jdesktop.swingx.painter.effects;
 
-import java.awt.*;
-import java.awt.geom.Area;
-import java.awt.geom.Rectangle2D;
-import java.awt.image.BufferedImage;
+import java.awt.Color;
+import java.awt.Point;
 import java.io.Serial;
 
 /**
@@ -50,93 +48,4 @@ public class InnerGlowPathEffect extends AbstractAreaEffect {
         this();
         setOpacity(opacity); // opacity support added by lbalazscs
     }
-
-    // copied the entire method from the superclass in order to safely fix issue #63
-    @Override
-    public void apply(Graphics2D g, Shape clipShape, int width, int height) {
-        // opacity support added by lbalazscs
-        Composite savedComposite = g.getComposite();
-        if (opacity < 1.0f) {
-            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
-        }
-
-        // create a rect to hold the bounds
-        Rectangle2D clipShapeBounds = clipShape.getBounds2D();
-
-        if (clipShapeBounds.isEmpty()) {
-            // check added by lbalazscs
-            return;
-        }
-
-        width = (int) (clipShapeBounds.getWidth() + clipShapeBounds.getX());
-        height = (int) (clipShapeBounds.getHeight() + clipShapeBounds.getY());
-        Rectangle effectBounds = new Rectangle(0, 0, width + 2, height + 2);
-
-        if (effectBounds.isEmpty()) {
-            // check added by lbalazscs
-            // this can be empty even if the clip shape bounds is not
-            // when the clip shape starts at large negative coordinates
-            return;
-        }
-
-        // Apply the border glow effect
-        BufferedImage clipImage = getClipImage(effectBounds);
-        Graphics2D g2 = clipImage.createGraphics();
-
-        // lbalazscs: moved here from getClipImage
-        // in order to avoid two createGraphics calls
-        g2.clearRect(0, 0, clipImage.getWidth(), clipImage.getHeight());
-
-        try {
-            // clear the buffer
-            g2.setPaint(Color.BLACK);
-            g2.setComposite(AlphaComposite.Clear);
-            g2.fillRect(0, 0, effectBounds.width, effectBounds.height);
-
-            // turn on smoothing
-            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                    RenderingHints.VALUE_ANTIALIAS_ON);
-            paintBorderGlow(g2, clipShape, width, height);
-
-            // clip out the parts we don't want
-            g2.setComposite(AlphaComposite.Clear);
-            g2.setColor(Color.WHITE);
-
-            // clip the outside
-            Area area = new Area(effectBounds);
-            area.subtract(new Area(clipShape));
-            g2.fill(area);
-        } finally {
-            // draw the final image
-            g2.dispose();
-        }
-
-        g.drawImage(clipImage, 0, 0, null);
-
-
-        //g.setColor(Color.MAGENTA);
-        //g.draw(clipShape.getBounds2D());
-        //g.drawRect(0,0,width,height);
-
-        g.setComposite(savedComposite);
-    }
-
-    // copied from superclass in order to simplify
-    @Override
-    protected void paintBorderGlow(Graphics2D g2,
-                                   Shape clipShape, int width, int height) {
-        g2.setPaint(getBrushColor());
-
-        int steps = getBrushSteps();
-        float brushAlpha = 1.0f / steps;
-        g2.setComposite(AlphaComposite.getInstance(AlphaComposite.DST_OVER, brushAlpha));
-
-        // draw the effect
-        for (float i = 0; i < steps; i = i + 1.0f) {
-            float brushWidth = (float) (i * effectWidthDouble / steps);
-            g2.setStroke(new BasicStroke(brushWidth,
-                    BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-            g2.draw(clipShape);
-        }
-    }
 }
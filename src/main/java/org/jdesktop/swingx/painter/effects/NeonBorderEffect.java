@@ -25,7 +25,8 @@ package org.jdesktop.swingx.painter.effects;
 import pixelitor.colors.Colors;
 import pixelitor.filters.gui.UserPreset;
 
-import java.awt.*;
+import java.awt.Color;
+import java.awt.Point;
 import java.io.Serial;
 
 /**
@@ -71,67 +72,86 @@ public class NeonBorderEffect extends AbstractAreaEffect {
     }
 
     @Override
-    protected void paintBorderGlow(Graphics2D gfx, Shape clipShape, int width, int height) {
-
-        /*
-        // draw the effect
-        for(float i=steps-1; i>=0; i=i-1f) {
-            float brushWidth = i * getEffectWidth()/steps;
-            gfx.setPaint(interpolateColor(i/steps,edgeColor,centerColor));
-            gfx.setStroke(new BasicStroke(brushWidth,
-                    BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-            gfx.draw(clipShape);
-        }*/
-
-        /* // an interesting outline effect. stroke the shape with a wide brush
-        * // then stroke again with slightly less wide one, then don't fill the middle
-       for(int i=0; i<2; i++) {
-           float brushWidth = (2-i)*5;
-           p("width = " + brushWidth);
-           gfx.setPaint(interpolateColor((float)(1-i), Color.BLACK, Color.WHITE));
-           gfx.setStroke(new BasicStroke(brushWidth));
-           gfx.draw(clipShape);
-       }
-        */
-        gfx.translate(getOffset().getX(), getOffset().getY());
-        gfx.setComposite(AlphaComposite.SrcOver);
+    protected double getEffectReach() {
+        // the widest stroke was one pixel wider than the number of steps
+        return (getNumSteps() + 1) / 2.0 + 0.5;
+    }
+
+    private int getNumSteps() {
         int steps = getEffectWidthInt();
         if (borderPosition == BorderPosition.Centered) {
             steps = steps / 2;
         }
-        for (int i = 0; i < steps; i++) {
-            // make the brush width smaller each time until there is nothing left
-            float brushWidth = steps + 1 - i;
-            float half = steps / 2.0f;
-
-            if (borderPosition == BorderPosition.Centered) {
-                gfx.setPaint(interpolateColor((float) (steps - i) / steps, getEdgeColor(), getCenterColor()));
-            } else {
-                if (i < half) {
-                    gfx.setPaint(interpolateColor((half - i) / half, getEdgeColor(), getCenterColor()));
-                } else {
-                    gfx.setPaint(interpolateColor((i - half) / half, getEdgeColor(), getCenterColor()));
-                }
-            }
+        return steps;
+    }
+
+    /**
+     * The original algorithm drew the shape with narrowing strokes,
+     * each one with a color interpolated between the edge and center
+     * colors. Here the strokes covering the pixel at the given distance
+     * are composited in the same order, taking into account that the
+     * pixel covers the distances from dist - 0.5 to dist + 0.5, and
+     * that the stroke i covers the distances up to (steps + 1 - i) / 2.
+     */
+    @Override
+    protected int calcEffectColor(double dist) {
+        int steps = getNumSteps();
+        if (steps <= 0) {
+            return 0;
+        }
+
+        // the strokes that are completely covered by an opaque
+        // narrower stroke don't have to be composited
+        int first = 0;
+        if (edgeColor.getAlpha() == 255 && centerColor.getAlpha() == 255) {
+            first = (int) Math.clamp(Math.floor(steps - 2 * dist), 0, steps - 1);
+        }
 
-            // to make the effect softer use a different stroke
-            gfx.setStroke(new BasicStroke(brushWidth,
-                    BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-            //gfx.setStroke(new BasicStroke(brushWidth));
-            gfx.draw(clipShape);
+        // premultiplied components
+        double a = 0, r = 0, g = 0, b = 0;
+        for (int i = first; i < steps; i++) {
+            double coverage = Math.min(1.0, (steps + 1 - i) / 2.0 - dist + 0.5);
+            if (coverage <= 0) {
+                break; // the narrower strokes don't reach this pixel either
+            }
+            int rgb = calcStrokeColor(i, steps);
+            double sa = (rgb >>> 24) / 255.0 * coverage;
+            a = sa + a * (1 - sa);
+            r = sa * ((rgb >>> 16) & 0xFF) + r * (1 - sa);
+            g = sa * ((rgb >>> 8) & 0xFF) + g * (1 - sa);
+            b = sa * (rgb & 0xFF) + b * (1 - sa);
         }
-        gfx.translate(-getOffset().getX(), -getOffset().getY());
+        if (a <= 0) {
+            return 0;
+        }
+        return (int) (a * 255 + 0.5) << 24
+            | (int) (r / a + 0.5) << 16
+            | (int) (g / a + 0.5) << 8
+            | (int) (b / a + 0.5);
+    }
 
+    // the color of the i-th stroke, as in the original algorithm
+    private int calcStrokeColor(int i, int steps) {
+        double t;
+        if (borderPosition == BorderPosition.Centered) {
+            t = (steps - i) / (double) steps;
+        } else {
+            double half = steps / 2.0;
+            t = i < half ? (half - i) / half : (i - half) / half;
+        }
+        return interpolateRGB(t, edgeColor.getRGB(), centerColor.getRGB());
     }
 
-    private static Color interpolateColor(float t, Color start, Color end) {
-        float[] partsS = start.getRGBComponents(null);
-        float[] partsE = end.getRGBComponents(null);
-        float[] partsR = new float[4];
-        for (int i = 0; i < 4; i++) {
-            partsR[i] = (partsS[i] - partsE[i]) * t + partsE[i];
+    // interpolates all four channels, t = 1 gives the start color
+    private static int interpolateRGB(double t, int start, int end) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int s = (start >>> shift) & 0xFF;
+            int e = (end >>> shift) & 0xFF;
+            int v = (int) ((s - e) * t + e + 0.5);
+            result |= Math.clamp(v, 0, 255) << shift;
         }
-        return new Color(partsR[0], partsR[1], partsR[2], partsR[3]);
+        return result;
     }
 
     /**
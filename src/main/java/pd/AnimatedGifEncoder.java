@@ -6,11 +6,17 @@
 
 package pd;
 
-import java.awt.Color;
+import pixelitor.ThreadPool;
+
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
 import java.io.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Class AnimatedGifEncoder - Encodes a GIF file consisting of one or more
@@ -26,6 +32,11 @@ import java.io.*;
  *     e.finish();
  * </pre>
  *
+ * The frames are quantized and compressed in parallel on the thread pool,
+ * and written out in order. After the first frame, only the bounding
+ * rectangle of the pixels that changed since the previous frame is encoded,
+ * and the unchanged pixels within it are transparent, if possible.
+ *
  * No copyright asserted on the source code of this class. May be used for any
  * purpose, however, refer to the Unisys LZW patent for restrictions on use of
  * the associated LZWEncoder class. Please forward any corrections to
@@ -35,49 +46,48 @@ import java.io.*;
  * @version 1.03 November 2003
  */
 public class AnimatedGifEncoder {
+    // the number of frames that can be encoded before the oldest one has to be written
+    private static final int MAX_PENDING_FRAMES = Runtime.getRuntime().availableProcessors() + 1;
+
+    // disposal method: leave the frame in place, so that the next one can be drawn over it
+    private static final int DISPOSE_NONE = 1;
+
     private int width; // image size
     private int height;
-    private Color transparent = null; // transparent color if given
-    private int transIndex; // transparent index in color table
     private int repeat = -1; // no repeat
     private int delay = 0; // frame delay (hundredths)
     private boolean started = false; // ready to output frames
     private OutputStream out;
-    private BufferedImage image; // current frame
-    private byte[] pixels; // BGR byte array from frame
-    private byte[] indexedPixels; // converted frame indexed to palette
-    private int colorDepth; // number of bit planes
-    private byte[] colorTab; // RGB palette
-    private final boolean[] usedEntry = new boolean[256]; // active palette entries
-    private int palSize = 7; // color table size (bits-1)
-    private int dispose = -1; // disposal code (-1 = use default)
     private boolean closeStream = false; // close stream when finished
     private boolean firstFrame = true;
     private boolean sizeSet = false; // if false, get size from first frame
     private int sample = 10; // default sample interval for quantizer
     private File file;
+    private byte[] lastPixels; // BGR byte array from the last added frame
+    private final Deque<Future<EncodedFrame>> pendingFrames = new ArrayDeque<>();
 
     /**
-     * Sets the delay time between each frame, or changes it for subsequent frames
-     * (applies to last frame added).
+     * A frame which is ready to be written.
      *
-     * @param ms int delay time in milliseconds
+     * @param bounds     the area covered by the frame
+     * @param colorTab   RGB palette
+     * @param palSize    color table size (bits-1)
+     * @param transIndex transparent index in color table, or -1
+     * @param delay      frame delay (hundredths)
+     * @param data       the LZW-compressed pixels
      */
-    public void setDelay(int ms) {
-        delay = Math.round(ms / 10.0f);
+    private record EncodedFrame(Rectangle bounds, byte[] colorTab, int palSize,
+                                int transIndex, int delay, byte[] data) {
     }
 
     /**
-     * Sets the GIF frame disposal code for the last added frame and any
-     * subsequent frames. Default is 0 if no transparent color has been set,
-     * otherwise 2.
+     * Sets the delay time between each frame, or changes it for subsequent frames
+     * (applies to last frame added).
      *
-     * @param code int disposal code.
+     * @param ms int delay time in milliseconds
      */
-    public void setDispose(int code) {
-        if (code >= 0) {
-            dispose = code;
-        }
+    public void setDelay(int ms) {
+        delay = Math.round(ms / 10.0f);
     }
 
     /**
@@ -94,24 +104,10 @@ public class AnimatedGifEncoder {
     }
 
     /**
-     * Sets the transparent color for the last added frame and any subsequent
-     * frames. Since all colors are subject to modification in the quantization
-     * process, the color in the final palette for each frame closest to the given
-     * color becomes the transparent color for that frame. May be set to null to
-     * indicate no transparent color.
-     *
-     * @param c Color to be treated as transparent on display.
-     */
-    public void setTransparent(Color c) {
-        transparent = c;
-    }
-
-    /**
-     * Adds next GIF frame. The frame is not written immediately, but is actually
-     * deferred until the next frame is received so that timing data can be
-     * inserted. Invoking <code>finish()</code> flushes all frames. If
-     * <code>setSize</code> was not invoked, the size of the first image is used
-     * for all subsequent frames.
+     * Adds next GIF frame. The frame is not written immediately, but
+     * is encoded in the background. Invoking <code>finish()</code> flushes
+     * all frames. If <code>setSize</code> was not invoked, the size of the
+     * first image is used for all subsequent frames.
      *
      * @param im BufferedImage containing frame to write.
      * @return true if successful.
@@ -120,35 +116,62 @@ public class AnimatedGifEncoder {
         if ((im == null) || !started) {
             return false;
         }
-        boolean ok = true;
+        if (!sizeSet) {
+            // use first frame's size
+            setSize(im.getWidth(), im.getHeight());
+        }
+        byte[] pixels = getImagePixels(im); // convert to correct format if necessary
+        byte[] prevPixels = lastPixels;
+        lastPixels = pixels;
+
+        int frameDelay = delay;
+        pendingFrames.add(ThreadPool.submit2(() ->
+            encodeFrame(pixels, prevPixels, frameDelay)));
+
         try {
-            if (!sizeSet) {
-                // use first frame's size
-                setSize(im.getWidth(), im.getHeight());
-            }
-            image = im;
-            getImagePixels(); // convert to correct format if necessary
-            analyzePixels(); // build color table & map pixels
-            if (firstFrame) {
-                writeLSD(); // logical screen descriptior
-                writePalette(); // global color table
-                if (repeat >= 0) {
-                    // use NS app extension to indicate reps
-                    writeNetscapeExt();
-                }
-            }
-            writeGraphicCtrlExt(); // write graphic control extension
-            writeImageDesc(); // image descriptor
-            if (!firstFrame) {
-                writePalette(); // local color table
-            }
-            writePixels(); // encode and write pixel data
-            firstFrame = false;
+            writeFinishedFrames(MAX_PENDING_FRAMES);
         } catch (IOException e) {
-            ok = false;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes out the frames whose encoding has finished, in order, waiting
+     * for the oldest frames if more than maxPending frames are pending.
+     */
+    private void writeFinishedFrames(int maxPending) throws IOException {
+        while (!pendingFrames.isEmpty()
+            && (pendingFrames.size() > maxPending || pendingFrames.peek().isDone())) {
+            EncodedFrame frame;
+            try {
+                frame = pendingFrames.remove().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+            writeFrame(frame);
         }
+    }
 
-        return ok;
+    private void writeFrame(EncodedFrame frame) throws IOException {
+        if (firstFrame) {
+            writeLSD(frame.palSize); // logical screen descriptior
+            writePalette(frame); // global color table
+            if (repeat >= 0) {
+                // use NS app extension to indicate reps
+                writeNetscapeExt();
+            }
+        }
+        writeGraphicCtrlExt(frame); // write graphic control extension
+        writeImageDesc(frame); // image descriptor
+        if (!firstFrame) {
+            writePalette(frame); // local color table
+        }
+        out.write(frame.data); // write the encoded pixel data
+        firstFrame = false;
     }
 
     /**
@@ -161,6 +184,7 @@ public class AnimatedGifEncoder {
         }
         started = false;
         try {
+            writeFinishedFrames(0);
             out.write(0x3b); // gif trailer
             out.flush();
             if (closeStream) {
@@ -168,20 +192,22 @@ public class AnimatedGifEncoder {
             }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
+        } finally {
+            // reset for subsequent use
+            pendingFrames.forEach(future -> future.cancel(false));
+            pendingFrames.clear();
+            out = null;
+            lastPixels = null;
+            closeStream = false;
+            firstFrame = true;
         }
-
-        // reset for subsequent use
-        transIndex = 0;
-        out = null;
-        image = null;
-        pixels = null;
-        indexedPixels = null;
-        colorTab = null;
-        closeStream = false;
-        firstFrame = true;
     }
 
     public void cancel() {
+        // there is no need to write the frames of a canceled file
+        pendingFrames.forEach(future -> future.cancel(false));
+        pendingFrames.clear();
+
         boolean ok = true;
         try {
             finish();
@@ -286,70 +312,159 @@ public class AnimatedGifEncoder {
     }
 
     /**
-     * Analyzes image colors and creates color map.
+     * Creates the color map and the compressed pixels of a frame.
+     * This runs on a pool thread, so it must not change the encoder state.
      */
-    private void analyzePixels() {
-        int len = pixels.length;
-        int nPix = len / 3;
-        indexedPixels = new byte[nPix];
-        NeuQuant nq = new NeuQuant(pixels, len, sample);
+    private EncodedFrame encodeFrame(byte[] pixels, byte[] prevPixels, int frameDelay) throws IOException {
+        Rectangle area;
+        if (prevPixels == null) {
+            area = new Rectangle(0, 0, width, height);
+        } else {
+            area = findChangedArea(pixels, prevPixels, width, height);
+            if (area == null) {
+                return encodeUnchangedFrame(frameDelay);
+            }
+        }
+
+        // only the changed pixels are used for building the palette
+        int nPix = area.width * area.height;
+        byte[] areaPixels = new byte[nPix * 3];
+        boolean[] unchanged = new boolean[nPix];
+        int numUnchanged = 0;
+        int len = 0;
+        for (int y = 0; y < area.height; y++) {
+            int k = ((area.y + y) * width + area.x) * 3;
+            for (int x = 0; x < area.width; x++, k += 3) {
+                if (prevPixels != null && samePixel(pixels, prevPixels, k)) {
+                    unchanged[y * area.width + x] = true;
+                    numUnchanged++;
+                } else {
+                    areaPixels[len++] = pixels[k];
+                    areaPixels[len++] = pixels[k + 1];
+                    areaPixels[len++] = pixels[k + 2];
+                }
+            }
+        }
+
+        NeuQuant nq = new NeuQuant(areaPixels, len, sample);
         // initialize quantizer
-        colorTab = nq.process(); // create reduced palette
+        byte[] colorTab = nq.process(); // create reduced palette
         // convert map from BGR to RGB
         for (int i = 0; i < colorTab.length; i += 3) {
             byte temp = colorTab[i];
             colorTab[i] = colorTab[i + 2];
             colorTab[i + 2] = temp;
-            usedEntry[i / 3] = false;
         }
-        // map image pixels to new palette
-        int k = 0;
-        for (int i = 0; i < nPix; i++) {
-            int index = nq.map(pixels[k++] & 0xff, pixels[k++] & 0xff, pixels[k++] & 0xff);
-            usedEntry[index] = true;
-            indexedPixels[i] = (byte) index;
+
+        // map the changed pixels to the new palette
+        byte[] indexedPixels = new byte[nPix];
+        boolean[] usedEntry = new boolean[256];
+        for (int i = 0, k = 0; i < nPix; i++) {
+            if (!unchanged[i]) {
+                int index = nq.map(areaPixels[k] & 0xff, areaPixels[k + 1] & 0xff, areaPixels[k + 2] & 0xff);
+                k += 3;
+                usedEntry[index] = true;
+                indexedPixels[i] = (byte) index;
+            }
         }
-        pixels = null;
-        colorDepth = 8;
-        palSize = 7;
-        // get closest match to transparent color if specified
-        if (transparent != null) {
-            transIndex = findClosest(transparent);
+
+        // the unchanged pixels are transparent if a palette entry
+        // is left for them, otherwise they are simply repeated
+        int transIndex = -1;
+        if (numUnchanged > 0) {
+            for (int i = 0; i < usedEntry.length; i++) {
+                if (!usedEntry[i]) {
+                    transIndex = i;
+                    break;
+                }
+            }
+            for (int y = 0; y < area.height; y++) {
+                int k = ((area.y + y) * width + area.x) * 3;
+                for (int x = 0; x < area.width; x++, k += 3) {
+                    int i = y * area.width + x;
+                    if (unchanged[i]) {
+                        if (transIndex != -1) {
+                            indexedPixels[i] = (byte) transIndex;
+                        } else {
+                            indexedPixels[i] = (byte) nq.map(pixels[k] & 0xff, pixels[k + 1] & 0xff, pixels[k + 2] & 0xff);
+                        }
+                    }
+                }
+            }
         }
+
+        byte[] data = compress(area, indexedPixels, 8);
+        return new EncodedFrame(area, colorTab, 7, transIndex, frameDelay, data);
     }
 
     /**
-     * Returns index of palette color closest to c
+     * Encodes a frame identical to the previous one as a single transparent pixel.
      */
-    private int findClosest(Color c) {
-        if (colorTab == null) {
-            return -1;
-        }
-        int r = c.getRed();
-        int g = c.getGreen();
-        int b = c.getBlue();
-        int minpos = 0;
-        int dmin = 256 * 256 * 256;
-        int len = colorTab.length;
-        for (int i = 0; i < len; ) {
-            int dr = r - (colorTab[i++] & 0xff);
-            int dg = g - (colorTab[i++] & 0xff);
-            int db = b - (colorTab[i] & 0xff);
-            int d = dr * dr + dg * dg + db * db;
-            int index = i / 3;
-            if (usedEntry[index] && (d < dmin)) {
-                dmin = d;
-                minpos = index;
+    private static EncodedFrame encodeUnchangedFrame(int frameDelay) throws IOException {
+        Rectangle area = new Rectangle(0, 0, 1, 1);
+        byte[] colorTab = new byte[2 * 3];
+        byte[] data = compress(area, new byte[1], 2);
+        return new EncodedFrame(area, colorTab, 0, 0, frameDelay, data);
+    }
+
+    private static byte[] compress(Rectangle area, byte[] indexedPixels, int colorDepth) throws IOException {
+        var bos = new ByteArrayOutputStream(indexedPixels.length / 2 + 16);
+        LZWEncoder encoder = new LZWEncoder(area.width, area.height, indexedPixels, colorDepth);
+        encoder.encode(bos);
+        return bos.toByteArray();
+    }
+
+    private static boolean samePixel(byte[] pixels, byte[] prevPixels, int k) {
+        return pixels[k] == prevPixels[k]
+            && pixels[k + 1] == prevPixels[k + 1]
+            && pixels[k + 2] == prevPixels[k + 2];
+    }
+
+    /**
+     * Returns the bounding rectangle of the pixels that differ
+     * in the given BGR arrays, or null if they are identical.
+     */
+    static Rectangle findChangedArea(byte[] pixels, byte[] prevPixels, int width, int height) {
+        int minX = width;
+        int maxX = -1;
+        int minY = height;
+        int maxY = -1;
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * width * 3;
+            int first = -1;
+            for (int x = 0; x < width; x++) {
+                if (!samePixel(pixels, prevPixels, rowStart + x * 3)) {
+                    first = x;
+                    break;
+                }
             }
-            i++;
+            if (first == -1) {
+                continue;
+            }
+            int last = first;
+            for (int x = width - 1; x > first; x--) {
+                if (!samePixel(pixels, prevPixels, rowStart + x * 3)) {
+                    last = x;
+                    break;
+                }
+            }
+            minX = Math.min(minX, first);
+            maxX = Math.max(maxX, last);
+            if (minY == height) {
+                minY = y;
+            }
+            maxY = y;
+        }
+        if (maxY == -1) {
+            return null;
         }
-        return minpos;
+        return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
     }
 
     /**
-     * Extracts image pixels into byte array "pixels"
+     * Extracts image pixels into a BGR byte array
      */
-    private void getImagePixels() {
+    private byte[] getImagePixels(BufferedImage image) {
         int w = image.getWidth();
         int h = image.getHeight();
         int type = image.getType();
@@ -358,30 +473,22 @@ public class AnimatedGifEncoder {
             BufferedImage temp = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
             Graphics2D g = temp.createGraphics();
             g.drawImage(image, 0, 0, null);
-            image = temp;
+            g.dispose();
+            return ((DataBufferByte) temp.getRaster().getDataBuffer()).getData();
         }
-        pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        // the caller could change the image while it's encoded
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData().clone();
     }
 
     /**
      * Writes Graphic Control Extension
      */
-    private void writeGraphicCtrlExt() throws IOException {
+    private void writeGraphicCtrlExt(EncodedFrame frame) throws IOException {
         out.write(0x21); // extension introducer
         out.write(0xf9); // GCE label
         out.write(4); // data block size
-        int transp, disp;
-        if (transparent == null) {
-            transp = 0;
-            disp = 0; // dispose = no action
-        } else {
-            transp = 1;
-            disp = 2; // force clear if using transparent color
-        }
-        if (dispose >= 0) {
-            disp = dispose & 7; // user override
-        }
-        disp <<= 2;
+        int transp = frame.transIndex >= 0 ? 1 : 0;
+        int disp = DISPOSE_NONE << 2;
 
         // packed fields
         out.write(0 | // 1:3 reserved
@@ -389,20 +496,20 @@ public class AnimatedGifEncoder {
                 0 | // 7 user input - 0 = none
                 transp); // 8 transparency flag
 
-        writeShort(delay); // delay x 1/100 sec
-        out.write(transIndex); // transparent color index
+        writeShort(frame.delay); // delay x 1/100 sec
+        out.write(Math.max(0, frame.transIndex)); // transparent color index
         out.write(0); // block terminator
     }
 
     /**
      * Writes Image Descriptor
      */
-    private void writeImageDesc() throws IOException {
+    private void writeImageDesc(EncodedFrame frame) throws IOException {
         out.write(0x2c); // image separator
-        writeShort(0); // image position x,y = 0,0
-        writeShort(0);
-        writeShort(width); // image size
-        writeShort(height);
+        writeShort(frame.bounds.x); // image position x,y
+        writeShort(frame.bounds.y);
+        writeShort(frame.bounds.width); // image size
+        writeShort(frame.bounds.height);
         // packed fields
         if (firstFrame) {
             // no LCT - GCT is used for first (or only) frame
@@ -413,14 +520,14 @@ public class AnimatedGifEncoder {
                     0 | // 2 interlace - 0=no
                     0 | // 3 sorted - 0=no
                     0 | // 4-5 reserved
-                    palSize); // 6-8 size of color table
+                    frame.palSize); // 6-8 size of color table
         }
     }
 
     /**
      * Writes Logical Screen Descriptor
      */
-    private void writeLSD() throws IOException {
+    private void writeLSD(int palSize) throws IOException {
         // logical screen size
         writeShort(width);
         writeShort(height);
@@ -451,22 +558,15 @@ public class AnimatedGifEncoder {
     /**
      * Writes color table
      */
-    private void writePalette() throws IOException {
+    private void writePalette(EncodedFrame frame) throws IOException {
+        byte[] colorTab = frame.colorTab;
         out.write(colorTab, 0, colorTab.length);
-        int n = (3 * 256) - colorTab.length;
+        int n = (3 * (2 << frame.palSize)) - colorTab.length;
         for (int i = 0; i < n; i++) {
             out.write(0);
         }
     }
 
-    /**
-     * Encodes and writes pixel data
-     */
-    private void writePixels() throws IOException {
-        LZWEncoder encoder = new LZWEncoder(width, height, indexedPixels, colorDepth);
-        encoder.encode(out);
-    }
-
     /**
      * Write 16-bit value to output stream, LSB first
      */
@@ -18,6 +18,7 @@
 package pixelitor;
 
 import pixelitor.gui.View;
+import pixelitor.selection.SelectionMask;
 import pixelitor.tools.Symmetry;
 import pixelitor.tools.util.PPoint;
 import pixelitor.utils.ImageUtils;
@@ -213,6 +214,10 @@ public class Canvas implements Serializable, Debuggable {
             return rect.createIntersection(canvasBounds);
         }
 
+        if (SelectionMask.isComplex(shape)) {
+            return SelectionMask.fromShape(shape).clip(getBounds());
+        }
+
         Area canvasArea = new Area(canvasBounds);
         Area shapeArea = new Area(shape);
         shapeArea.intersect(canvasArea);
@@ -39,6 +39,7 @@ import pixelitor.tools.pen.Path;
 import pixelitor.tools.pen.Paths;
 import pixelitor.tools.util.PPoint;
 import pixelitor.tools.util.PRectangle;
+import pixelitor.utils.CachedImage;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Messages;
 import pixelitor.utils.Shapes;
@@ -58,6 +59,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -101,7 +103,9 @@ public class Composition implements Serializable, ImageSource, LayerHolder {
 
     // Not null if this is the content of a smart object.
     // A single content can have multiple smart object owners within the
-    // same composition due to the "Clone" feature (shallow duplication).
+    // same composition due to the "Clone" feature (shallow duplication),
+    // and the read-only content of a linked file is shared by the
+    // smart objects linking it, even in different compositions.
     // Transient because the parent compositions should not be written out.
     private transient List<SmartObject> owners;
 
@@ -114,7 +118,11 @@ public class Composition implements Serializable, ImageSource, LayerHolder {
 
     private transient boolean dirty = false;
 
-    private transient BufferedImage compositeImage;
+    private transient CachedImage compositeImage = createCompositeCache();
+
+    // incremented whenever the content of the layers might have changed,
+    // so that the adjustment layers can tell whether their input changed
+    private transient AtomicLong contentVersion = new AtomicLong();
 
     private transient View view;
 
@@ -182,10 +190,15 @@ public class Composition implements Serializable, ImageSource, LayerHolder {
         return fromImage(img, null, "transparent");
     }
 
+    private static CachedImage createCompositeCache() {
+        return new CachedImage("composite image", CachedImage.Cost.MEDIUM);
+    }
+
     @Serial
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         // init transient variables
-        compositeImage = null; // will be set when needed
+        compositeImage = createCompositeCache(); // the image will be set when needed
+        contentVersion = new AtomicLong();
         file = null; // will be set later
         fileTime = 0;
         debugName = null; // will be set later
@@ -351,6 +364,12 @@ public class Composition implements Serializable, ImageSource, LayerHolder {
         owners.add(newOwner);
     }
 
+    public void removeOwner(SmartObject owner) {
+        if (owners != null) {
+            owners.remove(owner);
+        }
+    }
+
     public boolean isSmartObjectContent() {
         // if a content file is open independently of its parent,
         // then this will  return false, even for pxc files!
@@ -1434,11 +1453,13 @@ public class Composition implements Serializable, ImageSource, LayerHolder {
      * Returns the (canvas-sized) composite image.
      */
     public BufferedImage getCompositeImage() {
-        if (compositeImage == null) {
-            compositeImage = ImageUtils.calculateCompositeImage(layerList, canvas);
-            assert compositeImage != null;
+        BufferedImage image = compositeImage.get();
+        if (image == null) {
+            image = ImageUtils.calculateCompositeImage(layerList, canvas);
+            assert image != null;
+            compositeImage.set(image);
         }
-        return compositeImage;
+        return image;
     }
 
     @Override
@@ -1458,10 +1479,27 @@ public class Composition implements Serializable, ImageSource, LayerHolder {
     @Override
     public void invalidateImageCache() {
 //        Debug.debugCall(getName() + " cache invalidated", 1);
-        if (compositeImage != null) {
-            compositeImage.flush();
-        }
-        compositeImage = null;
+        contentVersion.incrementAndGet();
+        compositeImage.clear(true);
+    }
+
+    /**
+     * Returns a number that changes every time when
+     * the content of the layers might have changed.
+     */
+    public long getContentVersion() {
+        return contentVersion.get();
+    }
+
+    /**
+     * Signals that only the visibility, opacity or blending mode of
+     * a top-level layer changed, and not the content of any layer.
+     * The adjustment layers check these properties of the layers
+     * bellow them, so they can keep their cached outputs.
+     */
+    public void layerPropertiesChanged() {
+        compositeImage.clear(true);
+        repaintAfterUpdate(true, false);
     }
 
     @Override
@@ -1480,7 +1518,10 @@ public class Composition implements Serializable, ImageSource, LayerHolder {
      */
     public void update(boolean updateHistogram, boolean sizeChanged) {
         invalidateImageCache();
+        repaintAfterUpdate(updateHistogram, sizeChanged);
+    }
 
+    private void repaintAfterUpdate(boolean updateHistogram, boolean sizeChanged) {
         if (isOpen()) {
             view.repaint();
             view.repaintNavigator(sizeChanged);
@@ -1696,6 +1737,9 @@ public class Composition implements Serializable, ImageSource, LayerHolder {
                     }
                 }
             }
+            // the smart objects linking this file in other compositions
+            // are updated without having to reload it
+            LinkedFileRegistry.contentSaved(file, this);
         }
     }
 
@@ -19,6 +19,7 @@ package pixelitor;
 
 import com.bric.util.JVM;
 import net.jafama.FastMath;
+import pixelitor.automate.CommandLineBatch;
 import pixelitor.colors.FgBgColors;
 import pixelitor.gui.*;
 import pixelitor.gui.utils.Dialogs;
@@ -76,6 +77,11 @@ public class Pixelitor {
         }
         Language.load();
 
+        if (args.length > 0 && args[0].equals(CommandLineBatch.BATCH_ARG)) {
+            // no GUI is created, so this also works in headless mode
+            System.exit(CommandLineBatch.run(args));
+        }
+
         System.setProperty("com.apple.mrj.application.apple.menu.about.name", "Pixelitor");
 
 //        System.setProperty("sun.java2d.uiScale", "1.5");
@@ -84,11 +90,12 @@ public class Pixelitor {
             // doesn't seem to pick up good defaults
             System.setProperty("awt.useSystemAAFontSettings", "lcd");
             System.setProperty("swing.aatext", "true");
+        }
 
-            if (GraphicsEnvironment.isHeadless()) {
-                System.err.println("Pixelitor can't be used in headless mode");
-                System.exit(1);
-            }
+        if (GraphicsEnvironment.isHeadless()) {
+            System.err.println("Pixelitor can't be used in headless mode, except with the "
+                + CommandLineBatch.BATCH_ARG + " option");
+            System.exit(1);
         }
 
         ExceptionHandler.INSTANCE.addHandler((t, e) -> Messages.showException(e, t));
@@ -22,6 +22,8 @@ import pixelitor.utils.ProgressTracker;
 
 import java.awt.image.BufferedImage;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A thread pool for parallel execution on multiple CPU cores
@@ -105,6 +107,88 @@ public class ThreadPool {
         }
     }
 
+    /**
+     * Splits the range [0, size) into bands and processes them
+     * in parallel. The calling thread also takes part in the work,
+     * so this is safe to call even from a thread of this pool:
+     * bands that no pool thread picked up are processed by the caller.
+     */
+    public static void forEachBand(int size, int minBandSize, BandTask task) {
+        forEachBand(pool, size, minBandSize, task);
+    }
+
+    /**
+     * Same as the above, but the helper workers run on the given executor.
+     * Tasks that wait for the tasks of this pool (for example filters)
+     * must not run on this pool, because all its threads could end up waiting.
+     */
+    public static void forEachBand(Executor executor, int size, int minBandSize, BandTask task) {
+        if (size <= 0) {
+            return;
+        }
+        int maxBands = Math.max(1, size / Math.max(1, minBandSize));
+        int numBands = Math.min(NUM_CORES * 4, maxBands);
+        if (numBands == 1 || NUM_CORES == 1) {
+            task.process(0, size);
+            return;
+        }
+        int bandSize = (size + numBands - 1) / numBands;
+        int finalNumBands = (size + bandSize - 1) / bandSize;
+
+        AtomicInteger nextBand = new AtomicInteger();
+        CountDownLatch bandsDone = new CountDownLatch(finalNumBands);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Runnable worker = () -> {
+            int band;
+            while ((band = nextBand.getAndIncrement()) < finalNumBands) {
+                try {
+                    int start = band * bandSize;
+                    task.process(start, Math.min(size, start + bandSize));
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    bandsDone.countDown();
+                }
+            }
+        };
+
+        int numHelpers = Math.min(NUM_CORES, finalNumBands) - 1;
+        for (int i = 0; i < numHelpers; i++) {
+            executor.execute(worker);
+        }
+        worker.run();
+
+        // at this point every band was claimed by a running thread
+        try {
+            bandsDone.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException re) {
+            throw re;
+        } else if (t instanceof Error err) {
+            throw err;
+        } else if (t != null) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    public static int getNumCores() {
+        return NUM_CORES;
+    }
+
+    /**
+     * A task working on the [start, end) part of a range,
+     * typically a band of image rows.
+     */
+    @FunctionalInterface
+    public interface BandTask {
+        void process(int start, int end);
+    }
+
     public static Executor getExecutor() {
         return pool;
     }
@@ -99,6 +99,7 @@ public class Views {
     public static void viewClosed(View view) {
         Composition comp = view.getComp();
         History.compClosed(comp);
+        LinkedFileRegistry.compClosed(comp);
         comp.dispose();
 
         views.remove(view);
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.automate;
+
+import pixelitor.Composition;
+import pixelitor.filters.Filter;
+import pixelitor.filters.gui.UserPreset;
+import pixelitor.io.FileFormat;
+import pixelitor.io.FileUtils;
+import pixelitor.io.SaveSettings;
+import pixelitor.layers.HeadlessLayerUI;
+import pixelitor.layers.Layer;
+import pixelitor.layers.LayerUI;
+import pixelitor.utils.ConsoleMessageHandler;
+import pixelitor.utils.MessageHandler;
+import pixelitor.utils.Messages;
+import pixelitor.utils.Resampler;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Opens, filters, resizes and exports image files without a GUI.
+ * It is started by giving --batch as the first command-line argument,
+ * and it also works with -Djava.awt.headless=true.
+ */
+public class CommandLineBatch {
+    public static final String BATCH_ARG = "--batch";
+
+    // the packages where filters can be found by their simple class name
+    private static final String[] FILTER_PACKAGES = {
+        "pixelitor.filters",
+        "pixelitor.filters.jhlabsproxies",
+        "pixelitor.filters.convolve",
+        "pixelitor.filters.curves",
+        "pixelitor.filters.levels",
+        "pixelitor.filters.lookup",
+        "pixelitor.filters.painters",
+        "pixelitor.filters.transitions",
+    };
+
+    private static final String USAGE = """
+        Usage: pixelitor --batch -o <output dir> [options] <files or dirs>
+        Options:
+          -o, --output <dir>          the output directory (required)
+          -f, --format <ext>          the output format, by default the input format
+          --filter <class>[=<preset>] applies a filter, optionally configured by
+                                      a saved preset file (can be repeated)
+          --resize <width>x<height>   shrinks the larger images to fit into the given box
+          -j, --jobs <n>              the number of files processed in parallel
+          -v, --verbose               prints the progress
+        """;
+
+    private final List<File> inputs = new ArrayList<>();
+    private final List<FilterSpec> filterSpecs = new ArrayList<>();
+    private File outputDir;
+    private FileFormat outputFormat;
+    private int maxWidth;
+    private int maxHeight;
+    private int numJobs = Runtime.getRuntime().availableProcessors();
+    private boolean verbose;
+
+    /**
+     * A filter class and an optional preset file to configure it
+     */
+    private record FilterSpec(Class<? extends Filter> filterClass, File presetFile) {
+        Filter createFilter() throws ReflectiveOperationException, IOException {
+            // each file gets its own filter instance, because
+            // the filters aren't guaranteed to be thread-safe
+            Filter filter = filterClass.getDeclaredConstructor().newInstance();
+            if (presetFile != null) {
+                UserPreset preset = new UserPreset(FileUtils.stripExtension(presetFile.getName()), null);
+                preset.loadFromString(Files.readString(presetFile.toPath()));
+                filter.loadUserPreset(preset);
+            }
+            return filter;
+        }
+    }
+
+    private CommandLineBatch() {
+    }
+
+    /**
+     * Runs the batch processing described by the given command-line
+     * arguments, and returns the exit code of the process.
+     */
+    public static int run(String[] args) {
+        CommandLineBatch batch = new CommandLineBatch();
+        try {
+            batch.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            return 2;
+        }
+
+        // the global handlers are replaced only while the batch is running,
+        // so that the GUI (or the tests) can continue to use their own
+        MessageHandler prevMsgHandler = Messages.getMsgHandler();
+        Function<Layer, LayerUI> prevUIFactory = Layer.uiFactory;
+        var msgHandler = new ConsoleMessageHandler(batch.verbose);
+        Messages.setMsgHandler(msgHandler);
+        Layer.uiFactory = HeadlessLayerUI::new;
+        try {
+            int numFailed = batch.processAll();
+            if (numFailed > 0 || msgHandler.getNumErrors() > 0) {
+                return 1;
+            }
+            return 0;
+        } finally {
+            Messages.setMsgHandler(prevMsgHandler);
+            Layer.uiFactory = prevUIFactory;
+        }
+    }
+
+    void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case BATCH_ARG -> {
+                }
+                case "-o", "--output" -> outputDir = new File(nextArg(args, ++i, arg));
+                case "-f", "--format" -> {
+                    String ext = nextArg(args, ++i, arg);
+                    outputFormat = FileFormat.fromExtension(ext).orElseThrow(() ->
+                        new IllegalArgumentException("Unsupported output format: " + ext));
+                }
+                case "--filter" -> filterSpecs.add(parseFilterSpec(nextArg(args, ++i, arg)));
+                case "--resize" -> parseSize(nextArg(args, ++i, arg));
+                case "-j", "--jobs" -> numJobs = parsePositive(nextArg(args, ++i, arg), arg);
+                case "-v", "--verbose" -> verbose = true;
+                default -> {
+                    if (arg.startsWith("-")) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    inputs.add(new File(arg));
+                }
+            }
+        }
+        if (outputDir == null) {
+            throw new IllegalArgumentException("No output directory was given");
+        }
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("No input files were given");
+        }
+    }
+
+    private static String nextArg(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static int parsePositive(String s, String option) {
+        try {
+            int value = Integer.parseInt(s);
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Invalid value for " + option + ": " + s);
+    }
+
+    private void parseSize(String s) {
+        int xIndex = s.indexOf('x');
+        if (xIndex == -1) {
+            throw new IllegalArgumentException("Invalid size: " + s);
+        }
+        maxWidth = parsePositive(s.substring(0, xIndex), "--resize");
+        maxHeight = parsePositive(s.substring(xIndex + 1), "--resize");
+    }
+
+    private static FilterSpec parseFilterSpec(String s) {
+        String className = s;
+        File presetFile = null;
+        int eqIndex = s.indexOf('=');
+        if (eqIndex != -1) {
+            className = s.substring(0, eqIndex);
+            presetFile = new File(s.substring(eqIndex + 1));
+            if (!presetFile.isFile()) {
+                throw new IllegalArgumentException("Preset file not found: " + presetFile);
+            }
+        }
+        return new FilterSpec(findFilterClass(className), presetFile);
+    }
+
+    private static Class<? extends Filter> findFilterClass(String name) {
+        List<String> candidates = new ArrayList<>();
+        if (name.contains(".")) {
+            candidates.add(name);
+        } else {
+            for (String pkg : FILTER_PACKAGES) {
+                candidates.add(pkg + "." + name);
+            }
+        }
+        for (String candidate : candidates) {
+            try {
+                Class<?> c = Class.forName(candidate);
+                if (Filter.class.isAssignableFrom(c)) {
+                    return c.asSubclass(Filter.class);
+                }
+            } catch (ClassNotFoundException e) {
+                // try the next package
+            }
+        }
+        throw new IllegalArgumentException("Filter not found: " + name);
+    }
+
+    private List<File> collectInputFiles() {
+        List<File> files = new ArrayList<>();
+        for (File input : inputs) {
+            if (input.isDirectory()) {
+                files.addAll(FileUtils.listSupportedInputFilesIn(input));
+            } else if (input.isFile()) {
+                files.add(input);
+            } else {
+                System.err.println("Not found: " + input);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Processes all input files, and returns the number of failures.
+     */
+    private int processAll() {
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            System.err.println("Could not create " + outputDir);
+            return 1;
+        }
+
+        List<File> files = collectInputFiles();
+        AtomicInteger numFailed = new AtomicInteger(inputs.size() > files.size() ? 1 : 0);
+
+        // a dedicated pool, because the filters themselves
+        // also use the shared thread pool for their bands
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.min(numJobs, Math.max(1, files.size())));
+        List<Future<?>> futures = new ArrayList<>();
+        for (File file : files) {
+            futures.add(executor.submit(() -> {
+                try {
+                    processFile(file);
+                } catch (Exception e) {
+                    numFailed.incrementAndGet();
+                    System.err.println("Failed to process " + file + ": " + e);
+                    if (verbose) {
+                        e.printStackTrace();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                numFailed.incrementAndGet();
+            }
+        }
+        executor.shutdown();
+        return numFailed.get();
+    }
+
+    private void processFile(File file) throws ReflectiveOperationException, IOException {
+        Optional<FileFormat> inputFormat = FileFormat.fromFile(file);
+        if (inputFormat.isEmpty()) {
+            throw new IOException("Unsupported file format");
+        }
+        Composition comp = inputFormat.get().readSync(file);
+        if (comp == null) {
+            throw new IOException("Could not read the file");
+        }
+
+        // the filters are applied to the flattened image
+        BufferedImage img = comp.getCompositeImage();
+        for (FilterSpec spec : filterSpecs) {
+            img = spec.createFilter().transformImage(img);
+        }
+        if (maxWidth > 0) {
+            img = resizeToFit(img);
+        }
+
+        FileFormat format = outputFormat != null ? outputFormat : inputFormat.get();
+        String outName = FileUtils.replaceExt(file.getName(), format.toString());
+        File outFile = new File(outputDir, outName);
+
+        Composition outComp = Composition.fromImage(img, outFile, null);
+        format.createSaveTask(outComp, new SaveSettings(format, outFile)).run();
+
+        if (verbose) {
+            System.out.println(file + " => " + outFile);
+        }
+    }
+
+    private BufferedImage resizeToFit(BufferedImage img) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        double scale = Math.min((double) maxWidth / width, (double) maxHeight / height);
+        if (scale >= 1.0) {
+            // the images are only shrunk, never enlarged
+            return img;
+        }
+        int newWidth = Math.max(1, (int) Math.round(width * scale));
+        int newHeight = Math.max(1, (int) Math.round(height * scale));
+        if (newWidth == width && newHeight == height) {
+            return img;
+        }
+        return Resampler.resize(img, newWidth, newHeight);
+    }
+}
@@ -21,6 +21,9 @@ import pixelitor.filters.gui.UserPreset;
 
 import java.awt.Color;
 
+import static java.awt.Color.BLACK;
+import static java.awt.Color.WHITE;
+
 /**
  * This class is used for global access to foreground
  * and background colors, and also for separating the
@@ -42,18 +45,30 @@ public class FgBgColors {
     }
 
     public static Color getFGColor() {
+        if (selector == null) { // in headless mode
+            return BLACK;
+        }
         return selector.getFgColor();
     }
 
     public static Color getBGColor() {
+        if (selector == null) { // in headless mode
+            return WHITE;
+        }
         return selector.getBgColor();
     }
 
     public static Color getRealFgColor() {
+        if (selector == null) { // in headless mode
+            return BLACK;
+        }
         return selector.getRealFgColor();
     }
 
     public static Color getRealBgColor() {
+        if (selector == null) { // in headless mode
+            return WHITE;
+        }
         return selector.getRealBgColor();
     }
 
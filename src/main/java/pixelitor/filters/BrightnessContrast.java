@@ -19,6 +19,8 @@ package pixelitor.filters;
 
 import com.jhlabs.image.PixelUtils;
 import pixelitor.filters.gui.RangeParam;
+import pixelitor.filters.lookup.ColorLookup;
+import pixelitor.filters.lookup.FusableColorFilter;
 import pixelitor.utils.ImageUtils;
 
 import java.awt.image.BufferedImage;
@@ -29,7 +31,7 @@ import static pixelitor.utils.Texts.i18n;
 /**
  * The Brightness/Contrast filter
  */
-public class BrightnessContrast extends ParametrizedFilter {
+public class BrightnessContrast extends ParametrizedFilter implements FusableColorFilter {
     private static final String CONTRAST = i18n("contrast");
     public static final String NAME = BRIGHTNESS + "/" + CONTRAST;
 
@@ -54,31 +56,7 @@ public class BrightnessContrast extends ParametrizedFilter {
             return src;
         }
 
-        // prepare brightness
-        double brightnessValue = brightnessParam.getValue() / 10.0;
-        double pow = -brightnessValue + 1;
-        if (brightnessValue > 0) {
-            pow = 1.0 / (brightnessValue + 1);
-        }
-        double normalize = Math.pow(255, pow - 1);
-
-        // prepare contrast
-        double contrastValue = contrastParam.getValue() * 2.55;
-        double contrastFactor = (259.0 * (contrastValue + 255)) / (255.0 * (259 - contrastValue));
-
-        // create the lookup table
-        int[] lookup = new int[256];
-        for (int i = 0; i < lookup.length; i++) {
-            double lookupValue = i; // by default do nothing
-
-            // modify for brightness
-            lookupValue = (float) Math.pow(lookupValue, pow) / normalize;
-
-            // modify for contrast
-            lookupValue = contrastFactor * (lookupValue - 128) + 128;
-
-            lookup[i] = PixelUtils.clamp((int) lookupValue);
-        }
+        int[] lookup = createLookupTable();
 
         // transform the image
         int[] srcData = ImageUtils.getPixelArray(src);
@@ -107,6 +85,45 @@ public class BrightnessContrast extends ParametrizedFilter {
         return dest;
     }
 
+    @Override
+    public ColorLookup createColorLookup() {
+        if (brightnessParam.isZero() && contrastParam.isZero()) {
+            return ColorLookup.identity();
+        }
+        int[] lookup = createLookupTable();
+        return ColorLookup.fromTables(lookup, lookup, lookup);
+    }
+
+    private int[] createLookupTable() {
+        // prepare brightness
+        double brightnessValue = brightnessParam.getValue() / 10.0;
+        double pow = -brightnessValue + 1;
+        if (brightnessValue > 0) {
+            pow = 1.0 / (brightnessValue + 1);
+        }
+        double normalize = Math.pow(255, pow - 1);
+
+        // prepare contrast
+        double contrastValue = contrastParam.getValue() * 2.55;
+        double contrastFactor = (259.0 * (contrastValue + 255)) / (255.0 * (259 - contrastValue));
+
+        // create the lookup table
+        int[] lookup = new int[256];
+        for (int i = 0; i < lookup.length; i++) {
+            double lookupValue = i; // by default do nothing
+
+            // modify for brightness
+            lookupValue = (float) Math.pow(lookupValue, pow) / normalize;
+
+            // modify for contrast
+            lookupValue = contrastFactor * (lookupValue - 128) + 128;
+
+            lookup[i] = PixelUtils.clamp((int) lookupValue);
+        }
+
+        return lookup;
+    }
+
     @Override
     public boolean supportsGray() {
         return false;
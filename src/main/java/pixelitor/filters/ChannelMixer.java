@@ -19,6 +19,8 @@ package pixelitor.filters;
 
 import com.jhlabs.image.PixelUtils;
 import pixelitor.filters.gui.*;
+import pixelitor.filters.lookup.ColorLookup;
+import pixelitor.filters.lookup.FusableColorFilter;
 import pixelitor.gui.utils.PAction;
 import pixelitor.layers.Filterable;
 import pixelitor.utils.ImageUtils;
@@ -36,7 +38,7 @@ import static pixelitor.utils.Texts.i18n;
 /**
  * The Channel Mixer filter
  */
-public class ChannelMixer extends ParametrizedFilter {
+public class ChannelMixer extends ParametrizedFilter implements FusableColorFilter {
     public static final String NAME = i18n("channel_mixer");
 
     @Serial
@@ -254,6 +256,39 @@ public class ChannelMixer extends ParametrizedFilter {
         return dest;
     }
 
+    @Override
+    public ColorLookup createColorLookup() {
+        float rfr = (float) redFromRed.getPercentage();
+        float rfg = (float) redFromGreen.getPercentage();
+        float rfb = (float) redFromBlue.getPercentage();
+
+        float gfr = (float) greenFromRed.getPercentage();
+        float gfg = (float) greenFromGreen.getPercentage();
+        float gfb = (float) greenFromBlue.getPercentage();
+
+        float bfr = (float) blueFromRed.getPercentage();
+        float bfg = (float) blueFromGreen.getPercentage();
+        float bfb = (float) blueFromBlue.getPercentage();
+
+        if (rfr == 1.0f && rfg == 0.0f && rfb == 0.0f
+            && gfr == 0.0f && gfg == 1.0f && gfb == 0.0f
+            && bfr == 0.0f && bfg == 0.0f && bfb == 1.0f) {
+            return ColorLookup.identity();
+        }
+
+        return ColorLookup.fromFunction(rgb -> {
+            int r = (rgb >>> 16) & 0xFF;
+            int g = (rgb >>> 8) & 0xFF;
+            int b = rgb & 0xFF;
+
+            int newRed = PixelUtils.clamp((int) (rfr * r + rfg * g + rfb * b));
+            int newGreen = PixelUtils.clamp((int) (gfr * r + gfg * g + gfb * b));
+            int newBlue = PixelUtils.clamp((int) (bfr * r + bfg * g + bfb * b));
+
+            return newRed << 16 | newGreen << 8 | newBlue;
+        });
+    }
+
     // Replace the adjustment listeners with custom versions which
     // change other values before triggering the filter.
     public void replaceAdjustmentListeners() {
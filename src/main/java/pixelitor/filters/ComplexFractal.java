@@ -43,7 +43,7 @@ public abstract class ComplexFractal extends ParametrizedFilter {
     private static final int AA_NONE = 1;
     private static final int AA_2x2 = 2;
 
-    protected final LogZoomParam zoomParam = new LogZoomParam(GUIText.ZOOM, 200, 200, 1000);
+    protected final LogZoomParam zoomParam = new LogZoomParam(GUIText.ZOOM, 200, 200, 1800);
     protected final ImagePositionParam zoomCenter;
     protected final RangeParam iterationsParam;
     private final IntChoiceParam colorsParam = new IntChoiceParam("Colors", new Item[]{
@@ -62,7 +62,7 @@ public abstract class ComplexFractal extends ParametrizedFilter {
         iterationsParam = new RangeParam.Builder("Iterations")
             .min(2)
             .def(defaultIterations)
-            .max(998)
+            .max(4999)
             .randomizePolicy(IGNORE_RANDOMIZE)
             .build();
 
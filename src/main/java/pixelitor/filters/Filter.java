@@ -27,6 +27,7 @@ import pixelitor.utils.debug.Debuggable;
 import java.awt.image.BufferedImage;
 import java.io.Serial;
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
 
@@ -42,7 +43,7 @@ public abstract class Filter implements Serializable, PresetOwner, Debuggable {
 
     // used for making sure that there are no
     // unnecessary filter executions triggered
-    public static long runCount = 0;
+    private static final AtomicInteger runCount = new AtomicInteger();
 
     protected Filter() {
     }
@@ -61,33 +62,88 @@ public abstract class Filter implements Serializable, PresetOwner, Debuggable {
         return true;
     }
 
+    /**
+     * Whether the result of this filter depends only on the source image
+     * and on the state saved in the user presets, so that it can be reused
+     * from the {@link FilterResultCache}. Filters using random numbers without
+     * a saved seed, the colors of the tools, other layers or any other
+     * external state must not return true here.
+     */
+    protected boolean canCacheResults() {
+        return false;
+    }
+
+    /**
+     * Returns true if the results of this filter are
+     * currently stored in the {@link FilterResultCache}.
+     */
+    public boolean usesResultCache() {
+        return canCacheResults() && canHaveUserPresets() && FilterResultCache.isEnabled();
+    }
+
     public BufferedImage transformImage(BufferedImage src) {
+        return transformImage(src, true);
+    }
+
+    /**
+     * Runs the filter on the given source image. If cacheResult is false
+     * (for example for dialog previews), then the result isn't stored in
+     * the {@link FilterResultCache}, but it can still come from there.
+     */
+    public BufferedImage transformImage(BufferedImage src, boolean cacheResult) {
+        FilterResultCache.Key cacheKey = null;
+        if (usesResultCache()) {
+            cacheKey = FilterResultCache.createKey(this, src);
+            BufferedImage cached = FilterResultCache.get(cacheKey);
+            if (cached != null) {
+                // counts as a run, because the result was requested
+                runCount.incrementAndGet();
+                // the callers are free to modify the returned image
+                return ImageUtils.copyImage(cached);
+            }
+        }
+
+        BufferedImage filterSrc = src;
         boolean convertFromGray = false;
         if (src.getType() == TYPE_BYTE_GRAY) { // editing a mask
             if (!supportsGray()) {
                 convertFromGray = true;
-                src = ImageUtils.toSysCompatibleImage(src);
+                filterSrc = ImageUtils.toSysCompatibleImage(src);
             }
         }
 
         BufferedImage dest = null;
         if (createDefaultDestImg()) {
-            dest = ImageUtils.createImageWithSameCM(src);
+            dest = ImageUtils.createImageWithSameCM(filterSrc);
         }
 
-        dest = transform(src, dest);
+        long startTime = System.nanoTime();
+        dest = transform(filterSrc, dest);
 
         if (convertFromGray) { // convert the result back
             dest = ImageUtils.convertToGrayScaleImage(dest);
         }
 
-        runCount++;
+        runCount.incrementAndGet();
 
         assert dest != null : getName() + " returned null dest";
 
+        // copying the result is not worth it if the filter was fast
+        if (cacheResult && cacheKey != null && dest != src && dest != filterSrc
+            && System.nanoTime() - startTime >= FilterResultCache.MIN_CACHED_RUN_NANOS) {
+            FilterResultCache.put(cacheKey, ImageUtils.copyImage(dest));
+        }
+
         return dest;
     }
 
+    /**
+     * Returns the number of finished filter runs, including the cache hits.
+     */
+    public static int getRunCount() {
+        return runCount.get();
+    }
+
     public void setName(String name) {
         this.name = name;
     }
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters;
+
+import pixelitor.utils.CachedImage;
+import pixelitor.utils.CachedImage.Cost;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the recent results of the filters that declare that their output
+ * depends only on their settings and on the source image, so that running
+ * such a filter again with the same settings on the same pixels
+ * ("Repeat Last", reopening a dialog, re-evaluating smart filters)
+ * doesn't have to recalculate anything.
+ *
+ * Only the results are stored, the sources are identified by their
+ * size, type and 64-bit fingerprint. The results of dialog previews
+ * are not stored, because the settings change all the time.
+ *
+ * The cached images are registered with the
+ * {@link pixelitor.utils.CacheManager}, which keeps their memory bounded.
+ */
+public class FilterResultCache {
+    // even if there is enough memory, keeping more would rarely help
+    private static final int MAX_ENTRIES = 32;
+
+    // The results of faster runs are not stored,
+    // because copying the result would cost about as much.
+    static final long MIN_CACHED_RUN_NANOS = 50_000_000L;
+
+    private static final Map<Key, CachedImage> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static boolean enabled = true;
+
+    private FilterResultCache() {
+        // do not instantiate
+    }
+
+    /**
+     * Identifies a filter result by the filter class, the serialized
+     * filter state and the fingerprint of the source image.
+     */
+    record Key(Class<? extends Filter> filterClass, String filterState,
+               int width, int height, int imageType, long fingerprint) {
+    }
+
+    static Key createKey(Filter filter, BufferedImage src) {
+        String state = filter.createUserPreset("").saveToString();
+        return new Key(filter.getClass(), state,
+            src.getWidth(), src.getHeight(), src.getType(), ImageUtils.calcFingerprint(src));
+    }
+
+    /**
+     * Returns the cached result for the given key, or null if it is not
+     * available. The returned image is shared, the caller must copy
+     * it before modifying it.
+     */
+    static BufferedImage get(Key key) {
+        CachedImage entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        return entry == null ? null : entry.get();
+    }
+
+    /**
+     * Stores the given result of a filter. It can't be modified later.
+     */
+    static void put(Key key, BufferedImage result) {
+        CachedImage entry = new CachedImage("filter result", Cost.MEDIUM);
+
+        // the cache manager already cleared the evicted
+        // image, only the map entry has to be removed
+        entry.setEvictionListener(() -> remove(key, entry));
+
+        // the cache manager is called outside the lock, because
+        // it calls the eviction listeners while holding its own lock
+        entry.set(result);
+
+        List<CachedImage> removed = new ArrayList<>();
+        synchronized (entries) {
+            CachedImage old = entries.put(key, entry);
+            if (old != null) {
+                removed.add(old);
+            }
+            var it = entries.values().iterator();
+            while (entries.size() > MAX_ENTRIES && it.hasNext()) {
+                removed.add(it.next());
+                it.remove();
+            }
+        }
+        for (CachedImage removedEntry : removed) {
+            removedEntry.clear(true);
+        }
+    }
+
+    private static void remove(Key key, CachedImage entry) {
+        synchronized (entries) {
+            entries.remove(key, entry);
+        }
+    }
+
+    public static void clear() {
+        List<CachedImage> removed;
+        synchronized (entries) {
+            removed = new ArrayList<>(entries.values());
+            entries.clear();
+        }
+        for (CachedImage entry : removed) {
+            entry.clear(true);
+        }
+    }
+
+    public static int getNumEntries() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        FilterResultCache.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+}
@@ -25,14 +25,12 @@ import pixelitor.colors.Colors;
 import pixelitor.filters.gui.*;
 import pixelitor.filters.gui.GroupedRangeParam.GroupedRangeParamState;
 import pixelitor.filters.gui.RangeParam.RangeParamState;
-import pixelitor.particles.Modifier;
-import pixelitor.particles.ParticleSystem;
-import pixelitor.particles.SmoothPathParticle;
+import pixelitor.particles.ParticlePath;
+import pixelitor.particles.ParticleStore;
 import pixelitor.tools.shapes.StrokeType;
 import pixelitor.utils.*;
 
 import java.awt.*;
-import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.io.Serial;
 import java.util.ArrayList;
@@ -56,6 +54,12 @@ public class FlowField extends ParametrizedFilter {
     private static final boolean IS_MULTI_THREADED = true;
     private static final int PAD = 100;
     private static final int PARTICLES_PER_GROUP = 100;
+
+    // the number of groups simulated at the same time for each core
+    private static final int GROUPS_PER_CORE = 4;
+
+    // the number of finished paths a group collects before they are painted
+    private static final int MAX_PATHS_PER_BATCH = 2000;
     private static final float QUALITY = 0.8f;
     private static final float SMOOTHNESS = 1224.3649f;
     private static final float LIMITING_ITERATIONS = 100;
@@ -98,45 +102,36 @@ public class FlowField extends ParametrizedFilter {
         return out;
     }
 
-    private enum ForceMode implements Modifier<FlowFieldParticle> {
+    private enum ForceMode {
         FORCE_MODE_VELOCITY("No Mass") {
             @Override
-            public void modify(FlowFieldParticle particle) {
-                particle.pos.setLocation(
-                    particle.pos.getX() + particle.delta.x,
-                    particle.pos.getY() + particle.delta.y
-                );
+            void move(ParticleStore ps, int i, double deltaX, double deltaY) {
+                ps.setPosition(i, ps.x[i] + deltaX, ps.y[i] + deltaY);
             }
         },
         FORCE_MODE_ACCELERATION("Uniform Mass") {
             @Override
-            public void modify(FlowFieldParticle particle) {
-                particle.vel.add(particle.delta);
-                particle.pos.setLocation(
-                    particle.pos.getX() + particle.vel.x,
-                    particle.pos.getY() + particle.vel.y
-                );
+            void move(ParticleStore ps, int i, double deltaX, double deltaY) {
+                ps.velX[i] += (float) deltaX;
+                ps.velY[i] += (float) deltaY;
+                ps.setPosition(i, ps.x[i] + ps.velX[i], ps.y[i] + ps.velY[i]);
             }
         },
         FORCE_MODE_JOLT("Jolt") {
             @Override
-            public void modify(FlowFieldParticle particle) {
-                particle.acc.add(particle.delta);
-                particle.vel.add(particle.acc);
-                particle.pos.setLocation(
-                    particle.pos.getX() + particle.vel.x,
-                    particle.pos.getY() + particle.vel.y
-                );
+            void move(ParticleStore ps, int i, double deltaX, double deltaY) {
+                ps.accX[i] += (float) deltaX;
+                ps.accY[i] += (float) deltaY;
+                ps.velX[i] += ps.accX[i];
+                ps.velY[i] += ps.accY[i];
+                ps.setPosition(i, ps.x[i] + ps.velX[i], ps.y[i] + ps.velY[i]);
             }
         },
         FORCE_MODE_VELOCITY_AND_NOISE_BASED_RANDOMNESS("Thicken") {
             @Override
-            public void modify(FlowFieldParticle particle) {
-                particle.delta.add(Noise.noise2((float) particle.delta.x, (float) particle.delta.y) * 10);
-                particle.pos.setLocation(
-                    particle.pos.getX() + particle.delta.x,
-                    particle.pos.getY() + particle.delta.y
-                );
+            void move(ParticleStore ps, int i, double deltaX, double deltaY) {
+                float noise = Noise.noise2((float) deltaX, (float) deltaY) * 10;
+                ps.setPosition(i, ps.x[i] + deltaX + noise, ps.y[i] + deltaY + noise);
             }
         };
 
@@ -146,47 +141,57 @@ public class FlowField extends ParametrizedFilter {
             name = s;
         }
 
+        /**
+         * Moves the particle with the given index, where the
+         * given delta is the force acting on the particle.
+         */
+        abstract void move(ParticleStore ps, int i, double deltaX, double deltaY);
+
         @Override
         public String toString() {
             return name;
         }
     }
 
-    private enum ColorSource implements Modifier<FlowFieldParticle> {
+    private enum ColorSource {
         DEFAULT("Default", false) {
             @Override
-            Color getColor(FlowFieldParticle particle) {
-                return particle.startingColor;
+            Color getColor(FlowFieldMeta meta, Color startingColor, int cell) {
+                return startingColor;
             }
         },
         SOURCE_IMAGE("Source Image", true) {
             @Override
             public void initializeColorField(FlowFieldMeta meta) {
-                fill(meta.fieldColors, meta.fieldWidth, meta.fieldHeight, (x, y) -> meta.goldenRatio
-                    .next(colorFromSourceImage(x, y, meta.imgWidth, meta.sourcePixels, meta.fieldDensity)));
+                for (int x = 0; x < meta.fieldWidth; x++) {
+                    for (int y = 0; y < meta.fieldHeight; y++) {
+                        Color sourceColor = colorFromSourceImage(x, y, meta.imgWidth, meta.sourcePixels, meta.fieldDensity);
+                        meta.fieldColors[meta.cellAt(x, y)] = meta.goldenRatio.next(sourceColor).getRGB();
+                    }
+                }
             }
 
             @Override
-            Color getColor(FlowFieldParticle particle) {
-                return particle.meta.fieldColors[particle.getFieldX()][particle.getFieldY()];
+            Color getColor(FlowFieldMeta meta, Color startingColor, int cell) {
+                return new Color(meta.fieldColors[cell], true);
             }
         },
         RGB("RGB", false) {
             @Override
-            Color getColor(FlowFieldParticle particle) {
-                return rgbColorFromAcceleration(particle.delta, particle.startingColor);
+            Color getColor(FlowFieldMeta meta, Color startingColor, int cell) {
+                return rgbColorFromAcceleration(meta.fieldAccX[cell], meta.fieldAccY[cell], startingColor);
             }
         },
         HSB_Cycle("HSB Cycle", false) {
             @Override
-            Color getColor(FlowFieldParticle particle) {
-                return hsbColorFromAcceleration(particle.delta, particle.startingColor, 6);
+            Color getColor(FlowFieldMeta meta, Color startingColor, int cell) {
+                return hsbColorFromAcceleration(meta.fieldAccX[cell], meta.fieldAccY[cell], startingColor, 6);
             }
         },
         Warm("Warm", false) {
             @Override
-            Color getColor(FlowFieldParticle particle) {
-                return hsbColorFromAcceleration(particle.delta, particle.startingColor, 400);
+            Color getColor(FlowFieldMeta meta, Color startingColor, int cell) {
+                return hsbColorFromAcceleration(meta.fieldAccX[cell], meta.fieldAccY[cell], startingColor, 400);
             }
         };
 
@@ -201,12 +206,11 @@ public class FlowField extends ParametrizedFilter {
         public void initializeColorField(FlowFieldMeta meta) {
         }
 
-        @Override
-        public void modify(FlowFieldParticle particle) {
-            particle.color = getColor(particle);
-        }
-
-        abstract Color getColor(FlowFieldParticle particle);
+        /**
+         * Returns the color of a particle whose last step
+         * started in the given cell of the field.
+         */
+        abstract Color getColor(FlowFieldMeta meta, Color startingColor, int cell);
 
         @Override
         public String toString() {
@@ -229,9 +233,9 @@ public class FlowField extends ParametrizedFilter {
 
     private final EnumParam<ForceMode> forceModeParam = new EnumParam<>("Force Mode", ForceMode.class);
     private final RangeParam maxVelocityParam = new RangeParam("Maximum Velocity", 1, 4000, 5000);
-    private final RangeParam pathLengthParam = new RangeParam("Path Length", 1, 100, 100, true, BORDER, IGNORE_RANDOMIZE);
+    private final RangeParam pathLengthParam = new RangeParam("Path Length", 1, 100, 1000, true, BORDER, IGNORE_RANDOMIZE);
 
-    private final RangeParam numParticlesParam = new RangeParam("Particle Count", 1, 1000, 20000, true, BORDER, IGNORE_RANDOMIZE);
+    private final RangeParam numParticlesParam = new RangeParam("Particle Count", 1, 1000, 100_000, true, BORDER, IGNORE_RANDOMIZE);
     private final StrokeParam strokeParam = new StrokeParam("Stroke");
     private final BooleanParam antiAliasParam = new BooleanParam("Use Antialiasing", false);
     private final ColorParam backgroundColorParam = new ColorParam("Background Color", new Color(0, 0, 0, 1.0f), FREE_TRANSPARENCY);
@@ -453,47 +457,43 @@ public class FlowField extends ParametrizedFilter {
         float initTheta = (float) (r.nextFloat() * 2 * FastMath.PI);
 
         int groupCount = IS_MULTI_THREADED ? ceilToInt(particleCount / (double) PARTICLES_PER_GROUP) : 1;
+        int groupSize = ceilToInt(particleCount / (double) groupCount);
         var pt = new StatusBarProgressTracker(NAME, groupCount);
 
-        Graphics2D g2 = dest.createGraphics();
         boolean useColorField = colorRandomness != 0 || colorSource.requiresColorField();
         boolean randomizeWidth = widthRandomness != 0;
 
         ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
-        g2.setStroke(stroke);
+        Graphics2D g2 = dest.createGraphics();
         Colors.fillWith(bgColor, g2, imgWidth, imgHeight);
-        g2.setColor(particleColor);
-        if (antialias) {
-            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        }
-        Graphics2D[] graphicsCopies = new Graphics2D[groupCount];
-        for (int i = 0; i < groupCount; i++) {
-            graphicsCopies[i] = (Graphics2D) g2.create();
-        }
+        g2.dispose();
 
-        Color[][] fieldColors = getIf(useColorField, () -> new Color[fieldWidth][fieldHeight]);
+        int[] fieldColors = getIf(useColorField, () -> new int[fieldWidth * fieldHeight]);
         Stroke[] strokes = getIf(randomizeWidth, () -> new Stroke[100]);
-        Vector2D[][] fieldAccelerations = new Vector2D[fieldWidth][fieldHeight];
+        float[] fieldAccX = new float[fieldWidth * fieldHeight];
+        float[] fieldAccY = new float[fieldWidth * fieldHeight];
         int[] sourcePixels = getIf(useColorField || inheritSpawnPoints, () -> ImageUtils.getPixelArray(src));
 
         if (randomizeWidth) {
             fill(strokes, strokes.length, () -> strokeParam.createStrokeWithRandomWidth(r, widthRandomness));
         }
 
-        initializeAcceleration(multiplierNoise, multiplierSink, multiplierRevolve, zoom, turbulence, fieldWidth, fieldHeight, noise, center, variantPI, initTheta, fieldAccelerations);
+        initializeAcceleration(multiplierNoise, multiplierSink, multiplierRevolve, zoom, turbulence, fieldWidth, fieldHeight, noise, center, variantPI, initTheta, fieldAccX, fieldAccY);
 
-        List<Point2D> spawns = null;
+        int[] spawns = null;
         if (inheritSpawnPoints) {
             spawns = initializeSpawnPoints(imgWidth, fieldDensity, sourcePixels);
         }
 
         GoldenRatio goldenRatio = new GoldenRatio(r, particleColor, colorRandomness);
-        FlowFieldMeta meta = new FlowFieldMeta(fieldWidth - 1, fieldHeight - 1, fieldDensity, bounds, tolerance, maximumVelocitySq, zFactor, zoom, turbulence, noise, multiplierNoise, initTheta, variantPI, forceMode, goldenRatio, fieldColors, imgWidth, sourcePixels);
+        FlowFieldMeta meta = new FlowFieldMeta(fieldWidth, fieldHeight, fieldDensity, bounds, tolerance, maximumVelocitySq, zFactor, zoom, turbulence, noise, multiplierNoise, initTheta, variantPI, forceMode, colorSource, goldenRatio, fieldAccX, fieldAccY, fieldColors, particleColor.getRGB(), imgWidth, sourcePixels, spawns, stroke, strokes, iterationCount);
 
         if (useColorField) {
             if (colorRandomness != 0) {
-                fill(fieldColors, fieldWidth, fieldHeight, goldenRatio::next);
+                for (int i = 0; i < fieldColors.length; i++) {
+                    fieldColors[i] = goldenRatio.next().getRGB();
+                }
             }
 
             if (colorSource.requiresColorField) {
@@ -501,27 +501,46 @@ public class FlowField extends ParametrizedFilter {
             }
         }
 
-        PositionRandomizer positionRandomizer = new PositionRandomizer(bounds.x, bounds.y, bounds.width, bounds.height, spawns, r);
-        ParticleInitializer particleInitializer = new ParticleInitializer(particleColor, useColorField, fieldColors);
-        ForceModeUpdater forceModeUpdater = new ForceModeUpdater(forceMode, fieldAccelerations);
-
-        ParticleSystem<FlowFieldParticle> particleSystem = ParticleSystem.<FlowFieldParticle>createSystem(particleCount)
-            .setParticleCreator(() -> new FlowFieldParticle(graphicsCopies, randomizeWidth ? strokes[
-                r.nextInt(strokes.length)] : stroke, meta))
-            .addModifier(positionRandomizer)
-            .addModifier(particleInitializer)
-            .addUpdater(forceModeUpdater)
-            .addUpdater(colorSource)
-            .build();
-
-        Future<?>[] futures = particleSystem.iterate(iterationCount, groupCount);
-        ThreadPool.waitFor(futures, pt);
-        particleSystem.flush();
-        pt.finished();
-        for (Graphics2D copy : graphicsCopies) {
-            copy.dispose();
+        // The random generators of the groups are seeded here,
+        // so that the result doesn't depend on the thread scheduling.
+        long[] seeds = new long[groupCount];
+        for (int i = 0; i < groupCount; i++) {
+            seeds[i] = r.nextLong();
+        }
+
+        // Only a limited number of groups is simulated at the same time,
+        // and their finished paths are painted and released in batches,
+        // so that the memory doesn't grow with the number of particles.
+        int groupsPerWave = ThreadPool.getNumCores() * GROUPS_PER_CORE;
+        for (int waveStart = 0; waveStart < groupCount; waveStart += groupsPerWave) {
+            int waveEnd = min(groupCount, waveStart + groupsPerWave);
+            List<ParticleGroup> running = new ArrayList<>();
+            for (int i = waveStart; i < waveEnd; i++) {
+                int start = i * groupSize;
+                int end = min(particleCount, start + groupSize);
+                running.add(new ParticleGroup(meta, start, end, seeds[i]));
+            }
+            while (!running.isEmpty()) {
+                Future<?>[] futures = new Future[running.size()];
+                for (int i = 0; i < futures.length; i++) {
+                    ParticleGroup group = running.get(i);
+                    futures[i] = ThreadPool.submit(() -> group.simulate(MAX_PATHS_PER_BATCH));
+                }
+                ThreadPool.waitFor(futures, ProgressTracker.NULL_TRACKER);
+
+                // the paths are painted in a deterministic order
+                List<ParticlePath> paths = new ArrayList<>();
+                for (ParticleGroup group : running) {
+                    paths.addAll(group.takePaths());
+                }
+                ParticlePath.paintAll(paths, dest, antialias);
+
+                int numRunning = running.size();
+                running.removeIf(ParticleGroup::isFinished);
+                pt.unitsDone(numRunning - running.size());
+            }
         }
-        g2.dispose();
+        pt.finished();
 
         return dest;
     }
@@ -531,7 +550,7 @@ public class FlowField extends ParametrizedFilter {
         return false;
     }
 
-    private static void initializeAcceleration(float multiplierNoise, float multiplierSink, float multiplierRevolve, float zoom, int turbulence, int fieldWidth, int fieldHeight, OpenSimplex2F noise, Vector2D center, float variantPI, float initTheta, Vector2D[][] fieldAccelerations) {
+    private static void initializeAcceleration(float multiplierNoise, float multiplierSink, float multiplierRevolve, float zoom, int turbulence, int fieldWidth, int fieldHeight, OpenSimplex2F noise, Vector2D center, float variantPI, float initTheta, float[] fieldAccX, float[] fieldAccY) {
         Vector2D position = new Vector2D();
         Vector2D forceDueToNoise = new Vector2D();
         Vector2D forceDueToSink = new Vector2D();
@@ -549,18 +568,36 @@ public class FlowField extends ParametrizedFilter {
                 createNoiseForce(multiplierNoise, initTheta, variantPI, position.x / zoom,
                     position.y / zoom, 0, turbulence, noise, forceDueToNoise);
 
-                fieldAccelerations[i][j] = Vector2D.add(forceDueToRevolution, forceDueToSink, forceDueToNoise);
+                int cell = i * fieldHeight + j;
+                fieldAccX[cell] = (float) (forceDueToRevolution.x + forceDueToSink.x + forceDueToNoise.x);
+                fieldAccY[cell] = (float) (forceDueToRevolution.y + forceDueToSink.y + forceDueToNoise.y);
             }
         }
     }
 
-    private static List<Point2D> initializeSpawnPoints(int imgWidth, float fieldDensity, int[] sourcePixels) {
-        List<Point2D> spawns = new ArrayList<>();
+    /**
+     * Returns the field coordinates of the non-transparent source pixels as
+     * (x, y) pairs, or null if all the source pixels are transparent.
+     */
+    private static int[] initializeSpawnPoints(int imgWidth, float fieldDensity, int[] sourcePixels) {
+        int numSpawns = 0;
+        for (int pixel : sourcePixels) {
+            if ((pixel & 0xFF_00_00_00) != 0) {
+                numSpawns++;
+            }
+        }
+        if (numSpawns == 0) {
+            return null;
+        }
+
+        int[] spawns = new int[numSpawns * 2];
+        int index = 0;
         for (int i = 0; i < sourcePixels.length; i++) {
             if ((sourcePixels[i] & 0xFF_00_00_00) != 0) {
                 int y = i / imgWidth;
                 int x = i - y * imgWidth;
-                spawns.add(new Point(x *= fieldDensity, y *= fieldDensity));
+                spawns[index++] = (int) (x * fieldDensity);
+                spawns[index++] = (int) (y * fieldDensity);
             }
         }
         return spawns;
@@ -579,27 +616,15 @@ public class FlowField extends ParametrizedFilter {
         }
     }
 
-    public static <T> void fill(T[][] array, int w, int h, Supplier<T> value) {
-        fill(array, w, h, (x, y) -> value.get());
-    }
-
-    public static <T> void fill(T[][] array, int w, int h, Coord2DFunction<T> value) {
-        for (int i = 0; i < w; i++) {
-            for (int j = 0; j < h; j++) {
-                array[i][j] = value.get(i, j);
-            }
-        }
-    }
-
     private static Color colorFromSourceImage(int x, int y, int imgWidth, int[] sourcePixels, float fieldDensity) {
         x /= fieldDensity;
         y /= fieldDensity;
-        int i = toRange(0, sourcePixels.length, x + y * imgWidth);
+        int i = toRange(0, sourcePixels.length - 1, x + y * imgWidth);
         return new Color(sourcePixels[i], true);
     }
 
-    private static Color rgbColorFromAcceleration(Vector2D acc, Color particleColor) {
-        double ra = sigmoidFit(acc.x) / 255, rb = sigmoidFit(acc.y) / 255;
+    private static Color rgbColorFromAcceleration(double accX, double accY, Color particleColor) {
+        double ra = sigmoidFit(accX) / 255, rb = sigmoidFit(accY) / 255;
         return new Color(
             (float) ra * particleColor.getRed(),
             (float) rb * particleColor.getGreen(),
@@ -607,8 +632,8 @@ public class FlowField extends ParametrizedFilter {
             (float) particleColor.getAlpha() / 255.0f);
     }
 
-    private static Color hsbColorFromAcceleration(Vector2D acc, Color particleColor, float dividend) {
-        int hsbColor = Color.HSBtoRGB((float) (acc.x + acc.y) / dividend, 0.8f, 1.0f);
+    private static Color hsbColorFromAcceleration(double accX, double accY, Color particleColor, float dividend) {
+        int hsbColor = Color.HSBtoRGB((float) (accX + accY) / dividend, 0.8f, 1.0f);
         int r = (hsbColor >> 16) & 0xFF;
         int g = (hsbColor >> 8) & 0xFF;
         int b = hsbColor & 0xFF;
@@ -628,133 +653,197 @@ public class FlowField extends ParametrizedFilter {
         return 1 / (1 + exp(-v));
     }
 
-    public interface Coord2DFunction<T> {
-        T get(int x, int y);
-    }
-
-    private static class PositionRandomizer implements Modifier<FlowFieldParticle> {
-        final Modifier<FlowFieldParticle> modifier;
-
-        public PositionRandomizer(int x, int y, int width, int height, List<Point2D> spawnPoints, Random random) {
-            if (spawnPoints == null || spawnPoints.isEmpty()) {
-                modifier = new RandomizePosition<>(x, y, width, height, random);
-            } else {
-                int size = spawnPoints.size();
-                modifier = particle -> particle.pos.setLocation(spawnPoints.get(random.nextInt(size)));
-            }
-        }
-
-        @Override
-        public void modify(FlowFieldParticle particle) {
-            modifier.modify(particle);
-        }
-    }
-
-    private record ParticleInitializer(Color particleColor,
-                                       boolean randomizeColor,
-                                       Color[][] fieldColors) implements Modifier<FlowFieldParticle> {
+    /**
+     * A group of particles that is simulated by a single thread.
+     * The simulation can be paused after a number of finished paths,
+     * so that these paths can be painted before it continues.
+     */
+    private static class ParticleGroup {
+        private final FlowFieldMeta meta;
+        private final int firstIndex;
+        private final ParticleStore ps;
+        private final Random random;
+        private final Stroke[] strokes;
 
-        @Override
-        public void modify(FlowFieldParticle particle) {
-            particle.addPoint(particle.pos);
-            int fieldX = particle.getFieldX();
-            int fieldY = particle.getFieldY();
-            particle.startingColor = particle.color = randomizeColor ? fieldColors[fieldX][fieldY] : particleColor;
-        }
-    }
+        // the field cell where the last step of each particle started,
+        // or -1 if the particle didn't move since it was spawned
+        private final int[] lastCell;
 
-    private record ForceModeUpdater(ForceMode forceMode,
-                                    Vector2D[][] fieldAccelerations) implements Modifier<FlowFieldParticle> {
-        @Override
-        public void modify(FlowFieldParticle particle) {
-            particle.delta.set(fieldAccelerations[particle.getFieldX()][particle.getFieldY()]);
-        }
-    }
+        // the finished paths, in order, since they were last taken
+        private List<ParticlePath> paths = new ArrayList<>();
 
-    public static class FlowFieldParticle extends SmoothPathParticle {
-        public final Vector2D delta = new Vector2D();
-        public final Vector2D acc = new Vector2D();
-        public Color startingColor;
+        // the position where a paused simulation continues,
+        // the iteration is -1 if the particles weren't spawned yet
+        private int iteration = -1;
+        private int nextParticle = 0;
+        private boolean finished = false;
 
-        private final Stroke stroke;
-        private final FlowFieldMeta meta;
+        ParticleGroup(FlowFieldMeta meta, int start, int end, long seed) {
+            this.meta = meta;
+            this.firstIndex = start;
+            this.random = new Random(seed);
+
+            int size = end - start;
+            // a path gets at most one new point in each iteration
+            ps = new ParticleStore(size, meta.iterationCount + 1);
+            strokes = new Stroke[size];
+            lastCell = new int[size];
+        }
+
+        /**
+         * Continues the simulation until at least the given
+         * number of paths are finished, or until the end.
+         */
+        void simulate(int maxPaths) {
+            int size = ps.size();
+            if (iteration == -1) {
+                for (int i = 0; i < size; i++) {
+                    strokes[i] = meta.randomStrokes == null
+                        ? meta.stroke
+                        : meta.randomStrokes[random.nextInt(meta.randomStrokes.length)];
+                    spawn(i);
+                }
+                iteration = 0;
+            }
 
-        public FlowFieldParticle(Graphics2D[] gc, Stroke stroke, FlowFieldMeta meta) {
-            super(gc);
-            this.vel = new Vector2D();
-            this.pos = new Point2D.Float();
-            this.lastPos = new Point2D.Float();
+            while (iteration < meta.iterationCount) {
+                while (nextParticle < size) {
+                    int i = nextParticle++;
+                    if (isDead(i)) {
+                        finishPath(i);
+                        spawn(i);
+                    }
+                    step(i);
+                    if (paths.size() >= maxPaths) {
+                        return;
+                    }
+                }
+                nextParticle = 0;
+                iteration++;
+            }
 
-            this.stroke = stroke;
-            this.meta = meta;
+            for (int i = 0; i < size; i++) {
+                finishPath(i);
+            }
+            finished = true;
         }
 
-        @Override
-        public void addPoint(Point2D point) {
-            lastPos.setLocation(point);
-            super.addPoint(Geometry.deScale(Geometry.newFrom(point), meta.fieldDensity));
+        boolean isFinished() {
+            return finished;
         }
 
-        @Override
-        public void flush() {
-            getGraphics().setStroke(stroke);
-            super.flush();
-        }
+        private void spawn(int i) {
+            int[] spawns = meta.spawns;
+            if (spawns != null) {
+                int spawnIndex = 2 * random.nextInt(spawns.length / 2);
+                ps.setPosition(i, spawns[spawnIndex], spawns[spawnIndex + 1]);
+            } else {
+                Rectangle bounds = meta.bounds;
+                ps.setPosition(i,
+                    bounds.x + bounds.width * random.nextDouble(),
+                    bounds.y + bounds.height * random.nextDouble());
+            }
+            addPoint(i);
 
-        @Override
-        public void reset() {
-            lastPos.setLocation(pos);
+            ps.color[i] = meta.fieldColors != null
+                ? meta.fieldColors[meta.cellAt(ps.x[i], ps.y[i])]
+                : meta.particleColor;
+            lastCell[i] = -1;
         }
 
-        @Override
-        public boolean isDead() {
-            return !meta.bounds.contains(pos);
+        private boolean isDead(int i) {
+            return !meta.bounds.contains(ps.x[i], ps.y[i]);
         }
 
-        @Override
-        public void update() {
-            Vector2D oldVel = new Vector2D(vel.x, vel.y);
+        private void step(int i) {
+            float x = ps.x[i];
+            float y = ps.y[i];
+            int cell = meta.cellAt(x, y);
+            lastCell[i] = cell;
 
+            double deltaX = meta.fieldAccX[cell];
+            double deltaY = meta.fieldAccY[cell];
             if (meta.zFactor != 0) {
-                double sampleX = pos.getX() / meta.zoom;
-                double sampleY = pos.getY() / meta.zoom;
-                double sampleZ = meta.zFactor * iterationIndex;
-                Vector2D noiseDelta = new Vector2D();
-                createNoiseForce(meta.multiplierNoise, meta.initTheta, meta.variantPI, sampleX, sampleY, sampleZ, meta.turbulence, meta.noise, noiseDelta);
-                delta.add(noiseDelta);
+                double sampleZ = meta.zFactor * (firstIndex + i);
+                double angle = meta.initTheta + meta.noise.turbulence3(
+                    x / meta.zoom, y / meta.zoom, sampleZ, meta.turbulence) * meta.variantPI;
+                deltaX += meta.multiplierNoise * cos(angle);
+                deltaY += meta.multiplierNoise * sin(angle);
             }
 
-            meta.forceMode.modify(this);
+            float oldVelX = ps.velX[i];
+            float oldVelY = ps.velY[i];
+            meta.forceMode.move(ps, i, deltaX, deltaY);
 
-            if (vel.lengthSq() > meta.maximumVelocitySq) {
-                vel.set(oldVel);
+            float velX = ps.velX[i];
+            float velY = ps.velY[i];
+            if (velX * velX + velY * velY > meta.maximumVelocitySq) {
+                ps.velX[i] = oldVelX;
+                ps.velY[i] = oldVelY;
             }
 
-            if (positionChangedEnough()) {
-                addPoint(Geometry.newFrom(pos));
+            if (positionChangedEnough(i)) {
+                addPoint(i);
             }
         }
 
-        private boolean positionChangedEnough() {
-            double xChange = abs(lastPos.getX() - pos.getX());
-            double yChange = abs(lastPos.getY() - pos.getY());
+        private boolean positionChangedEnough(int i) {
+            double xChange = abs(ps.lastX[i] - ps.x[i]);
+            double yChange = abs(ps.lastY[i] - ps.y[i]);
             return xChange > meta.tolerance || yChange > meta.tolerance;
         }
 
-        public int getFieldX() {
-            return FastMath.toRange(0, meta.fieldWidth, (int) pos.getX());
+        private void addPoint(int i) {
+            float x = ps.x[i];
+            float y = ps.y[i];
+            ps.lastX[i] = x;
+            ps.lastY[i] = y;
+            ps.addPathPoint(i, x / meta.fieldDensity, y / meta.fieldDensity);
         }
 
-        public int getFieldY() {
-            return FastMath.toRange(0, meta.fieldHeight, (int) pos.getY());
+        private void finishPath(int i) {
+            if (ps.getPathLength(i) >= 3) {
+                Shape path = Shapes.smoothConnect(ps.getPathPoints(i), 0.5);
+                Color startingColor = new Color(ps.color[i], true);
+                int cell = lastCell[i];
+                Color color = cell == -1
+                    ? startingColor
+                    : meta.colorSource.getColor(meta, startingColor, cell);
+                paths.add(ParticlePath.create(path, strokes[i], color));
+            }
+            ps.clearPath(i);
+        }
+
+        /**
+         * Returns the paths finished since the last call, and forgets them.
+         */
+        List<ParticlePath> takePaths() {
+            List<ParticlePath> taken = paths;
+            paths = new ArrayList<>();
+            return taken;
         }
     }
 
-    public record FlowFieldMeta(int fieldWidth, int fieldHeight, float fieldDensity, Rectangle bounds,
-                                double tolerance,
-                                float maximumVelocitySq, double zFactor, double zoom, int turbulence,
-                                OpenSimplex2F noise, float multiplierNoise, float initTheta, float variantPI,
-                                ForceMode forceMode, GoldenRatio goldenRatio,
-                                Color[][] fieldColors, int imgWidth, int[] sourcePixels) {
+    /**
+     * The settings and the precalculated fields shared by all particle groups.
+     * The fields are indexed by cells, see {@link #cellAt(double, double)}.
+     */
+    private record FlowFieldMeta(int fieldWidth, int fieldHeight, float fieldDensity, Rectangle bounds,
+                                 double tolerance,
+                                 float maximumVelocitySq, double zFactor, double zoom, int turbulence,
+                                 OpenSimplex2F noise, float multiplierNoise, float initTheta, float variantPI,
+                                 ForceMode forceMode, ColorSource colorSource, GoldenRatio goldenRatio,
+                                 float[] fieldAccX, float[] fieldAccY, int[] fieldColors, int particleColor,
+                                 int imgWidth, int[] sourcePixels, int[] spawns,
+                                 Stroke stroke, Stroke[] randomStrokes, int iterationCount) {
+        /**
+         * Returns the index of the field cell containing the given
+         * position, clamped to the edges of the field.
+         */
+        int cellAt(double x, double y) {
+            int cellX = FastMath.toRange(0, fieldWidth - 1, (int) x);
+            int cellY = FastMath.toRange(0, fieldHeight - 1, (int) y);
+            return cellX * fieldHeight + cellY;
+        }
     }
 }
@@ -19,6 +19,8 @@ package pixelitor.filters;
 
 import com.jhlabs.image.PointFilter;
 import pixelitor.filters.gui.RangeParam;
+import pixelitor.filters.lookup.ColorLookup;
+import pixelitor.filters.lookup.FusableColorFilter;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
@@ -28,7 +30,7 @@ import static pixelitor.gui.GUIText.*;
 /**
  * Hue-Saturation filter
  */
-public class HueSat extends ParametrizedFilter {
+public class HueSat extends ParametrizedFilter implements FusableColorFilter {
     public static final String NAME = HUE + "/" + SATURATION;
 
     private static final int MIN_HUE = -180;
@@ -71,13 +73,27 @@ public class HueSat extends ParametrizedFilter {
             return src;
         }
 
+        dest = createImpl().filter(src, dest);
+
+        return dest;
+    }
+
+    @Override
+    public ColorLookup createColorLookup() {
+        if (hue.isZero() && saturation.isZero() && brightness.isZero()) {
+            return ColorLookup.identity();
+        }
+        // The hue and saturation of the colors near the gray axis change
+        // abruptly, so they can't be interpolated from a color cube.
+        return null;
+    }
+
+    private Impl createImpl() {
         float satShift = (float) saturation.getPercentage();
         float briShift = (float) brightness.getPercentage();
         float hueShift = hue.getValueAsFloat() / 360.0f;
 
-        dest = new Impl(hueShift, satShift, briShift).filter(src, dest);
-
-        return dest;
+        return new Impl(hueShift, satShift, briShift);
     }
 
     private static class Impl extends PointFilter {
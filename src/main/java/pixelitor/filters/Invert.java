@@ -17,6 +17,8 @@
 package pixelitor.filters;
 
 import com.jhlabs.image.PixelUtils;
+import pixelitor.filters.lookup.ColorLookup;
+import pixelitor.filters.lookup.FusableColorFilter;
 import pixelitor.filters.util.FilterPalette;
 import pixelitor.utils.ImageUtils;
 
@@ -29,7 +31,7 @@ import static pixelitor.utils.Texts.i18n;
 /**
  * Invert filter
  */
-public class Invert extends Filter {
+public class Invert extends Filter implements FusableColorFilter {
     @Serial
     private static final long serialVersionUID = -6279018636064203421L;
 
@@ -47,6 +49,15 @@ public class Invert extends Filter {
         return false;
     }
 
+    @Override
+    public ColorLookup createColorLookup() {
+        int[] inverted = new int[256];
+        for (int i = 0; i < inverted.length; i++) {
+            inverted[i] = 255 - i;
+        }
+        return ColorLookup.fromTables(inverted, inverted, inverted);
+    }
+
     public static BufferedImage invertImage(BufferedImage src) {
         BufferedImage dest;
         if (src.getColorModel() instanceof IndexColorModel) {
@@ -57,36 +57,14 @@ public class JuliaSet extends ComplexFractal {
         filter.setColors(createColors(iterations));
         filter.setMaxIterations(iterations);
 
-        filter.setCx(cParam.getPercentage(0));
-        filter.setCy(cParam.getPercentage(1));
+        filter.setConstant(cParam.getPercentage(0), cParam.getPercentage(1));
 
         return filter.filter(src, dest);
     }
 }
 
 class JuliaSetImpl extends ComplexFractalImpl {
-    private double cx;
-    private double cy;
-
     protected JuliaSetImpl() {
-        super(JuliaSet.NAME, -2.0f, 2.0f, -1.2f, 1.2f);
-    }
-
-    @Override
-    public int filterRGB(int x, int y, int rgb) {
-        double zx = cxStart + x * xMultiplier;
-        double zy = cyStart + y * yMultiplier;
-
-        return calcIteratedColor(zx, zy, cx, cy);
-    }
-
-    public void setCx(double cx) {
-        this.cx = cx;
-    }
-
-    public void setCy(double cy) {
-        this.cy = cy;
+        super(JuliaSet.NAME, -2.0f, 2.0f, -1.2f, 1.2f, false);
     }
 }
-
-
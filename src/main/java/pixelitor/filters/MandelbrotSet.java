@@ -53,41 +53,6 @@ public class MandelbrotSet extends ComplexFractal {
 
 class MandelbrotSetImpl extends ComplexFractalImpl {
     protected MandelbrotSetImpl() {
-        super(MandelbrotSet.NAME, -2.2f, 0.7f, -1.2f, 1.2f);
-    }
-
-    @Override
-    public int filterRGB(int x, int y, int rgb) {
-        // start with the complex number (0, 0)
-        double zx = 0;
-        double zy = 0;
-
-        // the complex constant c, mapped from image coordinates
-        double cx = cxStart + x * xMultiplier;
-        double cy = cyStart + y * yMultiplier;
-
-        // before going into the escape time algorithm,
-        // first two possible shortcuts:
-
-        // 1. check if the point is in the period-2 bulb
-        if (cx < -0.75 && cx > -1.25 && cy < 0.28 && cy > -0.28) { // approx. check
-            if ((cx + 1) * (cx + 1) + cy * cy < 1 / 16.0) { // exact check
-                return colors[0];
-            }
-        }
-
-        // 2. check if the point is inside the main cardioid
-        if (cx > -0.75 && cx < 0.37 && cy < 0.65 && cy > -0.65) { // approx. check
-            double cm = cx - 1 / 4.0;
-            double cy2 = cy * cy;
-            double q = cm * cm + cy2;
-            if (q * (q + cm) < cy2 / 4.0) { // exact check
-                return colors[0];
-            }
-        }
-
-        return calcIteratedColor(zx, zy, cx, cy);
+        super(MandelbrotSet.NAME, -2.2f, 0.7f, -1.2f, 1.2f, true);
     }
 }
-
-
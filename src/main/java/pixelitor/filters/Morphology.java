@@ -70,7 +70,8 @@ public class Morphology extends ParametrizedFilter {
             filter.setOp(selectedOp);
             dest = filter.filter(src, dest);
         } else {
-            var pt = new StatusBarProgressTracker(NAME, 2 * iterations);
+            // the filter reports the progress for each row in both passes
+            var pt = new StatusBarProgressTracker(NAME, 2 * src.getHeight());
             filter.setProgressTracker(pt);
 
             if (selectedOp == OP_OPEN) {
@@ -92,4 +93,9 @@ public class Morphology extends ParametrizedFilter {
 
         return dest;
     }
+
+    @Override
+    protected boolean canCacheResults() {
+        return true;
+    }
 }
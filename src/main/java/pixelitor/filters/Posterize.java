@@ -19,7 +19,9 @@ package pixelitor.filters;
 import pixelitor.filters.gui.GroupedRangeParam;
 import pixelitor.filters.gui.RangeParam;
 import pixelitor.filters.levels.RGBLookup;
+import pixelitor.filters.lookup.ColorLookup;
 import pixelitor.filters.lookup.FastLookupOp;
+import pixelitor.filters.lookup.FusableColorFilter;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
@@ -30,7 +32,7 @@ import static pixelitor.utils.Texts.i18n;
 /**
  * Posterize filter
  */
-public class Posterize extends ParametrizedFilter {
+public class Posterize extends ParametrizedFilter implements FusableColorFilter {
     public static final String NAME = i18n("posterize");
 
     private final RangeParam redLevels = new RangeParam(i18n("red"), 2, 2, 50);
@@ -52,17 +54,23 @@ public class Posterize extends ParametrizedFilter {
 
     @Override
     public BufferedImage doTransform(BufferedImage src, BufferedImage dest) {
-        int numRedLevels = redLevels.getValue();
-        int numGreenLevels = greenLevels.getValue();
-        int numBlueLevels = blueLevels.getValue();
-        var rgbLookup = new RGBLookup();
-        rgbLookup.initFromPosterize(numRedLevels, numGreenLevels, numBlueLevels);
-
-        BufferedImageOp filterOp = new FastLookupOp((ShortLookupTable) rgbLookup.getLookupOp());
+        BufferedImageOp filterOp = new FastLookupOp((ShortLookupTable) createRGBLookup().getLookupOp());
         filterOp.filter(src, dest);
         return dest;
     }
 
+    @Override
+    public ColorLookup createColorLookup() {
+        return createRGBLookup().toColorLookup();
+    }
+
+    private RGBLookup createRGBLookup() {
+        var rgbLookup = new RGBLookup();
+        rgbLookup.initFromPosterize(redLevels.getValue(),
+            greenLevels.getValue(), blueLevels.getValue());
+        return rgbLookup;
+    }
+
     @Override
     public boolean excludedFromAnimation() {
         return true;
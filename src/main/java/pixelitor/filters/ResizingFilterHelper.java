@@ -20,6 +20,7 @@ package pixelitor.filters;
 import com.jhlabs.image.AbstractBufferedImageOp;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.ProgressTracker;
+import pixelitor.utils.Resampler;
 import pixelitor.utils.SubtaskProgressTracker;
 
 import java.awt.Graphics2D;
@@ -55,18 +56,23 @@ public class ResizingFilterHelper {
             public int getWorkUnits(double resizeFactor) {
                 return 1 + (int) (resizeFactor / 2); // estimate
             }
-        }, BILINEAR11 { // high quality with 1.1 steps
+        }, SMOOTH { // high quality, with a single parallel resampling pass
 
             @Override
             public BufferedImage scaleUp(BufferedImage src, BufferedImage smallDest,
                                          double resizeFactor, ProgressTracker pt) {
-                return ImageUtils.enlargeSmooth(smallDest, src.getWidth(), src.getHeight(),
-                    VALUE_INTERPOLATION_BILINEAR, 1.1, pt);
+                BufferedImage dest = Resampler.resize(smallDest,
+                    src.getWidth(), src.getHeight(), Resampler.Kernel.MITCHELL);
+                pt.unitsDone(getWorkUnits(resizeFactor));
+                return dest;
             }
 
             @Override
             public int getWorkUnits(double resizeFactor) {
-                return ImageUtils.calcNumStepsForEnlargeSmooth(resizeFactor, 1.1);
+                // Measured on a single core, the resampling with the 4x4 taps
+                // of the Mitchell kernel takes about twice as long as the
+                // bilinear scaling. With more cores the estimate is pessimistic.
+                return 2 * BILINEAR_FAST.getWorkUnits(resizeFactor);
             }
         };
 
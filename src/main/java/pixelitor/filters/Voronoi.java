@@ -74,15 +74,10 @@ public class Voronoi extends ParametrizedFilter {
         filter.setDistanceBetweenPoints(distance.getValueAsDouble());
         filter.setMetric(metric.getSelected());
         filter.setUseImageColors(useImageColors.isChecked());
+        filter.setAaRes(antiAliasing.getValue());
 
         dest = filter.filter(src, dest);
 
-        int aaRes = antiAliasing.getValue();
-        if (aaRes != 0) {
-            filter.setAaRes(aaRes);
-            filter.antiAlias(dest);
-        }
-
         if (showPoints.isChecked()) {
             filter.showPoints(dest);
         }
@@ -20,6 +20,7 @@ import pd.AnimatedGifEncoder;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
 
 /**
  * An {@link AnimationWriter} implementation
@@ -27,8 +28,10 @@ import java.io.File;
  */
 public class AnimGIFWriter implements AnimationWriter {
     private final AnimatedGifEncoder encoder;
+    private final File file;
 
     public AnimGIFWriter(File file, int delayMillis) {
+        this.file = file;
         encoder = new AnimatedGifEncoder();
         encoder.start(file);
         encoder.setDelay(delayMillis);
@@ -36,8 +39,10 @@ public class AnimGIFWriter implements AnimationWriter {
     }
 
     @Override
-    public void addFrame(BufferedImage image) {
-        encoder.addFrame(image);
+    public void addFrame(BufferedImage image) throws IOException {
+        if (!encoder.addFrame(image)) {
+            throw new IOException("Could not write the frame to " + file.getAbsolutePath());
+        }
     }
 
     @Override
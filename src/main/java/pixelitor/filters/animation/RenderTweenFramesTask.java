@@ -20,6 +20,7 @@ package pixelitor.filters.animation;
 import pixelitor.filters.Filter;
 import pixelitor.filters.ParametrizedFilter;
 import pixelitor.filters.gui.FilterState;
+import pixelitor.gui.utils.Dialogs;
 import pixelitor.gui.utils.GUIUtils;
 import pixelitor.layers.Drawable;
 import pixelitor.utils.Messages;
@@ -27,6 +28,9 @@ import pixelitor.utils.Messages;
 import javax.swing.*;
 import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeEvent;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.*;
 
 import static java.lang.String.format;
 import static pixelitor.FilterContext.TWEEN_PREVIEW;
@@ -36,6 +40,11 @@ import static pixelitor.utils.Threads.calledOutsideEDT;
  * A SwingWorker for rendering the frames of a tween animation
  */
 class RenderTweenFramesTask extends SwingWorker<Void, Void> {
+    private static final int NUM_RENDER_THREADS = Runtime.getRuntime().availableProcessors();
+
+    // the number of rendered frames that can wait for the writing thread
+    private static final int MAX_PENDING_WRITES = 2;
+
     private final TweenAnimation animation;
     private final Drawable dr;
     private final ProgressMonitor progressMonitor;
@@ -89,31 +98,77 @@ class RenderTweenFramesTask extends SwingWorker<Void, Void> {
             numTotalFrames = 2 * numFrames - 2;
         }
 
+        // The filters are copied through their presets, and if this is
+        // possible, then several frames are rendered concurrently, each
+        // with its own filter copy. The filters without presets
+        // have nothing to animate, so they don't need copies.
+        boolean concurrent = filter.copy() != filter;
+        BufferedImage src = null;
+        ExecutorService renderExecutor = null;
+        if (concurrent) {
+            src = dr.getFilterSourceImage();
+            renderExecutor = Executors.newFixedThreadPool(NUM_RENDER_THREADS);
+        }
+        Deque<Future<BufferedImage>> renderedFrames = new ArrayDeque<>();
+        int numSubmitted = 0;
+
+        // the frames are written in order on a separate thread,
+        // while the next frames are rendered
+        ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+        Deque<Future<?>> pendingWrites = new ArrayDeque<>();
+
         boolean canceled = false;
-        for (int frameNr = 0; frameNr < numTotalFrames; frameNr++) {
-            if (isCancelled()) {
-                canceled = true;
-                break;
-            }
-            int percentProgress = (int) ((100.0 * frameNr) / numTotalFrames);
-            setProgress(percentProgress);
+        try {
+            for (int frameNr = 0; frameNr < numTotalFrames; frameNr++) {
+                if (isCancelled()) {
+                    canceled = true;
+                    break;
+                }
+                int percentProgress = (int) ((100.0 * frameNr) / numTotalFrames);
+                setProgress(percentProgress);
 
-            double time = calcRenderTime(frameNr, numFrames);
+                BufferedImage image;
+                if (concurrent) {
+                    while (numSubmitted < numTotalFrames && renderedFrames.size() < NUM_RENDER_THREADS) {
+                        double time = calcRenderTime(numSubmitted, numFrames);
+                        renderedFrames.add(renderExecutor.submit(createRenderTask(filter, src, time)));
+                        numSubmitted++;
+                    }
+                    image = showFrame(filter, renderedFrames.remove().get());
+                } else {
+                    image = renderFrame(filter, calcRenderTime(frameNr, numFrames));
+                }
 
-            try {
-                // first render the frame...
-                BufferedImage image = renderFrame(filter, time);
-
-                // ...then write the file
-                // TODO ideally while writing out the frame,
-                // the rendering of the next frame should be
-                // started on another thread
-                animationWriter.addFrame(image);
-            } catch (Exception e) {
-                canceled = true;
-                Messages.showException(e);
-                break;
+                while (pendingWrites.size() >= MAX_PENDING_WRITES) {
+                    pendingWrites.remove().get();
+                }
+                pendingWrites.add(writeExecutor.submit(() -> {
+                    animationWriter.addFrame(image);
+                    return null;
+                }));
+            }
+
+            while (!pendingWrites.isEmpty()) {
+                pendingWrites.remove().get();
+            }
+        } catch (ExecutionException e) {
+            canceled = true;
+            showError(e.getCause());
+        } catch (Exception | OutOfMemoryError e) {
+            canceled = true;
+            showError(e);
+        } finally {
+            // the frames that are already rendering are simply discarded
+            renderedFrames.forEach(future -> future.cancel(false));
+            pendingWrites.forEach(future -> future.cancel(false));
+            if (renderExecutor != null) {
+                renderExecutor.shutdown();
             }
+
+            // the animation writer can be finished or canceled
+            // only after the writing thread stopped using it
+            writeExecutor.shutdown();
+            waitForTermination(writeExecutor);
         }
 
         setProgress(100);
@@ -122,6 +177,16 @@ class RenderTweenFramesTask extends SwingWorker<Void, Void> {
         SwingUtilities.invokeLater(() -> finishOnEDT(animationWriter, finalCanceled));
     }
 
+    private static void waitForTermination(ExecutorService executor) {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // a frame is still being written
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private static double calcRenderTime(int frameNr, int numFrames) {
         double time;
         if (frameNr < numFrames) { // ping: normal animation forwards
@@ -138,8 +203,51 @@ class RenderTweenFramesTask extends SwingWorker<Void, Void> {
         return time;
     }
 
+    private Callable<BufferedImage> createRenderTask(ParametrizedFilter filter,
+                                                     BufferedImage src, double time) {
+        FilterState intermediateState = animation.tween(time);
+        var frameFilter = (ParametrizedFilter) filter.copy();
+        frameFilter.getParamSet().setState(intermediateState, true);
+
+        // the same error handling as in Drawable.runFilter,
+        // but the errors are reported by the rendering loop
+        return () -> {
+            try {
+                // each frame has different settings
+                return frameFilter.transformImage(src, false);
+            } catch (OutOfMemoryError e) {
+                throw e;
+            } catch (Throwable e) {
+                throw dr.createFilterException(frameFilter, e);
+            }
+        };
+    }
+
+    // called on the background thread when the rendering or the writing failed
+    private static void showError(Throwable e) {
+        if (e instanceof OutOfMemoryError oom) {
+            SwingUtilities.invokeLater(() -> Dialogs.showOutOfMemoryDialog(oom));
+        } else {
+            Messages.showExceptionOnEDT(e);
+        }
+    }
+
+    /**
+     * Shows a concurrently rendered frame in the layer, and
+     * returns the composite image that has to be written.
+     */
+    private BufferedImage showFrame(ParametrizedFilter filter, BufferedImage filtered) {
+        GUIUtils.invokeAndWait(() ->
+            dr.changePreviewImage(filtered, filter.getName(), TWEEN_PREVIEW));
+
+        var comp = dr.getComp();
+        comp.repaint();
+
+        return comp.getCompositeImage();
+    }
+
     private BufferedImage renderFrame(ParametrizedFilter filter, double time) {
-        long runCountBefore = Filter.runCount;
+        int runCountBefore = Filter.getRunCount();
 
         // all sorts of problems can happen
         // if filters run outside of EDT
@@ -150,7 +258,7 @@ class RenderTweenFramesTask extends SwingWorker<Void, Void> {
         };
         GUIUtils.invokeAndWait(filterRunTask);
 
-        assert Filter.runCount == runCountBefore + 1;
+        assert Filter.getRunCount() == runCountBefore + 1;
 
         var comp = dr.getComp();
         comp.repaint();
@@ -23,6 +23,8 @@ import pixelitor.filters.gui.FilterGUI;
 import pixelitor.filters.gui.FilterWithGUI;
 import pixelitor.filters.gui.UserPreset;
 import pixelitor.filters.levels.Channel;
+import pixelitor.filters.lookup.ColorLookup;
+import pixelitor.filters.lookup.FusableColorFilter;
 import pixelitor.layers.Filterable;
 
 import java.awt.image.BufferedImage;
@@ -35,7 +37,7 @@ import static pixelitor.utils.Texts.i18n;
  *
  * @author Łukasz Kurzaj lukaszkurzaj@gmail.com
  */
-public class ToneCurvesFilter extends FilterWithGUI {
+public class ToneCurvesFilter extends FilterWithGUI implements FusableColorFilter {
     public static final String NAME = i18n("curves");
 
     @Serial
@@ -71,21 +73,43 @@ public class ToneCurvesFilter extends FilterWithGUI {
 
     @Override
     public BufferedImage transform(BufferedImage src, BufferedImage dest) {
-        if (filter == null) {
-            filter = new CurvesFilter(NAME);
-        }
         if (curves == null) {
             return src;
         }
 
+        return configureFilter().filter(src, dest);
+    }
+
+    @Override
+    public ColorLookup createColorLookup() {
+        if (curves == null) {
+            return ColorLookup.identity();
+        }
+
+        // the packed LUT contains the mapping of all three channels
+        int[] lut = configureFilter().getLUT();
+        int[] red = new int[256];
+        int[] green = new int[256];
+        int[] blue = new int[256];
+        for (int i = 0; i < 256; i++) {
+            red[i] = (lut[i] >>> 16) & 0xFF;
+            green[i] = (lut[i] >>> 8) & 0xFF;
+            blue[i] = lut[i] & 0xFF;
+        }
+        return ColorLookup.fromTables(red, green, blue);
+    }
+
+    private CurvesFilter configureFilter() {
+        if (filter == null) {
+            filter = new CurvesFilter(NAME);
+        }
         filter.setCurves(
             curves.getCurve(Channel.RGB).curve,
             curves.getCurve(Channel.RED).curve,
             curves.getCurve(Channel.GREEN).curve,
             curves.getCurve(Channel.BLUE).curve
         );
-
-        return filter.filter(src, dest);
+        return filter;
     }
 
     @Override
@@ -59,7 +59,7 @@ public class ImagePositionSelector extends JComponent implements MouseMotionList
             thumb = ImageUtils.createSysCompatibleImage(size, size);
         } else {
             BufferedImage fullImage = dr.getImageForFilterDialogs();
-            thumb = ImageUtils.createThumbnail(fullImage, size, null);
+            thumb = ImageUtils.createSmoothThumbnail(fullImage, size);
         }
 
         setPreferredSize(new Dimension(thumb.getWidth(), thumb.getHeight()));
@@ -1,5 +1,5 @@
 /*
- * Copyright 2022 Laszlo Balazs-Csiki and Contributors
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
  *
  * This file is part of Pixelitor. Pixelitor is free software: you
  * can redistribute it and/or modify it under the terms of the GNU
@@ -17,14 +17,40 @@
 
 package pixelitor.filters.impl;
 
-import com.jhlabs.image.PointFilter;
+import com.jhlabs.image.AbstractBufferedImageOp;
+import pixelitor.ThreadPool;
 
 import java.awt.image.BufferedImage;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
 
 /**
  * A common superclass for the Mandelbrot and Julia fractal implementations.
+ * Both iterate z -> z^2 + c. For the Mandelbrot set the pixel position
+ * gives c, and z starts at zero, for a Julia set the pixel position
+ * gives the start of z, and c is a constant.
+ *
+ * The image is rendered in tiles with rectangle subdivision
+ * (Mariani–Silver): if all pixels on the border of a rectangle have
+ * the same iteration count, then the inside is filled without iterating.
+ * Interior points are detected with periodicity checks, and at zooms
+ * beyond the precision of doubles a high-precision reference orbit
+ * is calculated at the center, and the pixels only iterate their
+ * double-precision difference from it (perturbation), skipping the
+ * first iterations with a series approximation.
  */
-public abstract class ComplexFractalImpl extends PointFilter {
+public abstract class ComplexFractalImpl extends AbstractBufferedImageOp {
+    private static final int TILE_SIZE = 32;
+
+    // below this rectangle size all pixels are calculated
+    private static final int MIN_SUBDIVIDE_SIZE = 4;
+
+    // use perturbation if the pixel size is smaller than this
+    private static final double PERTURBATION_THRESHOLD = 1.0e-12;
+
+    private static final double BAILOUT = 4.0;
+
     // the bounds in the complex space
     private final double cxMin;
     private final double cxMax;
@@ -33,6 +59,13 @@ public abstract class ComplexFractalImpl extends PointFilter {
     private final double cxRange;
     private final double cyRange;
 
+    // true for the Mandelbrot set, false for Julia sets
+    private final boolean pixelIsConstant;
+
+    // the constant c of a Julia set
+    private double constX;
+    private double constY;
+
     // the actual start in the complex space,
     // taking the zooming into account
     protected double cxStart;
@@ -51,15 +84,37 @@ public abstract class ComplexFractalImpl extends PointFilter {
 
     protected int[] colors;
 
+    // the tolerance of the periodicity check
+    private double periodEps;
+
+    // perturbation state, only used at very deep zooms
+    private boolean usePerturbation;
+    private double centerX;
+    private double centerY;
+    private double halfWidth;
+    private double halfHeight;
+    private double[] refX;
+    private double[] refY;
+    private int refLength;
+    private int seriesSkip;
+    private double seriesAX;
+    private double seriesAY;
+    private double seriesBX;
+    private double seriesBY;
+    private double seriesCX;
+    private double seriesCY;
+
     protected ComplexFractalImpl(String filterName,
                                  double cxMin, double cxMax,
-                                 double cyMin, double cyMax) {
+                                 double cyMin, double cyMax,
+                                 boolean pixelIsConstant) {
         super(filterName);
 
         this.cxMin = cxMin;
         this.cxMax = cxMax;
         this.cyMin = cyMin;
         this.cyMax = cyMax;
+        this.pixelIsConstant = pixelIsConstant;
 
         cxRange = cxMax - cxMin;
         cyRange = cyMax - cyMin;
@@ -67,11 +122,64 @@ public abstract class ComplexFractalImpl extends PointFilter {
 
     @Override
     public BufferedImage filter(BufferedImage src, BufferedImage dst) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        if (dst == null) {
+            dst = createCompatibleDestImage(src, null);
+        }
+
+        calcCoordinates(width, height);
+
+        double pixelSize = Math.max(xMultiplier, yMultiplier);
+        periodEps = Math.min(1.0e-10, pixelSize * 1.0e-3);
+        usePerturbation = pixelSize < PERTURBATION_THRESHOLD;
+        if (usePerturbation) {
+            calcReferenceOrbit(pixelSize);
+        }
+
+        // the subdivision relies on the set being connected,
+        // which is not true for every Julia set
+        boolean subdivide = pixelIsConstant || iterateDouble(0, 0, constX, constY) == 0;
+
+        int[] its = new int[width * height];
+        Arrays.fill(its, -1);
+
+        int numHorTiles = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int numVerTiles = (height + TILE_SIZE - 1) / TILE_SIZE;
+        pt = createProgressTracker(numVerTiles);
+        for (int ty = 0; ty < numVerTiles; ty++) {
+            int y0 = ty * TILE_SIZE;
+            int y1 = Math.min(height, y0 + TILE_SIZE) - 1;
+            ThreadPool.forEachBand(numHorTiles, 1, (startTile, endTile) -> {
+                for (int tx = startTile; tx < endTile; tx++) {
+                    int x0 = tx * TILE_SIZE;
+                    int x1 = Math.min(width, x0 + TILE_SIZE) - 1;
+                    if (subdivide) {
+                        renderRect(its, width, x0, y0, x1, y1);
+                    } else {
+                        calcAll(its, width, x0, y0, x1, y1);
+                    }
+                }
+            });
+            pt.unitDone();
+        }
+        finishProgressTracker();
+
+        // the iteration counts are replaced by their colors in place,
+        // and setRGB also works for the gray images of layer masks
+        for (int i = 0; i < its.length; i++) {
+            its[i] = colors[its[i]];
+        }
+        setRGB(dst, 0, 0, width, height, its);
+        return dst;
+    }
+
+    private void calcCoordinates(int width, int height) {
         double zoomedRangeCX = cxRange / zoom;
         double zoomedRangeCY = cyRange / zoom;
 
-        xMultiplier = zoomedRangeCX / src.getWidth();
-        yMultiplier = zoomedRangeCY / src.getHeight();
+        xMultiplier = zoomedRangeCX / width;
+        yMultiplier = zoomedRangeCY / height;
 
         // the zoom center in the "C-space"
         double zoomCenterCX = cxMin + zoomCenterX * cxRange;
@@ -86,59 +194,330 @@ public abstract class ComplexFractalImpl extends PointFilter {
         // the default c range, then adjust it back
         if (cxZoomedMax > cxMax) {
             cxStart = cxZoomedMin - (cxZoomedMax - cxMax);
+            centerX = cxMax - zoomedRangeCX / 2;
         } else if (cxZoomedMin < cxMin) {
             cxStart = cxMin;
+            centerX = cxMin + zoomedRangeCX / 2;
         } else {
             cxStart = cxZoomedMin;
+            centerX = zoomCenterCX;
         }
 
         if (cyZoomedMax > cyMax) {
             cyStart = cyZoomedMin - (cyZoomedMax - cyMax);
+            centerY = cyMax - zoomedRangeCY / 2;
         } else if (cyZoomedMin < cyMin) {
             cyStart = cyMin;
+            centerY = cyMin + zoomedRangeCY / 2;
         } else {
             cyStart = cyZoomedMin;
+            centerY = zoomCenterCY;
         }
 
-        return super.filter(src, dst);
+        // at deep zooms the pixel positions are calculated relative
+        // to the center, because cxStart and cyStart aren't precise enough
+        halfWidth = width / 2.0;
+        halfHeight = height / 2.0;
     }
 
-    protected int calcIteratedColor(double zx, double zy, double cx, double cy) {
-        int it = iterate(zx, zy, cx, cy, maxIterations);
-        return colors[it];
+    /**
+     * Mariani–Silver subdivision of the given (inclusive) rectangle.
+     */
+    private void renderRect(int[] its, int width, int x0, int y0, int x1, int y1) {
+        if (x1 - x0 < MIN_SUBDIVIDE_SIZE || y1 - y0 < MIN_SUBDIVIDE_SIZE) {
+            calcAll(its, width, x0, y0, x1, y1);
+            return;
+        }
+
+        int first = calcPixel(its, width, x0, y0);
+        boolean uniform = true;
+        for (int x = x0; x <= x1; x++) {
+            uniform &= calcPixel(its, width, x, y0) == first;
+            uniform &= calcPixel(its, width, x, y1) == first;
+        }
+        for (int y = y0 + 1; y < y1; y++) {
+            uniform &= calcPixel(its, width, x0, y) == first;
+            uniform &= calcPixel(its, width, x1, y) == first;
+        }
+
+        if (uniform) {
+            for (int y = y0 + 1; y < y1; y++) {
+                int offset = y * width;
+                Arrays.fill(its, offset + x0 + 1, offset + x1, first);
+            }
+            return;
+        }
+
+        // split along the longer side, the border is shared
+        if (x1 - x0 >= y1 - y0) {
+            int mx = (x0 + x1) >>> 1;
+            renderRect(its, width, x0, y0, mx, y1);
+            renderRect(its, width, mx, y0, x1, y1);
+        } else {
+            int my = (y0 + y1) >>> 1;
+            renderRect(its, width, x0, y0, x1, my);
+            renderRect(its, width, x0, my, x1, y1);
+        }
+    }
+
+    private void calcAll(int[] its, int width, int x0, int y0, int x1, int y1) {
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                calcPixel(its, width, x, y);
+            }
+        }
+    }
+
+    private int calcPixel(int[] its, int width, int x, int y) {
+        int index = x + y * width;
+        int it = its[index];
+        if (it == -1) {
+            it = calcIterations(x, y);
+            its[index] = it;
+        }
+        return it;
     }
 
-    private static int iterate(double x, double y, double cx, double cy, int maxIt) {
-        int it = maxIt;
-        double x2 = 0;
-        double y2 = 0;
-        double xy;
-        while (x2 + y2 <= 4 && it > 0) {
+    /**
+     * Returns the remaining iterations for the given pixel, which is zero for
+     * points that are considered to be in the set (the color index).
+     */
+    int calcIterations(int x, int y) {
+        if (usePerturbation) {
+            return iteratePerturbed((x - halfWidth) * xMultiplier,
+                (y - halfHeight) * yMultiplier);
+        }
+        double px = cxStart + x * xMultiplier;
+        double py = cyStart + y * yMultiplier;
+        if (pixelIsConstant) {
+            if (isInMainCardioidOrBulb(px, py)) {
+                return 0;
+            }
+            return iterateDouble(0, 0, px, py);
+        }
+        return iterateDouble(px, py, constX, constY);
+    }
+
+    private static boolean isInMainCardioidOrBulb(double cx, double cy) {
+        // 1. check if the point is in the period-2 bulb
+        if (cx < -0.75 && cx > -1.25 && cy < 0.28 && cy > -0.28) { // approx. check
+            if ((cx + 1) * (cx + 1) + cy * cy < 1 / 16.0) { // exact check
+                return true;
+            }
+        }
+
+        // 2. check if the point is inside the main cardioid
+        if (cx > -0.75 && cx < 0.37 && cy < 0.65 && cy > -0.65) { // approx. check
+            double cm = cx - 1 / 4.0;
+            double cy2 = cy * cy;
+            double q = cm * cm + cy2;
+            return q * (q + cm) < cy2 / 4.0; // exact check
+        }
+        return false;
+    }
+
+    /**
+     * The escape time algorithm in double precision, with Brent-style
+     * periodicity checking: if the orbit returns close to a saved
+     * earlier point, then it is periodic, and the point is in the set.
+     */
+    private int iterateDouble(double x, double y, double cx, double cy) {
+        int it = maxIterations;
+        double x2 = x * x;
+        double y2 = y * y;
+        double savedX = x;
+        double savedY = y;
+        int period = 0;
+        int checkInterval = 8;
+        while (x2 + y2 <= BAILOUT && it > 0) {
             it--;
-            xy = x * y;
-            x2 = x * x;
-            y2 = y * y;
+            double xy = x * y;
             x = x2 - y2 + cx;
             y = xy + xy + cy;
+            x2 = x * x;
+            y2 = y * y;
+
+            if (Math.abs(x - savedX) < periodEps && Math.abs(y - savedY) < periodEps) {
+                return 0;
+            }
+            if (++period == checkInterval) {
+                period = 0;
+                checkInterval <<= 1;
+                savedX = x;
+                savedY = y;
+            }
         }
         return it;
     }
 
-    // the unoptimized version of the "iterate" method, where the algorithm is more clear
-    private static int iterateUnOpt(double x, double y, double cx, double cy, int maxIt) {
-        int it = maxIt;
-        while (x * x + y * y < 4 && it > 0) {
-            it--;
-            double xTmp = x * x - y * y + cx;
-            double yTmp = 2.0 * x * y + cy;
-            if (x == xTmp && y == yTmp) {
-                it = 0;
+    /**
+     * Calculates the orbit of the center point with enough precision,
+     * and the coefficients of the series approximation.
+     */
+    private void calcReferenceOrbit(double pixelSize) {
+        // decimal digits needed for the pixel size, plus a safety margin
+        int digits = 20 + (int) Math.ceil(-Math.log10(pixelSize));
+        MathContext mc = new MathContext(digits);
+
+        BigDecimal refCX = new BigDecimal(centerX);
+        BigDecimal refCY = new BigDecimal(centerY);
+        BigDecimal zx;
+        BigDecimal zy;
+        BigDecimal cx;
+        BigDecimal cy;
+        if (pixelIsConstant) {
+            zx = BigDecimal.ZERO;
+            zy = BigDecimal.ZERO;
+            cx = refCX;
+            cy = refCY;
+        } else {
+            zx = refCX;
+            zy = refCY;
+            cx = new BigDecimal(constX);
+            cy = new BigDecimal(constY);
+        }
+
+        // the first escaped point is also stored, so that
+        // there are always at least two points to step between
+        refX = new double[maxIterations + 1];
+        refY = new double[maxIterations + 1];
+        refX[0] = zx.doubleValue();
+        refY[0] = zy.doubleValue();
+        int n = 0;
+        while (n < maxIterations) {
+            BigDecimal xy = zx.multiply(zy, mc);
+            zx = zx.multiply(zx, mc).subtract(zy.multiply(zy, mc), mc).add(cx, mc);
+            zy = xy.add(xy, mc).add(cy, mc);
+            n++;
+            refX[n] = zx.doubleValue();
+            refY[n] = zy.doubleValue();
+            if (refX[n] * refX[n] + refY[n] * refY[n] > BAILOUT) {
                 break;
             }
-            y = yTmp;
-            x = xTmp;
         }
-        return it;
+        refLength = n + 1;
+
+        calcSeriesApproximation();
+    }
+
+    /**
+     * The difference from the reference orbit is approximated as
+     * A*d + B*d^2 + C*d^3, where d is the pixel's initial difference.
+     * The iterations are skipped while the cubic term is negligible
+     * for every pixel, and no pixel can escape.
+     */
+    private void calcSeriesApproximation() {
+        double maxD = Math.hypot(halfWidth * xMultiplier, halfHeight * yMultiplier);
+
+        double ax = pixelIsConstant ? 0 : 1;
+        double ay = 0;
+        double bx = 0;
+        double by = 0;
+        double cx = 0;
+        double cy = 0;
+        double linearTerm = pixelIsConstant ? 1 : 0;
+
+        seriesSkip = 0;
+        setSeriesCoefficients(ax, ay, bx, by, cx, cy);
+
+        // the last stored point can't be used for stepping
+        for (int n = 0; n < refLength - 2; n++) {
+            double zx = refX[n];
+            double zy = refY[n];
+
+            double nax = 2 * (zx * ax - zy * ay) + linearTerm;
+            double nay = 2 * (zx * ay + zy * ax);
+            double nbx = 2 * (zx * bx - zy * by) + (ax * ax - ay * ay);
+            double nby = 2 * (zx * by + zy * bx) + 2 * ax * ay;
+            double ncx = 2 * (zx * cx - zy * cy) + 2 * (ax * bx - ay * by);
+            double ncy = 2 * (zx * cy + zy * cx) + 2 * (ax * by + ay * bx);
+
+            double aAbs = Math.hypot(nax, nay) * maxD;
+            double bAbs = Math.hypot(nbx, nby) * maxD * maxD;
+            double cAbs = Math.hypot(ncx, ncy) * maxD * maxD * maxD;
+            double deltaEstimate = aAbs + bAbs + cAbs;
+            double nextZAbs = Math.hypot(refX[n + 1], refY[n + 1]);
+            if (cAbs > 1.0e-3 * bAbs
+                || deltaEstimate > 1.0e-3 * Math.max(nextZAbs, 1.0e-3)
+                || nextZAbs + deltaEstimate > 2.0) {
+                break;
+            }
+
+            ax = nax;
+            ay = nay;
+            bx = nbx;
+            by = nby;
+            cx = ncx;
+            cy = ncy;
+            seriesSkip = n + 1;
+            setSeriesCoefficients(ax, ay, bx, by, cx, cy);
+        }
+    }
+
+    private void setSeriesCoefficients(double ax, double ay, double bx, double by, double cx, double cy) {
+        seriesAX = ax;
+        seriesAY = ay;
+        seriesBX = bx;
+        seriesBY = by;
+        seriesCX = cx;
+        seriesCY = cy;
+    }
+
+    /**
+     * Iterates the difference (dx, dy) from the reference orbit. When the
+     * full value gets closer to the start of the reference orbit than
+     * to the current reference point, or when the reference orbit ends,
+     * the difference is rebased to the start of the reference orbit.
+     */
+    private int iteratePerturbed(double d0x, double d0y) {
+        // the difference of c, which is zero for Julia sets
+        double dcx = pixelIsConstant ? d0x : 0;
+        double dcy = pixelIsConstant ? d0y : 0;
+
+        // the series approximation for the skipped iterations
+        double d2x = d0x * d0x - d0y * d0y;
+        double d2y = 2 * d0x * d0y;
+        double d3x = d2x * d0x - d2y * d0y;
+        double d3y = d2x * d0y + d2y * d0x;
+        double dx = seriesAX * d0x - seriesAY * d0y
+            + seriesBX * d2x - seriesBY * d2y
+            + seriesCX * d3x - seriesCY * d3y;
+        double dy = seriesAX * d0y + seriesAY * d0x
+            + seriesBX * d2y + seriesBY * d2x
+            + seriesCX * d3y + seriesCY * d3x;
+
+        int m = seriesSkip;
+        int n = seriesSkip;
+        double startX = refX[0];
+        double startY = refY[0];
+        double x = refX[m] + dx;
+        double y = refY[m] + dy;
+        while (x * x + y * y <= BAILOUT) {
+            if (n == maxIterations) {
+                return 0;
+            }
+
+            double zx = refX[m];
+            double zy = refY[m];
+            double ndx = 2 * (zx * dx - zy * dy) + dx * dx - dy * dy + dcx;
+            double ndy = 2 * (zx * dy + zy * dx) + 2 * dx * dy + dcy;
+            dx = ndx;
+            dy = ndy;
+            m++;
+            n++;
+
+            x = refX[m] + dx;
+            y = refY[m] + dy;
+
+            double rx = x - startX;
+            double ry = y - startY;
+            if (m == refLength - 1 || rx * rx + ry * ry < dx * dx + dy * dy) {
+                dx = rx;
+                dy = ry;
+                m = 0;
+            }
+        }
+        return maxIterations - n;
     }
 
     public void setZoom(double zoom) {
@@ -157,4 +536,12 @@ public abstract class ComplexFractalImpl extends PointFilter {
     public void setMaxIterations(int maxIterations) {
         this.maxIterations = maxIterations;
     }
+
+    /**
+     * Sets the constant c of a Julia set.
+     */
+    public void setConstant(double constX, double constY) {
+        this.constX = constX;
+        this.constY = constY;
+    }
 }
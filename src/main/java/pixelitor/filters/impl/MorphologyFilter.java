@@ -17,15 +17,15 @@
 
 package pixelitor.filters.impl;
 
-import com.jhlabs.image.WholeImageFilter;
+import com.jhlabs.image.NeighborhoodFilter;
 import pixelitor.filters.Morphology;
 
-import java.awt.Rectangle;
-
 /**
  * The implementation of the {@link Morphology} filter.
+ * Each iteration applies the 3x3 kernel once, therefore the
+ * output pixels depend on the pixels within the number of iterations.
  */
-public class MorphologyFilter extends WholeImageFilter {
+public class MorphologyFilter extends NeighborhoodFilter {
     private int iterations = 1;
 
     public static final int OP_ERODE = 1;
@@ -53,89 +53,97 @@ public class MorphologyFilter extends WholeImageFilter {
     }
 
     @Override
-    protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
-        int numPixels = inPixels.length;
-        short[] inA = new short[numPixels];
-        short[] inR = new short[numPixels];
-        short[] inG = new short[numPixels];
-        short[] inB = new short[numPixels];
-
-        pt = createProgressTracker(iterations);
-        int[] outPixels = new int[width * height];
-        for (int it = 0; it < iterations; it++) {
-            if (it > 0) {
-                System.arraycopy(outPixels, 0, inPixels, 0, numPixels);
-            }
-            for (int i = 0; i < numPixels; i++) {
-                int rgb = inPixels[i];
-                inA[i] = (short) ((rgb >> 24) & 0xFF);
-                inR[i] = (short) ((rgb >> 16) & 0xFF);
-                inG[i] = (short) ((rgb >> 8) & 0xFF);
-                inB[i] = (short) (rgb & 0xFF);
+    protected int getRadius() {
+        return iterations;
+    }
+
+    @Override
+    protected void filterRows(int width, int height, int[] inPixels, int inStartY,
+                              int[] outPixels, int startY, int endY) {
+        // the intermediate results have the same row layout as the input
+        int[] src = inPixels;
+        int[] tmpA = null;
+        int[] tmpB = null;
+        for (int it = 1; it <= iterations; it++) {
+            // each iteration needs one row less around the filtered rows
+            int halo = iterations - it;
+            int fromY = Math.max(0, startY - halo);
+            int toY = Math.min(height, endY + halo);
+            if (halo == 0) {
+                applyKernel(width, height, src, inStartY, outPixels, startY, fromY, toY);
+            } else {
+                if (tmpA == null) {
+                    tmpA = new int[inPixels.length];
+                } else if (tmpB == null) {
+                    tmpB = new int[inPixels.length];
+                }
+                int[] dst = src == tmpA ? tmpB : tmpA;
+                applyKernel(width, height, src, inStartY, dst, inStartY, fromY, toY);
+                src = dst;
             }
+        }
+    }
 
-            int index = 0;
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    short a = 0xFF;
-                    short r = 0xFF;
-                    short g = 0xFF;
-                    short b = 0xFF;
-
-                    if (op == OP_DILATE) {
-                        r = 0;
-                        g = 0;
-                        b = 0;
-                    }
+    /**
+     * Applies the kernel once to the rows from fromY (inclusive) to toY
+     * (exclusive). The rows of the input and output arrays start with
+     * inStartY and outStartY.
+     */
+    private void applyKernel(int width, int height, int[] in, int inStartY,
+                             int[] out, int outStartY, int fromY, int toY) {
+        for (int y = fromY; y < toY; y++) {
+            int index = (y - outStartY) * width;
+            for (int x = 0; x < width; x++) {
+                int a = 0xFF;
+                int r = 0xFF;
+                int g = 0xFF;
+                int b = 0xFF;
+
+                if (op == OP_DILATE) {
+                    r = 0;
+                    g = 0;
+                    b = 0;
+                }
 
-                    for (int dy = -1; dy <= 1; dy++) {
-                        int iy = y + dy;
-                        if (0 <= iy && iy < height) {
-                            int xOffset = iy * width;
-                            for (int dx = -1; dx <= 1; dx++) {
-                                if (kernel == KERNEL_DIAMOND) {
-                                    if (dx == dy && dx != 0) {
-                                        continue;
-                                    }
-                                    if (dx == -dy && dx != 0) {
-                                        continue;
-                                    }
+                for (int dy = -1; dy <= 1; dy++) {
+                    int iy = y + dy;
+                    if (0 <= iy && iy < height) {
+                        int xOffset = (iy - inStartY) * width;
+                        for (int dx = -1; dx <= 1; dx++) {
+                            if (kernel == KERNEL_DIAMOND) {
+                                if (dx == dy && dx != 0) {
+                                    continue;
+                                }
+                                if (dx == -dy && dx != 0) {
+                                    continue;
                                 }
+                            }
 
-                                int ix = x + dx;
-                                if (0 <= ix && ix < width) {
-                                    int comparedIndex = xOffset + ix;
-
-                                    if (op == OP_ERODE) {
-                                        a = min(a, inA[comparedIndex]);
-                                        r = min(r, inR[comparedIndex]);
-                                        g = min(g, inG[comparedIndex]);
-                                        b = min(b, inB[comparedIndex]);
-                                    } else {
-                                        a = max(a, inA[comparedIndex]);
-                                        r = max(r, inR[comparedIndex]);
-                                        g = max(g, inG[comparedIndex]);
-                                        b = max(b, inB[comparedIndex]);
-                                    }
+                            int ix = x + dx;
+                            if (0 <= ix && ix < width) {
+                                int rgb = in[xOffset + ix];
+                                int compA = (rgb >> 24) & 0xFF;
+                                int compR = (rgb >> 16) & 0xFF;
+                                int compG = (rgb >> 8) & 0xFF;
+                                int compB = rgb & 0xFF;
+
+                                if (op == OP_ERODE) {
+                                    a = Math.min(a, compA);
+                                    r = Math.min(r, compR);
+                                    g = Math.min(g, compG);
+                                    b = Math.min(b, compB);
+                                } else {
+                                    a = Math.max(a, compA);
+                                    r = Math.max(r, compR);
+                                    g = Math.max(g, compG);
+                                    b = Math.max(b, compB);
                                 }
                             }
                         }
                     }
-                    outPixels[index++] = a << 24 | r << 16 | g << 8 | b;
                 }
+                out[index++] = a << 24 | r << 16 | g << 8 | b;
             }
-            pt.unitDone();
         }
-        finishProgressTracker();
-        return outPixels;
-    }
-
-    private static short min(short a, short b) {
-        return (a <= b) ? a : b;
-    }
-
-    private static short max(short a, short b) {
-        return (a >= b) ? a : b;
     }
 }
-
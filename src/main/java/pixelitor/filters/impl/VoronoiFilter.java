@@ -17,11 +17,12 @@
 
 package pixelitor.filters.impl;
 
-import com.jhlabs.image.PointFilter;
-import pixelitor.GUIMode;
+import com.jhlabs.image.AbstractBufferedImageOp;
+import pixelitor.ThreadPool;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Metric;
 import pixelitor.utils.PoissonDiskSampling;
+import pixelitor.utils.SeedGrid;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
@@ -29,7 +30,6 @@ import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.util.List;
 import java.util.SplittableRandom;
-import java.util.stream.IntStream;
 
 import static java.awt.RenderingHints.KEY_ANTIALIASING;
 import static java.awt.RenderingHints.VALUE_ANTIALIAS_ON;
@@ -37,7 +37,7 @@ import static java.awt.RenderingHints.VALUE_ANTIALIAS_ON;
 /**
  * Voronoi Diagram filter implementation
  */
-public class VoronoiFilter extends PointFilter {
+public class VoronoiFilter extends AbstractBufferedImageOp {
     private double distanceBetweenPoints;
     private Metric metric;
     private boolean useImageColors;
@@ -96,7 +96,28 @@ public class VoronoiFilter extends PointFilter {
             colors[i] = color;
         }
 
-        return super.filter(src, dst);
+        // the grid and the label map are image-sized, so they
+        // are not kept after the image is rendered
+        var seedGrid = new SeedGrid(points, width, height, distanceBetweenPoints, metric);
+        int[] labels = seedGrid.createLabelMap(width, height);
+
+        if (dst == null) {
+            dst = createCompatibleDestImage(src, null);
+        }
+        boolean packedInts = ImageUtils.hasPackedIntArray(dst);
+        int[] pixels = packedInts ? ImageUtils.getPixelArray(dst) : new int[width * height];
+        for (int i = 0; i < labels.length; i++) {
+            pixels[i] = colors[labels[i]];
+        }
+
+        if (aaRes != 0) {
+            antiAlias(pixels, labels, seedGrid, width, height);
+        }
+
+        if (!packedInts) {
+            setRGB(dst, 0, 0, width, height, pixels);
+        }
+        return dst;
     }
 
     public void showPoints(BufferedImage img) {
@@ -116,51 +137,19 @@ public class VoronoiFilter extends PointFilter {
         g.dispose();
     }
 
-    @Override
-    public int filterRGB(int x, int y, int rgb) {
-        int closestIndex = sampling.findClosestPointTo(x, y,
-            metric.asIntPrecisionDistance());
-        if (closestIndex == -1) {
-            // there wasn't a point in the cell or in its neighbours
-            if (GUIMode.isDevelopment()) {
-                throw new IllegalStateException(String.format(
-                    "x = %d, y = %d", x, y));
-            }
-            return 0xFF_FF_FF_FF;
-        }
-
-        return colors[closestIndex];
-    }
-
     /**
-     * Check whether the pixel is different from its neighbours.
+     * Checks whether the pixel belongs to a different cell than one of its neighbors.
      */
-    private static boolean isEdge(int[] allPixels, int pixelIndex, int width) {
-        int color = allPixels[pixelIndex];
-        int colorLeft = allPixels[pixelIndex - 1];
-        int colorRight = allPixels[pixelIndex + 1];
-        if (color != colorLeft || color != colorRight) {
-            return true;
-        }
-        int colorUp = allPixels[pixelIndex - width];
-        int colorDown = allPixels[pixelIndex + width];
-        return color != colorUp || color != colorDown;
+    private static boolean isEdge(int[] labels, int x, int y, int width, int height) {
+        int pixelIndex = x + y * width;
+        int label = labels[pixelIndex];
+        return (x > 0 && labels[pixelIndex - 1] != label)
+            || (x < width - 1 && labels[pixelIndex + 1] != label)
+            || (y > 0 && labels[pixelIndex - width] != label)
+            || (y < height - 1 && labels[pixelIndex + width] != label);
     }
 
-    private static boolean tryIsEdge(int width, int[] pixelsCopy, int i) {
-        boolean edge;
-        try {
-            edge = isEdge(pixelsCopy, i, width);
-        } catch (ArrayIndexOutOfBoundsException e) {
-            edge = false;
-        }
-        return edge;
-    }
-
-    private int calcSuperSampledColor(int pixelIndex, int width) {
-        int x = pixelIndex % width;
-        int y = pixelIndex / width;
-
+    private int calcSuperSampledColor(SeedGrid seedGrid, int x, int y) {
         int r = 0;
         int g = 0;
         int b = 0;
@@ -170,8 +159,7 @@ public class VoronoiFilter extends PointFilter {
             for (int j = 0; j < aaRes; j++) {
                 double xx = x + 1.0 / aaRes * j - 0.5;
                 // xx and yy are the supersampling coordinates
-                int closestIndex = sampling.findClosestPointTo(xx, yy, metric.asDoublePrecisionDistance());
-                int color = colors[closestIndex];
+                int color = colors[seedGrid.findNearest(xx, yy)];
                 r += (color >>> 16) & 0xFF;
                 g += (color >>> 8) & 0xFF;
                 b += color & 0xFF;
@@ -184,23 +172,18 @@ public class VoronoiFilter extends PointFilter {
         return 0xFF_00_00_00 | r << 16 | g << 8 | b;
     }
 
-    public void antiAlias(BufferedImage imgSoFar) {
-        assert aaRes != 0;
-        int width = imgSoFar.getWidth();
-        int[] pixels = ImageUtils.getPixelArray(imgSoFar);
-
-        // since this code runs outside the superclass-powered
-        // parallelization, use parallel streams
-        int[] aaPixels = IntStream.range(0, pixels.length).parallel()
-            .map(i -> {
-                // only pixels at the edges are supersampled
-                if (tryIsEdge(width, pixels, i)) {
-                    return calcSuperSampledColor(i, width);
-                } else {
-                    return pixels[i];
+    private void antiAlias(int[] pixels, int[] labels, SeedGrid seedGrid, int width, int height) {
+        // Only the pixels at the cell edges are supersampled. The edges are
+        // found in the label map, so the pixels can be replaced in place.
+        ThreadPool.forEachBand(height, 8, (startY, endY) -> {
+            for (int y = startY; y < endY; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (isEdge(labels, x, y, width, height)) {
+                        pixels[x + y * width] = calcSuperSampledColor(seedGrid, x, y);
+                    }
                 }
-            }).toArray();
-        System.arraycopy(aaPixels, 0, pixels, 0, pixels.length);
+            }
+        });
     }
 
     public void debugGrid(BufferedImage dest) {
@@ -87,4 +87,9 @@ public class JHBoxBlur extends ParametrizedFilter {
     public boolean supportsGray() {
         return !hpSharpening.isChecked();
     }
-}
\ No newline at end of file
+
+    @Override
+    protected boolean canCacheResults() {
+        return true;
+    }
+}
@@ -84,4 +84,9 @@ public class JHDifferenceOfGaussians extends ParametrizedFilter {
     public boolean supportsGray() {
         return false;
     }
-}
\ No newline at end of file
+
+    @Override
+    protected boolean canCacheResults() {
+        return true;
+    }
+}
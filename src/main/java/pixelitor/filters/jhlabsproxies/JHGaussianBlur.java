@@ -80,4 +80,9 @@ public class JHGaussianBlur extends ParametrizedFilter {
     protected boolean createDefaultDestImg() {
         return false;
     }
-}
\ No newline at end of file
+
+    @Override
+    protected boolean canCacheResults() {
+        return true;
+    }
+}
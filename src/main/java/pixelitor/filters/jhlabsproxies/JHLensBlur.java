@@ -79,4 +79,9 @@ public class JHLensBlur extends ParametrizedFilter {
     public boolean supportsGray() {
         return !hpSharpening.isChecked();
     }
-}
\ No newline at end of file
+
+    @Override
+    protected boolean canCacheResults() {
+        return true;
+    }
+}
@@ -77,4 +77,9 @@ public class JHMotionBlur extends ParametrizedFilter {
     public boolean supportsGray() {
         return !hpSharpening.isChecked();
     }
-}
\ No newline at end of file
+
+    @Override
+    protected boolean canCacheResults() {
+        return true;
+    }
+}
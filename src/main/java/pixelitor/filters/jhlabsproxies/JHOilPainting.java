@@ -113,7 +113,7 @@ public class JHOilPainting extends ParametrizedFilter {
     private ScaleUpQuality getScaleUpQuality() {
         int quality = detailQuality.getValue();
         return switch (quality) {
-            case BETTER -> ScaleUpQuality.BILINEAR11;
+            case BETTER -> ScaleUpQuality.SMOOTH;
             case FASTER -> ScaleUpQuality.BILINEAR_FAST;
             default -> throw new IllegalStateException("quality = " + quality);
         };
@@ -123,4 +123,9 @@ public class JHOilPainting extends ParametrizedFilter {
     public boolean excludedFromAnimation() {
         return true;
     }
-}
\ No newline at end of file
+
+    @Override
+    protected boolean canCacheResults() {
+        return true;
+    }
+}
@@ -87,4 +87,9 @@ public class JHSmartBlur extends ParametrizedFilter {
     public boolean excludedFromAnimation() {
         return true;
     }
-}
\ No newline at end of file
+
+    @Override
+    protected boolean canCacheResults() {
+        return true;
+    }
+}
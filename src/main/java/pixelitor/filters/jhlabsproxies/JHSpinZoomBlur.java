@@ -82,4 +82,9 @@ public class JHSpinZoomBlur extends ParametrizedFilter {
     public boolean supportsGray() {
         return !hpSharpening.isChecked();
     }
-}
\ No newline at end of file
+
+    @Override
+    protected boolean canCacheResults() {
+        return true;
+    }
+}
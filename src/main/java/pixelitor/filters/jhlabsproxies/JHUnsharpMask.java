@@ -64,4 +64,9 @@ public class JHUnsharpMask extends ParametrizedFilter {
 
         return filter.filter(src, dest);
     }
-}
\ No newline at end of file
+
+    @Override
+    protected boolean canCacheResults() {
+        return true;
+    }
+}
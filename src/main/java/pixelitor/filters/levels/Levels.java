@@ -21,7 +21,9 @@ import pixelitor.filters.gui.FilterGUI;
 import pixelitor.filters.gui.FilterWithGUI;
 import pixelitor.filters.gui.UserPreset;
 import pixelitor.filters.levels.gui.LevelsGUI;
+import pixelitor.filters.lookup.ColorLookup;
 import pixelitor.filters.lookup.FastLookupOp;
+import pixelitor.filters.lookup.FusableColorFilter;
 import pixelitor.layers.Filterable;
 import pixelitor.utils.Rnd;
 
@@ -36,7 +38,7 @@ import static pixelitor.utils.Texts.i18n;
 /**
  * The Levels filter
  */
-public class Levels extends FilterWithGUI {
+public class Levels extends FilterWithGUI implements FusableColorFilter {
     public static final String NAME = i18n("levels");
 
     @Serial
@@ -77,6 +79,11 @@ public class Levels extends FilterWithGUI {
         return dest;
     }
 
+    @Override
+    public ColorLookup createColorLookup() {
+        return rgbLookup == null ? null : rgbLookup.toColorLookup();
+    }
+
     @Override
     public void randomize() {
         int inputDark = Rnd.nextInt(255);
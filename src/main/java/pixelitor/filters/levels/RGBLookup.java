@@ -17,6 +17,8 @@
 
 package pixelitor.filters.levels;
 
+import pixelitor.filters.lookup.ColorLookup;
+
 import java.awt.image.LookupTable;
 import java.awt.image.ShortLookupTable;
 
@@ -83,6 +85,10 @@ public class RGBLookup {
         return createLUT(redLUT, greenLUT, blueLUT);
     }
 
+    public ColorLookup toColorLookup() {
+        return ColorLookup.fromTables(redLUT, greenLUT, blueLUT);
+    }
+
     private static LookupTable createLUT(
         short[] redMap, short[] greenMap, short[] blueMap) {
 
@@ -34,7 +34,7 @@ import static pixelitor.utils.Texts.i18n;
 /**
  * Color balance filter
  */
-public class ColorBalance extends ParametrizedFilter {
+public class ColorBalance extends ParametrizedFilter implements FusableColorFilter {
     public static final String NAME = i18n("color_balance");
 
     private static final int EVERYTHING = 0;
@@ -99,6 +99,19 @@ public class ColorBalance extends ParametrizedFilter {
         return dest;
     }
 
+    @Override
+    public ColorLookup createColorLookup() {
+        float cr = cyanRed.getValueAsFloat();
+        float mg = magentaGreen.getValueAsFloat();
+        float yb = yellowBlue.getValueAsFloat();
+
+        if (cr == 0 && mg == 0 && yb == 0) {
+            return ColorLookup.identity();
+        }
+        return new LookupHelper(cr, mg, yb, affect.getValue())
+            .getLookup().toColorLookup();
+    }
+
     private static class LookupHelper {
         private final float cyanRed;
         private final float magentaGreen;
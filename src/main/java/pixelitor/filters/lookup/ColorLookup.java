@@ -0,0 +1,199 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.lookup;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A pointwise color mapping that can be combined with other
+ * mappings into a {@link FusedLookupOp}. The colors are
+ * non-premultiplied 0xRRGGBB values, the alpha is never changed.
+ */
+public abstract class ColorLookup {
+    private static final ColorLookup IDENTITY = new ChannelLookup(
+        createIdentityTable(), createIdentityTable(), createIdentityTable());
+
+    /**
+     * Maps the given non-premultiplied 0xRRGGBB color.
+     */
+    public abstract int map(int rgb);
+
+    public static ColorLookup identity() {
+        return IDENTITY;
+    }
+
+    /**
+     * Creates a lookup that transforms the channels independently.
+     */
+    public static ColorLookup fromTables(int[] red, int[] green, int[] blue) {
+        return new ChannelLookup(red.clone(), green.clone(), blue.clone());
+    }
+
+    public static ColorLookup fromTables(short[] red, short[] green, short[] blue) {
+        return new ChannelLookup(toIntTable(red), toIntTable(green), toIntTable(blue));
+    }
+
+    /**
+     * Creates a lookup for a color transformation which mixes the channels.
+     * The function is sampled once on a grid, and the colors between
+     * the grid points are calculated with trilinear interpolation,
+     * therefore it should be a continuous function.
+     */
+    public static ColorLookup fromFunction(IntUnaryOperator rgbFunction) {
+        return new CubeLookup(rgbFunction);
+    }
+
+    private static int[] createIdentityTable() {
+        int[] table = new int[256];
+        for (int i = 0; i < 256; i++) {
+            table[i] = i;
+        }
+        return table;
+    }
+
+    private static int[] toIntTable(short[] values) {
+        int[] table = new int[256];
+        for (int i = 0; i < 256; i++) {
+            table[i] = Math.clamp(values[i], 0, 255);
+        }
+        return table;
+    }
+
+    /**
+     * Maps each channel through its own table.
+     */
+    static final class ChannelLookup extends ColorLookup {
+        private final int[] red;
+        private final int[] green;
+        private final int[] blue;
+
+        private ChannelLookup(int[] red, int[] green, int[] blue) {
+            this.red = red;
+            this.green = green;
+            this.blue = blue;
+        }
+
+        @Override
+        public int map(int rgb) {
+            return red[(rgb >>> 16) & 0xFF] << 16
+                | green[(rgb >>> 8) & 0xFF] << 8
+                | blue[rgb & 0xFF];
+        }
+
+        /**
+         * Returns the lookup that has the same effect as
+         * applying this lookup and then the given one.
+         */
+        ChannelLookup then(ChannelLookup next) {
+            int[] r = new int[256];
+            int[] g = new int[256];
+            int[] b = new int[256];
+            for (int i = 0; i < 256; i++) {
+                r[i] = next.red[red[i]];
+                g[i] = next.green[green[i]];
+                b[i] = next.blue[blue[i]];
+            }
+            return new ChannelLookup(r, g, b);
+        }
+    }
+
+    /**
+     * A 3D lookup table with trilinear interpolation.
+     */
+    static final class CubeLookup extends ColorLookup {
+        private static final int GRID_SIZE = 33;
+        private static final int[] NODE_VALUES = new int[GRID_SIZE];
+
+        // the grid cell and the 8-bit interpolation weight for each channel value
+        private static final int[] CELLS = new int[256];
+        private static final int[] WEIGHTS = new int[256];
+
+        static {
+            // the nodes are at integer values, so that the
+            // sampled colors are reproduced exactly
+            for (int i = 0; i < GRID_SIZE; i++) {
+                NODE_VALUES[i] = Math.round(i * 255.0f / (GRID_SIZE - 1));
+            }
+            int cell = 0;
+            for (int v = 0; v < 256; v++) {
+                while (cell < GRID_SIZE - 2 && NODE_VALUES[cell + 1] <= v) {
+                    cell++;
+                }
+                int cellStart = NODE_VALUES[cell];
+                int cellSize = NODE_VALUES[cell + 1] - cellStart;
+                CELLS[v] = cell;
+                WEIGHTS[v] = ((v - cellStart) * 256 + cellSize / 2) / cellSize;
+            }
+        }
+
+        private final int[] red;
+        private final int[] green;
+        private final int[] blue;
+
+        private CubeLookup(IntUnaryOperator rgbFunction) {
+            int numNodes = GRID_SIZE * GRID_SIZE * GRID_SIZE;
+            red = new int[numNodes];
+            green = new int[numNodes];
+            blue = new int[numNodes];
+            int index = 0;
+            for (int ri = 0; ri < GRID_SIZE; ri++) {
+                for (int gi = 0; gi < GRID_SIZE; gi++) {
+                    for (int bi = 0; bi < GRID_SIZE; bi++) {
+                        int rgb = NODE_VALUES[ri] << 16 | NODE_VALUES[gi] << 8 | NODE_VALUES[bi];
+                        int mapped = rgbFunction.applyAsInt(rgb);
+                        red[index] = (mapped >>> 16) & 0xFF;
+                        green[index] = (mapped >>> 8) & 0xFF;
+                        blue[index] = mapped & 0xFF;
+                        index++;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public int map(int rgb) {
+            int r = (rgb >>> 16) & 0xFF;
+            int g = (rgb >>> 8) & 0xFF;
+            int b = rgb & 0xFF;
+
+            int wr = WEIGHTS[r];
+            int wg = WEIGHTS[g];
+            int wb = WEIGHTS[b];
+            int i000 = (CELLS[r] * GRID_SIZE + CELLS[g]) * GRID_SIZE + CELLS[b];
+            int i010 = i000 + GRID_SIZE;
+            int i100 = i000 + GRID_SIZE * GRID_SIZE;
+            int i110 = i100 + GRID_SIZE;
+
+            return interpolate(red, i000, i010, i100, i110, wr, wg, wb) << 16
+                | interpolate(green, i000, i010, i100, i110, wr, wg, wb) << 8
+                | interpolate(blue, i000, i010, i100, i110, wr, wg, wb);
+        }
+
+        private static int interpolate(int[] values, int i000, int i010, int i100, int i110,
+                                       int wr, int wg, int wb) {
+            // all the intermediate results are scaled by 256
+            int c00 = values[i000] * (256 - wb) + values[i000 + 1] * wb;
+            int c01 = values[i010] * (256 - wb) + values[i010 + 1] * wb;
+            int c10 = values[i100] * (256 - wb) + values[i100 + 1] * wb;
+            int c11 = values[i110] * (256 - wb) + values[i110 + 1] * wb;
+            int c0 = (c00 * (256 - wg) + c01 * wg + 128) >> 8;
+            int c1 = (c10 * (256 - wg) + c11 * wg + 128) >> 8;
+            return (c0 * (256 - wr) + c1 * wr + 32768) >> 16;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.lookup;
+
+import pixelitor.ThreadPool;
+import pixelitor.filters.lookup.ColorLookup.ChannelLookup;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies a sequence of {@link ColorLookup}s in a single parallel pass
+ * over the pixels, instead of one pass (and one new image) per adjustment.
+ * Consecutive per-channel lookups are composed into a single table.
+ */
+public class FusedLookupOp {
+    private static final int MIN_BAND_SIZE = 16 * 1024;
+
+    private final ColorLookup[] stages;
+
+    public FusedLookupOp(List<ColorLookup> lookups) {
+        List<ColorLookup> merged = new ArrayList<>(lookups.size());
+        for (ColorLookup lookup : lookups) {
+            if (lookup == ColorLookup.identity()) {
+                continue;
+            }
+            int last = merged.size() - 1;
+            if (last >= 0 && merged.get(last) instanceof ChannelLookup prev
+                && lookup instanceof ChannelLookup next) {
+                merged.set(last, prev.then(next));
+            } else {
+                merged.add(lookup);
+            }
+        }
+        stages = merged.toArray(ColorLookup[]::new);
+    }
+
+    public int getNumStages() {
+        return stages.length;
+    }
+
+    /**
+     * Returns a new image with the lookups applied, or null
+     * if the given image doesn't have packed int pixels.
+     */
+    public BufferedImage filter(BufferedImage src) {
+        if (!ImageUtils.hasPackedIntArray(src)) {
+            return null;
+        }
+        BufferedImage dest = ImageUtils.createImageWithSameCM(src);
+        int[] srcData = ImageUtils.getPixelArray(src);
+        int[] destData = ImageUtils.getPixelArray(dest);
+        boolean premultiplied = src.isAlphaPremultiplied();
+
+        ThreadPool.forEachBand(srcData.length, MIN_BAND_SIZE, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                int argb = srcData[i];
+                int a = argb >>> 24;
+                if (!premultiplied || a == 255) {
+                    destData[i] = argb & 0xFF_00_00_00 | map(argb & 0x00_FF_FF_FF);
+                } else if (a == 0) {
+                    destData[i] = 0;
+                } else {
+                    int r = Math.min(255, ((argb >>> 16) & 0xFF) * 255 / a);
+                    int g = Math.min(255, ((argb >>> 8) & 0xFF) * 255 / a);
+                    int b = Math.min(255, (argb & 0xFF) * 255 / a);
+
+                    int rgb = map(r << 16 | g << 8 | b);
+
+                    r = (((rgb >>> 16) & 0xFF) * a + 127) / 255;
+                    g = (((rgb >>> 8) & 0xFF) * a + 127) / 255;
+                    b = ((rgb & 0xFF) * a + 127) / 255;
+                    destData[i] = a << 24 | r << 16 | g << 8 | b;
+                }
+            }
+        });
+        return dest;
+    }
+
+    private int map(int rgb) {
+        for (ColorLookup stage : stages) {
+            rgb = stage.map(rgb);
+        }
+        return rgb;
+    }
+}
@@ -20,8 +20,10 @@ package pixelitor.filters.painters;
 import org.jdesktop.swingx.painter.TextPainter;
 import org.jdesktop.swingx.painter.effects.AreaEffect;
 import pixelitor.Canvas;
+import pixelitor.io.TranslatedImage;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.io.Serial;
 
@@ -44,6 +46,20 @@ public class TransformedTextPainter extends TextPainter {
     private transient Rectangle boundingBox;
     private transient Shape transformedShape;
 
+    // the inputs of the last layout calculated by render,
+    // or null if the layout was calculated in some other way
+    private transient LayoutKey layoutKey;
+
+    /**
+     * Everything that affects the layout, except for the
+     * translation, which is applied to the existing layout.
+     */
+    private record LayoutKey(String text, Font font, double rotation,
+                             HorizontalAlignment horAlignment,
+                             VerticalAlignment verAlignment,
+                             int width, int height) {
+    }
+
     /**
      * Return the last painted bounding box for the rendered text.
      * Note that this is not a pixel perfect rectangle.
@@ -101,6 +117,7 @@ public class TransformedTextPainter extends TextPainter {
         FontMetrics metrics = g.getFontMetrics(font);
         if (updateLayout) {
             updateLayout(width, height, text, metrics);
+            layoutKey = null;
         }
         setupGraphics(g);
 
@@ -114,15 +131,14 @@ public class TransformedTextPainter extends TextPainter {
         // paint the effects of an explicitly transformed shape
         // instead of simply painting them on the transformed graphics
         // so that the direction of the drop shadow effect does not rotate
-        var tx = g.getTransform();
         g.setTransform(origTransform);
 
         AreaEffect[] effects = getAreaEffects();
         if (effects.length != 0) {
-            if (updateLayout) {
+            if (updateLayout || transformedShape == null) {
                 //provideShape must be called with untransformed Graphics
                 Shape shape = provideShape(g, component, width, height);
-                transformedShape = tx.createTransformedShape(shape);
+                transformedShape = createLayoutTransform().createTransformedShape(shape);
             }
             for (AreaEffect ef : effects) {
                 ef.apply(g, transformedShape, width, height);
@@ -143,6 +159,43 @@ public class TransformedTextPainter extends TextPainter {
         return img;
     }
 
+    /**
+     * Renders the text and its effects into a new image covering the text's
+     * bounding box grown by the given margin. Unlike the paint method, this
+     * recalculates the layout (including the glyph outlines used by the effects)
+     * only if something other than the translation, the fill paint or the
+     * effects changed since the last rendering.
+     */
+    public TranslatedImage render(int canvasWidth, int canvasHeight, int margin) {
+        LayoutKey key = new LayoutKey(getText(), font, rotation,
+            getHorizontalAlignment(), getVerticalAlignment(), canvasWidth, canvasHeight);
+        if (!key.equals(layoutKey) || boundingBox == null) {
+            // This image is created just to get the font metrics
+            BufferedImage tmp = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D tmpG = tmp.createGraphics();
+            updateLayout(canvasWidth, canvasHeight, getText(), tmpG.getFontMetrics(font));
+            tmpG.dispose();
+            tmp.flush();
+
+            transformedShape = null;
+            layoutKey = key;
+        }
+
+        Rectangle bounds = new Rectangle(getBoundingBox());
+        bounds.grow(margin, margin);
+        if (bounds.isEmpty()) {
+            bounds.setSize(Math.max(1, bounds.width), Math.max(1, bounds.height));
+        }
+
+        BufferedImage img = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = img.createGraphics();
+        g2.translate(-bounds.x, -bounds.y);
+        paintText(g2, null, canvasWidth, canvasHeight, false);
+        g2.dispose();
+
+        return new TranslatedImage(img, bounds.x, bounds.y);
+    }
+
     /**
      * Sets up the given Graphics2D so that it is usable from both doPaint and
      * getTextShape. This method assumes that the text's location is already calculated.
@@ -154,17 +207,24 @@ public class TransformedTextPainter extends TextPainter {
         assert font != null;
         g.setFont(font);
 
+        g.transform(createLayoutTransform());
+    }
+
+    /**
+     * Returns the transform from the text's own coordinate
+     * system (starting at 0, 0) to canvas coordinates.
+     */
+    private AffineTransform createLayoutTransform() {
         if (rotation == 0) {
             assert rotatedRect == null;
-            g.translate(boundingBox.x, boundingBox.y);
-        } else {
-            assert rotatedRect != null;
-
-            double topLeftX = rotatedRect.getTopLeftX();
-            double topLeftY = rotatedRect.getTopLeftY();
-            g.translate(topLeftX, topLeftY);
-            g.rotate(rotation, 0, 0);
+            return AffineTransform.getTranslateInstance(boundingBox.x, boundingBox.y);
         }
+        assert rotatedRect != null;
+
+        var at = AffineTransform.getTranslateInstance(
+            rotatedRect.getTopLeftX(), rotatedRect.getTopLeftY());
+        at.rotate(rotation);
+        return at;
     }
 
     private void updateLayout(int width, int height, String text, FontMetrics metrics) {
@@ -201,8 +261,24 @@ public class TransformedTextPainter extends TextPainter {
     }
 
     public void setTranslation(int translationX, int translationY) {
+        int dx = translationX - this.translationX;
+        int dy = translationY - this.translationY;
         this.translationX = translationX;
         this.translationY = translationY;
+
+        if ((dx != 0 || dy != 0) && boundingBox != null) {
+            // the layout is linear in the translation, so it can
+            // be moved instead of being recalculated from the glyphs
+            boundingBox = new Rectangle(boundingBox); // it could be shared
+            boundingBox.translate(dx, dy);
+            if (rotatedRect != null) {
+                rotatedRect.translate(dx, dy);
+            }
+            if (transformedShape != null) {
+                transformedShape = AffineTransform.getTranslateInstance(dx, dy)
+                    .createTransformedShape(transformedShape);
+            }
+        }
     }
 
     public void setRotation(double rotation) {
@@ -33,6 +33,7 @@ import pixelitor.history.History;
 import pixelitor.io.FileChoosers;
 import pixelitor.layers.LayerGUILayout;
 import pixelitor.utils.AppPreferences;
+import pixelitor.utils.CacheManager;
 import pixelitor.utils.Cursors;
 import pixelitor.utils.Language;
 import pixelitor.utils.Utils;
@@ -58,9 +59,11 @@ public class PreferencesPanel extends JTabbedPane {
     private static final Border EMPTY_BORDER =
         BorderFactory.createEmptyBorder(5, 10, 5, 0);
     private static final String UNDO_LEVELS_LABEL = "Minimum Undo/Redo Levels";
+    private static final String CACHE_BUDGET_LABEL = "Image Cache Size (MB)";
     private static final String IMAGEMAGICK_FOLDER_LABEL = "ImageMagick 7 Folder";
 
     private JTextField undoLevelsTF;
+    private JTextField cacheBudgetTF;
     private JComboBox<Item> thumbSizeCB;
     private JComboBox<MouseZoomMethod> zoomMethodCB;
     private JComboBox<PanMethod> panMethodCB;
@@ -318,6 +321,7 @@ public class PreferencesPanel extends JTabbedPane {
 
         addNativeChoosersCB(gbh);
         addUndoLevelsChooser(gbh);
+        addCacheBudgetChooser(gbh);
         addMagickDirField(gbh);
         addExperimentalCB(gbh);
 
@@ -340,6 +344,15 @@ public class PreferencesPanel extends JTabbedPane {
                 undoLevelsTF, true));
     }
 
+    private void addCacheBudgetChooser(GridBagHelper gbh) {
+        cacheBudgetTF = new JTextField(5);
+        cacheBudgetTF.setName("cacheBudgetTF");
+        cacheBudgetTF.setText(String.valueOf(CacheManager.getBudgetMB()));
+        gbh.addLabelAndControl(CACHE_BUDGET_LABEL + ": ",
+            TextFieldValidator.createPositiveIntLayer(CACHE_BUDGET_LABEL,
+                cacheBudgetTF, false));
+    }
+
     private void addMagickDirField(GridBagHelper gbh) {
         magickDirTF = new JTextField(AppPreferences.magickDirName);
         magickDirTF.setColumns(10);
@@ -374,6 +387,19 @@ public class PreferencesPanel extends JTabbedPane {
             return false;
         }
 
+        int cacheBudget;
+        try {
+            cacheBudget = parseInt(cacheBudgetTF.getText().trim());
+        } catch (NumberFormatException ex) {
+            cacheBudget = -1;
+        }
+        if (cacheBudget <= 0) {
+            Dialogs.showErrorDialog(d, "Error",
+                "<html><b>" + CACHE_BUDGET_LABEL + "</b> must be a positive integer.");
+            return false;
+        }
+        CacheManager.setBudgetMB(cacheBudget);
+
         // validate the given ImageMagick directory
         String magickDirName = magickDirTF.getText().trim();
         if (!magickDirName.isEmpty()) {
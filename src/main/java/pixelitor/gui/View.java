@@ -51,6 +51,7 @@ import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import static java.awt.Color.BLACK;
@@ -163,7 +164,7 @@ public class View extends JComponent implements MouseListener, MouseMotionListen
             // owner is a transient field in Composition,
             // so it must be set even when reloading from pxc
 
-            for (SmartObject owner : comp.getOwners()) {
+            for (SmartObject owner : List.copyOf(comp.getOwners())) {
                 owner.setContent(newComp);
             }
         }
@@ -19,6 +19,7 @@ package pixelitor.gui.utils;
 
 import pixelitor.io.FileUtils;
 import pixelitor.io.TrackedIO;
+import pixelitor.utils.CachedImage;
 import pixelitor.utils.JProgressBarTracker;
 import pixelitor.utils.ProgressPanel;
 import pixelitor.utils.ProgressTracker;
@@ -30,10 +31,9 @@ import java.awt.Graphics2D;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
-import java.lang.ref.SoftReference;
 import java.nio.file.Files;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Image preview panel for the open file chooser
@@ -41,7 +41,7 @@ import java.util.Map;
 public class ImagePreviewPanel extends JPanel implements PropertyChangeListener {
     private static final int SIZE = 200;
     public static final int EMPTY_SPACE_AT_LEFT = 5;
-    private static final Map<String, SoftReference<ThumbInfo>> thumbsCache = new HashMap<>();
+    private static final Map<String, CachedThumb> thumbsCache = new ConcurrentHashMap<>();
 
     private ThumbInfo thumbInfo;
     private final ProgressPanel progressPanel;
@@ -72,9 +72,9 @@ public class ImagePreviewPanel extends JPanel implements PropertyChangeListener
 
     private ThumbInfo getOrCreateThumb(File file) {
         String filePath = file.getAbsolutePath();
-        if (thumbsCache.containsKey(filePath)) {
-            SoftReference<ThumbInfo> thumbRef = thumbsCache.get(filePath);
-            ThumbInfo cachedInfo = thumbRef.get();
+        CachedThumb cachedThumb = thumbsCache.get(filePath);
+        if (cachedThumb != null) {
+            ThumbInfo cachedInfo = cachedThumb.get();
             if (cachedInfo != null) {
                 return cachedInfo;
             }
@@ -87,7 +87,7 @@ public class ImagePreviewPanel extends JPanel implements PropertyChangeListener
         // Currently, no thumb extraction is attempted for ora and pxc files.
         if (FileUtils.hasMultiLayerExtension(file)) {
             ThumbInfo fakeThumbInfo = ThumbInfo.failure(ThumbInfo.NO_PREVIEW);
-            thumbsCache.put(filePath, new SoftReference<>(fakeThumbInfo));
+            cacheThumb(filePath, fakeThumbInfo);
             return fakeThumbInfo;
         }
 
@@ -96,19 +96,32 @@ public class ImagePreviewPanel extends JPanel implements PropertyChangeListener
         try {
             ProgressTracker pt = new JProgressBarTracker(progressPanel);
             ThumbInfo newThumbInfo = TrackedIO.readSubsampledThumb(file, availableWidth, availableHeight, pt);
-            thumbsCache.put(filePath, new SoftReference<>(newThumbInfo));
+            cacheThumb(filePath, newThumbInfo);
             return newThumbInfo;
         } catch (Exception ex) {
             ThumbInfo fakeThumbInfo = ThumbInfo.failure(ThumbInfo.PREVIEW_ERROR);
-            thumbsCache.put(filePath, new SoftReference<>(fakeThumbInfo));
+            cacheThumb(filePath, fakeThumbInfo);
 
             ex.printStackTrace();
             return fakeThumbInfo;
         }
     }
 
+    private static void cacheThumb(String filePath, ThumbInfo thumbInfo) {
+        CachedThumb cachedThumb = new CachedThumb(thumbInfo);
+        thumbsCache.put(filePath, cachedThumb);
+
+        // the thumbs are registered with the cache manager so that
+        // their memory is counted together with the other cached images
+        cachedThumb.image.setEvictionListener(() ->
+            thumbsCache.remove(filePath, cachedThumb));
+    }
+
     public static void removeThumbFromCache(File file) {
-        thumbsCache.remove(file.getAbsolutePath());
+        CachedThumb removed = thumbsCache.remove(file.getAbsolutePath());
+        if (removed != null) {
+            removed.image.clear(false);
+        }
     }
 
     @Override
@@ -120,5 +133,27 @@ public class ImagePreviewPanel extends JPanel implements PropertyChangeListener
             thumbInfo.paint((Graphics2D) g, this);
         }
     }
-}
 
+    /**
+     * A thumb info whose image is tracked by the cache manager.
+     * Thumb infos without an image (for errors) use no significant memory.
+     */
+    private static class CachedThumb {
+        private final ThumbInfo info;
+        private final CachedImage image;
+
+        CachedThumb(ThumbInfo info) {
+            this.info = info;
+            image = new CachedImage("file preview thumbnail", CachedImage.Cost.LOW);
+            image.set(info.getThumb());
+        }
+
+        ThumbInfo get() {
+            if (info.getThumb() == null) {
+                return info;
+            }
+            // return null if it was evicted
+            return image.get() == null ? null : info;
+        }
+    }
+}
@@ -65,7 +65,10 @@ public class Guides implements Serializable {
         copy.horizontals.addAll(horizontals);
         copy.verticals.addAll(verticals);
 
-        copy.regenerateLines(view);
+        if (view != null) {
+            copy.regenerateLines(view);
+        }
+        // otherwise the lines are generated when the copy is shown
 
         return copy;
     }
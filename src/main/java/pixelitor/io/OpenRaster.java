@@ -25,15 +25,22 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import pixelitor.Composition;
 import pixelitor.ImageMode;
+import pixelitor.ThreadPool;
 import pixelitor.layers.*;
 import pixelitor.utils.*;
 
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -46,11 +53,17 @@ import static java.nio.charset.StandardCharsets.UTF_8;
  * OpenRaster file format support.
  * Only image layers are saved as the format does not cover
  * other layer types or layer masks.
+ *
+ * The PNG files of the layers are encoded and decoded in parallel,
+ * while the zip file is written and the layers are built in order.
  */
 public class OpenRaster {
     private static final String MERGED_IMAGE_NAME = "mergedimage.png";
     private static final String THUMBNAIL_IMAGE_NAME = "Thumbnails/thumbnail.png";
 
+    // the maximum number of encoded PNG files waiting to be written
+    private static final int MAX_PENDING_IMAGES = ThreadPool.getNumCores() + 1;
+
     private OpenRaster() {
     }
 
@@ -63,51 +76,42 @@ public class OpenRaster {
     }
 
     public static void write(Composition comp, File outFile) throws IOException {
-        var mainTracker = new StatusBarProgressTracker("Writing " + outFile.getName(), 100);
-
-        var fos = new FileOutputStream(outFile);
-        var zos = new ZipOutputStream(fos);
-
         // +1 for the merged image, and +1 for the thumbnail
         int numImages = comp.getNumORAExportableImages() + 2;
-        double workRatio = 1.0 / numImages;
+        var tracker = new StatusBarProgressTracker("Writing " + outFile.getName(), numImages);
 
         StringBuilder stackXML = new StringBuilder(format("""
             <?xml version='1.0' encoding='UTF-8'?>
             <image w="%d" h="%d">
             """, comp.getCanvasWidth(), comp.getCanvasHeight()));
-        writeHolder(comp, mainTracker, zos, stackXML, workRatio, 0);
+        List<ImageEntry> images = new ArrayList<>(numImages);
+        collectHolder(comp, stackXML, images, 0);
         stackXML.append("</image>");
 
-        // add the merged image
-        zos.putNextEntry(new ZipEntry(MERGED_IMAGE_NAME));
-        var mergedTracker = new SubtaskProgressTracker(workRatio, mainTracker);
-        var img = comp.getCompositeImage();
-        TrackedIO.writeToStream(img, zos, "PNG", mergedTracker);
-        zos.closeEntry();
+        BufferedImage merged = comp.getCompositeImage();
+        images.add(new ImageEntry(MERGED_IMAGE_NAME, () -> merged));
+        images.add(new ImageEntry(THUMBNAIL_IMAGE_NAME, () -> createORAThumbnail(merged)));
 
-        // add the thumbnail image
-        zos.putNextEntry(new ZipEntry(THUMBNAIL_IMAGE_NAME));
-        var thumbTracker = new SubtaskProgressTracker(workRatio, mainTracker);
-        var thumb = createORAThumbnail(comp.getCompositeImage());
-        TrackedIO.writeToStream(thumb, zos, "PNG", thumbTracker);
-        zos.closeEntry();
+        try (var zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(outFile)))) {
+            writeImages(images, zos, tracker);
 
-        // write the stack.xml file
-        zos.putNextEntry(new ZipEntry("stack.xml"));
-        zos.write(stackXML.toString().getBytes(UTF_8));
-        zos.closeEntry();
+            // write the stack.xml file
+            zos.putNextEntry(new ZipEntry("stack.xml"));
+            zos.write(stackXML.toString().getBytes(UTF_8));
+            zos.closeEntry();
 
-        // write the mimetype
-        zos.putNextEntry(new ZipEntry("mimetype"));
-        zos.write("image/openraster".getBytes(UTF_8));
-        zos.closeEntry();
-        zos.close();
+            // write the mimetype
+            zos.putNextEntry(new ZipEntry("mimetype"));
+            zos.write("image/openraster".getBytes(UTF_8));
+            zos.closeEntry();
+        }
 
-        mainTracker.finished();
+        tracker.finished();
     }
 
-    private static int writeHolder(LayerHolder holder, StatusBarProgressTracker mainTracker, ZipOutputStream zos, StringBuilder stackXML, double workRatio, int uniqueId) throws IOException {
+    // adds the stack.xml lines of the given holder, and collects the images to be saved
+    private static int collectHolder(LayerHolder holder, StringBuilder stackXML,
+                                     List<ImageEntry> images, int uniqueId) {
         stackXML.append(holder.getORAStackXML());
 
         int numLayers = holder.getNumLayers();
@@ -115,10 +119,9 @@ public class OpenRaster {
         for (int i = numLayers - 1; i >= 0; i--) {
             Layer layer = holder.getLayer(i);
             if (layer instanceof LayerGroup group) {
-                uniqueId = writeHolder(group, mainTracker, zos, stackXML, workRatio, uniqueId);
+                uniqueId = collectHolder(group, stackXML, images, uniqueId);
             } else if (layer.exportsORAImage()) {
-                var subTracker = new SubtaskProgressTracker(workRatio, mainTracker);
-                writeLayer(layer, uniqueId, zos, subTracker, stackXML);
+                collectLayer(layer, uniqueId, stackXML, images);
                 uniqueId++;
             }
         }
@@ -127,98 +130,191 @@ public class OpenRaster {
         return uniqueId;
     }
 
-    private static void writeLayer(Layer layer,
-                                   int uniqueId,
-                                   ZipOutputStream zos,
-                                   ProgressTracker pt,
-                                   StringBuilder stackXML) throws IOException {
+    private static void collectLayer(Layer layer,
+                                     int uniqueId,
+                                     StringBuilder stackXML,
+                                     List<ImageEntry> images) {
+        // the image is created here, and only the encoding runs in parallel
         TranslatedImage translatedImage = layer.getTranslatedImage();
+        String entryName = format("data/%d.png", uniqueId);
 
         String xml = format(Locale.ENGLISH,
             "<layer name=\"%s\" visibility=\"%s\" composite-op=\"%s\" " +
-                "opacity=\"%f\" src=\"data/%d.png\" x=\"%d\" y=\"%d\"/>\n",
+                "opacity=\"%f\" src=\"%s\" x=\"%d\" y=\"%d\"/>\n",
             layer.getName(),
             layer.getVisibilityAsORAString(),
             layer.getBlendingMode().toSVGName(),
             layer.getOpacity(),
-            uniqueId,
+            entryName,
             translatedImage.tx(),
             translatedImage.ty());
         stackXML.append(xml);
 
-        var entry = new ZipEntry(format("data/%d.png", uniqueId));
-        zos.putNextEntry(entry);
+        BufferedImage img = translatedImage.img();
+        images.add(new ImageEntry(entryName, () -> img));
+    }
 
-        TrackedIO.writeToStream(translatedImage.img(), zos, "PNG", pt);
+    /**
+     * Encodes the PNG files in parallel, and writes them to the zip file
+     * in their original order. At most {@link #MAX_PENDING_IMAGES}
+     * encoded images are buffered in memory at any time.
+     */
+    private static void writeImages(List<ImageEntry> images, ZipOutputStream zos,
+                                    ProgressTracker tracker) throws IOException {
+        Deque<Future<EncodedImage>> pending = new ArrayDeque<>();
+        try {
+            for (ImageEntry image : images) {
+                if (pending.size() >= MAX_PENDING_IMAGES) {
+                    writeEntry(getResult(pending.removeFirst()), zos);
+                    tracker.unitDone();
+                }
+                pending.addLast(ThreadPool.submit2(image::encode));
+            }
+            while (!pending.isEmpty()) {
+                writeEntry(getResult(pending.removeFirst()), zos);
+                tracker.unitDone();
+            }
+        } finally {
+            // only non-empty if there was an exception
+            for (Future<EncodedImage> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
 
+    private static void writeEntry(EncodedImage image, ZipOutputStream zos) throws IOException {
+        // PNG files are already compressed, so they are stored as they are
+        var entry = new ZipEntry(image.entryName());
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(image.data().length);
+        entry.setCompressedSize(image.data().length);
+        entry.setCrc(image.crc());
+        zos.putNextEntry(entry);
+        zos.write(image.data());
         zos.closeEntry();
     }
 
+    private static <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioe) {
+                throw ioe;
+            } else if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * An image that will be saved as the given zip entry.
+     * The image is supplied in the encoding thread.
+     */
+    private record ImageEntry(String entryName, Supplier<BufferedImage> source) {
+        EncodedImage encode() throws IOException {
+            var bytes = new ByteArrayOutputStream();
+            try (var ios = new MemoryCacheImageOutputStream(bytes)) {
+                TrackedIO.writeToIOS(source.get(), ios, "PNG", ProgressTracker.NULL_TRACKER, null);
+            }
+            byte[] data = bytes.toByteArray();
+            var crc = new CRC32();
+            crc.update(data);
+            return new EncodedImage(entryName, data, crc.getValue());
+        }
+    }
+
+    private record EncodedImage(String entryName, byte[] data, long crc) {
+    }
+
     public static Composition read(File file) throws IOException, ParserConfigurationException, SAXException {
-        String stackXML = null;
-        var mainTracker = new StatusBarProgressTracker("Reading " + file.getName(), 100);
-        Map<String, BufferedImage> images = new HashMap<>();
         try (ZipFile zipFile = new ZipFile(file)) {
-            // first iterate to count the image files...
-            int numImageFiles = countNumImageFiles(zipFile);
-            double workRatio = 1.0 / numImageFiles;
-
-            // ...then iterate again to actually read the files
+            String stackXML = null;
             var fileEntries = zipFile.entries();
             while (fileEntries.hasMoreElements()) {
                 ZipEntry entry = fileEntries.nextElement();
-                String name = entry.getName();
-
-                if (name.equalsIgnoreCase("stack.xml")) {
+                if (entry.getName().equalsIgnoreCase("stack.xml")) {
                     stackXML = extractString(zipFile.getInputStream(entry));
-                } else if (name.equalsIgnoreCase(MERGED_IMAGE_NAME)) {
-                    // no need to read it
-                } else if (name.equalsIgnoreCase(THUMBNAIL_IMAGE_NAME)) {
-                    // no need to read it
-                } else if (FileUtils.hasPNGExtension(name)) {
-                    var subTracker = new SubtaskProgressTracker(workRatio, mainTracker);
-                    var stream = zipFile.getInputStream(entry);
-                    var image = TrackedIO.readFromStream(stream, subTracker);
-                    images.put(name, image);
+                    break;
                 }
             }
-        }
+            if (stackXML == null) {
+                throw new IllegalStateException("No stack.xml found.");
+            }
 
-        if (stackXML == null) {
-            throw new IllegalStateException("No stack.xml found.");
-        }
+            Element doc = loadXMLFromString(stackXML).getDocumentElement();
+            doc.normalize();
+            String docNodeName = doc.getNodeName();
+            if (!docNodeName.equals("image")) {
+                throw new IllegalStateException(format(
+                    "stack.xml root element is '%s', expected: 'image'",
+                    docNodeName));
+            }
 
-        Element doc = loadXMLFromString(stackXML).getDocumentElement();
-        doc.normalize();
-        String docNodeName = doc.getNodeName();
-        if (!docNodeName.equals("image")) {
-            throw new IllegalStateException(format(
-                "stack.xml root element is '%s', expected: 'image'",
-                docNodeName));
-        }
+            int compWidth = parseInt(doc.getAttribute("w").trim());
+            int compHeight = parseInt(doc.getAttribute("h").trim());
 
-        int compWidth = parseInt(doc.getAttribute("w").trim());
-        int compHeight = parseInt(doc.getAttribute("h").trim());
+            Node mainStackElement = doc.getFirstChild();
+            // make sure that text nodes caused by whitespace are ignored
+            while (!(mainStackElement instanceof Element)) {
+                mainStackElement = mainStackElement.getNextSibling();
+            }
 
-        var comp = Composition.createEmpty(compWidth, compHeight, ImageMode.RGB);
-        comp.setFile(file);
-        comp.createDebugName();
+            // Start decoding all the layer images in parallel, in the order
+            // in which they are needed, while the layers are built in this thread.
+            Map<String, Future<BufferedImage>> images = new HashMap<>();
+            NodeList layerElements = ((Element) mainStackElement).getElementsByTagName("layer");
+            int numLayers = layerElements.getLength();
+            List<String> sources = new ArrayList<>(numLayers);
+            for (int i = numLayers - 1; i >= 0; i--) {
+                sources.add(((Element) layerElements.item(i)).getAttribute("src"));
+            }
+            try {
+                for (String src : sources) {
+                    images.computeIfAbsent(src, name -> ThreadPool.submit2(() -> decodeImage(zipFile, name)));
+                }
 
-        Node mainStackElement = doc.getFirstChild();
-        // make sure that text nodes caused by whitespace are ignored
-        while (!(mainStackElement instanceof Element)) {
-            mainStackElement = mainStackElement.getNextSibling();
-        }
+                var tracker = new StatusBarProgressTracker("Reading " + file.getName(), Math.max(1, numLayers));
+                var comp = Composition.createEmpty(compWidth, compHeight, ImageMode.RGB);
+                comp.setFile(file);
+                comp.createDebugName();
 
-        readHolder(mainStackElement, comp, images);
+                readHolder(mainStackElement, comp, images, tracker);
 
-        mainTracker.finished();
+                tracker.finished();
+                return comp;
+            } finally {
+                // only needed if there was an exception
+                for (Future<BufferedImage> future : images.values()) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
 
-        return comp;
+    private static BufferedImage decodeImage(ZipFile zipFile, String entryName) throws IOException {
+        ZipEntry entry = zipFile.getEntry(entryName);
+        if (entry == null) {
+            throw new IOException("Layer image " + entryName + " not found.");
+        }
+        BufferedImage image;
+        try (var iis = new MemoryCacheImageInputStream(zipFile.getInputStream(entry))) {
+            image = TrackedIO.readFromIIS(iis, ProgressTracker.NULL_TRACKER);
+        }
+        if (image == null) {
+            throw new IOException("Could not decode " + entryName);
+        }
+        return ImageUtils.toSysCompatibleImage(image);
     }
 
     // reads a stack element
-    private static void readHolder(Node stackNode, LayerHolder parent, Map<String, BufferedImage> images) {
+    private static void readHolder(Node stackNode, LayerHolder parent,
+                                   Map<String, Future<BufferedImage>> images,
+                                   ProgressTracker tracker) throws IOException {
         assert stackNode.getNodeName().equals("stack");
 
         NodeList childNodes = stackNode.getChildNodes();
@@ -240,19 +336,21 @@ public class OpenRaster {
                     }
                 }
 
-                readHolder(child, group, images);
+                readHolder(child, group, images, tracker);
             } else if (childNodeName.equals("layer")) {
                 readLayer(images, parent, (Element) child);
+                tracker.unitDone();
             }
         }
     }
 
-    private static void readLayer(Map<String, BufferedImage> images, LayerHolder holder, Element element) {
+    private static void readLayer(Map<String, Future<BufferedImage>> images,
+                                  LayerHolder holder, Element element) throws IOException {
         String layerName = element.getAttribute("name");
         String layerImageSource = element.getAttribute("src");
 
-        BufferedImage image = images.get(layerImageSource);
-        image = ImageUtils.toSysCompatibleImage(image);
+        // wait only for this image, the later ones can still be decoding
+        BufferedImage image = getResult(images.get(layerImageSource));
 
         String layerX = element.getAttribute("x");
         String layerY = element.getAttribute("y");
@@ -291,21 +389,6 @@ public class OpenRaster {
         layer.setOpacity(opacity);
     }
 
-    private static int countNumImageFiles(ZipFile zipFile) {
-        Enumeration<? extends ZipEntry> fileEntries = zipFile.entries();
-        int numImageFiles = 0;
-        while (fileEntries.hasMoreElements()) {
-            ZipEntry entry = fileEntries.nextElement();
-            String name = entry.getName();
-            String nameLC = name.toLowerCase(Locale.ROOT);
-
-            if (nameLC.endsWith("png") && !name.equals(MERGED_IMAGE_NAME) && !name.equals(THUMBNAIL_IMAGE_NAME)) {
-                numImageFiles++;
-            }
-        }
-        return numImageFiles;
-    }
-
     private static Document loadXMLFromString(String xml)
         throws ParserConfigurationException, IOException, SAXException {
 
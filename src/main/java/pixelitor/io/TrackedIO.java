@@ -32,7 +32,7 @@ import java.io.*;
 import java.util.Iterator;
 import java.util.function.Consumer;
 
-import static pixelitor.utils.ImageUtils.createThumbnail;
+import static pixelitor.utils.ImageUtils.createSmoothThumbnail;
 import static pixelitor.utils.Threads.calledOutsideEDT;
 
 /**
@@ -259,8 +259,8 @@ public class TrackedIO {
                     // subsampling only makes sense when
                     // the image is shrunk by 2x or greater
                     BufferedImage image = reader.read(0);
-                    BufferedImage thumb = createThumbnail(image,
-                        Math.min(thumbMaxWidth, thumbMaxHeight), null);
+                    BufferedImage thumb = createSmoothThumbnail(image,
+                        Math.min(thumbMaxWidth, thumbMaxHeight));
                     return ThumbInfo.success(thumb, imgWidth, imgHeight);
                 }
 
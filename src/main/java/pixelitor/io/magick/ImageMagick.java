@@ -29,6 +29,7 @@ import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
@@ -51,6 +52,8 @@ public class ImageMagick {
     private static final boolean installed = checkInstalled();
     private static File magickCommand;
 
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
     public static void export(Composition comp) {
         if (!installed) {
             showNotInstalledDialog();
@@ -141,63 +144,100 @@ public class ImageMagick {
 
     public static void exportImage(BufferedImage img, File outFile,
                                    ExportSettings settings) {
+        try {
+            // the uncompressed transport is much faster to produce and to parse,
+            // but if ImageMagick can't handle it for some reason, then try again with png
+            String error = runExport(img, outFile, settings, true);
+            if (error != null) {
+                error = runExport(img, outFile, settings, false);
+            }
+            if (error != null) {
+                throw new IOException("ImageMagick export failed: " + error);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Runs a process that reads the image from the standard input,
+     * and converts it to the given file. Returns null if it was
+     * successful, or the output of ImageMagick otherwise.
+     */
+    private static String runExport(BufferedImage img, File outFile,
+                                    ExportSettings settings, boolean raw) throws IOException, InterruptedException {
         List<String> command = new ArrayList<>();
         command.add(magickCommand.getAbsolutePath());
         command.add("convert");
 
-// this setting doesn't seem to have an effect on the speed
-//        command.add("-define");
-//        command.add("stream:buffer-size=0");
-
-        command.add("png:-"); // read png from stdin
+        // read the pixels from stdin
+        command.add(raw ? "pam:-" : "png:-");
 
         settings.addMagickOptions(command);
         command.add(settings.getFormatSpecifier() + outFile.getAbsolutePath());
 
         System.out.println("ImageMagick::exportImage: command = " + command);
 
-        // a process that reads a png file from the standard input,
-        // and converts it to the given file
         ProcessBuilder pb = new ProcessBuilder(command.toArray(String[]::new));
         pb.redirectInput(ProcessBuilder.Redirect.PIPE);
-        try {
-            Process p = pb.start();
-            try (OutputStream magickInput = p.getOutputStream()) {
-                writeToOutStream(img, magickInput);
-                magickInput.flush();
+        pb.redirectErrorStream(true);
+        Process p = pb.start();
+        IOException writeException = null;
+        try (OutputStream magickInput = new BufferedOutputStream(p.getOutputStream(), STREAM_BUFFER_SIZE)) {
+            if (raw) {
+                PamCodec.write(img, magickInput);
+            } else {
+                // Explicitly setting a low compression level doesn't seem
+                // to make it faster (why?), so use the simple approach.
+                ImageIO.write(img, "png", magickInput);
             }
-            p.waitFor();
         } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+            // typically a broken pipe because ImageMagick exited early
+            writeException = e;
+        }
+        String output;
+        try (InputStream magickOutput = p.getInputStream()) {
+            output = new String(magickOutput.readAllBytes(), StandardCharsets.UTF_8).trim();
+        }
+        int exitValue = p.waitFor();
+        if (exitValue == 0 && writeException == null) {
+            return null;
+        }
+        if (output.isEmpty()) {
+            output = writeException != null
+                ? writeException.getMessage()
+                : "exit value = " + exitValue;
         }
+        return output;
     }
 
-    private static void writeToOutStream(BufferedImage img, OutputStream magickInput) throws IOException {
-        // Write as png to ImageMagick and let it do
-        // the conversion to the final format.
-        // Explicitly setting a low compression level doesn't seem
-        // to make it faster (why?), so use the simple approach.
-        ImageIO.write(img, "png", magickInput);
-
-//        try (ImageOutputStream ios = ImageIO.createImageOutputStream(magickInput)) {
-//            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("png");
-//            ImageWriter writer = writers.next();
-//            ImageWriteParam writeParam = writer.getDefaultWriteParam();
-//            writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-//            writeParam.setCompressionQuality(1.0f); // 1 is no compression
-//            try {
-//                writer.setOutput(ios);
-//                writer.write(img);
-//            } finally {
-//                writer.dispose();
-//                ios.flush();
-//            }
-//        }
+    private static BufferedImage importImage(File file) {
+        // a process that reads the given file, and writes it as
+        // uncompressed PAM (depth=8 bit) to the standard output
+        ProcessBuilder pb = new ProcessBuilder(
+            magickCommand.getAbsolutePath(), "convert", file.getAbsolutePath(),
+            "-depth", "8", // don't send 16-bit data
+            "pam:-");
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        try {
+            Process p = pb.start();
+            try (InputStream magickOutput = new BufferedInputStream(p.getInputStream(), STREAM_BUFFER_SIZE)) {
+                // the pixels are decoded while ImageMagick is still writing them
+                return PamCodec.read(magickOutput);
+            } catch (IOException e) {
+                p.destroy();
+            }
+        } catch (IOException e) {
+            throw DecodingException.magick(file, e);
+        }
+        return importImageAsPNG(file);
     }
 
-    private static BufferedImage importImage(File file) {
+    // the slower fallback if the uncompressed import fails
+    private static BufferedImage importImageAsPNG(File file) {
         // a process that reads the given file,
         // and writes it as png (depth=8 bit) to the standard output
         ProcessBuilder pb = new ProcessBuilder(
@@ -205,6 +245,7 @@ public class ImageMagick {
             "-depth", "8", // don't send 16-bit data
             "-quality", "1", // importing is faster with minimal compression
             "png:-");
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
         BufferedImage img;
         try {
             Process p = pb.start();
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.io.magick;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+
+/**
+ * Reads and writes 8-bit images in the uncompressed PAM format
+ * (the "P7" member of the netpbm family), which ImageMagick
+ * reads and writes without any compression or filtering.
+ * The pixels are streamed row by row, so no full-size
+ * byte copy of the image is created.
+ */
+class PamCodec {
+    private PamCodec() {
+        // only static utility methods
+    }
+
+    /**
+     * Writes the given image as non-premultiplied RGBA.
+     */
+    static void write(BufferedImage img, OutputStream out) throws IOException {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        String header = "P7\nWIDTH " + width + "\nHEIGHT " + height
+            + "\nDEPTH 4\nMAXVAL 255\nTUPLTYPE RGB_ALPHA\nENDHDR\n";
+        out.write(header.getBytes(StandardCharsets.US_ASCII));
+
+        int[] argbRow = new int[width];
+        byte[] rgbaRow = new byte[width * 4];
+        for (int y = 0; y < height; y++) {
+            // getRGB also converts from premultiplied or non-int images
+            img.getRGB(0, y, width, 1, argbRow, 0, width);
+            for (int x = 0, i = 0; x < width; x++, i += 4) {
+                int argb = argbRow[x];
+                rgbaRow[i] = (byte) (argb >>> 16);
+                rgbaRow[i + 1] = (byte) (argb >>> 8);
+                rgbaRow[i + 2] = (byte) argb;
+                rgbaRow[i + 3] = (byte) (argb >>> 24);
+            }
+            out.write(rgbaRow);
+        }
+    }
+
+    /**
+     * Reads an 8-bit PAM image with any of the standard tuple types
+     * into a new TYPE_INT_ARGB image.
+     */
+    static BufferedImage read(InputStream in) throws IOException {
+        if (!"P7".equals(readLine(in))) {
+            throw new IOException("not a PAM image");
+        }
+        int width = -1;
+        int height = -1;
+        int depth = -1;
+        int maxVal = -1;
+        String tupleType = null;
+        while (true) {
+            String line = readLine(in);
+            if (line.equals("ENDHDR")) {
+                break;
+            }
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+", 2);
+            String value = parts.length > 1 ? parts[1].trim() : "";
+            try {
+                switch (parts[0]) {
+                    case "WIDTH" -> width = Integer.parseInt(value);
+                    case "HEIGHT" -> height = Integer.parseInt(value);
+                    case "DEPTH" -> depth = Integer.parseInt(value);
+                    case "MAXVAL" -> maxVal = Integer.parseInt(value);
+                    case "TUPLTYPE" -> tupleType = value;
+                    default -> throw new IOException("unexpected PAM header line: " + line);
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("invalid PAM header line: " + line, e);
+            }
+        }
+        if (width <= 0 || height <= 0) {
+            throw new IOException("invalid PAM size: " + width + "x" + height);
+        }
+        if (maxVal != 255) {
+            throw new IOException("unsupported PAM maxval: " + maxVal);
+        }
+        int expectedDepth = tupleType == null ? -1 : switch (tupleType) {
+            case "GRAYSCALE" -> 1;
+            case "GRAYSCALE_ALPHA" -> 2;
+            case "RGB" -> 3;
+            case "RGB_ALPHA" -> 4;
+            default -> -1;
+        };
+        if (expectedDepth == -1 || depth != expectedDepth) {
+            throw new IOException("unsupported PAM tuple type: " + tupleType + ", depth = " + depth);
+        }
+
+        BufferedImage img = new BufferedImage(width, height, TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+        byte[] row = new byte[width * depth];
+        for (int y = 0; y < height; y++) {
+            if (in.readNBytes(row, 0, row.length) != row.length) {
+                throw new EOFException("PAM data ended at row " + y);
+            }
+            int offset = y * width;
+            for (int x = 0, i = 0; x < width; x++, i += depth) {
+                int argb = switch (depth) {
+                    case 1 -> {
+                        int gray = row[i] & 0xFF;
+                        yield 0xFF_00_00_00 | gray << 16 | gray << 8 | gray;
+                    }
+                    case 2 -> {
+                        int gray = row[i] & 0xFF;
+                        yield (row[i + 1] & 0xFF) << 24 | gray << 16 | gray << 8 | gray;
+                    }
+                    case 3 -> 0xFF_00_00_00 | (row[i] & 0xFF) << 16
+                        | (row[i + 1] & 0xFF) << 8 | row[i + 2] & 0xFF;
+                    default -> (row[i + 3] & 0xFF) << 24 | (row[i] & 0xFF) << 16
+                        | (row[i + 1] & 0xFF) << 8 | row[i + 2] & 0xFF;
+                };
+                pixels[offset + x] = argb;
+            }
+        }
+        return img;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(32);
+        while (true) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("PAM header ended unexpectedly");
+            }
+            if (b == '\n') {
+                return line.toString(StandardCharsets.US_ASCII).trim();
+            }
+            line.write(b);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.layers;
+
+import pixelitor.filters.lookup.ColorLookup;
+import pixelitor.filters.lookup.FusedLookupOp;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies runs of consecutive color adjustment layers in a single pass
+ * over the pixels, instead of running their filters one after the other.
+ */
+public final class AdjustmentFusion {
+    private AdjustmentFusion() {
+        // should not be instantiated
+    }
+
+    /**
+     * The result of applying a run of adjustment layers.
+     *
+     * @param image the adjusted image
+     * @param end   the index of the first layer after the run
+     */
+    public record Result(BufferedImage image, int end) {
+    }
+
+    /**
+     * Applies the adjustment layers starting at the given index if
+     * at least two visible layers can be fused there, otherwise returns null.
+     * The layer at the start index must not be the first visible layer.
+     */
+    public static Result applyRun(List<Layer> layers, int start, BufferedImage imageSoFar) {
+        if (!ImageUtils.hasPackedIntArray(imageSoFar)) {
+            return null;
+        }
+
+        List<ColorLookup> lookups = new ArrayList<>();
+        int end = start;
+        while (end < layers.size()) {
+            Layer layer = layers.get(end);
+            if (layer.isVisible()) {
+                if (!(layer instanceof AdjustmentLayer adjLayer)) {
+                    break;
+                }
+                ColorLookup lookup = adjLayer.getFusableLookup();
+                if (lookup == null) {
+                    break;
+                }
+                lookups.add(lookup);
+            }
+            end++;
+        }
+        if (lookups.size() < 2) {
+            return null;
+        }
+
+        BufferedImage result = new FusedLookupOp(lookups).filter(imageSoFar);
+        return new Result(result, end);
+    }
+}
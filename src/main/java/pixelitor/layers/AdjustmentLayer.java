@@ -23,9 +23,13 @@ import pixelitor.FilterContext;
 import pixelitor.filters.Filter;
 import pixelitor.filters.ParametrizedFilter;
 import pixelitor.filters.gui.FilterWithGUI;
+import pixelitor.filters.lookup.ColorLookup;
+import pixelitor.filters.lookup.FusableColorFilter;
 import pixelitor.history.FilterChangedEdit;
 import pixelitor.history.History;
 import pixelitor.io.TranslatedImage;
+import pixelitor.utils.CachedImage;
+import pixelitor.utils.ImageUtils;
 import pixelitor.utils.debug.DebugNode;
 
 import java.awt.Component;
@@ -36,6 +40,8 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serial;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -45,6 +51,9 @@ public class AdjustmentLayer extends Layer implements Filterable {
     @Serial
     private static final long serialVersionUID = 2L;
 
+    // the outputs of faster filters are not cached
+    private static final long MIN_CACHED_RUN_NANOS = 20_000_000L;
+
     protected Filter filter;
 
     // A copy created at the beginning of editing,
@@ -54,12 +63,26 @@ public class AdjustmentLayer extends Layer implements Filterable {
 
     private transient boolean tentative = false;
 
+    // The output of the filter for the last input, so that recompositing
+    // with an unchanged input doesn't run the filter. The input is
+    // identified by its key, and not by comparing the pixels.
+    private transient CachedImage outputCache = createOutputCache();
+    private transient Filter cachedFilter;
+    private transient InputKey cachedInputKey;
+
+    // the color mapping of the filter, if it can be fused with other adjustments
+    private transient ColorLookup cachedLookup;
+
     public AdjustmentLayer(Composition comp, String name, Filter filter) {
         super(comp, name);
         this.filter = filter;
         isAdjustment = true;
     }
 
+    private static CachedImage createOutputCache() {
+        return new CachedImage("adjustment layer output", CachedImage.Cost.MEDIUM);
+    }
+
     @Serial
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
@@ -67,6 +90,7 @@ public class AdjustmentLayer extends Layer implements Filterable {
         lastFilter = null;
         showOriginal = false;
         tentative = false;
+        outputCache = createOutputCache();
     }
 
     @Override
@@ -88,7 +112,96 @@ public class AdjustmentLayer extends Layer implements Filterable {
 
     @Override
     public BufferedImage applyOnImage(BufferedImage src) {
-        return filter.transformImage(src);
+        Filter usedFilter = filter;
+        if (usedFilter.usesResultCache()) {
+            // the filter has its own cache, which can also
+            // keep the results for other layers and settings
+            return usedFilter.transformImage(src, !isPreviewing());
+        }
+
+        // while previewing, the settings change all the time
+        InputKey inputKey = isPreviewing() ? null : calcInputKey(src);
+        BufferedImage cached = getCachedOutput(inputKey, usedFilter);
+        if (cached != null) {
+            // copied, because the caller can modify the returned image
+            return ImageUtils.copyImage(cached);
+        }
+
+        long startTime = System.nanoTime();
+        BufferedImage output = usedFilter.transformImage(src);
+
+        // fast filters are simply run again, because
+        // copying their output would take about as long
+        if (inputKey != null && System.nanoTime() - startTime >= MIN_CACHED_RUN_NANOS) {
+            storeCachedOutput(inputKey, usedFilter, ImageUtils.copyImage(output));
+        }
+        return output;
+    }
+
+    /**
+     * Identifies the input of this layer: it's the same as long as the
+     * content of the composition didn't change, and the layers bellow
+     * this one are the same, with the same compositing properties.
+     */
+    private InputKey calcInputKey(BufferedImage input) {
+        List<LayerState> layersBellow = new ArrayList<>();
+        Layer layer = this;
+        while (true) {
+            LayerHolder layerHolder = layer.getHolder();
+            int index = layerHolder.indexOf(layer);
+            for (int i = 0; i < index; i++) {
+                layersBellow.add(new LayerState(layerHolder.getLayer(i)));
+            }
+            // the layers of a pass-through group are applied
+            // on the layers bellow the group
+            if (layerHolder instanceof LayerGroup group && group.isPassThrough()) {
+                layer = group;
+            } else {
+                break;
+            }
+        }
+        return new InputKey(comp.getContentVersion(),
+            input.getWidth(), input.getHeight(), layersBellow);
+    }
+
+    private synchronized BufferedImage getCachedOutput(InputKey inputKey, Filter usedFilter) {
+        if (inputKey == null || usedFilter != cachedFilter || !inputKey.equals(cachedInputKey)) {
+            return null;
+        }
+        return outputCache.get();
+    }
+
+    private synchronized void storeCachedOutput(InputKey inputKey, Filter usedFilter, BufferedImage output) {
+        cachedFilter = usedFilter;
+        cachedInputKey = inputKey;
+        outputCache.set(output);
+    }
+
+    /**
+     * Returns the color mapping of this layer if it can be applied
+     * together with the neighboring adjustment layers, or null otherwise.
+     */
+    public ColorLookup getFusableLookup() {
+        if (usesMask() || !isNormalAndOpaque()
+            || !(filter instanceof FusableColorFilter fusableFilter)) {
+            return null;
+        }
+        synchronized (this) {
+            if (cachedLookup == null) {
+                cachedLookup = fusableFilter.createColorLookup();
+            }
+            return cachedLookup;
+        }
+    }
+
+    /**
+     * Must be called when the settings of the filter change.
+     */
+    protected synchronized void invalidateOutputCache() {
+        cachedFilter = null;
+        cachedInputKey = null;
+        cachedLookup = null;
+        outputCache.clear(true);
     }
 
     @Override
@@ -144,6 +257,13 @@ public class AdjustmentLayer extends Layer implements Filterable {
         // do nothing
     }
 
+    /**
+     * Returns true while the filter settings are edited in a dialog.
+     */
+    protected boolean isPreviewing() {
+        return lastFilter != null;
+    }
+
     @Override
     public void setShowOriginal(boolean b) {
         showOriginal = b;
@@ -152,11 +272,13 @@ public class AdjustmentLayer extends Layer implements Filterable {
         filter = lastFilter;
         lastFilter = tmp;
 
+        invalidateOutputCache();
         holder.update();
     }
 
     @Override
     public void previewingFilterSettingsChanged(Filter filter, boolean first, Component busyCursorParent) {
+        invalidateOutputCache();
         if (!first) {
             holder.update();
         }
@@ -170,6 +292,7 @@ public class AdjustmentLayer extends Layer implements Filterable {
     public void onFilterDialogAccepted(String filterName) {
         if (showOriginal) {
             filter = lastFilter;
+            invalidateOutputCache();
             holder.update();
         } else {
             if (!tentative) {
@@ -191,6 +314,7 @@ public class AdjustmentLayer extends Layer implements Filterable {
             // when the filter was copied, then it wasn't adjusted to the image size
             updateOptions();
 
+            invalidateOutputCache();
             holder.update();
         }
         lastFilter = null;
@@ -200,6 +324,7 @@ public class AdjustmentLayer extends Layer implements Filterable {
     public void updateOptions() {
         if (filter instanceof ParametrizedFilter pf) {
             pf.getParamSet().updateOptions(this, false);
+            invalidateOutputCache();
         }
     }
 
@@ -221,6 +346,7 @@ public class AdjustmentLayer extends Layer implements Filterable {
     public void setFilter(Filter filter) {
         this.filter = filter;
 
+        invalidateOutputCache();
         holder.update();
     }
 
@@ -238,4 +364,14 @@ public class AdjustmentLayer extends Layer implements Filterable {
         return node;
     }
 
+    private record LayerState(Layer layer, boolean visible,
+                              float opacity, BlendingMode blendingMode) {
+        LayerState(Layer layer) {
+            this(layer, layer.isVisible(), layer.getOpacity(), layer.getBlendingMode());
+        }
+    }
+
+    private record InputKey(long contentVersion, int width, int height,
+                            List<LayerState> layersBellow) {
+    }
 }
@@ -146,6 +146,11 @@ public class ColorFillLayer extends Layer {
         Colors.fillWith(color, g, canvas.getWidth(), canvas.getHeight());
     }
 
+    @Override
+    protected boolean prepareBandPainting() {
+        return !usesMask();
+    }
+
     @Override
     protected BufferedImage applyOnImage(BufferedImage src) {
         throw new UnsupportedOperationException();
@@ -94,7 +94,8 @@ public interface Drawable extends Filterable {
             BufferedImage src = getFilterSourceImage();
             assert src != null;
 
-            BufferedImage dest = filter.transformImage(src);
+            // the results of the previews are not worth caching
+            BufferedImage dest = filter.transformImage(src, !context.isPreview());
             assert dest != null;
 
             if (context.isPreview()) {
@@ -105,17 +106,7 @@ public interface Drawable extends Filterable {
         } catch (OutOfMemoryError e) {
             Dialogs.showOutOfMemoryDialog(e);
         } catch (Throwable e) {
-            String errorDetails = String.format(
-                "Error while running the filter '%s'%n" +
-                    "composition = '%s'%n" +
-                    "layer = '%s' (%s)%n" +
-                    "params = %s",
-                filter.getName(),
-                getComp().getDebugName(),
-                getName(), getClass().getSimpleName(),
-                filter.paramsAsString());
-
-            var ise = new IllegalStateException(errorDetails, e);
+            var ise = createFilterException(filter, e);
             if (RandomGUITest.isRunning()) {
                 throw ise; // we can debug the exact filter parameters only in RandomGUITest
             }
@@ -123,6 +114,24 @@ public interface Drawable extends Filterable {
         }
     }
 
+    /**
+     * Wraps an error thrown by the given filter while running
+     * on this drawable, adding the details needed for debugging.
+     */
+    default IllegalStateException createFilterException(Filter filter, Throwable cause) {
+        String errorDetails = String.format(
+            "Error while running the filter '%s'%n" +
+                "composition = '%s'%n" +
+                "layer = '%s' (%s)%n" +
+                "params = %s",
+            filter.getName(),
+            getComp().getDebugName(),
+            getName(), getClass().getSimpleName(),
+            filter.paramsAsString());
+
+        return new IllegalStateException(errorDetails, cause);
+    }
+
     void update();
 
     void repaintRegion(PPoint start, PPoint end, double thickness);
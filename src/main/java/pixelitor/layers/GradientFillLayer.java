@@ -93,8 +93,9 @@ public class GradientFillLayer extends ContentLayer {
             int height = comp.getCanvasHeight();
             // the custom blending modes don't work with gradients
             boolean useCachedImage = g.getComposite().getClass() != AlphaComposite.class
-                // and custom gradients using transparency also have a problem
-                || gradient.isCustomTransparency();
+                // and the custom gradients are too slow to recalculate
+                // for each repaint (they also have a problem with transparency)
+                || gradient.isCustom();
             if (useCachedImage) {
                 if (cachedImage == null) {
                     cachedImage = ImageUtils.createSysCompatibleImage(width, height);
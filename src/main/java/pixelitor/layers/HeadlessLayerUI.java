@@ -0,0 +1,124 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.layers;
+
+import pixelitor.utils.debug.DebugNode;
+
+/**
+ * The {@link LayerUI} implementation used when Pixelitor
+ * runs without a GUI, for example in batch mode.
+ * It only keeps track of the state.
+ */
+public class HeadlessLayerUI implements LayerUI {
+    private Layer layer;
+    private boolean eyeOpen = true;
+    private boolean hasMaskIcon = false;
+
+    public HeadlessLayerUI(Layer layer) {
+        this.layer = layer;
+    }
+
+    @Override
+    public void updateName() {
+    }
+
+    @Override
+    public boolean hasMaskIcon() {
+        return hasMaskIcon;
+    }
+
+    @Override
+    public String getLayerName() {
+        return layer.getName();
+    }
+
+    @Override
+    public Layer getLayer() {
+        return layer;
+    }
+
+    @Override
+    public void setOpenEye(boolean newVisibility) {
+        eyeOpen = newVisibility;
+    }
+
+    @Override
+    public boolean isEyeOpen() {
+        return eyeOpen;
+    }
+
+    @Override
+    public void addMaskIcon() {
+        hasMaskIcon = true;
+    }
+
+    @Override
+    public void removeMaskIcon() {
+        hasMaskIcon = false;
+    }
+
+    @Override
+    public void updateLayerIconImageAsync(Layer layer) {
+    }
+
+    @Override
+    public void updateSelectionState() {
+    }
+
+    @Override
+    public void updateChildrenPanel() {
+    }
+
+    @Override
+    public void setSelected(boolean b) {
+    }
+
+    @Override
+    public void changeLayer(Layer newLayer) {
+        layer = newLayer;
+    }
+
+    @Override
+    public int getId() {
+        return 0;
+    }
+
+    @Override
+    public void repaint() {
+    }
+
+    @Override
+    public void setParentUI(LayerUI parentUI) {
+    }
+
+    @Override
+    public void detach() {
+    }
+
+    @Override
+    public boolean checkInvariants() {
+        return true;
+    }
+
+    @Override
+    public DebugNode createDebugNode(String key) {
+        DebugNode node = new DebugNode(key, this);
+        node.addString("layer", layer.getName());
+        return node;
+    }
+}
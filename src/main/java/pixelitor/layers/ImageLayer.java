@@ -47,6 +47,7 @@ import java.util.concurrent.CompletableFuture;
 
 import static java.awt.RenderingHints.KEY_INTERPOLATION;
 import static java.awt.RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 import static pixelitor.FilterContext.BATCH_AUTOMATE;
@@ -1077,6 +1078,43 @@ public class ImageLayer extends ContentLayer implements Drawable {
         }
     }
 
+    @Override
+    protected boolean paintMaskedDirectly(Graphics2D g) {
+        if (tmpDrawingLayer != null || (Tools.isShapesDrawing() && isActive() && !isMaskEditing())) {
+            return false;
+        }
+        BufferedImage visibleImage = getVisibleImage();
+        int tx = getTx();
+        int ty = getTy();
+
+        // only the part of the layer that is inside the canvas is painted
+        Rectangle area = new Rectangle(tx, ty, visibleImage.getWidth(), visibleImage.getHeight())
+            .intersection(comp.getCanvas().getBounds());
+        Rectangle clip = g.getClipBounds();
+        if (clip != null) { // only one band is painted
+            area = area.intersection(clip);
+        }
+        if (area.isEmpty()) {
+            return true;
+        }
+        BufferedImage maskedImage = mask.createMaskedImage(visibleImage, tx, ty, area);
+        if (maskedImage == null) {
+            return false;
+        }
+        g.drawImage(maskedImage, area.x, area.y, null);
+        return true;
+    }
+
+    @Override
+    protected boolean prepareBandPainting() {
+        if (tmpDrawingLayer != null || (Tools.isShapesDrawing() && isActive())) {
+            return false;
+        }
+        BufferedImage visibleImage = getVisibleImage();
+        // otherwise each band would create a canvas-sized masked image
+        return !usesMask() || visibleImage.getType() == TYPE_INT_ARGB;
+    }
+
     protected void paintLayerOnGraphicsWOTmpLayer(Graphics2D g,
                                                   BufferedImage visibleImage,
                                                   boolean firstVisibleLayer) {
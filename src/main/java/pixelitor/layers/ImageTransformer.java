@@ -18,12 +18,15 @@
 package pixelitor.layers;
 
 import pixelitor.Composition;
+import pixelitor.utils.CachedImage;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.debug.DebugNode;
 import pixelitor.utils.debug.DebugNodes;
 
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 import java.io.Serializable;
 
@@ -40,7 +43,7 @@ public class ImageTransformer implements ImageSource, Serializable {
     private int targetWidth;
     private int targetHeight;
 
-    private transient BufferedImage cachedImage;
+    private transient CachedImage cachedImage = createCache();
 
     public ImageTransformer(Composition content, AffineTransform transform,
                             int targetWidth, int targetHeight) {
@@ -51,12 +54,23 @@ public class ImageTransformer implements ImageSource, Serializable {
         assert transform != null;
     }
 
+    private static CachedImage createCache() {
+        return new CachedImage("smart object transformed image", CachedImage.Cost.MEDIUM);
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+
+        cachedImage = createCache();
+    }
+
     public ImageTransformer copy(Composition newContent) {
         ImageTransformer copy = new ImageTransformer(newContent, new AffineTransform(transform), targetWidth, targetHeight);
 
         // should be safe to share because the new content
         // is either identical to the old one or a copy of it
-        copy.cachedImage = cachedImage;
+        copy.cachedImage.set(cachedImage.peek());
 
         return copy;
     }
@@ -73,12 +87,14 @@ public class ImageTransformer implements ImageSource, Serializable {
 
     @Override
     public BufferedImage getImage() {
-        if (cachedImage != null) {
-            return cachedImage;
+        BufferedImage image = cachedImage.get();
+        if (image != null) {
+            return image;
         }
-        cachedImage = ImageUtils.applyTransform(content.getCompositeImage(),
+        image = ImageUtils.applyTransform(content.getCompositeImage(),
             transform, targetWidth, targetHeight);
-        return cachedImage;
+        cachedImage.set(image);
+        return image;
     }
 
     public void concatenate(AffineTransform newScaling, int targetWidth, int targetHeight) {
@@ -88,11 +104,11 @@ public class ImageTransformer implements ImageSource, Serializable {
     }
 
     public BufferedImage getCachedImage() {
-        return cachedImage;
+        return cachedImage.peek();
     }
 
     public void invalidateCache() {
-        cachedImage = null;
+        cachedImage.clear(false);
     }
 
     @Override
@@ -102,9 +118,10 @@ public class ImageTransformer implements ImageSource, Serializable {
         node.addInt("target width", targetWidth);
         node.addInt("target height", targetHeight);
 
-        node.addBoolean("cached", cachedImage != null);
-        if (cachedImage != null) {
-            node.addString("cached image size", cachedImage.getWidth() + "x" + cachedImage.getHeight());
+        BufferedImage image = cachedImage.peek();
+        node.addBoolean("cached", image != null);
+        if (image != null) {
+            node.addString("cached image size", image.getWidth() + "x" + image.getHeight());
         }
 
         node.add(DebugNodes.createTransformNode(transform, "transform"));
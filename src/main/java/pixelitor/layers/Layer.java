@@ -230,7 +230,7 @@ public abstract class Layer implements Serializable, Debuggable {
         visible = newVisibility;
 
         if (update) {
-            holder.update();
+            compositingPropertiesChanged();
         }
 
         if (hasUI()) {
@@ -242,6 +242,19 @@ public abstract class Layer implements Serializable, Debuggable {
         }
     }
 
+    /**
+     * Called when the visibility, opacity or blending
+     * mode of this layer changed.
+     */
+    private void compositingPropertiesChanged() {
+        if (holder == comp) {
+            comp.layerPropertiesChanged();
+        } else {
+            // changes the content of the group or smart object
+            holder.update();
+        }
+    }
+
     public Object getVisibilityAsORAString() {
         return isVisible() ? "visible" : "hidden";
     }
@@ -273,7 +286,7 @@ public abstract class Layer implements Serializable, Debuggable {
         }
 
         if (update) {
-            holder.update();
+            compositingPropertiesChanged();
         }
 
         if (addToHistory) {
@@ -304,7 +317,7 @@ public abstract class Layer implements Serializable, Debuggable {
         }
 
         if (update) {
-            holder.update();
+            compositingPropertiesChanged();
         }
 
         if (addToHistory) {
@@ -716,13 +729,15 @@ public abstract class Layer implements Serializable, Debuggable {
     public abstract void paintLayerOnGraphics(Graphics2D g, boolean firstVisibleLayer);
 
     /**
-     * Returns the masked image for the non-adjustment case.
-     * The returned image is canvas-sized, and the masks and the
-     * translations are taken into account
+     * Paints the masked layer for the non-adjustment case.
+     * The masks and the translations are taken into account
      */
     private void paintLayerOnGraphicsWithMask(Graphics2D g, boolean firstVisibleLayer) {
-        // 1. create the masked image
-        // TODO the masked image should be cached
+        if (paintMaskedDirectly(g)) {
+            return;
+        }
+
+        // 1. create the canvas-sized masked image
         var maskedImage = new BufferedImage(
             comp.getCanvasWidth(), comp.getCanvasHeight(), TYPE_INT_ARGB);
         Graphics2D mig = maskedImage.createGraphics();
@@ -736,6 +751,26 @@ public abstract class Layer implements Serializable, Debuggable {
         g.drawImage(maskedImage, 0, 0, null);
     }
 
+    /**
+     * Paints this layer with the mask applied, without painting it
+     * into a canvas-sized temporary image first. The composite of
+     * the graphics is already set up. Returns false if this isn't
+     * possible in the current state of the layer.
+     */
+    protected boolean paintMaskedDirectly(Graphics2D g) {
+        return false;
+    }
+
+    /**
+     * Returns true if this layer can be painted by several threads at
+     * the same time, each into its own clipped band of the composite image.
+     * It's called on the compositing thread, so the lazily calculated
+     * state of the layer can be prepared here.
+     */
+    protected boolean prepareBandPainting() {
+        return false;
+    }
+
     /**
      * Used by adjustment layers and watermarked text layers
      */
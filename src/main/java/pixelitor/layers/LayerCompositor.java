@@ -0,0 +1,136 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.layers;
+
+import pixelitor.ThreadPool;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * Composites a stack of layers onto an image. The consecutive layers
+ * that support it are painted in parallel: the image is split into
+ * horizontal bands, and each band gets the whole run of layers, in order.
+ * Adjustment layers and the other layers need the full image, so
+ * they are applied one after the other, between the parallel runs.
+ * The independent smart objects are evaluated concurrently up front,
+ * see {@link SmartObjectEvaluator}.
+ */
+public final class LayerCompositor {
+    private static final int MIN_BAND_HEIGHT = 32;
+
+    private LayerCompositor() {
+        // should not be instantiated
+    }
+
+    /**
+     * Applies the given layers to the given image, and returns the
+     * result, which is a new image if there were adjustment layers.
+     */
+    public static BufferedImage composite(List<Layer> layers, BufferedImage imageSoFar,
+                                          boolean firstVisibleLayer) {
+        SmartObjectEvaluator.evaluateDirty(layers);
+
+        Graphics2D g = null;
+        int i = 0;
+        while (i < layers.size()) {
+            Layer layer = layers.get(i);
+            if (!layer.isVisible()) {
+                i++;
+                continue;
+            }
+
+            if (!firstVisibleLayer) {
+                var fused = AdjustmentFusion.applyRun(layers, i, imageSoFar);
+                if (fused != null) {
+                    imageSoFar = fused.image();
+                    if (g != null) {
+                        g.dispose();
+                        g = null;
+                    }
+                    i = fused.end();
+                    continue;
+                }
+            }
+
+            int runEnd = findBandPaintableRun(layers, i);
+            if (runEnd > i) {
+                paintInBands(layers, i, runEnd, imageSoFar, firstVisibleLayer);
+                firstVisibleLayer = false;
+                i = runEnd;
+                continue;
+            }
+
+            if (g == null) {
+                g = imageSoFar.createGraphics();
+            }
+            BufferedImage result = layer.applyLayer(g, imageSoFar, firstVisibleLayer);
+            if (result != null) { // adjustment layer or watermarking text layer
+                imageSoFar = result;
+                g.dispose();
+                g = null;
+            }
+            firstVisibleLayer = false;
+            i++;
+        }
+        if (g != null) {
+            g.dispose();
+        }
+        return imageSoFar;
+    }
+
+    /**
+     * Returns the index after the last layer of the run starting at the
+     * given index in which every visible layer can be painted in bands.
+     */
+    private static int findBandPaintableRun(List<Layer> layers, int start) {
+        int end = start;
+        while (end < layers.size()) {
+            Layer layer = layers.get(end);
+            if (layer.isVisible() && !layer.prepareBandPainting()) {
+                break;
+            }
+            end++;
+        }
+        return end;
+    }
+
+    private static void paintInBands(List<Layer> layers, int start, int end,
+                                     BufferedImage img, boolean firstVisibleLayer) {
+        int width = img.getWidth();
+        ThreadPool.forEachBand(img.getHeight(), MIN_BAND_HEIGHT, (startY, endY) -> {
+            int bandHeight = endY - startY;
+            BufferedImage bandImage = img.getSubimage(0, startY, width, bandHeight);
+            Graphics2D g = bandImage.createGraphics();
+            // the layers paint in the coordinate system of the whole image
+            g.translate(0, -startY);
+            g.clipRect(0, startY, width, bandHeight);
+
+            boolean first = firstVisibleLayer;
+            for (int i = start; i < end; i++) {
+                Layer layer = layers.get(i);
+                if (layer.isVisible()) {
+                    layer.applyLayer(g, img, first);
+                    first = false;
+                }
+            }
+            g.dispose();
+        });
+    }
+}
@@ -23,6 +23,7 @@ import pixelitor.CopyType;
 import pixelitor.compactions.Flip;
 import pixelitor.gui.utils.PAction;
 import pixelitor.history.*;
+import pixelitor.utils.CachedImage;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Messages;
 import pixelitor.utils.QuadrantAngle;
@@ -54,11 +55,11 @@ public class LayerGroup extends CompositeLayer {
 
     private List<Layer> layers;
 
-    private transient BufferedImage thumb;
+    private transient CachedImage thumb = createThumbCache();
     private transient boolean needsIconUpdate = false;
 
     // used only for isolated images
-    private transient BufferedImage cachedImage;
+    private transient CachedImage cachedImage = createImageCache();
 
     private static int groupCounter = 0;
 
@@ -76,11 +77,19 @@ public class LayerGroup extends CompositeLayer {
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
 
-        cachedImage = null;
-        thumb = null;
+        cachedImage = createImageCache();
+        thumb = createThumbCache();
         needsIconUpdate = false;
     }
 
+    private static CachedImage createImageCache() {
+        return new CachedImage("layer group image", CachedImage.Cost.MEDIUM);
+    }
+
+    private static CachedImage createThumbCache() {
+        return new CachedImage("layer group thumbnail", CachedImage.Cost.LOW);
+    }
+
     public static String createName() {
         return "layer group " + (++groupCounter);
     }
@@ -129,19 +138,7 @@ public class LayerGroup extends CompositeLayer {
     @Override
     public BufferedImage applyLayer(Graphics2D g, BufferedImage imageSoFar, boolean firstVisibleLayer) {
         if (isPassThrough()) {
-            for (Layer layer : layers) {
-                if (layer.isVisible()) {
-                    BufferedImage result = layer.applyLayer(g, imageSoFar, firstVisibleLayer);
-                    if (result != null) { // adjustment layer or watermarking text layer
-                        imageSoFar = result;
-                        if (g != null) {
-                            g.dispose();
-                        }
-                        g = imageSoFar.createGraphics();
-                    }
-                    firstVisibleLayer = false;
-                }
-            }
+            imageSoFar = LayerCompositor.composite(layers, imageSoFar, firstVisibleLayer);
         } else {
             // TODO apply mask
             g.setComposite(blendingMode.getComposite(getOpacity()));
@@ -156,21 +153,23 @@ public class LayerGroup extends CompositeLayer {
         holder.update(updateHistogram);
     }
 
-    private void recalculateCachedImage() {
+    private BufferedImage recalculateCachedImage() {
         if (isPassThrough()) {
-            cachedImage = null;
-        } else {
-            cachedImage = ImageUtils.calculateCompositeImage(layers, comp.getCanvas());
-            if (needsIconUpdate) {
-                updateIconImage();
-                needsIconUpdate = false;
-            }
+            cachedImage.clear(false);
+            return null;
+        }
+        BufferedImage image = ImageUtils.calculateCompositeImage(layers, comp.getCanvas());
+        cachedImage.set(image);
+        if (needsIconUpdate) {
+            updateIconImage();
+            needsIconUpdate = false;
         }
+        return image;
     }
 
     @Override
     public void invalidateImageCache() {
-        cachedImage = null;
+        cachedImage.clear(false);
         holder.invalidateImageCache();
     }
 
@@ -189,10 +188,11 @@ public class LayerGroup extends CompositeLayer {
     }
 
     private BufferedImage getCachedImage() {
-        if (cachedImage == null) {
-            recalculateCachedImage();
+        BufferedImage image = cachedImage.get();
+        if (image == null) {
+            image = recalculateCachedImage();
         }
-        return cachedImage;
+        return image;
     }
 
     @Override
@@ -216,7 +216,7 @@ public class LayerGroup extends CompositeLayer {
         if (update) {
             if (wasPassThrough != isPassThrough()) {
                 recalculateCachedImage();
-                thumb = null;
+                thumb.clear(false);
                 updateIconImage();
             }
             update();
@@ -379,7 +379,7 @@ public class LayerGroup extends CompositeLayer {
 
     @Override
     public void smartObjectChanged(boolean linked) {
-        cachedImage = null;
+        cachedImage.clear(false);
         holder.smartObjectChanged(linked);
     }
 
@@ -408,31 +408,34 @@ public class LayerGroup extends CompositeLayer {
     @Override
     public void updateIconImage() {
         if (!isPassThrough()) {
-            if (cachedImage == null) {
+            if (!cachedImage.isPresent()) {
                 needsIconUpdate = true; // postpone
                 return;
             }
         }
-        thumb = null;
+        thumb.clear(false);
         super.updateIconImage();
     }
 
     @Override
     public BufferedImage createIconThumbnail() {
+        BufferedImage thumbImage = thumb.get();
         if (isPassThrough()) {
-            if (thumb == null) {
-                thumb = ImageUtils.createCircleThumb(new Color(0, 138, 0));
+            if (thumbImage == null) {
+                thumbImage = ImageUtils.createCircleThumb(new Color(0, 138, 0));
             }
         } else {
-            if (cachedImage != null) {
-                thumb = createThumbnail(cachedImage, thumbSize, thumbCheckerBoardPainter);
+            BufferedImage image = cachedImage.get();
+            if (image != null) {
+                thumbImage = createThumbnail(image, thumbSize, thumbCheckerBoardPainter);
             } else {
-                // should not happen
-                thumb = ImageUtils.createCircleThumb(new Color(0, 0, 203));
+                // should not happen, unless the cache manager evicted it
+                thumbImage = ImageUtils.createCircleThumb(new Color(0, 0, 203));
             }
         }
+        thumb.set(thumbImage);
 
-        return thumb;
+        return thumbImage;
     }
 
     @Override
@@ -593,8 +596,8 @@ public class LayerGroup extends CompositeLayer {
     public DebugNode createDebugNode(String key) {
         DebugNode node = super.createDebugNode(key);
 
-        node.addBoolean("has cached image", cachedImage != null);
-        node.addBoolean("has thumb", thumb != null);
+        node.addBoolean("has cached image", cachedImage.isPresent());
+        node.addBoolean("has thumb", thumb.isPresent());
         for (Layer layer : layers) {
             node.add(layer.createDebugNode());
         }
@@ -18,6 +18,7 @@
 package pixelitor.layers;
 
 import pixelitor.Composition;
+import pixelitor.ThreadPool;
 import pixelitor.colors.Colors;
 import pixelitor.history.History;
 import pixelitor.history.LinkLayerMaskEdit;
@@ -31,14 +32,13 @@ import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Composite;
 import java.awt.Graphics2D;
-import java.awt.image.BufferedImage;
-import java.awt.image.ColorModel;
-import java.awt.image.IndexColorModel;
-import java.awt.image.WritableRaster;
+import java.awt.Rectangle;
+import java.awt.image.*;
 import java.io.Serial;
 
 import static java.awt.AlphaComposite.DstIn;
 import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
 import static pixelitor.Views.thumbSize;
 import static pixelitor.utils.ImageUtils.createThumbnail;
 
@@ -49,6 +49,8 @@ public class LayerMask extends ImageLayer {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    private static final int MIN_BAND_HEIGHT = 32;
+
     private transient BufferedImage transparencyImage;
     public static final ColorModel TRANSPARENCY_COLOR_MODEL;
     public static final ColorModel RUBYLITH_COLOR_MODEL;
@@ -96,12 +98,71 @@ public class LayerMask extends ImageLayer {
     }
 
     public void applyTo(BufferedImage in) {
+        if (in.getType() == TYPE_INT_ARGB) {
+            MaskData maskData = MaskData.of(getTransparencyImage(), 0, 0);
+            if (maskData != null && in.getRaster().getDataBuffer() instanceof DataBufferInt db) {
+                // multiply the alpha values in place, without a Java2D pass
+                WritableRaster raster = in.getRaster();
+                var sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+                int scanline = sm.getScanlineStride();
+                int offset = db.getOffset() + sm.getOffset(
+                    -raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+                int[] pixels = db.getData();
+                int width = in.getWidth();
+                ThreadPool.forEachBand(in.getHeight(), MIN_BAND_HEIGHT, (startY, endY) -> {
+                    for (int y = startY; y < endY; y++) {
+                        maskData.maskRow(pixels, offset + y * scanline, 0, y, width);
+                    }
+                });
+                return;
+            }
+        }
+
         Graphics2D g = in.createGraphics();
         g.setComposite(DstIn);
         g.drawImage(getTransparencyImage(), 0, 0, null);
         g.dispose();
     }
 
+    /**
+     * Returns a new image with the given area (in canvas coordinates) of
+     * the given TYPE_INT_ARGB source image, which is positioned at (srcX, srcY).
+     * The pixels are copied and masked in a single pass, so this is
+     * cheaper than painting the source into a canvas-sized image and
+     * applying the mask with the DstIn composite.
+     * Returns null if the image data can't be accessed directly.
+     */
+    public BufferedImage createMaskedImage(BufferedImage src, int srcX, int srcY, Rectangle area) {
+        if (src.getType() != TYPE_INT_ARGB) {
+            return null;
+        }
+        MaskData maskData = MaskData.of(getTransparencyImage(), getTx(), getTy());
+        if (maskData == null) {
+            return null;
+        }
+
+        WritableRaster srcRaster = src.getRaster();
+        var srcSM = (SinglePixelPackedSampleModel) srcRaster.getSampleModel();
+        var srcDB = (DataBufferInt) srcRaster.getDataBuffer();
+        int[] srcPixels = srcDB.getData();
+        int srcScanline = srcSM.getScanlineStride();
+        int srcOffset = srcDB.getOffset() + srcSM.getOffset(
+            area.x - srcX - srcRaster.getSampleModelTranslateX(),
+            area.y - srcY - srcRaster.getSampleModelTranslateY());
+
+        var dest = new BufferedImage(area.width, area.height, TYPE_INT_ARGB);
+        int[] destPixels = ((DataBufferInt) dest.getRaster().getDataBuffer()).getData();
+        int width = area.width;
+        ThreadPool.forEachBand(area.height, MIN_BAND_HEIGHT, (startY, endY) -> {
+            for (int j = startY; j < endY; j++) {
+                int destOffset = j * width;
+                System.arraycopy(srcPixels, srcOffset + j * srcScanline, destPixels, destOffset, width);
+                maskData.maskRow(destPixels, destOffset, area.x, area.y + j, width);
+            }
+        });
+        return dest;
+    }
+
     public void updateTransparencyImage() {
         assert image.getType() == TYPE_BYTE_GRAY;
         assert image.getColorModel() != TRANSPARENCY_COLOR_MODEL;
@@ -280,4 +341,47 @@ public class LayerMask extends ImageLayer {
 
         return node;
     }
+
+    /**
+     * Direct access to the bytes of a mask image that is
+     * positioned at the given bounds in the canvas.
+     */
+    private record MaskData(byte[] data, int offset, int scanline, Rectangle bounds) {
+        static MaskData of(BufferedImage maskImage, int x, int y) {
+            WritableRaster raster = maskImage.getRaster();
+            if (!(raster.getDataBuffer() instanceof DataBufferByte db)
+                || !(raster.getSampleModel() instanceof ComponentSampleModel sm)
+                || sm.getPixelStride() != 1) {
+                return null;
+            }
+            int offset = db.getOffset() + sm.getOffset(
+                -raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+            Rectangle bounds = new Rectangle(x, y, maskImage.getWidth(), maskImage.getHeight());
+            return new MaskData(db.getData(), offset, sm.getScanlineStride(), bounds);
+        }
+
+        /**
+         * Multiplies the alpha of the given non-premultiplied ARGB row,
+         * which starts at the canvas position (x, y), by the mask values.
+         * Pixels outside the mask image are unchanged, like with DstIn.
+         */
+        void maskRow(int[] pixels, int pixelsOffset, int x, int y, int width) {
+            int maskY = y - bounds.y;
+            if (maskY < 0 || maskY >= bounds.height) {
+                return;
+            }
+            int start = Math.max(x, bounds.x);
+            int end = Math.min(x + width, bounds.x + bounds.width);
+            int maskIndex = offset + maskY * scanline + start - bounds.x;
+            int pixelIndex = pixelsOffset + start - x;
+            for (int i = start; i < end; i++, maskIndex++, pixelIndex++) {
+                int m = data[maskIndex] & 0xFF;
+                if (m != 0xFF) {
+                    int argb = pixels[pixelIndex];
+                    int alpha = ((argb >>> 24) * m + 127) / 255;
+                    pixels[pixelIndex] = alpha == 0 ? 0 : alpha << 24 | argb & 0x00_FF_FF_FF;
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,398 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.layers;
+
+import pixelitor.Composition;
+import pixelitor.CopyType;
+import pixelitor.GUIMode;
+import pixelitor.Views;
+import pixelitor.gui.PixelitorWindow;
+import pixelitor.gui.View;
+import pixelitor.io.IO;
+import pixelitor.utils.ImageUtils;
+import pixelitor.utils.Messages;
+
+import java.awt.EventQueue;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static pixelitor.utils.Threads.onEDT;
+
+/**
+ * Keeps track of the files linked by smart objects. Each linked file
+ * is decoded only once, and the loaded composition is shared as read-only
+ * content by all the smart objects linking it, even in different documents.
+ * A document gets its own copy only when the content is edited, so that
+ * the edits don't change the other documents outside their histories.
+ * The loaded version is kept only while it has dependents.
+ *
+ * The directories of the linked files are watched with a {@link WatchService},
+ * so that changes are noticed while the app is active. If the watch service
+ * isn't available, then the changes are still checked for when the app
+ * is activated. A changed file is reloaded once for all its dependents,
+ * and only the dependents whose pixels actually changed are updated.
+ *
+ * Files can also be loaded while deserializing on a background thread,
+ * otherwise it's used only on the EDT and on the watcher thread.
+ */
+public final class LinkedFileRegistry {
+    private static final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    // the watched directories
+    private static final Map<WatchKey, Path> watchKeys = new HashMap<>();
+    private static WatchService watchService;
+    private static boolean watchServiceFailed = false;
+
+    private LinkedFileRegistry() {
+        // should not be instantiated
+    }
+
+    private static class Entry {
+        private final File file;
+
+        // the modification time of the file when it was last loaded or checked
+        private volatile long fileTime;
+
+        // the last loaded version, shared by the dependents, never edited
+        private volatile Composition loaded;
+
+        // weak, because deleted smart objects don't have to be updated
+        private final Set<SmartObject> dependents =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+        // not null while a reload is running
+        private volatile CompletableFuture<Composition> reloading;
+
+        Entry(File file) {
+            this.file = file;
+        }
+
+        boolean isUpToDate() {
+            return loaded != null && file.lastModified() == fileTime;
+        }
+
+        boolean isUnused() {
+            return dependents.isEmpty() && reloading == null;
+        }
+    }
+
+    private static Path keyOf(File file) {
+        return file.toPath().toAbsolutePath().normalize();
+    }
+
+    private static Entry getEntry(File file) {
+        Path path = keyOf(file);
+        Entry entry = entries.computeIfAbsent(path, p -> new Entry(file));
+        // not in computeIfAbsent, because it can take a while
+        watch(path);
+        return entry;
+    }
+
+    private static Composition copyContent(Composition content, File file) {
+        Composition copy = content.copy(CopyType.DUPLICATE_COMP, false);
+        copy.setFile(file);
+        return copy;
+    }
+
+    /**
+     * Returns the shared content of the given linked file, which is
+     * loaded only if it isn't already loaded and up to date.
+     * It must be copied with {@link #copyForEditing} before editing.
+     */
+    public static Composition loadSync(File file) {
+        Entry entry = getEntry(file);
+        if (!entry.isUpToDate()) {
+            entry.fileTime = file.lastModified();
+            entry.loaded = IO.loadCompSync(file);
+        }
+        return entry.loaded;
+    }
+
+    /**
+     * Asynchronous version of {@link #loadSync(File)}.
+     */
+    public static CompletableFuture<Composition> loadAsync(File file) {
+        Entry entry = getEntry(file);
+        if (entry.isUpToDate()) {
+            return CompletableFuture.completedFuture(entry.loaded);
+        }
+        long fileTime = file.lastModified();
+        return IO.loadCompAsync(file)
+            .thenApplyAsync(loaded -> {
+                entry.fileTime = fileTime;
+                entry.loaded = loaded;
+                return loaded;
+            }, onEDT);
+    }
+
+    /**
+     * Returns true if the given content of a smart object linking the
+     * given file is the shared version, which can't be edited.
+     */
+    static boolean isShared(File file, Composition content) {
+        Entry entry = entries.get(keyOf(file));
+        return entry != null && entry.loaded == content;
+    }
+
+    /**
+     * Returns a copy of the given shared content, which
+     * can be edited without changing the other documents.
+     */
+    static Composition copyForEditing(File file, Composition content) {
+        return copyContent(content, file);
+    }
+
+    /**
+     * Registers the given smart object as a dependent of the given file.
+     */
+    static void addDependent(File file, SmartObject so) {
+        getEntry(file).dependents.add(so);
+    }
+
+    /**
+     * Unregisters the given smart object as a dependent of the given file.
+     * Returns true if its content is still shared with other dependents,
+     * which can happen only with the clones of the smart object.
+     */
+    static boolean removeDependent(File file, SmartObject so) {
+        Entry entry = entries.get(keyOf(file));
+        if (entry == null) {
+            return false;
+        }
+        entry.dependents.remove(so);
+
+        Composition content = so.getContent();
+        boolean shared = false;
+        for (SmartObject other : List.copyOf(entry.dependents)) {
+            if (other.getContent() == content) {
+                shared = true;
+                break;
+            }
+        }
+        releaseUnused();
+        return shared;
+    }
+
+    /**
+     * Called when the given composition is closed, so that
+     * the files that are no longer linked can be released.
+     */
+    public static void compClosed(Composition comp) {
+        if (comp.isSmartObjectContent()) {
+            // the content was only edited, its smart objects are still used
+            return;
+        }
+        Set<SmartObject> closed = Collections.newSetFromMap(new IdentityHashMap<>());
+        collectSmartObjects(comp, closed);
+        for (Entry entry : entries.values()) {
+            entry.dependents.removeAll(closed);
+        }
+        for (SmartObject so : closed) {
+            // a shared content must not keep the closed document alive
+            so.getContent().removeOwner(so);
+        }
+
+        // also releases the files linked only by deleted smart objects
+        // that were garbage collected since the last release
+        releaseUnused();
+    }
+
+    /**
+     * Collects the nested smart objects of the given composition, but not the
+     * ones within shared contents that are also used by other documents.
+     */
+    private static void collectSmartObjects(Composition comp, Set<SmartObject> closed) {
+        comp.forEachNestedLayer(SmartObject.class, so -> {
+            closed.add(so);
+            Composition content = so.getContent();
+            // with clones, it's true only for the last one
+            if (closed.containsAll(content.getOwners())) {
+                collectSmartObjects(content, closed);
+            }
+        });
+    }
+
+    private static void releaseUnused() {
+        if (entries.values().removeIf(Entry::isUnused)) {
+            unwatchUnused();
+        }
+    }
+
+    /**
+     * Called after the given composition was saved into the given file.
+     * The dependents that aren't editing it share a copy of the
+     * saved version, so that they don't have to reload it.
+     */
+    public static void contentSaved(File file, Composition comp) {
+        Entry entry = entries.get(keyOf(file));
+        if (entry != null) {
+            entry.fileTime = file.lastModified();
+            contentChanged(entry, copyContent(comp, file));
+        }
+    }
+
+    /**
+     * Checks whether the given linked file was changed since it was last
+     * loaded, and if yes, then asks the user whether to reload it.
+     * Returns the future of the reload, or null if it isn't reloaded.
+     */
+    static CompletableFuture<Composition> checkForChanges(File file, View view) {
+        Entry entry = getEntry(file);
+        if (entry.reloading != null) {
+            // another dependent already started reloading it
+            return entry.reloading;
+        }
+        long newFileTime = file.lastModified();
+        if (newFileTime <= entry.fileTime) {
+            return null;
+        }
+        // ask only once for all the dependents
+        entry.fileTime = newFileTime;
+
+        Views.activate(view);
+        if (!Messages.reloadFileQuestion(file)) {
+            return null;
+        }
+        CompletableFuture<Composition> reload = IO.loadCompAsync(file)
+            .thenApplyAsync(loaded -> {
+                contentChanged(entry, loaded);
+                return loaded;
+            }, onEDT)
+            .exceptionally(Messages::showExceptionOnEDT);
+        entry.reloading = reload;
+        // cleared only after it was set, even if the reload is already done
+        reload.whenComplete((loaded, e) -> entry.reloading = null);
+        return reload;
+    }
+
+    private static void contentChanged(Entry entry, Composition newVersion) {
+        Composition oldVersion = entry.loaded;
+        if (oldVersion == null || !haveSamePixels(oldVersion, newVersion)) {
+            entry.loaded = newVersion;
+        } // otherwise the dependents keep sharing the old version
+
+        // the comparisons are done once for each different old content
+        Composition shared = entry.loaded;
+        Map<Composition, Composition> newContents = new IdentityHashMap<>();
+        boolean updated = false;
+        for (SmartObject so : List.copyOf(entry.dependents)) {
+            if (so.isContentOpen()) {
+                // the open content is checked by its own view
+                continue;
+            }
+            Composition oldContent = so.getContent();
+            Composition newContent = newContents.computeIfAbsent(oldContent,
+                old -> old == shared || haveSamePixels(old, shared) ? old : shared);
+            if (newContent != oldContent) {
+                // only a grandparent composition might be opened
+                so.propagateContentChanges(newContent, true);
+                updated = true;
+            }
+            // otherwise the still valid cached images are kept
+        }
+        if (updated) {
+            Views.repaintAll();
+        }
+    }
+
+    private static boolean haveSamePixels(Composition a, Composition b) {
+        if (a.getCanvasWidth() != b.getCanvasWidth()
+            || a.getCanvasHeight() != b.getCanvasHeight()) {
+            return false;
+        }
+        return ImageUtils.haveSamePixels(a.getCompositeImage(), b.getCompositeImage());
+    }
+
+    private static synchronized void watch(Path file) {
+        Path dir = file.getParent();
+        if (dir == null || watchServiceFailed || watchKeys.containsValue(dir)) {
+            return;
+        }
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                Thread watcher = new Thread(LinkedFileRegistry::processEvents, "linked file watcher");
+                watcher.setDaemon(true);
+                watcher.start();
+            }
+            watchKeys.put(dir.register(watchService, ENTRY_MODIFY, ENTRY_CREATE), dir);
+        } catch (IOException | UnsupportedOperationException e) {
+            // the changes are still noticed when the app is activated
+            watchServiceFailed = true;
+            // it can be called while loading on a background thread
+            Messages.showExceptionOnEDT(e);
+        }
+    }
+
+    private static synchronized void unwatchUnused() {
+        Set<Path> usedDirs = new HashSet<>();
+        for (Path file : entries.keySet()) {
+            usedDirs.add(file.getParent());
+        }
+        watchKeys.entrySet().removeIf(e -> {
+            if (usedDirs.contains(e.getValue())) {
+                return false;
+            }
+            e.getKey().cancel();
+            return true;
+        });
+    }
+
+    // runs on the watcher thread
+    private static void processEvents() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir;
+            synchronized (LinkedFileRegistry.class) {
+                dir = watchKeys.get(key);
+            }
+            boolean linkedFileChanged = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (dir != null && event.context() instanceof Path name
+                    && entries.containsKey(dir.resolve(name))) {
+                    linkedFileChanged = true;
+                }
+            }
+            key.reset();
+
+            if (linkedFileChanged) {
+                EventQueue.invokeLater(LinkedFileRegistry::linkedFileChanged);
+            }
+        }
+    }
+
+    private static void linkedFileChanged() {
+        // if the app isn't active, then the change
+        // is handled when the app is activated
+        if (!GUIMode.isUnitTesting() && PixelitorWindow.get().isActive()) {
+            Views.appActivated();
+        }
+    }
+}
@@ -19,23 +19,22 @@ package pixelitor.layers;
 
 import com.jhlabs.image.PointFilter;
 import net.jafama.FastMath;
+import pixelitor.utils.ColorRange;
 
 import java.awt.Color;
 
 /**
  * A filter used internally by the "Mask from Color Range".
- * It creates a grayscale mask.
+ * It creates a grayscale mask. As a {@link ColorRange}, it
+ * can also create the final mask image directly.
  */
-class MaskFromColorRangeFilter extends PointFilter {
+class MaskFromColorRangeFilter extends PointFilter implements ColorRange {
     public static final int RGB = 1;
     public static final int HSB = 2;
     public static final int HUE = 3;
     public static final int SAT = 4;
     private int distType = HSB;
 
-    private static final int WHITE_PIXEL = 0xFF_FF_FF_FF;
-    private static final int BLACK_PIXEL = 0xFF_00_00_00;
-
     private double maxTolerance;
     private double minTolerance;
 
@@ -79,28 +78,24 @@ class MaskFromColorRangeFilter extends PointFilter {
 
     @Override
     public int filterRGB(int x, int y, int rgb) {
+        int v = coverage(rgb);
+        return 0xFF_00_00_00 | v << 16 | v << 8 | v;
+    }
+
+    @Override
+    public int coverage(int rgb) {
         double dist = calcDistance(rgb);
 
+        int v;
         if (dist > minTolerance) {
-            if (invert) {
-                return WHITE_PIXEL;
-            } else {
-                return BLACK_PIXEL;
-            }
+            v = 0;
         } else if (dist < maxTolerance) {
-            if (invert) {
-                return BLACK_PIXEL;
-            } else {
-                return WHITE_PIXEL;
-            }
+            v = 255;
         } else {
             // linear interpolation
-            int v = (int) ((minTolerance - dist) * 255 / (minTolerance - maxTolerance));
-            if (invert) {
-                v = 255 - v;
-            }
-            return 0xFF_00_00_00 | v << 16 | v << 8 | v;
+            v = (int) ((minTolerance - dist) * 255 / (minTolerance - maxTolerance));
         }
+        return invert ? 255 - v : v;
     }
 
     private double calcDistance(int rgb) {
@@ -316,11 +316,7 @@ public class MaskFromColorRangePanel extends JPanel {
     }
 
     private BufferedImage getMaskImage() {
-        MaskFromColorRangeFilter filter = createFilterFromSettings(lastColor);
-
-        BufferedImage rgbMask = filter.filter(srcImage, null);
-
-        return convertToGrayScaleImage(rgbMask);
+        return createFilterFromSettings(lastColor).createMaskImage(srcImage);
     }
 
     private Color getLastColor() {
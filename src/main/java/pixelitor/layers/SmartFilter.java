@@ -21,11 +21,13 @@ import pixelitor.Composition;
 import pixelitor.CopyType;
 import pixelitor.filters.Filter;
 import pixelitor.filters.gui.FilterWithGUI;
+import pixelitor.filters.lookup.ColorLookup;
 import pixelitor.filters.util.FilterAction;
 import pixelitor.filters.util.FilterSearchPanel;
 import pixelitor.gui.utils.PAction;
 import pixelitor.history.FilterChangedEdit;
 import pixelitor.history.History;
+import pixelitor.utils.CachedImage;
 import pixelitor.utils.Icons;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.debug.DebugNode;
@@ -54,7 +56,7 @@ public class SmartFilter extends AdjustmentLayer implements ImageSource {
     private static final long serialVersionUID = 1L;
 
     private ImageSource imageSource;
-    private transient BufferedImage cachedImage;
+    private transient CachedImage cachedImage = createCache();
     private SmartObject smartObject;
 
     // the smart filter that is applied after this one.
@@ -77,13 +79,13 @@ public class SmartFilter extends AdjustmentLayer implements ImageSource {
         this.smartObject = orig.smartObject;
 
         holder = smartObject;
-        cachedImage = orig.cachedImage; // safe to share
+        cachedImage.set(orig.cachedImage.peek()); // safe to share
     }
 
     @Serial
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         // defaults for transient fields
-        cachedImage = null;
+        cachedImage = createCache();
 
         in.defaultReadObject();
 
@@ -138,20 +140,33 @@ public class SmartFilter extends AdjustmentLayer implements ImageSource {
         }
     }
 
+    @Override
+    public ColorLookup getFusableLookup() {
+        // each smart filter caches its own output
+        return null;
+    }
+
     @Override
     public BufferedImage applyOnImage(BufferedImage src) {
-        if (cachedImage != null) {
-            return cachedImage;
+        BufferedImage image = cachedImage.get();
+        if (image != null) {
+            return image;
         }
         assert src != null;
-        cachedImage = filter.transformImage(src);
+        image = filter.transformImage(src, !isPreviewing());
 
         // TODO this check should not be necessary
-        if (cachedImage == src) {
-            cachedImage = ImageUtils.copyImage(cachedImage);
+        if (image == src) {
+            image = ImageUtils.copyImage(image);
         }
+        cachedImage.set(image);
 
-        return cachedImage;
+        return image;
+    }
+
+    private static CachedImage createCache() {
+        // the outputs of the smart filters are the most expensive to recalculate
+        return new CachedImage("smart filter output", CachedImage.Cost.HIGH);
     }
 
     public ImageSource getImageSource() {
@@ -216,14 +231,11 @@ public class SmartFilter extends AdjustmentLayer implements ImageSource {
     }
 
     private void invalidateCache() {
-        if (cachedImage != null) {
-            cachedImage.flush();
-            cachedImage = null;
-        }
+        cachedImage.clear(true);
     }
 
     public boolean hasCachedImage() {
-        return cachedImage != null;
+        return cachedImage.isPresent();
     }
 
     @Override
@@ -356,7 +368,7 @@ public class SmartFilter extends AdjustmentLayer implements ImageSource {
     }
 
     public BufferedImage getCachedImage() {
-        return cachedImage;
+        return cachedImage.peek();
     }
 
     @Override
@@ -391,7 +403,7 @@ public class SmartFilter extends AdjustmentLayer implements ImageSource {
         node.addString("imageSource class", imageSource.getClass().getSimpleName());
         node.add(imageSource.createDebugNode("imageSource"));
         node.addString("next", next == null ? "null" : next.toString());
-        node.addBoolean("cached", (cachedImage != null));
+        node.addBoolean("cached", cachedImage.isPresent());
 
         return node;
     }
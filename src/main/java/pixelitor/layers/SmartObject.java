@@ -44,7 +44,9 @@ import java.awt.image.BufferedImage;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -73,7 +75,6 @@ public class SmartObject extends CompositeLayer {
     // Null if the content is not linked.
     // This is the same object as the content's file field, but it's not transient.
     private File linkedContentFile;
-    private transient long linkedContentFileTime;
 
     // "Legacy" fields from Pixelitor 4.3.0, they are only
     // used for automatic migration of old pxc files
@@ -143,8 +144,8 @@ public class SmartObject extends CompositeLayer {
     public SmartObject(File file, Composition parent, Composition content) {
         super(parent, file.getName());
         linkedContentFile = file;
-        updateLinkedContentTime();
         setContent(content);
+        LinkedFileRegistry.addDependent(file, this);
 
         assert checkInvariants();
     }
@@ -170,7 +171,9 @@ public class SmartObject extends CompositeLayer {
         }
 
         linkedContentFile = orig.linkedContentFile;
-        linkedContentFileTime = orig.linkedContentFileTime;
+        if (linkedContentFile != null) {
+            LinkedFileRegistry.addDependent(linkedContentFile, this);
+        }
         if (orig.imageTransformer != null) {
             imageTransformer = orig.imageTransformer.copy(content);
             setBaseSource(imageTransformer);
@@ -210,10 +213,10 @@ public class SmartObject extends CompositeLayer {
     public void afterDeserialization() {
         if (isContentLinked()) {
             if (linkedContentFile.exists()) {
-                updateLinkedContentTime();
-                // also read the content
+                // also read the content, unless it's already loaded
                 assert content == null;
-                setContent(IO.loadCompSync(linkedContentFile));
+                setContent(LinkedFileRegistry.loadSync(linkedContentFile));
+                LinkedFileRegistry.addDependent(linkedContentFile, this);
             } else { // linked file not found
                 // Set a transparent image as content to avoid all sorts of errors.
                 // It will be replaced if the content is found later.
@@ -286,11 +289,11 @@ public class SmartObject extends CompositeLayer {
         }
         if (newFile != null) { // file found
             linkedContentFile = newFile;
-            updateLinkedContentTime();
 
-            IO.loadCompAsync(linkedContentFile)
+            LinkedFileRegistry.loadAsync(linkedContentFile)
                 .thenAcceptAsync(loadedComp -> {
                     setContent(loadedComp);
+                    LinkedFileRegistry.addDependent(linkedContentFile, this);
                     iconImageNeedsRefresh = true;
                     holder.update();
                 }, onEDT);
@@ -321,6 +324,44 @@ public class SmartObject extends CompositeLayer {
     @Override
     public void invalidateImageCache() {
         imageNeedsRefresh = true;
+
+        // the adjustment layers above must not use their cached outputs
+        if (comp != null) {
+            comp.invalidateImageCache();
+        }
+    }
+
+    /**
+     * Returns true if the image has to be recalculated before
+     * this smart object is painted the next time.
+     */
+    public boolean needsImageRefresh() {
+        return imageNeedsRefresh;
+    }
+
+    /**
+     * Calculates the cached images of the content, transformer and smart
+     * filter chain without changing the state of this smart object, so that
+     * the next {@link #getVisibleImage()} call finds them in the caches.
+     * Can be called outside the EDT, if no other thread evaluates the
+     * compositions returned by {@link #getContentDependencies()}.
+     */
+    public void prepareImage() {
+        if (filters.isEmpty()) {
+            baseSource.getImage();
+        } else {
+            filters.getLast().getImage();
+        }
+    }
+
+    /**
+     * Returns the content compositions that are evaluated when the image
+     * of this smart object is recalculated, including the nested ones.
+     */
+    public Set<Composition> getContentDependencies() {
+        Set<Composition> contents = Collections.newSetFromMap(new IdentityHashMap<>());
+        forAllNestedSmartObjects(so -> contents.add(so.getContent()));
+        return contents;
     }
 
     /**
@@ -413,6 +454,15 @@ public class SmartObject extends CompositeLayer {
     public boolean edit() {
         View contentView = content.getView();
         if (contentView == null) {
+            if (isContentLinked() && LinkedFileRegistry.isShared(linkedContentFile, content)) {
+                // the other documents linking the file keep sharing the loaded version
+                Composition copy = LinkedFileRegistry.copyForEditing(linkedContentFile, content);
+                for (SmartObject owner : List.copyOf(content.getOwners())) {
+                    if (owner.getComp() == comp) { // this and its clones
+                        owner.setContent(copy);
+                    }
+                }
+            }
             Views.addNew(content);
             content.setDirty(false);
         } else {
@@ -608,17 +658,13 @@ public class SmartObject extends CompositeLayer {
         assert checkInvariants();
 
         if (isContentLinked()) {
-            long newLinkedContentFileTime = linkedContentFile.lastModified();
-            if (newLinkedContentFileTime > linkedContentFileTime) {
-                linkedContentFileTime = newLinkedContentFileTime;
-
-                Views.activate(getParentView());
-                boolean reload = Messages.reloadFileQuestion(linkedContentFile);
-                if (reload) {
-                    // if this content is reloaded, then return because
-                    // the nested smart objects don't have to be checked
-                    return reloadLinkedContent();
-                }
+            // the registry asks and reloads only once for all the
+            // smart objects linking the same file
+            var reload = LinkedFileRegistry.checkForChanges(linkedContentFile, getParentView());
+            if (reload != null) {
+                // if this content is reloaded, then return because
+                // the nested smart objects don't have to be checked
+                return reload;
             }
         }
         // also check recursively deeper
@@ -650,6 +696,10 @@ public class SmartObject extends CompositeLayer {
         if (this.content == content) {
             return;
         }
+        if (this.content != null) {
+            // a shared content must not keep the replaced owners
+            this.content.removeOwner(this);
+        }
         this.content = content;
         content.addOwner(this);
 
@@ -683,15 +733,15 @@ public class SmartObject extends CompositeLayer {
 
     public void setLinkedContentFile(File file) {
         this.linkedContentFile = file;
-        updateLinkedContentTime();
-    }
-
-    private void updateLinkedContentTime() {
-        linkedContentFileTime = linkedContentFile.lastModified();
+        LinkedFileRegistry.addDependent(file, this);
     }
 
     private void embedLinkedContent() {
         String path = linkedContentFile.getAbsolutePath();
+        if (LinkedFileRegistry.removeDependent(linkedContentFile, this)) {
+            // the content is shared with smart objects that still link the file
+            setContent(content.copy(CopyType.DUPLICATE_COMP, false));
+        }
         linkedContentFile = null;
         Messages.showInfo("Embedded Content",
             "<html>The file <b>" + path + "</b> isn't used anymore.");
@@ -1105,6 +1155,16 @@ public class SmartObject extends CompositeLayer {
         g.drawImage(getVisibleImage(), getTx(), getTy(), null);
     }
 
+    @Override
+    protected boolean prepareBandPainting() {
+        if (usesMask()) {
+            return false;
+        }
+        // the image is recalculated here if necessary, not in the bands
+        getVisibleImage();
+        return true;
+    }
+
     /**
      * Returns the image bounds relative to the canvas
      */
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.layers;
+
+import pixelitor.Composition;
+import pixelitor.ThreadPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Evaluates the smart objects of a layer stack concurrently before the
+ * stack is composited. The smart objects are grouped by the content
+ * compositions they depend on: smart objects sharing (even indirectly)
+ * a content are evaluated one after the other in the same task, while
+ * the independent groups are evaluated in parallel. The evaluation of
+ * a content composition can recursively evaluate its own smart objects
+ * in the same way.
+ *
+ * Only the smart objects whose image was invalidated are evaluated,
+ * and the evaluation only fills the existing image caches,
+ * which are then used by the sequential compositing.
+ *
+ * The smart filters use the {@link ThreadPool} and wait for its tasks,
+ * therefore the evaluation runs on its own threads: if it ran on the threads
+ * of the pool, they could all end up waiting for tasks queued behind them.
+ */
+final class SmartObjectEvaluator {
+    private static final ExecutorService executor = Executors.newFixedThreadPool(
+        ThreadPool.getNumCores(), runnable -> {
+            Thread thread = new Thread(runnable, "smart object evaluator");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private SmartObjectEvaluator() {
+        // should not be instantiated
+    }
+
+    static void evaluateDirty(List<Layer> layers) {
+        List<SmartObject> dirty = new ArrayList<>();
+        collectDirty(layers, dirty);
+        if (dirty.size() < 2) {
+            return; // nothing to run in parallel
+        }
+
+        List<Group> groups = groupByDependencies(dirty);
+        if (groups.size() < 2) {
+            return; // let the compositing evaluate them
+        }
+
+        // nested smart objects also use this executor, but that can't
+        // deadlock, because the calling thread evaluates the unclaimed groups
+        ThreadPool.forEachBand(executor, groups.size(), 1, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                for (SmartObject so : groups.get(i).members) {
+                    so.prepareImage();
+                }
+            }
+        });
+    }
+
+    private static void collectDirty(Iterable<? extends Layer> layers, List<SmartObject> dirty) {
+        for (Layer layer : layers) {
+            if (!layer.isVisible()) {
+                continue;
+            }
+            if (layer instanceof SmartObject so) {
+                if (so.needsImageRefresh()) {
+                    dirty.add(so);
+                }
+            } else if (layer instanceof LayerGroup group) {
+                collectDirty(group.levelStream().toList(), dirty);
+            }
+        }
+    }
+
+    /**
+     * Splits the given smart objects into groups that
+     * don't share any content composition.
+     */
+    private static List<Group> groupByDependencies(List<SmartObject> smartObjects) {
+        List<Group> groups = new ArrayList<>();
+        for (SmartObject so : smartObjects) {
+            Group newGroup = new Group(so);
+
+            // merge all the existing groups that depend on the same contents
+            for (int i = groups.size() - 1; i >= 0; i--) {
+                Group group = groups.get(i);
+                if (group.sharesContentWith(newGroup)) {
+                    newGroup.merge(group);
+                    groups.remove(i);
+                }
+            }
+            groups.add(newGroup);
+        }
+        return groups;
+    }
+
+    private static class Group {
+        private final List<SmartObject> members = new ArrayList<>();
+        private final Set<Composition> contents;
+
+        Group(SmartObject so) {
+            members.add(so);
+            contents = so.getContentDependencies();
+        }
+
+        boolean sharesContentWith(Group other) {
+            for (Composition content : other.contents) {
+                if (contents.contains(content)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void merge(Group other) {
+            // keep the original evaluation order
+            members.addAll(0, other.members);
+            contents.addAll(other.contents);
+        }
+    }
+}
@@ -33,12 +33,14 @@ import pixelitor.gui.utils.PAction;
 import pixelitor.history.*;
 import pixelitor.io.TranslatedImage;
 import pixelitor.tools.Tools;
+import pixelitor.utils.CachedImage;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.QuadrantAngle;
 import pixelitor.utils.debug.DebugNode;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
@@ -61,9 +63,22 @@ public class TextLayer extends ContentLayer implements DialogMenuOwner {
     private static final long serialVersionUID = 2L;
     public static final String TEXT_PRESETS_DIR_NAME = "text";
 
+    // larger renderings (relative to the canvas area) are not cached
+    private static final int MAX_CACHED_AREA_RATIO = 4;
+
     private transient TransformedTextPainter painter;
     private TextSettings settings;
 
+    // The rendered text with its effects. While only the translation
+    // changes, the cached image is painted at a shifted position.
+    private transient CachedImage renderCache = createRenderCache();
+    private transient int renderedX;
+    private transient int renderedY;
+    private transient int renderedTx;
+    private transient int renderedTy;
+    private transient int renderedCanvasWidth;
+    private transient int renderedCanvasHeight;
+
     public TextLayer(Composition comp) {
         this(comp, "", new TextSettings());
     }
@@ -84,10 +99,15 @@ public class TextLayer extends ContentLayer implements DialogMenuOwner {
         painter = new TransformedTextPainter();
         settings.configurePainter(painter);
         painter.setTranslation(getTx(), getTy());
+        renderCache = createRenderCache();
 
         settings.checkFontIsInstalled(this);
     }
 
+    private static CachedImage createRenderCache() {
+        return new CachedImage("rendered text", CachedImage.Cost.MEDIUM);
+    }
+
     public static TextLayer createNew(Composition comp) {
         return createNew(comp, new TextSettings());
     }
@@ -215,7 +235,58 @@ public class TextLayer extends ContentLayer implements DialogMenuOwner {
     @Override
     public void paintLayerOnGraphics(Graphics2D g, boolean firstVisibleLayer) {
         painter.setFillPaint(settings.getColor());
-        painter.paint(g, null, comp.getCanvasWidth(), comp.getCanvasHeight());
+        int canvasWidth = comp.getCanvasWidth();
+        int canvasHeight = comp.getCanvasHeight();
+
+        if (!isPixelAligned(g.getTransform())) {
+            // the cached image can't be reused without resampling
+            painter.paint(g, null, canvasWidth, canvasHeight);
+            return;
+        }
+
+        BufferedImage img = renderCache.get();
+        if (img == null || canvasWidth != renderedCanvasWidth || canvasHeight != renderedCanvasHeight) {
+            TranslatedImage rendered = painter.render(canvasWidth, canvasHeight, calcRenderMargin());
+            img = rendered.img();
+            renderedX = rendered.tx();
+            renderedY = rendered.ty();
+            renderedTx = getTx();
+            renderedTy = getTy();
+            renderedCanvasWidth = canvasWidth;
+            renderedCanvasHeight = canvasHeight;
+
+            long area = (long) img.getWidth() * img.getHeight();
+            if (area <= (long) MAX_CACHED_AREA_RATIO * canvasWidth * canvasHeight) {
+                renderCache.set(img);
+            } else {
+                renderCache.clear(false);
+            }
+        }
+
+        g.drawImage(img,
+            renderedX + getTx() - renderedTx,
+            renderedY + getTy() - renderedTy, null);
+    }
+
+    private static boolean isPixelAligned(AffineTransform at) {
+        return switch (at.getType()) {
+            case AffineTransform.TYPE_IDENTITY -> true;
+            case AffineTransform.TYPE_TRANSLATION ->
+                at.getTranslateX() == Math.rint(at.getTranslateX())
+                    && at.getTranslateY() == Math.rint(at.getTranslateY());
+            default -> false;
+        };
+    }
+
+    private int calcRenderMargin() {
+        // the effects can extend beyond the text's bounding box,
+        // and so can the glyphs of some (for example italic) fonts
+        int effectsWidth = (int) settings.getEffects().getMaxEffectThickness();
+        return effectsWidth + 1 + settings.getFont().getSize() / 4;
+    }
+
+    private void invalidateRenderCache() {
+        renderCache.clear(true);
     }
 
     @Override
@@ -257,6 +328,7 @@ public class TextLayer extends ContentLayer implements DialogMenuOwner {
 
         isAdjustment = settings.hasWatermark();
         settings.configurePainter(painter);
+        invalidateRenderCache();
     }
 
     public TextSettings getSettings() {
@@ -411,6 +483,7 @@ public class TextLayer extends ContentLayer implements DialogMenuOwner {
     @Override
     public void loadUserPreset(UserPreset preset) {
         settings.loadUserPreset(preset);
+        invalidateRenderCache();
     }
 
     @Override
@@ -427,6 +500,7 @@ public class TextLayer extends ContentLayer implements DialogMenuOwner {
         } else {
             node.add(settings.createDebugNode("text settings"));
         }
+        node.addBoolean("has cached rendering", renderCache.isPresent());
 
         return node;
     }
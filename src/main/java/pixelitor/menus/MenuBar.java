@@ -544,7 +544,7 @@ public class MenuBar extends JMenuBar {
                 return; // the user cancelled the dialog
             }
 
-            IO.loadCompAsync(file)
+            LinkedFileRegistry.loadAsync(file)
                 .thenAcceptAsync(content -> {
                     SmartObject so = new SmartObject(file, comp, content);
                     comp.adder().atPosition(ABOVE_ACTIVE).add(so);
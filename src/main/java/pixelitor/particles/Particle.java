@@ -27,7 +27,6 @@ public abstract class Particle {
     public Vector2D vel;
     public Color color;
     public int iterationIndex;
-    public int groupIndex = -1;
 
     public abstract void flush();
 
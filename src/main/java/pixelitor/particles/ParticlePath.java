@@ -0,0 +1,98 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.particles;
+
+import pixelitor.ThreadPool;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static java.awt.RenderingHints.KEY_ANTIALIASING;
+import static java.awt.RenderingHints.VALUE_ANTIALIAS_ON;
+
+/**
+ * A finished particle path, ready to be rendered.
+ *
+ * If the path is drawn with a {@link BasicStroke}, then the stroke is applied
+ * by Java2D, which can clip it efficiently. Otherwise, the stroked outline is
+ * calculated at creation time (typically in the simulating thread), so that
+ * it isn't recalculated for each band the path crosses.
+ *
+ * @param shape  the path, or its outline if the stroke is null
+ * @param stroke the stroke used for drawing the shape, or null if it's filled
+ * @param bounds the bounds of the painted pixels
+ */
+public record ParticlePath(Shape shape, Stroke stroke, Color color, Rectangle bounds) {
+    private static final int MIN_BAND_HEIGHT = 32;
+
+    public static ParticlePath create(Shape path, Stroke stroke, Color color) {
+        if (stroke instanceof BasicStroke basicStroke) {
+            Rectangle bounds = path.getBounds();
+            // square caps can reach sqrt(2) times the half width
+            double reach = basicStroke.getLineWidth() / 2.0 * Math.sqrt(2);
+            if (basicStroke.getLineJoin() == BasicStroke.JOIN_MITER) {
+                reach *= Math.max(1.0, basicStroke.getMiterLimit());
+            }
+            // one extra pixel for the antialiasing
+            int margin = (int) Math.ceil(reach) + 1;
+            bounds.grow(margin, margin);
+            return new ParticlePath(path, stroke, color, bounds);
+        }
+
+        Shape outline = stroke.createStrokedShape(path);
+        Rectangle bounds = outline.getBounds();
+        bounds.grow(1, 1);
+        return new ParticlePath(outline, null, color, bounds);
+    }
+
+    private void paint(Graphics2D g) {
+        g.setColor(color);
+        if (stroke != null) {
+            g.setStroke(stroke);
+            g.draw(shape);
+        } else {
+            g.fill(shape);
+        }
+    }
+
+    /**
+     * Paints the given paths in the given order on the destination image.
+     * The image is split into horizontal bands, and each worker paints
+     * every path intersecting its band into its own view of the image,
+     * so the workers never share a Graphics2D or wait for each other.
+     */
+    public static void paintAll(List<ParticlePath> paths, BufferedImage dest, boolean antialias) {
+        int width = dest.getWidth();
+        ThreadPool.forEachBand(dest.getHeight(), MIN_BAND_HEIGHT, (startY, endY) -> {
+            Rectangle band = new Rectangle(0, startY, width, endY - startY);
+            BufferedImage bandImage = dest.getSubimage(0, startY, width, band.height);
+            Graphics2D g = bandImage.createGraphics();
+            g.translate(0, -startY);
+            if (antialias) {
+                g.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
+            }
+            for (ParticlePath path : paths) {
+                if (path.bounds.intersects(band)) {
+                    path.paint(g);
+                }
+            }
+            g.dispose();
+        });
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.particles;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The state of a group of particles stored as a structure of arrays:
+ * each property of all the particles is in one primitive array, indexed
+ * by the particle index. Unlike with {@link Particle} objects, stepping
+ * through the particles doesn't allocate anything.
+ *
+ * The points of the path that a particle traced since it was
+ * (re)spawned are kept in a fixed-size slot of the path arrays.
+ */
+public class ParticleStore {
+    private final int size;
+
+    public final float[] x;
+    public final float[] y;
+    public final float[] lastX;
+    public final float[] lastY;
+    public final float[] velX;
+    public final float[] velY;
+    public final float[] accX;
+    public final float[] accY;
+    public final int[] color;
+
+    private final int pathCapacity;
+    private final float[] pathX;
+    private final float[] pathY;
+    private final int[] pathLength;
+
+    /**
+     * Creates the storage for the given number of particles,
+     * each of which can have paths with at most pathCapacity points.
+     */
+    public ParticleStore(int size, int pathCapacity) {
+        this.size = size;
+        this.pathCapacity = pathCapacity;
+
+        x = new float[size];
+        y = new float[size];
+        lastX = new float[size];
+        lastY = new float[size];
+        velX = new float[size];
+        velY = new float[size];
+        accX = new float[size];
+        accY = new float[size];
+        color = new int[size];
+
+        pathX = new float[size * pathCapacity];
+        pathY = new float[size * pathCapacity];
+        pathLength = new int[size];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void setPosition(int i, double newX, double newY) {
+        x[i] = (float) newX;
+        y[i] = (float) newY;
+    }
+
+    /**
+     * Adds a point to the path of the given particle. Returns
+     * false if the path is already full, and the point was ignored.
+     */
+    public boolean addPathPoint(int i, float px, float py) {
+        int length = pathLength[i];
+        if (length == pathCapacity) {
+            return false;
+        }
+        int index = i * pathCapacity + length;
+        pathX[index] = px;
+        pathY[index] = py;
+        pathLength[i] = length + 1;
+        return true;
+    }
+
+    public int getPathLength(int i) {
+        return pathLength[i];
+    }
+
+    /**
+     * Returns the path points of the given particle as new objects.
+     * This is meant to be called only when a path is finished.
+     */
+    public List<Point2D> getPathPoints(int i) {
+        int length = pathLength[i];
+        List<Point2D> points = new ArrayList<>(length);
+        int offset = i * pathCapacity;
+        for (int j = 0; j < length; j++) {
+            points.add(new Point2D.Float(pathX[offset + j], pathY[offset + j]));
+        }
+        return points;
+    }
+
+    public void clearPath(int i) {
+        pathLength[i] = 0;
+    }
+}
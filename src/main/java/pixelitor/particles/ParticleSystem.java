@@ -17,12 +17,8 @@
 
 package pixelitor.particles;
 
-import net.jafama.FastMath;
-import pixelitor.ThreadPool;
-
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Future;
 import java.util.function.Supplier;
 
 public class ParticleSystem<P extends Particle> {
@@ -53,39 +49,12 @@ public class ParticleSystem<P extends Particle> {
         }
     }
 
-    private void step(int start, int end) {
-        for (int i = start, s = FastMath.min(particles.size(), end); i < s; i++) {
-            P particle = particles.get(i);
-            particle.groupIndex = start / (end - start);
-            stepParticle(i, particle);
-        }
-    }
-
     public void iterate(int iterations) {
         for (int i = 0; i < iterations; i++) {
             step();
         }
     }
 
-    private void iterate(int iterations, int start, int end) {
-        for (int i = 0; i < iterations; i++) {
-            step(start, end);
-        }
-    }
-
-    public Future<?>[] iterate(int iterations, int groupCount) {
-        Future<?>[] futures = new Future[groupCount];
-        int s = particles.size();
-        int groupSize = (int) FastMath.ceil(s / (double) groupCount);
-
-        for (int i = 0, k = 0; i < s; i += groupSize, k++) {
-            int finalI = i;
-            futures[k] = ThreadPool.submit(() -> iterate(iterations, finalI, finalI + groupSize));
-        }
-
-        return futures;
-    }
-
     private void stepParticle(int iterationIndex, P particle) {
         if (particle.isDead()) {
             particle.flush();
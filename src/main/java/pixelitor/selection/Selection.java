@@ -33,6 +33,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
+import java.awt.geom.Path2D;
 import java.awt.geom.Rectangle2D;
 
 import static java.awt.BasicStroke.CAP_BUTT;
@@ -44,7 +45,8 @@ import static java.awt.Color.WHITE;
  * Represents a selection on an image.
  */
 public class Selection implements Debuggable {
-    private float dashPhase;
+    // the current offset within the dash pattern
+    private int dashPhase;
     private View view;
     private Timer marchingAntsTimer;
 
@@ -52,9 +54,23 @@ public class Selection implements Debuggable {
     // The coordinates are in image space, relative to the canvas.
     private Shape shape;
 
-    private static final double DASH_WIDTH = 1.0;
-    private static final float DASH_LENGTH = 4.0f;
-    private static final float[] MARCHING_ANTS_DASH = {DASH_LENGTH, DASH_LENGTH};
+    private static final int DASH_LENGTH = 4;
+    private static final int DASH_PERIOD = 2 * DASH_LENGTH;
+
+    // the black dashes are painted over a solid white line, in component
+    // space, so one stroke for each possible phase can be created in advance
+    private static final Stroke WHITE_STROKE = new BasicStroke(1.0f);
+    private static final Stroke[] DASHED_STROKES = createDashedStrokes();
+
+    // the maximum distance between the flattened outline and the curves, in pixels
+    private static final double OUTLINE_FLATNESS = 0.25;
+
+    // The selection outline flattened in component space, cached
+    // for the shape and the image-to-component transform it was created for.
+    private Path2D coOutline;
+    private Shape coOutlineShape;
+    private AffineTransform coOutlineTransform;
+    private Rectangle coOutlineBounds;
 
     // if true, then the "marching ants" are not marching
     private boolean frozen = false;
@@ -106,9 +122,10 @@ public class Selection implements Debuggable {
 
         marchingAntsTimer = new Timer(100, null);
         marchingAntsTimer.addActionListener(evt -> {
-            if (!hidden) {
-                dashPhase += 1.0f / (float) view.getScaling();
-                repaint();
+            // nothing to animate in hidden tabs or minimized windows
+            if (!hidden && view.isShowing()) {
+                dashPhase = (dashPhase + 1) % DASH_PERIOD;
+                repaintOutline();
             }
         });
         marchingAntsTimer.start();
@@ -125,6 +142,21 @@ public class Selection implements Debuggable {
         return marchingAntsTimer != null;
     }
 
+    private static Stroke[] createDashedStrokes() {
+        float[] dash = {DASH_LENGTH, DASH_LENGTH};
+        Stroke[] strokes = new Stroke[DASH_PERIOD];
+        for (int phase = 0; phase < DASH_PERIOD; phase++) {
+            strokes[phase] = new BasicStroke(1.0f, CAP_BUTT,
+                JOIN_ROUND, 0.0f, dash, phase);
+        }
+        return strokes;
+    }
+
+    /**
+     * Paints the selection outline. As the selection coordinates are
+     * in image space, this is called with a Graphics2D transformed into
+     * image space, but the outline is painted in component space.
+     */
     public void paintMarchingAnts(Graphics2D g2) {
         assert !dead : "dead selection";
 
@@ -132,36 +164,47 @@ public class Selection implements Debuggable {
             return;
         }
 
-        Stroke oldStroke = g2.getStroke();
+        Path2D outline = getComponentSpaceOutline();
 
-        // As the selection coordinates are in image space, this is
-        // called with a Graphics2D transformed into image space.
-        // The line width has to be scaled to compensate.
-        double viewScale = view.getScaling();
-        float lineWidth = (float) (DASH_WIDTH / viewScale);
+        AffineTransform imageSpace = g2.getTransform();
+        g2.transform(view.getComponentToImageTransform());
 
-        float[] dash;
-        if (viewScale == 1.0) { // the most common case
-            dash = MARCHING_ANTS_DASH;
-        } else {
-            float scaledDashLength = (float) (DASH_LENGTH / viewScale);
-            dash = new float[]{scaledDashLength, scaledDashLength};
-        }
+        // skip the stroking if only some other region is repainted
+        Rectangle clip = g2.getClipBounds();
+        if (clip == null || clip.intersects(coOutlineBounds)) {
+            Stroke oldStroke = g2.getStroke();
+
+            g2.setPaint(WHITE);
+            g2.setStroke(WHITE_STROKE);
+            g2.draw(outline);
 
-        g2.setPaint(WHITE);
-        Stroke stroke = new BasicStroke(lineWidth, CAP_BUTT,
-            JOIN_ROUND, 0.0f, dash, dashPhase);
-        g2.setStroke(stroke);
-        g2.draw(shape);
+            g2.setPaint(BLACK);
+            g2.setStroke(DASHED_STROKES[dashPhase]);
+            g2.draw(outline);
 
-        g2.setPaint(BLACK);
-        Stroke stroke2 = new BasicStroke(lineWidth, CAP_BUTT,
-            JOIN_ROUND, 0.0f, dash,
-            (float) (dashPhase + DASH_LENGTH / viewScale));
-        g2.setStroke(stroke2);
-        g2.draw(shape);
+            g2.setStroke(oldStroke);
+        }
+        g2.setTransform(imageSpace);
+    }
 
-        g2.setStroke(oldStroke);
+    /**
+     * Returns the outline flattened in component space, which is
+     * recalculated only if the shape, the zoom or the scrolling changed.
+     */
+    private Path2D getComponentSpaceOutline() {
+        AffineTransform imToCo = view.getImageToComponentTransform();
+        if (coOutline == null || coOutlineShape != shape || !imToCo.equals(coOutlineTransform)) {
+            Path2D outline = new Path2D.Float();
+            outline.append(shape.getPathIterator(imToCo, OUTLINE_FLATNESS), false);
+
+            coOutline = outline;
+            coOutlineShape = shape;
+            coOutlineTransform = new AffineTransform(imToCo);
+            coOutlineBounds = outline.getBounds();
+            // the stroke extends beyond the path
+            coOutlineBounds.grow(2, 2);
+        }
+        return coOutline;
     }
 
     public void die() {
@@ -184,6 +227,15 @@ public class Selection implements Debuggable {
         view.repaint();
     }
 
+    // only the outline changes when the ants are marching
+    private void repaintOutline() {
+        if (shape == null) {
+            return;
+        }
+        getComponentSpaceOutline();
+        view.repaint(coOutlineBounds);
+    }
+
     public void setShape(Shape currentShape) {
         assert currentShape != null;
         shape = currentShape;
@@ -229,14 +281,19 @@ public class Selection implements Debuggable {
     }
 
     public void modify(SelectionModifyType type, float amount) {
-        Stroke outlineStroke = new BasicStroke(amount);
-        Shape outlineShape = outlineStroke.createStrokedShape(shape);
+        Shape backupShape = shape;
+        if (SelectionMask.isComplex(shape)) {
+            // stroking and combining complex shapes would be too slow
+            shape = type.modify(SelectionMask.fromShape(shape), amount / 2.0);
+        } else {
+            Stroke outlineStroke = new BasicStroke(amount);
+            Shape outlineShape = outlineStroke.createStrokedShape(shape);
 
-        Area oldArea = new Area(shape);
-        Area outlineArea = new Area(outlineShape);
+            Area oldArea = new Area(shape);
+            Area outlineArea = new Area(outlineShape);
 
-        Shape backupShape = shape;
-        shape = type.modify(oldArea, outlineArea);
+            shape = type.modify(oldArea, outlineArea);
+        }
 
         var comp = view.getComp();
         boolean notEmpty = clipToCanvasSize(comp);
@@ -0,0 +1,500 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.selection;
+
+import pixelitor.ThreadPool;
+import pixelitor.utils.DistanceTransform;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RectangularShape;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static java.awt.RenderingHints.KEY_STROKE_CONTROL;
+import static java.awt.RenderingHints.VALUE_STROKE_PURE;
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+
+/**
+ * A pixel-resolution selection shape, stored as the runs of selected
+ * pixels in each row. A pixel is selected if its center is inside.
+ *
+ * Unlike {@link java.awt.geom.Area}, the boolean operations and the
+ * growing/shrinking take linear time in the number of rows and runs,
+ * and they are done in parallel, which makes a big difference for
+ * shapes with thousands of segments. The outline is traced only
+ * when it's needed, for example for painting the marching ants.
+ */
+public final class SelectionMask implements Shape {
+    // shapes with more segments than this are combined as masks
+    private static final int MAX_VECTOR_SEGMENTS = 1000;
+
+    private static final int MIN_BAND_HEIGHT = 16;
+    private static final int[] EMPTY_ROW = {};
+
+    // the truth tables of the boolean operations, indexed by (inA << 1 | inB)
+    private static final int UNION = 0b1110;
+    private static final int INTERSECTION = 0b1000;
+    private static final int DIFFERENCE = 0b0100;
+
+    // the directions of the outline tracing, in clockwise order
+    private static final int EAST = 0;
+    private static final int SOUTH = 1;
+    private static final int WEST = 2;
+    private static final int NORTH = 3;
+
+    // the y coordinate of the first row
+    private final int top;
+
+    // for each row the start (inclusive) and end (exclusive)
+    // x coordinates of the selected runs, in increasing order
+    private final int[][] rows;
+
+    private final Rectangle bounds;
+
+    private volatile Path2D outline;
+
+    private SelectionMask(int top, int[][] rows) {
+        int first = 0;
+        while (first < rows.length && rows[first].length == 0) {
+            first++;
+        }
+        int last = rows.length - 1;
+        while (last >= first && rows[last].length == 0) {
+            last--;
+        }
+        if (first > last) {
+            this.top = 0;
+            this.rows = new int[0][];
+            bounds = new Rectangle();
+            return;
+        }
+        if (first > 0 || last < rows.length - 1) {
+            rows = Arrays.copyOfRange(rows, first, last + 1);
+        }
+        this.top = top + first;
+        this.rows = rows;
+
+        int minX = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        for (int[] row : rows) {
+            if (row.length > 0) {
+                minX = Math.min(minX, row[0]);
+                maxX = Math.max(maxX, row[row.length - 1]);
+            }
+        }
+        bounds = new Rectangle(minX, this.top, maxX - minX, rows.length);
+    }
+
+    /**
+     * Returns whether the given shape is complex enough
+     * to be combined as a mask instead of as an Area.
+     */
+    public static boolean isComplex(Shape shape) {
+        if (shape instanceof SelectionMask) {
+            return true;
+        }
+        if (shape instanceof RectangularShape) {
+            return false;
+        }
+        int numSegments = 0;
+        for (PathIterator it = shape.getPathIterator(null); !it.isDone(); it.next()) {
+            if (++numSegments > MAX_VECTOR_SEGMENTS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rasterizes the given shape. The horizontal bands are filled in parallel.
+     */
+    public static SelectionMask fromShape(Shape shape) {
+        if (shape instanceof SelectionMask mask) {
+            return mask;
+        }
+        Rectangle shapeBounds = shape.getBounds();
+        if (shapeBounds.isEmpty()) {
+            return new SelectionMask(0, new int[0][]);
+        }
+        if (shape instanceof Rectangle rect) {
+            return fromRectangle(rect);
+        }
+
+        int width = shapeBounds.width;
+        int[][] rows = new int[shapeBounds.height][];
+        ThreadPool.forEachBand(shapeBounds.height, MIN_BAND_HEIGHT, (startY, endY) -> {
+            var band = new BufferedImage(width, endY - startY, TYPE_BYTE_GRAY);
+            Graphics2D g = band.createGraphics();
+            // without normalization, exactly the pixels with the center inside are filled
+            g.setRenderingHint(KEY_STROKE_CONTROL, VALUE_STROKE_PURE);
+            g.translate(-shapeBounds.x, -(shapeBounds.y + startY));
+            g.setColor(Color.WHITE);
+            g.fill(shape);
+            g.dispose();
+
+            byte[] pixels = ((DataBufferByte) band.getRaster().getDataBuffer()).getData();
+            int[] buffer = new int[width + 1];
+            for (int y = startY; y < endY; y++) {
+                int offset = (y - startY) * width;
+                int numValues = 0;
+                boolean inside = false;
+                for (int x = 0; x < width; x++) {
+                    if ((pixels[offset + x] != 0) != inside) {
+                        inside = !inside;
+                        buffer[numValues++] = shapeBounds.x + x;
+                    }
+                }
+                if (inside) {
+                    buffer[numValues++] = shapeBounds.x + width;
+                }
+                rows[y] = toRow(buffer, numValues);
+            }
+        });
+        return new SelectionMask(shapeBounds.y, rows);
+    }
+
+    private static SelectionMask fromRectangle(Rectangle rect) {
+        int[][] rows = new int[rect.height][];
+        // the rows are never modified, so they can be shared
+        Arrays.fill(rows, new int[]{rect.x, rect.x + rect.width});
+        return new SelectionMask(rect.y, rows);
+    }
+
+    public SelectionMask union(SelectionMask other) {
+        return combine(other, UNION);
+    }
+
+    public SelectionMask intersect(SelectionMask other) {
+        return combine(other, INTERSECTION);
+    }
+
+    public SelectionMask subtract(SelectionMask other) {
+        return combine(other, DIFFERENCE);
+    }
+
+    /**
+     * Returns the part of this mask which is within the given rectangle.
+     */
+    public SelectionMask clip(Rectangle rect) {
+        if (rect.contains(bounds)) {
+            return this;
+        }
+        return intersect(fromRectangle(rect));
+    }
+
+    private SelectionMask combine(SelectionMask other, int truthTable) {
+        int startY = Math.min(top, other.top);
+        int endY = Math.max(top + rows.length, other.top + other.rows.length);
+        int[][] combined = new int[endY - startY][];
+        ThreadPool.forEachBand(combined.length, MIN_BAND_HEIGHT, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                int y = startY + i;
+                combined[i] = combineRows(getRow(y), other.getRow(y), truthTable);
+            }
+        });
+        return new SelectionMask(startY, combined);
+    }
+
+    private static int[] combineRows(int[] a, int[] b, int truthTable) {
+        int[] buffer = new int[a.length + b.length];
+        int numValues = 0;
+        boolean inside = false;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            int x = Math.min(
+                i < a.length ? a[i] : Integer.MAX_VALUE,
+                j < b.length ? b[j] : Integer.MAX_VALUE);
+            if (i < a.length && a[i] == x) {
+                i++;
+            }
+            if (j < b.length && b[j] == x) {
+                j++;
+            }
+            // after an odd number of run boundaries we are inside a run
+            int index = (i & 1) << 1 | (j & 1);
+            boolean result = (truthTable >> index & 1) != 0;
+            if (result != inside) {
+                inside = result;
+                buffer[numValues++] = x;
+            }
+        }
+        return toRow(buffer, numValues);
+    }
+
+    /**
+     * Returns the pixels whose center is within the given
+     * distance from the center of a selected pixel.
+     */
+    public SelectionMask grow(double radius) {
+        if (rows.length == 0) {
+            return this;
+        }
+        int margin = (int) Math.ceil(radius + 0.5);
+        Rectangle area = new Rectangle(bounds);
+        area.grow(margin, margin);
+        return thresholdDistance(area, true, radius + 0.5);
+    }
+
+    /**
+     * Returns the selected pixels whose center is further than the
+     * given distance from the center of every unselected pixel.
+     */
+    public SelectionMask shrink(double radius) {
+        if (rows.length == 0) {
+            return this;
+        }
+        // the one-pixel margin ensures that the outside counts as unselected
+        Rectangle area = new Rectangle(bounds);
+        area.grow(1, 1);
+        return thresholdDistance(area, false, radius + 0.5);
+    }
+
+    /**
+     * Calculates the exact euclidean distance transform within the given
+     * area, and keeps the pixels that are either near the selected pixels,
+     * or far from the unselected pixels.
+     */
+    private SelectionMask thresholdDistance(Rectangle area, boolean growing, double distance) {
+        int width = area.width;
+        int height = area.height;
+
+        // 1. the distances are measured from the selected pixels when
+        // growing, and from the unselected pixels when shrinking
+        boolean[] features = new boolean[width * height];
+        ThreadPool.forEachBand(height, MIN_BAND_HEIGHT, (startY, endY) -> {
+            for (int y = startY; y < endY; y++) {
+                int offset = y * width;
+                if (!growing) {
+                    Arrays.fill(features, offset, offset + width, true);
+                }
+                int[] row = getRow(area.y + y);
+                for (int i = 0; i < row.length; i += 2) {
+                    Arrays.fill(features, offset + row[i] - area.x,
+                        offset + row[i + 1] - area.x, growing);
+                }
+            }
+        });
+
+        // 2. only the distances up to the limit have to be exact
+        float[] dist = DistanceTransform.calcSquaredDistances(
+            features, width, height, (int) Math.ceil(distance));
+
+        // 3. the thresholding of each row
+        double limit = distance * distance;
+        int[][] result = new int[height][];
+        ThreadPool.forEachBand(height, MIN_BAND_HEIGHT, (startY, endY) -> {
+            int[] buffer = new int[width + 1];
+            for (int y = startY; y < endY; y++) {
+                int offset = y * width;
+                int numValues = 0;
+                boolean inside = false;
+                for (int x = 0; x < width; x++) {
+                    float d = dist[offset + x];
+                    boolean selected = growing ? d <= limit : d > limit;
+                    if (selected != inside) {
+                        inside = selected;
+                        buffer[numValues++] = area.x + x;
+                    }
+                }
+                if (inside) {
+                    buffer[numValues++] = area.x + width;
+                }
+                result[y] = toRow(buffer, numValues);
+            }
+        });
+        return new SelectionMask(area.y, result);
+    }
+
+    private int[] getRow(int y) {
+        int index = y - top;
+        if (index < 0 || index >= rows.length) {
+            return EMPTY_ROW;
+        }
+        return rows[index];
+    }
+
+    private static int[] toRow(int[] buffer, int numValues) {
+        return numValues == 0 ? EMPTY_ROW : Arrays.copyOf(buffer, numValues);
+    }
+
+    /**
+     * Returns whether the pixel at the given coordinates is selected.
+     */
+    public boolean isSelected(int x, int y) {
+        int[] row = getRow(y);
+        int index = Arrays.binarySearch(row, x);
+        if (index >= 0) {
+            // exactly at a boundary, which is inside only if it's a start
+            return (index & 1) == 0;
+        }
+        // between a start and an end
+        return ((-index - 1) & 1) == 1;
+    }
+
+    private Path2D getOutline() {
+        Path2D path = outline;
+        if (path == null) {
+            path = traceOutline();
+            outline = path;
+        }
+        return path;
+    }
+
+    /**
+     * Traces the boundaries between the selected and unselected pixels,
+     * with the selected pixels always on the right-hand side, so that
+     * the holes are traced in the opposite direction as the outer edges.
+     */
+    private Path2D traceOutline() {
+        Path2D path = new Path2D.Float(Path2D.WIND_EVEN_ODD);
+
+        // the already traced top edges, for each row
+        BitSet[] tracedTopEdges = new BitSet[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            tracedTopEdges[i] = new BitSet();
+        }
+
+        for (int i = 0; i < rows.length; i++) {
+            int y = top + i;
+            // every closed outline has at least one top edge
+            int[] topEdges = combineRows(rows[i], getRow(y - 1), DIFFERENCE);
+            for (int j = 0; j < topEdges.length; j += 2) {
+                for (int x = topEdges[j]; x < topEdges[j + 1]; x++) {
+                    if (!tracedTopEdges[i].get(x - bounds.x)) {
+                        traceLoop(path, x, y, tracedTopEdges);
+                    }
+                }
+            }
+        }
+        return path;
+    }
+
+    private void traceLoop(Path2D path, int startX, int startY, BitSet[] tracedTopEdges) {
+        path.moveTo(startX, startY);
+        int x = startX;
+        int y = startY;
+        int dir = EAST;
+        do {
+            if (dir == EAST) {
+                tracedTopEdges[y - top].set(x - bounds.x);
+            }
+            switch (dir) {
+                case EAST -> x++;
+                case SOUTH -> y++;
+                case WEST -> x--;
+                case NORTH -> y--;
+                default -> throw new IllegalStateException("dir = " + dir);
+            }
+
+            // the pixels ahead of the current vertex, on the right and left sides
+            boolean right = switch (dir) {
+                case EAST -> isSelected(x, y);
+                case SOUTH -> isSelected(x - 1, y);
+                case WEST -> isSelected(x - 1, y - 1);
+                default -> isSelected(x, y - 1);
+            };
+            boolean left = switch (dir) {
+                case EAST -> isSelected(x, y - 1);
+                case SOUTH -> isSelected(x, y);
+                case WEST -> isSelected(x - 1, y);
+                default -> isSelected(x - 1, y - 1);
+            };
+
+            int newDir;
+            if (!right) {
+                newDir = (dir + 1) & 3; // turn right
+            } else if (left) {
+                newDir = (dir + 3) & 3; // turn left
+            } else {
+                newDir = dir;
+            }
+            if (newDir != dir) {
+                path.lineTo(x, y);
+                dir = newDir;
+            }
+        } while (x != startX || y != startY || dir != EAST);
+        path.closePath();
+    }
+
+    @Override
+    public Rectangle getBounds() {
+        return new Rectangle(bounds);
+    }
+
+    @Override
+    public Rectangle2D getBounds2D() {
+        return new Rectangle(bounds);
+    }
+
+    @Override
+    public boolean contains(double x, double y) {
+        return isSelected((int) Math.floor(x), (int) Math.floor(y));
+    }
+
+    @Override
+    public boolean contains(Point2D p) {
+        return contains(p.getX(), p.getY());
+    }
+
+    @Override
+    public boolean intersects(double x, double y, double w, double h) {
+        return bounds.intersects(x, y, w, h) && getOutline().intersects(x, y, w, h);
+    }
+
+    @Override
+    public boolean intersects(Rectangle2D r) {
+        return intersects(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+    }
+
+    @Override
+    public boolean contains(double x, double y, double w, double h) {
+        return bounds.contains(x, y, w, h) && getOutline().contains(x, y, w, h);
+    }
+
+    @Override
+    public boolean contains(Rectangle2D r) {
+        return contains(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+    }
+
+    @Override
+    public PathIterator getPathIterator(AffineTransform at) {
+        return getOutline().getPathIterator(at);
+    }
+
+    @Override
+    public PathIterator getPathIterator(AffineTransform at, double flatness) {
+        // the outline consists of straight lines
+        return getOutline().getPathIterator(at);
+    }
+
+    @Override
+    public String toString() {
+        return "SelectionMask{bounds=" + bounds + ", rows=" + rows.length + '}';
+    }
+}
@@ -33,29 +33,54 @@ public enum SelectionModifyType {
             previous.add(outlineShape);
             return previous;
         }
+
+        @Override
+        public SelectionMask modify(SelectionMask previous, double halfWidth) {
+            return previous.grow(halfWidth);
+        }
     }, CONTRACT("Contract") {
         @Override
         public Shape modify(Area previous, Area outlineShape) {
             previous.subtract(outlineShape);
             return previous;
         }
+
+        @Override
+        public SelectionMask modify(SelectionMask previous, double halfWidth) {
+            return previous.shrink(halfWidth);
+        }
     }, BORDER("Border") {
         @Override
         public Shape modify(Area previous, Area outlineShape) {
             return outlineShape;
         }
+
+        @Override
+        public SelectionMask modify(SelectionMask previous, double halfWidth) {
+            return previous.grow(halfWidth).subtract(previous.shrink(halfWidth));
+        }
     }, BORDER_OUT("Border Outwards Only") {
         @Override
         public Shape modify(Area previous, Area outlineShape) {
             outlineShape.subtract(previous);
             return outlineShape;
         }
+
+        @Override
+        public SelectionMask modify(SelectionMask previous, double halfWidth) {
+            return previous.grow(halfWidth).subtract(previous);
+        }
     }, BORDER_IN("Border Inwards Only") {
         @Override
         public Shape modify(Area previous, Area outlineShape) {
             previous.intersect(outlineShape);
             return previous;
         }
+
+        @Override
+        public SelectionMask modify(SelectionMask previous, double halfWidth) {
+            return previous.subtract(previous.shrink(halfWidth));
+        }
     };
 
     private final String guiName;
@@ -70,6 +95,12 @@ public enum SelectionModifyType {
      */
     public abstract Shape modify(Area previous, Area outlineShape);
 
+    /**
+     * Calculates a new mask from the existing one, where the
+     * outline would extend by the given distance on both sides.
+     */
+    public abstract SelectionMask modify(SelectionMask previous, double halfWidth);
+
     public static EnumParam<SelectionModifyType> asParam() {
         return new EnumParam<>(GUIText.TYPE, SelectionModifyType.class);
     }
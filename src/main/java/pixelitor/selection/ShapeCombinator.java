@@ -18,6 +18,8 @@ package pixelitor.selection;
 
 import java.awt.Shape;
 import java.awt.geom.Area;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
 
 /**
  * Describes how a new selection is combined with an existing selection.
@@ -32,26 +34,17 @@ public enum ShapeCombinator {
     }, ADD("Add") {
         @Override
         public Shape combine(Shape oldShape, Shape newShape) {
-            Area oldArea = new Area(oldShape);
-            Area newArea = new Area(newShape);
-            oldArea.add(newArea);
-            return oldArea;
+            return combineAreasOrMasks(oldShape, newShape, Area::add, SelectionMask::union);
         }
     }, SUBTRACT("Subtract") {
         @Override
         public Shape combine(Shape oldShape, Shape newShape) {
-            Area oldArea = new Area(oldShape);
-            Area newArea = new Area(newShape);
-            oldArea.subtract(newArea);
-            return oldArea;
+            return combineAreasOrMasks(oldShape, newShape, Area::subtract, SelectionMask::subtract);
         }
     }, INTERSECT("Intersect") {
         @Override
         public Shape combine(Shape oldShape, Shape newShape) {
-            Area oldArea = new Area(oldShape);
-            Area newArea = new Area(newShape);
-            oldArea.intersect(newArea);
-            return oldArea;
+            return combineAreasOrMasks(oldShape, newShape, Area::intersect, SelectionMask::intersect);
         }
     };
 
@@ -66,6 +59,22 @@ public enum ShapeCombinator {
      */
     public abstract Shape combine(Shape oldShape, Shape newShape);
 
+    /**
+     * Complex shapes are combined as pixel masks, because the cost of
+     * the Area operations explodes with the number of segments.
+     */
+    private static Shape combineAreasOrMasks(Shape oldShape, Shape newShape,
+                                             BiConsumer<Area, Area> areaOp,
+                                             BinaryOperator<SelectionMask> maskOp) {
+        if (SelectionMask.isComplex(oldShape) || SelectionMask.isComplex(newShape)) {
+            return maskOp.apply(SelectionMask.fromShape(oldShape),
+                SelectionMask.fromShape(newShape));
+        }
+        Area oldArea = new Area(oldShape);
+        areaOp.accept(oldArea, new Area(newShape));
+        return oldArea;
+    }
+
     @Override
     public String toString() {
         return guiName;
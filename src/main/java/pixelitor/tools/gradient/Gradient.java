@@ -22,6 +22,7 @@ import pixelitor.gui.View;
 import pixelitor.layers.BlendingMode;
 import pixelitor.layers.Drawable;
 import pixelitor.layers.LayerMask;
+import pixelitor.tools.gradient.paints.CustomGradientPaint;
 import pixelitor.tools.util.Drag;
 import pixelitor.utils.debug.DebugNode;
 import pixelitor.utils.debug.Debuggable;
@@ -36,7 +37,11 @@ import java.io.Serializable;
 import java.util.StringJoiner;
 
 import static java.awt.RenderingHints.KEY_ANTIALIASING;
+import static java.awt.RenderingHints.KEY_DITHERING;
 import static java.awt.RenderingHints.VALUE_ANTIALIAS_ON;
+import static java.awt.RenderingHints.VALUE_DITHER_ENABLE;
+import static java.awt.Transparency.OPAQUE;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
 import static pixelitor.colors.FgBgColors.getBGColor;
 import static pixelitor.colors.FgBgColors.getFGColor;
 
@@ -116,6 +121,14 @@ public class Gradient implements Serializable, Debuggable {
         int width, height;
         if (dr instanceof LayerMask) {
             BufferedImage subImage = dr.getCanvasSizedSubImage();
+            // a translucent gradient must be composited over the mask
+            if (type.createPaint(drag, colors, cycleMethod) instanceof CustomGradientPaint customPaint
+                && customPaint.getTransparency() == OPAQUE
+                && customPaint.fill(subImage, false)) {
+                // the mask pixels were calculated directly
+                dr.updateIconImage();
+                return;
+            }
             g = subImage.createGraphics();
             width = canvas.getWidth();
             height = canvas.getHeight();
@@ -149,8 +162,28 @@ public class Gradient implements Serializable, Debuggable {
     public void drawOnGraphics(Graphics2D g, int width, int height) {
         // No composite is set in this method, because
         // it's not needed for gradient fill layers.
-        g.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
         Paint paint = type.createPaint(drag, colors, cycleMethod);
+        if (paint instanceof CustomGradientPaint customPaint && g.getTransform().isIdentity()) {
+            // Calculated in parallel, and then copied using the
+            // clipping and composite settings of the graphics.
+            // Only the pixels within the clip are calculated.
+            Rectangle bounds = new Rectangle(0, 0, width, height);
+            Rectangle clip = g.getClipBounds();
+            if (clip != null) {
+                bounds = bounds.intersection(clip);
+            }
+            if (bounds.isEmpty()) {
+                return;
+            }
+            boolean dither = g.getRenderingHint(KEY_DITHERING) == VALUE_DITHER_ENABLE;
+            BufferedImage img = new BufferedImage(bounds.width, bounds.height, TYPE_INT_ARGB);
+            customPaint.fill(img, bounds.x, bounds.y, dither);
+            g.drawImage(img, bounds.x, bounds.y, null);
+            img.flush();
+            return;
+        }
+
+        g.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
         g.setPaint(paint);
         g.fillRect(0, 0, width, height);
     }
@@ -243,11 +276,10 @@ public class Gradient implements Serializable, Debuggable {
         return colorType.hasTransparency();
     }
 
-    public boolean isCustomTransparency() {
-        return colorType.hasTransparency() && isCustom();
-    }
-
-    private boolean isCustom() {
+    /**
+     * Returns whether the gradient is calculated by Pixelitor instead of Java2D.
+     */
+    public boolean isCustom() {
         return switch (type) {
             case LINEAR, RADIAL -> false;
             case ANGLE, SPIRAL_CW, SPIRAL_CCW, DIAMOND -> true;
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.tools.gradient.paints;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+
+import static java.awt.RenderingHints.KEY_DITHERING;
+import static java.awt.RenderingHints.VALUE_DITHER_ENABLE;
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+
+/**
+ * A two-color gradient paint implemented in Pixelitor.
+ * Dithering is used if the {@link RenderingHints#KEY_DITHERING} hint is enabled.
+ */
+public interface CustomGradientPaint extends Paint {
+    Color startColor();
+
+    Color endColor();
+
+    /**
+     * Creates a context for the given transform from user space into device space.
+     */
+    GradientPaintContext createContext(AffineTransform xform, ColorModel cm, boolean dither);
+
+    @Override
+    default PaintContext createContext(ColorModel cm,
+                                       Rectangle deviceBounds, Rectangle2D userBounds,
+                                       AffineTransform xform, RenderingHints hints) {
+        boolean dither = hints != null && hints.get(KEY_DITHERING) == VALUE_DITHER_ENABLE;
+        return createContext(xform, cm, dither);
+    }
+
+    @Override
+    default int getTransparency() {
+        int a1 = startColor().getAlpha();
+        int a2 = endColor().getAlpha();
+        return (a1 & a2) == 0xFF ? OPAQUE : TRANSLUCENT;
+    }
+
+    /**
+     * Fills the given image in parallel, bypassing Java2D, and returns true,
+     * or returns false if the image type isn't supported.
+     * The user space is the coordinate system of the image.
+     */
+    default boolean fill(BufferedImage dest, boolean dither) {
+        return fill(dest, 0, 0, dither);
+    }
+
+    /**
+     * Same as the above, but the top-left pixel
+     * of the image is at the given point in user space.
+     */
+    default boolean fill(BufferedImage dest, int x, int y, boolean dither) {
+        ColorModel cm;
+        if (dest.getType() == TYPE_INT_ARGB) {
+            cm = ColorModel.getRGBdefault();
+        } else if (dest.getType() == TYPE_BYTE_GRAY) {
+            cm = dest.getColorModel();
+        } else {
+            return false;
+        }
+        createContext(AffineTransform.getTranslateInstance(-x, -y), cm, dither).fill(dest);
+        return true;
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.tools.gradient.paints;
+
+import pixelitor.ThreadPool;
+
+import java.awt.Color;
+import java.awt.PaintContext;
+import java.awt.image.*;
+
+/**
+ * The common base class of the custom gradient paint contexts.
+ * The subclasses only calculate the position within the gradient
+ * (a number between 0 and 1) for the given point, and the colors
+ * are looked up in a table calculated once per context.
+ *
+ * The pixels can be calculated either tile by tile, as requested
+ * by Java2D, or directly into an image, with the rows processed in parallel.
+ */
+public abstract class GradientPaintContext implements PaintContext {
+    private static final int AA_RES = 4; // the resolution of AA supersampling
+    private static final int AA_RES2 = AA_RES * AA_RES;
+
+    private static final int LUT_SIZE = 4096;
+    private static final int MIN_BAND_HEIGHT = 16;
+
+    // the thresholds of the 4x4 ordered dithering
+    private static final int[] BAYER = {
+        0, 8, 2, 10,
+        12, 4, 14, 6,
+        3, 11, 1, 9,
+        15, 7, 13, 5};
+
+    private final ColorModel cm;
+    private final boolean gray;
+
+    // packed ARGB colors, or gray levels if gray is true
+    private final int[] lut;
+
+    // the dithering amplitude in gradient units, zero if there is no dithering
+    private final double ditherStep;
+
+    protected GradientPaintContext(Color startColor, Color endColor,
+                                   ColorModel cm, boolean dither) {
+        this.cm = cm;
+        gray = cm.getNumComponents() == 1;
+        lut = gray ? createGrayLUT(startColor, endColor) : createLUT(startColor, endColor);
+
+        int maxDelta;
+        if (gray) {
+            maxDelta = Math.abs(endColor.getRed() - startColor.getRed());
+        } else {
+            maxDelta = Math.max(
+                Math.max(Math.abs(endColor.getAlpha() - startColor.getAlpha()),
+                    Math.abs(endColor.getRed() - startColor.getRed())),
+                Math.max(Math.abs(endColor.getGreen() - startColor.getGreen()),
+                    Math.abs(endColor.getBlue() - startColor.getBlue())));
+        }
+        // one level of the steepest channel
+        ditherStep = dither && maxDelta > 0 ? 1.0 / maxDelta : 0;
+    }
+
+    private static int[] createLUT(Color startColor, Color endColor) {
+        int startAlpha = startColor.getAlpha();
+        int startRed = startColor.getRed();
+        int startGreen = startColor.getGreen();
+        int startBlue = startColor.getBlue();
+
+        int endAlpha = endColor.getAlpha();
+        int endRed = endColor.getRed();
+        int endGreen = endColor.getGreen();
+        int endBlue = endColor.getBlue();
+
+        int[] lut = new int[LUT_SIZE + 1];
+        for (int i = 0; i <= LUT_SIZE; i++) {
+            double t = i / (double) LUT_SIZE;
+            int a = (int) (startAlpha + t * (endAlpha - startAlpha));
+            int r = (int) (startRed + t * (endRed - startRed));
+            int g = (int) (startGreen + t * (endGreen - startGreen));
+            int b = (int) (startBlue + t * (endBlue - startBlue));
+            lut[i] = a << 24 | r << 16 | g << 8 | b;
+        }
+        return lut;
+    }
+
+    private static int[] createGrayLUT(Color startColor, Color endColor) {
+        int startGray = startColor.getRed();
+        int endGray = endColor.getRed();
+
+        int[] lut = new int[LUT_SIZE + 1];
+        for (int i = 0; i <= LUT_SIZE; i++) {
+            double t = i / (double) LUT_SIZE;
+            lut[i] = (int) (startGray + t * (endGray - startGray));
+        }
+        return lut;
+    }
+
+    /**
+     * Returns the position within the gradient (between 0 and 1) at the given point.
+     */
+    protected abstract double interpolate(double x, double y);
+
+    /**
+     * Returns whether the pixel at the given position is close
+     * enough to a sharp color transition to need supersampling.
+     */
+    protected abstract boolean needsAA(int x, int y, double interpolated);
+
+    @Override
+    public void dispose() {
+
+    }
+
+    @Override
+    public ColorModel getColorModel() {
+        return cm;
+    }
+
+    @Override
+    public Raster getRaster(int startX, int startY, int width, int height) {
+        WritableRaster raster = cm.createCompatibleWritableRaster(width, height);
+
+        if (!gray && raster.getDataBuffer() instanceof DataBufferInt db
+            && cm.equals(ColorModel.getRGBdefault())) {
+            // the packed colors can be written directly
+            int[] data = db.getData();
+            for (int j = 0; j < height; j++) {
+                fillRow(data, j * width, startX, startY + j, width);
+            }
+            return raster;
+        }
+
+        int[] pixels = new int[width * height];
+        for (int j = 0; j < height; j++) {
+            fillRow(pixels, j * width, startX, startY + j, width);
+        }
+        if (gray) {
+            raster.setPixels(0, 0, width, height, pixels);
+        } else {
+            int[] rasterData = new int[width * height * 4];
+            for (int i = 0; i < pixels.length; i++) {
+                int argb = pixels[i];
+                int base = i * 4;
+                rasterData[base] = (argb >>> 16) & 0xFF;
+                rasterData[base + 1] = (argb >>> 8) & 0xFF;
+                rasterData[base + 2] = argb & 0xFF;
+                rasterData[base + 3] = argb >>> 24;
+            }
+            raster.setPixels(0, 0, width, height, rasterData);
+        }
+        return raster;
+    }
+
+    /**
+     * Fills the given image, which must be of type TYPE_INT_ARGB,
+     * or TYPE_BYTE_GRAY if this is a grayscale context. The image
+     * pixels are in the same coordinate system as this context.
+     */
+    public void fill(BufferedImage dest) {
+        int width = dest.getWidth();
+        int height = dest.getHeight();
+        WritableRaster raster = dest.getRaster();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+
+        // the image can be a subimage sharing the data of a bigger image
+        SampleModel sm = raster.getSampleModel();
+        int tx = -raster.getSampleModelTranslateX();
+        int ty = -raster.getSampleModelTranslateY();
+
+        if (gray) {
+            assert dest.getType() == BufferedImage.TYPE_BYTE_GRAY;
+            var csm = (ComponentSampleModel) sm;
+            int scanline = csm.getScanlineStride();
+            int offset = csm.getOffset(tx, ty) + dataBuffer.getOffset();
+            byte[] data = ((DataBufferByte) dataBuffer).getData();
+            ThreadPool.forEachBand(height, MIN_BAND_HEIGHT, (startY, endY) -> {
+                int[] row = new int[width];
+                for (int y = startY; y < endY; y++) {
+                    fillRow(row, 0, 0, y, width);
+                    int rowOffset = offset + y * scanline;
+                    for (int x = 0; x < width; x++) {
+                        data[rowOffset + x] = (byte) row[x];
+                    }
+                }
+            });
+        } else {
+            assert dest.getType() == BufferedImage.TYPE_INT_ARGB;
+            var sppsm = (SinglePixelPackedSampleModel) sm;
+            int scanline = sppsm.getScanlineStride();
+            int offset = sppsm.getOffset(tx, ty) + dataBuffer.getOffset();
+            int[] data = ((DataBufferInt) dataBuffer).getData();
+            ThreadPool.forEachBand(height, MIN_BAND_HEIGHT, (startY, endY) -> {
+                for (int y = startY; y < endY; y++) {
+                    fillRow(data, offset + y * scanline, 0, y, width);
+                }
+            });
+        }
+    }
+
+    private void fillRow(int[] dest, int offset, int startX, int y, int width) {
+        int ditherRow = (y & 3) << 2;
+        for (int i = 0; i < width; i++) {
+            int x = startX + i;
+            double interpolated = interpolate(x, y);
+            if (needsAA(x, y, interpolated)) {
+                // the colors are linear in the interpolated value, so
+                // it's enough to average this value instead of the colors
+                interpolated = 0;
+                for (int m = 0; m < AA_RES; m++) {
+                    double yy = y + 1.0 / AA_RES * m - 0.5;
+                    for (int n = 0; n < AA_RES; n++) {
+                        double xx = x + 1.0 / AA_RES * n - 0.5;
+                        interpolated += interpolate(xx, yy);
+                    }
+                }
+                interpolated /= AA_RES2;
+            }
+            if (ditherStep != 0) {
+                // centered around zero, so that the average color doesn't shift
+                interpolated += ditherStep * ((BAYER[ditherRow + (x & 3)] + 0.5) / 16.0 - 0.5);
+            }
+
+            int index = (int) (interpolated * LUT_SIZE);
+            if (index > LUT_SIZE) {
+                index = LUT_SIZE;
+            } else if (index < 0) {
+                index = 0;
+            }
+            dest[offset + i] = lut[index];
+        }
+    }
+}
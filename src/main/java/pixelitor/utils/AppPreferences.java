@@ -54,6 +54,7 @@ import static javax.swing.SwingConstants.*;
 import static pixelitor.gui.ImageArea.Mode.FRAMES;
 import static pixelitor.gui.ImageArea.Mode.TABS;
 import static pixelitor.menus.file.RecentFilesMenu.MAX_RECENT_FILES;
+import static pixelitor.utils.Utils.NUM_BYTES_IN_MEGABYTE;
 
 /**
  * Static methods for saving and loading application preferences
@@ -90,6 +91,7 @@ public final class AppPreferences {
     private static final String LAST_SAVE_FORMAT_KEY = "last_save_fmt";
 
     private static final String UNDO_LEVELS_KEY = "undo_levels";
+    private static final String CACHE_BUDGET_KEY = "cache_budget_mb";
     private static final String THUMB_SIZE_KEY = "thumb_size";
     private static final String LAST_TOOL_KEY = "last_tool";
     private static final String THEME_KEY = "theme";
@@ -344,6 +346,19 @@ public final class AppPreferences {
         mainNode.putInt(UNDO_LEVELS_KEY, History.getUndoLevels());
     }
 
+    public static int loadCacheBudgetMB() {
+        int retVal = mainNode.getInt(CACHE_BUDGET_KEY, -1);
+        if (retVal <= 0) {
+            // by default, a quarter of the heap can be used by cached images
+            return Math.max(64, (int) (Runtime.getRuntime().maxMemory() / 4 / NUM_BYTES_IN_MEGABYTE));
+        }
+        return retVal;
+    }
+
+    private static void saveCacheBudget() {
+        mainNode.putInt(CACHE_BUDGET_KEY, CacheManager.getBudgetMB());
+    }
+
     public static int loadThumbSize() {
         return mainNode.getInt(THUMB_SIZE_KEY, LayerGUILayout.SMALL_THUMB_SIZE);
     }
@@ -403,6 +418,7 @@ public final class AppPreferences {
         saveFgBgColors();
         WorkSpace.saveVisibility();
         saveUndoLevels();
+        saveCacheBudget();
         saveThumbSize();
         TipsOfTheDay.saveNextTipNr();
         saveNewImageSize();
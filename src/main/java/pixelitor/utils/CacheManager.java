@@ -0,0 +1,270 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import pixelitor.utils.debug.DebugNode;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import static pixelitor.utils.Utils.NUM_BYTES_IN_MEGABYTE;
+
+/**
+ * The central registry of the {@link CachedImage}s. It keeps track of
+ * the memory used by the cached images, and if it exceeds the budget,
+ * then it evicts the images that are the least valuable to keep.
+ *
+ * The eviction uses the GreedyDual algorithm: every entry gets a
+ * priority equal to the current "inflation" value plus the weight
+ * of its recalculation cost, refreshed on every access. The entry with the
+ * smallest priority is evicted first, and its priority becomes the new
+ * inflation value, so that entries that are not used age over time.
+ * This means that without cost differences it works like an LRU cache,
+ * but expensive images survive several cheap ones.
+ *
+ * The same image can be stored in several caches (for example after
+ * duplicating a layer), but its memory is counted only once, as long
+ * as at least one of the caches still holds it.
+ */
+public class CacheManager {
+    private static final Set<Entry> entries = new HashSet<>();
+    private static final ReferenceQueue<CachedImage> collectedQueue = new ReferenceQueue<>();
+
+    // BufferedImage doesn't override equals, so the images are
+    // tracked by identity, and the keys don't keep them alive
+    private static final Map<BufferedImage, ImageRecord> images = new WeakHashMap<>();
+
+    private static long budgetBytes = AppPreferences.loadCacheBudgetMB() * (long) NUM_BYTES_IN_MEGABYTE;
+    private static long usedBytes = 0;
+    private static double inflation = 0;
+    private static long accessCounter = 0;
+
+    // statistics
+    private static long numHits = 0;
+    private static long numStores = 0;
+    private static long numEvictions = 0;
+
+    private CacheManager() {
+        // do not instantiate
+    }
+
+    static synchronized void store(CachedImage cache, BufferedImage image) {
+        purgeCollected();
+
+        Entry entry = cache.entry;
+        if (entry != null) {
+            entries.remove(entry);
+            entry.release();
+            cache.entry = null;
+        }
+        cache.setImageInternal(image);
+
+        if (image != null) {
+            ImageRecord record = images.computeIfAbsent(image,
+                img -> new ImageRecord(calcBytes(img)));
+            entry = new Entry(cache, record);
+            entry.refresh();
+            entries.add(entry);
+            cache.entry = entry;
+            numStores++;
+
+            evictIfNecessary(entry);
+        }
+    }
+
+    static synchronized void accessed(CachedImage cache) {
+        Entry entry = cache.entry;
+        if (entry != null) {
+            entry.refresh();
+            numHits++;
+        }
+    }
+
+    /**
+     * Evicts entries until the used memory fits into the budget.
+     * The given entry (which was just stored) is never evicted.
+     */
+    private static void evictIfNecessary(Entry protectedEntry) {
+        while (usedBytes > budgetBytes) {
+            Entry victim = null;
+            for (Entry entry : entries) {
+                if (entry != protectedEntry && (victim == null || entry.isLessValuableThan(victim))) {
+                    victim = entry;
+                }
+            }
+            if (victim == null) {
+                return; // only the protected entry is left
+            }
+            inflation = victim.priority;
+            evict(victim);
+        }
+    }
+
+    private static void evict(Entry entry) {
+        entries.remove(entry);
+        entry.release();
+        numEvictions++;
+
+        CachedImage cache = entry.get();
+        if (cache != null) {
+            cache.setImageInternal(null);
+            cache.entry = null;
+            cache.evicted();
+        }
+    }
+
+    /**
+     * Removes the entries whose caches were garbage collected,
+     * for example because their composition was closed.
+     */
+    private static void purgeCollected() {
+        Entry entry;
+        while ((entry = (Entry) collectedQueue.poll()) != null) {
+            if (entries.remove(entry)) {
+                entry.release();
+            }
+        }
+    }
+
+    public static synchronized void setBudgetMB(int budgetMB) {
+        budgetBytes = budgetMB * (long) NUM_BYTES_IN_MEGABYTE;
+        purgeCollected();
+        evictIfNecessary(null);
+    }
+
+    public static synchronized int getBudgetMB() {
+        return (int) (budgetBytes / NUM_BYTES_IN_MEGABYTE);
+    }
+
+    public static synchronized long getUsedBytes() {
+        purgeCollected();
+        return usedBytes;
+    }
+
+    public static synchronized int getNumEntries() {
+        purgeCollected();
+        return entries.size();
+    }
+
+    /**
+     * Evicts everything, for example to free memory before a big operation.
+     */
+    public static synchronized void evictAll() {
+        purgeCollected();
+        for (Entry entry : new ArrayList<>(entries)) {
+            evict(entry);
+        }
+    }
+
+    static long calcBytes(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        long bytesPerElement = DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+        return (long) buffer.getSize() * buffer.getNumBanks() * bytesPerElement;
+    }
+
+    public static synchronized DebugNode createDebugNode() {
+        purgeCollected();
+
+        DebugNode node = new DebugNode("image cache", entries);
+        node.addString("used", bytesToMB(usedBytes));
+        node.addString("budget", bytesToMB(budgetBytes));
+        node.addInt("# entries", entries.size());
+        node.addString("hits", String.valueOf(numHits));
+        node.addString("stores", String.valueOf(numStores));
+        node.addString("evictions", String.valueOf(numEvictions));
+
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingLong((Entry e) -> e.record.bytes).reversed());
+        int numShown = Math.min(20, sorted.size());
+        for (int i = 0; i < numShown; i++) {
+            Entry entry = sorted.get(i);
+            CachedImage cache = entry.get();
+            if (cache != null) {
+                node.addString(cache.getKind(), cache.getCost()
+                    + " cost, " + bytesToMB(entry.record.bytes));
+            }
+        }
+
+        return node;
+    }
+
+    private static String bytesToMB(long bytes) {
+        return String.format("%.2f MB", bytes / (double) NUM_BYTES_IN_MEGABYTE);
+    }
+
+    /**
+     * Counts how many entries hold the same image.
+     */
+    private static class ImageRecord {
+        private final long bytes;
+        private int numEntries = 0;
+
+        ImageRecord(long bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The bookkeeping record of a cached image. It references the cache
+     * only weakly, so that it doesn't keep alive the images of closed compositions.
+     */
+    static class Entry extends WeakReference<CachedImage> {
+        private final ImageRecord record;
+        private final int costWeight;
+        private double priority;
+        private long lastAccess;
+
+        Entry(CachedImage cache, ImageRecord record) {
+            super(cache, collectedQueue);
+            this.record = record;
+            this.costWeight = cache.getCost().getWeight();
+
+            if (record.numEntries++ == 0) {
+                usedBytes += record.bytes;
+            }
+        }
+
+        // must be called exactly once, when the entry is removed
+        void release() {
+            if (--record.numEntries == 0) {
+                usedBytes -= record.bytes;
+            }
+        }
+
+        void refresh() {
+            priority = inflation + costWeight;
+            lastAccess = ++accessCounter;
+        }
+
+        boolean isLessValuableThan(Entry other) {
+            if (priority != other.priority) {
+                return priority < other.priority;
+            }
+            return lastAccess < other.lastAccess; // LRU between equal priorities
+        }
+    }
+}
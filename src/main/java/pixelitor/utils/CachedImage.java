@@ -0,0 +1,132 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A derived image that can be recalculated at any time from other data,
+ * and therefore can be evicted by the {@link CacheManager} when
+ * the cached images together use more memory than allowed.
+ *
+ * The owners must be prepared for {@link #get()} returning null
+ * even if they have set an image before.
+ */
+public class CachedImage {
+    /**
+     * A hint about how expensive it is to recalculate an image.
+     * Images that are expensive to recalculate stay longer in the cache.
+     */
+    public enum Cost {
+        LOW(1), MEDIUM(4), HIGH(16);
+
+        private final int weight;
+
+        Cost(int weight) {
+            this.weight = weight;
+        }
+
+        int getWeight() {
+            return weight;
+        }
+    }
+
+    private final String kind;
+    private final Cost cost;
+    private volatile BufferedImage image;
+
+    // the bookkeeping record, managed by the CacheManager
+    CacheManager.Entry entry;
+
+    // optional, called after the image was evicted by the cache manager
+    private Runnable evictionListener;
+
+    public CachedImage(String kind, Cost cost) {
+        this.kind = kind;
+        this.cost = cost;
+    }
+
+    /**
+     * Returns the cached image, or null if it was never set,
+     * it was cleared or it was evicted.
+     */
+    public BufferedImage get() {
+        BufferedImage img = image;
+        if (img != null) {
+            CacheManager.accessed(this);
+        }
+        return img;
+    }
+
+    /**
+     * Returns the cached image without counting it as a cache hit.
+     */
+    public BufferedImage peek() {
+        return image;
+    }
+
+    public boolean isPresent() {
+        return image != null;
+    }
+
+    public void set(BufferedImage newImage) {
+        CacheManager.store(this, newImage);
+    }
+
+    /**
+     * Forgets the cached image, optionally also flushing it.
+     * It should be flushed only if it's not shared with other caches.
+     */
+    public void clear(boolean flush) {
+        BufferedImage old = image;
+        CacheManager.store(this, null);
+        if (flush && old != null) {
+            old.flush();
+        }
+    }
+
+    public void setEvictionListener(Runnable evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    // called by the cache manager while holding its lock
+    void setImageInternal(BufferedImage image) {
+        this.image = image;
+    }
+
+    void evicted() {
+        if (evictionListener != null) {
+            evictionListener.run();
+        }
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public Cost getCost() {
+        return cost;
+    }
+
+    @Override
+    public String toString() {
+        BufferedImage img = image;
+        String size = img == null ? "empty" : img.getWidth() + "x" + img.getHeight();
+        return kind + " (" + size + ", " + cost + " cost)";
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import pixelitor.ThreadPool;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+
+/**
+ * A set of colors, possibly with soft edges. It is used by the
+ * color-based selection tools (paint bucket, mask from color range)
+ * to decide which pixels are affected and how much.
+ *
+ * The bulk operations work on whole images in parallel row bands.
+ */
+@FunctionalInterface
+public interface ColorRange {
+    // the minimum number of rows processed by a single thread
+    int MIN_BAND_HEIGHT = 16;
+
+    /**
+     * Returns how much the given ARGB color belongs to the range,
+     * from 0 (not at all) to 255 (fully).
+     */
+    int coverage(int rgb);
+
+    /**
+     * Returns whether the given color belongs to the range at all.
+     */
+    default boolean contains(int rgb) {
+        return coverage(rgb) > 0;
+    }
+
+    /**
+     * Returns a range that contains the colors whose every
+     * channel (including alpha) is within the given tolerance
+     * of the corresponding channel of the reference color.
+     */
+    static ColorRange ofTolerance(int refRGB, int tolerance) {
+        return new ToleranceRange(refRGB, tolerance);
+    }
+
+    /**
+     * Calculates the coverage of every pixel of the given packed ARGB pixel array.
+     */
+    default byte[] createMask(int[] pixels, int width, int height) {
+        byte[] mask = new byte[width * height];
+        ThreadPool.forEachBand(height, MIN_BAND_HEIGHT, (startY, endY) -> {
+            int end = endY * width;
+            for (int i = startY * width; i < end; i++) {
+                mask[i] = (byte) coverage(pixels[i]);
+            }
+        });
+        return mask;
+    }
+
+    /**
+     * Creates a grayscale mask image from the given
+     * image, where white means full coverage.
+     */
+    default BufferedImage createMaskImage(BufferedImage src) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        BufferedImage maskImage = new BufferedImage(width, height, TYPE_BYTE_GRAY);
+        byte[] mask = ((DataBufferByte) maskImage.getRaster().getDataBuffer()).getData();
+
+        ThreadPool.forEachBand(height, MIN_BAND_HEIGHT, (startY, endY) -> {
+            int[] row = new int[width];
+            for (int y = startY; y < endY; y++) {
+                src.getRGB(0, y, width, 1, row, 0, width);
+                int offset = y * width;
+                for (int x = 0; x < width; x++) {
+                    mask[offset + x] = (byte) coverage(row[x]);
+                }
+            }
+        });
+        return maskImage;
+    }
+
+    /**
+     * Replaces all the contained colors of the given packed ARGB pixel array
+     * with the given color, and returns the bounds of the replaced pixels,
+     * or null if nothing was replaced.
+     */
+    default Rectangle replaceAll(int[] pixels, int width, int height, int newRGB) {
+        // the min and max replaced x of each row, max is -1 if nothing was replaced
+        int[] rowBounds = new int[height * 2];
+        ThreadPool.forEachBand(height, MIN_BAND_HEIGHT, (startY, endY) -> {
+            for (int y = startY; y < endY; y++) {
+                int rowMinX = Integer.MAX_VALUE;
+                int rowMaxX = -1;
+                int offset = y * width;
+                for (int x = 0; x < width; x++) {
+                    int i = offset + x;
+                    if (contains(pixels[i])) {
+                        pixels[i] = newRGB;
+                        if (x < rowMinX) {
+                            rowMinX = x;
+                        }
+                        rowMaxX = x;
+                    }
+                }
+                rowBounds[2 * y] = rowMinX;
+                rowBounds[2 * y + 1] = rowMaxX;
+            }
+        });
+
+        int minX = Integer.MAX_VALUE;
+        int maxX = -1;
+        int minY = -1;
+        int maxY = -1;
+        for (int y = 0; y < height; y++) {
+            int rowMaxX = rowBounds[2 * y + 1];
+            if (rowMaxX < 0) {
+                continue;
+            }
+            if (minY < 0) {
+                minY = y;
+            }
+            maxY = y;
+            minX = Math.min(minX, rowBounds[2 * y]);
+            maxX = Math.max(maxX, rowMaxX);
+        }
+        if (minY < 0) {
+            return null;
+        }
+        return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+    }
+
+    /**
+     * A hard-edged range defined by per-channel tolerances around a color.
+     */
+    final class ToleranceRange implements ColorRange {
+        private final int refRGB;
+        private final int refA, refR, refG, refB;
+        private final int tolerance;
+
+        private ToleranceRange(int refRGB, int tolerance) {
+            this.refRGB = refRGB;
+            this.tolerance = tolerance;
+            refA = (refRGB >>> 24) & 0xFF;
+            refR = (refRGB >>> 16) & 0xFF;
+            refG = (refRGB >>> 8) & 0xFF;
+            refB = refRGB & 0xFF;
+        }
+
+        @Override
+        public int coverage(int rgb) {
+            return contains(rgb) ? 255 : 0;
+        }
+
+        @Override
+        public boolean contains(int rgb) {
+            if (rgb == refRGB) {
+                return true;
+            }
+            return Math.abs(((rgb >>> 24) & 0xFF) - refA) <= tolerance
+                && Math.abs(((rgb >>> 16) & 0xFF) - refR) <= tolerance
+                && Math.abs(((rgb >>> 8) & 0xFF) - refG) <= tolerance
+                && Math.abs((rgb & 0xFF) - refB) <= tolerance;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import pixelitor.layers.Layer;
+
+import java.awt.Component;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A message handler that writes to the standard output and error streams,
+ * used when Pixelitor runs without a GUI.
+ */
+public class ConsoleMessageHandler implements MessageHandler {
+    private final boolean verbose;
+    private final AtomicInteger numErrors = new AtomicInteger();
+
+    public ConsoleMessageHandler(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    @Override
+    public void showInStatusBar(String msg) {
+        if (verbose) {
+            System.out.println(stripHTML(msg));
+        }
+    }
+
+    @Override
+    public ProgressHandler startProgress(String msg, int max) {
+        if (!verbose) {
+            return ProgressHandler.EMPTY;
+        }
+        String text = stripHTML(msg);
+        System.out.println(text + "...");
+        return new ProgressHandler() {
+            private int lastReported = 0;
+
+            @Override
+            public void updateProgress(int value) {
+                if (max <= 0) {
+                    return;
+                }
+                // report only every 10 percent
+                int percent = value * 100 / max;
+                if (percent >= lastReported + 10) {
+                    lastReported = percent - percent % 10;
+                    System.out.println(text + ": " + lastReported + "%");
+                }
+            }
+
+            @Override
+            public void stopProgress() {
+                System.out.println(text + ": finished");
+            }
+        };
+    }
+
+    @Override
+    public void showInfo(String title, String msg, Component parent) {
+        System.out.println(title + ": " + stripHTML(msg));
+    }
+
+    @Override
+    public void showWarning(String title, String msg, Component parent) {
+        System.err.println("Warning: " + title + ": " + stripHTML(msg));
+    }
+
+    @Override
+    public void showError(String title, String msg, Component parent) {
+        numErrors.incrementAndGet();
+        System.err.println("Error: " + title + ": " + stripHTML(msg));
+    }
+
+    @Override
+    public void showNotImageLayerError(Layer layer) {
+        showError("Not an image layer", layer.getName() + " is not an image layer", null);
+    }
+
+    @Override
+    public void showNotDrawableError(Layer layer) {
+        showError("Not an image layer or mask", layer.getName() + " is not an image layer or mask", null);
+    }
+
+    @Override
+    public void showException(Throwable e) {
+        numErrors.incrementAndGet();
+        e.printStackTrace();
+    }
+
+    @Override
+    public void showException(Throwable e, Thread srcThread) {
+        numErrors.incrementAndGet();
+        System.err.println("Exception in thread " + srcThread.getName());
+        e.printStackTrace();
+    }
+
+    @Override
+    public void showExceptionOnEDT(Throwable e) {
+        showException(e);
+    }
+
+    @Override
+    public boolean showYesNoQuestion(String title, String msg) {
+        // there is nobody to ask, the safe answer is no
+        return false;
+    }
+
+    public int getNumErrors() {
+        return numErrors.get();
+    }
+
+    private static String stripHTML(String msg) {
+        return msg.replaceAll("<[^>]*>", "");
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import pixelitor.ThreadPool;
+
+/**
+ * The exact Euclidean distance transform of Felzenszwalb and Huttenlocher,
+ * which runs in linear time: first the distances are calculated along
+ * the columns, and then each row takes the lower envelope of the
+ * resulting parabolas. Both passes are parallelized.
+ */
+public class DistanceTransform {
+    private static final int MIN_BAND_SIZE = 16;
+
+    // larger than any squared distance within an image
+    private static final float INF = 1.0e20f;
+
+    private DistanceTransform() {
+        // only static utility methods
+    }
+
+    /**
+     * Returns the squared distances of each pixel from the nearest
+     * pixel where the given mask is true (zero for these pixels).
+     * If the mask is false everywhere, the results are very large numbers.
+     */
+    public static float[] calcSquaredDistances(boolean[] mask, int width, int height) {
+        return calcSquaredDistances(mask, width, height, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Same as the above, but only the distances up to the given maximum are
+     * exact, the others are only guaranteed to be greater than the maximum.
+     * The pixels that are vertically further than the maximum from the
+     * mask are left out of the horizontal pass, which makes it faster.
+     */
+    public static float[] calcSquaredDistances(boolean[] mask, int width, int height, int maxDistance) {
+        float[] dist = new float[width * height];
+        double maxSquared = (double) maxDistance * maxDistance;
+
+        // the vertical pass
+        ThreadPool.forEachBand(width, MIN_BAND_SIZE, (startX, endX) -> {
+            float[] f = new float[height];
+            float[] d = new float[height];
+            int[] v = new int[height];
+            double[] z = new double[height + 1];
+            for (int x = startX; x < endX; x++) {
+                for (int y = 0; y < height; y++) {
+                    f[y] = mask[x + y * width] ? 0 : INF;
+                }
+                transform1D(f, d, v, z, height);
+                for (int y = 0; y < height; y++) {
+                    dist[x + y * width] = d[y] > maxSquared ? INF : d[y];
+                }
+            }
+        });
+
+        // the horizontal pass, in place
+        ThreadPool.forEachBand(height, MIN_BAND_SIZE, (startY, endY) -> {
+            float[] f = new float[width];
+            float[] d = new float[width];
+            int[] v = new int[width];
+            double[] z = new double[width + 1];
+            for (int y = startY; y < endY; y++) {
+                int offset = y * width;
+                System.arraycopy(dist, offset, f, 0, width);
+                transform1D(f, d, v, z, width);
+                System.arraycopy(d, 0, dist, offset, width);
+            }
+        });
+
+        return dist;
+    }
+
+    /**
+     * The one-dimensional squared distance transform of the sampled function f.
+     * The v, z arrays are working space for the parabolas of the lower envelope.
+     */
+    private static void transform1D(float[] f, float[] d, int[] v, double[] z, int n) {
+        int k = -1;
+        for (int q = 0; q < n; q++) {
+            if (f[q] >= INF) {
+                // this parabola is never part of the lower envelope
+                continue;
+            }
+            if (k == -1) {
+                k = 0;
+                v[0] = q;
+                z[0] = Double.NEGATIVE_INFINITY;
+                z[1] = Double.POSITIVE_INFINITY;
+                continue;
+            }
+            double s = intersection(f, v[k], q);
+            while (s <= z[k]) {
+                k--;
+                s = intersection(f, v[k], q);
+            }
+            k++;
+            v[k] = q;
+            z[k] = s;
+            z[k + 1] = Double.POSITIVE_INFINITY;
+        }
+
+        if (k == -1) {
+            // there are no finite values at all
+            for (int q = 0; q < n; q++) {
+                d[q] = INF;
+            }
+            return;
+        }
+
+        k = 0;
+        for (int q = 0; q < n; q++) {
+            while (z[k + 1] < q) {
+                k++;
+            }
+            int vk = v[k];
+            float dq = q - vk;
+            d[q] = dq * dq + f[vk];
+        }
+    }
+
+    // the horizontal position where the parabolas rooted at p and q intersect
+    private static double intersection(float[] f, int p, int q) {
+        return ((f[q] + (double) q * q) - (f[p] + (double) p * p)) / (2.0 * (q - p));
+    }
+}
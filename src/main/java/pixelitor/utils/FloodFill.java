@@ -0,0 +1,153 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * A scanline flood fill working on packed ARGB pixel arrays.
+ *
+ * It uses only primitive data structures (an int stack of pixel
+ * indices and a bit-packed visited set), so that even filling
+ * hundreds of megapixels doesn't create garbage objects.
+ */
+public final class FloodFill {
+    private FloodFill() {
+        // do not instantiate
+    }
+
+    /**
+     * Replaces the 4-connected area of the colors contained in the given
+     * range, starting at the given point, with the given color.
+     * Returns the bounds of the replaced area, or null if
+     * the start pixel is not in the range.
+     */
+    public static Rectangle fill(int[] pixels, int width, int height,
+                                 int startX, int startY,
+                                 ColorRange range, int newRGB) {
+        int startIndex = startY * width + startX;
+        if (!range.contains(pixels[startIndex])) {
+            return null;
+        }
+
+        // Needed because of the tolerance: we cannot assume that if
+        // a pixel is in the range, then it hasn't been processed yet.
+        // One bit per pixel, so this needs 1/32 of the image's memory.
+        long[] visited = new long[(pixels.length + 63) >>> 6];
+
+        int minX = startX;
+        int maxX = startX;
+        int minY = startY;
+        int maxY = startY;
+
+        IntStack stack = new IntStack();
+        stack.push(startIndex);
+
+        while (!stack.isEmpty()) {
+            int index = stack.pop();
+            if (isVisited(visited, index)) {
+                continue; // it was pushed more than once
+            }
+            int y = index / width;
+            int offset = y * width;
+            int x = index - offset;
+
+            // find the last replaceable point to the left
+            int spanMinX = x;
+            while (spanMinX > 0 && isFillable(pixels, visited, offset + spanMinX - 1, range)) {
+                spanMinX--;
+            }
+
+            // find the last replaceable point to the right
+            int spanMaxX = x;
+            while (spanMaxX < width - 1 && isFillable(pixels, visited, offset + spanMaxX + 1, range)) {
+                spanMaxX++;
+            }
+
+            // fill the span
+            for (int i = offset + spanMinX, end = offset + spanMaxX; i <= end; i++) {
+                pixels[i] = newRGB;
+                visited[i >>> 6] |= 1L << i;
+            }
+
+            minX = Math.min(minX, spanMinX);
+            maxX = Math.max(maxX, spanMaxX);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+
+            // look for new spans in the neighboring rows
+            if (y > 0) {
+                pushSpanStarts(pixels, visited, range, stack, offset - width, spanMinX, spanMaxX);
+            }
+            if (y < height - 1) {
+                pushSpanStarts(pixels, visited, range, stack, offset + width, spanMinX, spanMaxX);
+            }
+        }
+
+        return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+    }
+
+    /**
+     * Pushes one point for each run of fillable pixels
+     * between minX and maxX in the row starting at the given offset.
+     */
+    private static void pushSpanStarts(int[] pixels, long[] visited, ColorRange range,
+                                       IntStack stack, int rowOffset,
+                                       int minX, int maxX) {
+        boolean inRun = false;
+        for (int i = rowOffset + minX, end = rowOffset + maxX; i <= end; i++) {
+            boolean fillable = isFillable(pixels, visited, i, range);
+            if (fillable && !inRun) {
+                stack.push(i);
+            }
+            inRun = fillable;
+        }
+    }
+
+    private static boolean isFillable(int[] pixels, long[] visited, int index, ColorRange range) {
+        return !isVisited(visited, index) && range.contains(pixels[index]);
+    }
+
+    private static boolean isVisited(long[] visited, int index) {
+        return (visited[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * A growable stack of primitive ints.
+     */
+    private static class IntStack {
+        private int[] elements = new int[1024];
+        private int size = 0;
+
+        void push(int value) {
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, size * 2);
+            }
+            elements[size++] = value;
+        }
+
+        int pop() {
+            return elements[--size];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
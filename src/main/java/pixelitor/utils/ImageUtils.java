@@ -27,10 +27,12 @@ import com.twelvemonkeys.image.ImageUtil;
 import org.jdesktop.swingx.graphics.BlendComposite;
 import org.jdesktop.swingx.painter.CheckerboardPainter;
 import pixelitor.Canvas;
+import pixelitor.ThreadPool;
 import pixelitor.colors.Colors;
 import pixelitor.filters.Invert;
 import pixelitor.gui.utils.Dialogs;
 import pixelitor.layers.Layer;
+import pixelitor.layers.LayerCompositor;
 import pixelitor.selection.Selection;
 import pixelitor.tools.Tools;
 import pixelitor.utils.debug.Debug;
@@ -45,9 +47,11 @@ import java.awt.geom.AffineTransform;
 import java.awt.image.*;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.awt.AlphaComposite.SRC_OVER;
 import static java.awt.BasicStroke.CAP_ROUND;
@@ -70,11 +74,15 @@ public class ImageUtils {
     private static final double DEG_315_IN_RADIANS = Math.PI / 4;
     private static final Color CHECKERBOARD_GRAY = new Color(200, 200, 200);
 
-    private static final GraphicsConfiguration graphicsConfig = GraphicsEnvironment
-        .getLocalGraphicsEnvironment()
+    // null in headless mode, where there is no screen device
+    private static final GraphicsConfiguration graphicsConfig = GraphicsEnvironment.isHeadless()
+        ? null
+        : GraphicsEnvironment.getLocalGraphicsEnvironment()
         .getDefaultScreenDevice()
         .getDefaultConfiguration();
-    private static final ColorModel defaultColorModel = graphicsConfig.getColorModel();
+    private static final ColorModel defaultColorModel = graphicsConfig == null
+        ? ColorModel.getRGBdefault()
+        : graphicsConfig.getColorModel();
 
     private ImageUtils() {
     }
@@ -95,8 +103,8 @@ public class ImageUtils {
             }
         }
 
-        BufferedImage output = graphicsConfig.createCompatibleImage(
-            input.getWidth(), input.getHeight(), TRANSLUCENT);
+        BufferedImage output = createSysCompatibleImage(
+            input.getWidth(), input.getHeight());
         Graphics2D g = output.createGraphics();
         g.drawImage(input, 0, 0, null);
         g.dispose();
@@ -111,6 +119,10 @@ public class ImageUtils {
     public static BufferedImage createSysCompatibleImage(int width, int height) {
         assert width > 0 && height > 0;
 
+        if (graphicsConfig == null) {
+            // the same type as the compatible images on the usual platforms
+            return new BufferedImage(width, height, TYPE_INT_ARGB);
+        }
         return graphicsConfig.createCompatibleImage(width, height, TRANSLUCENT);
     }
 
@@ -147,181 +159,12 @@ public class ImageUtils {
             resize(img, targetWidth, targetHeight), onPool);
     }
 
-    public static BufferedImage resize(BufferedImage img, int targetWidth, int targetHeight) {
-        boolean progressiveBilinear = targetWidth < img.getWidth() / 2
-            || targetHeight < img.getHeight() / 2;
-        return getFasterScaledInstance(img, targetWidth, targetHeight, VALUE_INTERPOLATION_BICUBIC, progressiveBilinear);
-    }
-
-    // From the Filthy Rich Clients book
-
-    /**
-     * Convenience method that returns a scaled instance of the
-     * provided BufferedImage.
-     *
-     * @param img                 the original image to be scaled
-     * @param targetWidth         the desired width of the scaled instance,
-     *                            in pixels
-     * @param targetHeight        the desired height of the scaled instance,
-     *                            in pixels
-     * @param hint                one of the rendering hints that corresponds to
-     *                            RenderingHints.KEY_INTERPOLATION (e.g.
-     *                            RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR,
-     *                            RenderingHints.VALUE_INTERPOLATION_BILINEAR,
-     *                            RenderingHints.VALUE_INTERPOLATION_BICUBIC)
-     * @param progressiveBilinear if true, this method will use a multi-step
-     *                            scaling technique that provides higher quality than the usual
-     *                            one-step technique (only useful in down-scaling cases, where
-     *                            targetWidth or targetHeight is
-     *                            smaller than the original dimensions)
-     * @return a scaled version of the original BufferedImage
-     */
-    public static BufferedImage getFasterScaledInstance(BufferedImage img,
-                                                        int targetWidth, int targetHeight,
-                                                        Object hint,
-                                                        boolean progressiveBilinear) {
-        assert img != null;
-
-        int prevW = img.getWidth();
-        int prevH = img.getHeight();
-
-        if (targetWidth >= prevW || targetHeight >= prevH) {
-            progressiveBilinear = false;
-        }
-
-        int type = img.getType();
-
-        BufferedImage ret = img;
-        int w, h;
-        boolean isTranslucent = img.getTransparency() != Transparency.OPAQUE;
-
-        if (progressiveBilinear) {
-            // Use multi-step technique: start with original size, then
-            // scale down in multiple passes with drawImage()
-            // until the target size is reached
-            w = img.getWidth();
-            h = img.getHeight();
-        } else {
-            // Use one-step technique: scale directly from original
-            // size to target size with a single drawImage() call
-            w = targetWidth;
-            h = targetHeight;
-        }
-
-        BufferedImage scratchImage = null;
-        Graphics2D g2 = null;
-        do {
-            if (progressiveBilinear && w > targetWidth) {
-                w /= 2;
-                if (w < targetWidth) {
-                    w = targetWidth;
-                }
-            }
-
-            if (progressiveBilinear && h > targetHeight) {
-                h /= 2;
-                if (h < targetHeight) {
-                    h = targetHeight;
-                }
-            }
-
-            if (scratchImage == null || isTranslucent) {
-                // Use a single scratch buffer for all iterations
-                // and then copy to the final, correctly-sized image
-                // before returning
-                scratchImage = new BufferedImage(w, h, type);
-                g2 = scratchImage.createGraphics();
-            }
-            g2.setRenderingHint(KEY_INTERPOLATION, hint);
-            g2.drawImage(ret, 0, 0, w, h, 0, 0, prevW, prevH, null);
-            prevW = w;
-            prevH = h;
-
-            ret = scratchImage;
-        } while (w != targetWidth || h != targetHeight);
-
-        if (g2 != null) {
-            g2.dispose();
-        }
-
-        // If we used a scratch buffer that is larger than our target size,
-        // create an image of the right size and copy the results into it
-        if (targetWidth != ret.getWidth() || targetHeight != ret.getHeight()) {
-            scratchImage = new BufferedImage(targetWidth, targetHeight, type);
-            g2 = scratchImage.createGraphics();
-            g2.drawImage(ret, 0, 0, null);
-            g2.dispose();
-            ret = scratchImage;
-        }
-
-        return ret;
-    }
-
-    /**
-     * Also an iterative approach, but using even smaller steps
-     */
-    public static BufferedImage enlargeSmooth(BufferedImage src,
-                                              int targetWidth, int targetHeight,
-                                              Object hint, double step, ProgressTracker pt) {
-        int srcWidth = src.getWidth();
-        int srcHeight = src.getHeight();
-        double factorX = targetWidth / (double) srcWidth;
-        double factorY = targetHeight / (double) srcHeight;
-
-        // they should be the same, but rounding errors can cause small problems
-        assert Math.abs(factorX - factorY) < 0.05;
-
-        double factor = (factorX + factorY) / 2.0;
-        assert factor > 1.0; // this only makes sense for enlarging
-        double progress = 1.0;
-        double lastStep = factor / step;
-        BufferedImage last = src;
-        AffineTransform stepScale = AffineTransform.getScaleInstance(step, step);
-        while (progress < lastStep) {
-            progress = progress * step;
-            int newSrcWidth = (int) (srcWidth * progress);
-            int newSrcHeight = (int) (srcHeight * progress);
-            BufferedImage tmp = new BufferedImage(newSrcWidth, newSrcHeight, src.getType());
-            Graphics2D g = tmp.createGraphics();
-            if (hint != null) {
-                g.setRenderingHint(KEY_INTERPOLATION, hint);
-            }
-
-            g.drawImage(last, stepScale, null);
-            g.dispose();
-
-            BufferedImage willBeForgotten = last;
-            last = tmp;
-            willBeForgotten.flush();
-            pt.unitDone();
-        }
-
-        // do the last step: resize exactly to the target values
-        BufferedImage retVal = new BufferedImage(targetWidth, targetHeight, src.getType());
-        Graphics2D g = retVal.createGraphics();
-        if (hint != null) {
-            g.setRenderingHint(KEY_INTERPOLATION, hint);
-        }
-
-        g.drawImage(last, 0, 0, targetWidth, targetHeight, null);
-        g.dispose();
-        pt.unitDone();
-
-        return retVal;
-    }
-
     /**
-     * Returns the number of steps necessary for progress tracking
+     * Resizes the given image using a high-quality,
+     * multithreaded {@link Resampler}.
      */
-    public static int calcNumStepsForEnlargeSmooth(double resizeFactor, double step) {
-        double progress = 1.0;
-        double lastStep = resizeFactor / step;
-        int retVal = 1; // for the final step
-        while (progress < lastStep) {
-            progress = progress * step;
-            retVal++;
-        }
-        return retVal;
+    public static BufferedImage resize(BufferedImage img, int targetWidth, int targetHeight) {
+        return Resampler.resize(img, targetWidth, targetHeight);
     }
 
     public static boolean hasPackedIntArray(BufferedImage image) {
@@ -544,6 +387,24 @@ public class ImageUtils {
         return downSizeFast(src, thumbDim.width, thumbDim.height, painter);
     }
 
+    /**
+     * Similar to {@link #createThumbnail(BufferedImage, int, CheckerboardPainter)},
+     * but the thumbnail is calculated with area averaging, which gives
+     * much better results, but it has to read the whole source image.
+     * Use it only for thumbnails that are not updated frequently.
+     */
+    public static BufferedImage createSmoothThumbnail(BufferedImage src, int size) {
+        assert src != null;
+
+        Dimension thumbDim = calcThumbDimensions(src.getWidth(), src.getHeight(), size, true);
+        if (thumbDim.width == src.getWidth() && thumbDim.height == src.getHeight()) {
+            return downSizeFast(src, thumbDim.width, thumbDim.height, null);
+        }
+
+        BufferedImage scaled = Resampler.resize(src, thumbDim.width, thumbDim.height, Resampler.Kernel.BOX);
+        return downSizeFast(scaled, thumbDim.width, thumbDim.height, null);
+    }
+
     /**
      * Calculates the target dimensions if an image needs to be resized
      * to fit into a box of a given size without distorting the aspect ratio.
@@ -656,6 +517,133 @@ public class ImageUtils {
         return copy;
     }
 
+    /**
+     * Returns a 64-bit hash of the pixels of the given image. Equal images
+     * always have equal fingerprints, while different images have different
+     * fingerprints with a very high probability, so a matching fingerprint
+     * must be confirmed with {@link #haveSamePixels(BufferedImage, BufferedImage)}
+     * where a wrong match isn't acceptable. The rows are hashed in parallel.
+     */
+    public static long calcFingerprint(BufferedImage img) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        long[] rowHashes = new long[height];
+
+        WritableRaster raster = img.getRaster();
+        if (raster.getDataBuffer() instanceof DataBufferInt db
+            && raster.getSampleModel() instanceof SinglePixelPackedSampleModel sm) {
+            int[] data = db.getData();
+            int scanline = sm.getScanlineStride();
+            int offset = getDataOffset(raster, db, sm);
+            ThreadPool.forEachBand(height, 64, (startY, endY) -> {
+                for (int y = startY; y < endY; y++) {
+                    long h = y;
+                    int rowStart = offset + y * scanline;
+                    for (int i = rowStart, end = rowStart + width; i < end; i++) {
+                        h = mixHash(h, data[i]);
+                    }
+                    rowHashes[y] = h;
+                }
+            });
+        } else if (raster.getTransferType() == DataBuffer.TYPE_BYTE) {
+            // for example grayscale masks
+            ThreadPool.forEachBand(height, 64, (startY, endY) -> {
+                byte[] row = new byte[width * raster.getNumDataElements()];
+                for (int y = startY; y < endY; y++) {
+                    raster.getDataElements(0, y, width, 1, row);
+                    long h = y;
+                    for (byte v : row) {
+                        h = mixHash(h, v);
+                    }
+                    rowHashes[y] = h;
+                }
+            });
+        } else {
+            ThreadPool.forEachBand(height, 64, (startY, endY) -> {
+                int[] row = new int[width];
+                for (int y = startY; y < endY; y++) {
+                    img.getRGB(0, y, width, 1, row, 0, width);
+                    long h = y;
+                    for (int v : row) {
+                        h = mixHash(h, v);
+                    }
+                    rowHashes[y] = h;
+                }
+            });
+        }
+
+        long h = ((long) width << 32 | height) ^ img.getType();
+        for (long rowHash : rowHashes) {
+            h = Long.rotateLeft((h ^ rowHash) * 0xC2B2_AE3D_27D4_EB4FL, 29);
+        }
+        return h;
+    }
+
+    private static long mixHash(long h, int v) {
+        return Long.rotateLeft((h ^ v) * 0x9E37_79B9_7F4A_7C15L, 31);
+    }
+
+    /**
+     * Returns true if the two images have the same size, type and pixels.
+     * The rows are compared in parallel, and the comparison
+     * stops at the first difference.
+     */
+    public static boolean haveSamePixels(BufferedImage a, BufferedImage b) {
+        if (a == b) {
+            return true;
+        }
+        int width = a.getWidth();
+        int height = a.getHeight();
+        if (width != b.getWidth() || height != b.getHeight() || a.getType() != b.getType()) {
+            return false;
+        }
+
+        AtomicBoolean different = new AtomicBoolean();
+        WritableRaster rasterA = a.getRaster();
+        WritableRaster rasterB = b.getRaster();
+        if (rasterA.getDataBuffer() instanceof DataBufferInt dbA
+            && rasterA.getSampleModel() instanceof SinglePixelPackedSampleModel smA
+            && rasterB.getDataBuffer() instanceof DataBufferInt dbB
+            && rasterB.getSampleModel() instanceof SinglePixelPackedSampleModel smB) {
+            int[] dataA = dbA.getData();
+            int[] dataB = dbB.getData();
+            int scanlineA = smA.getScanlineStride();
+            int scanlineB = smB.getScanlineStride();
+            int offsetA = getDataOffset(rasterA, dbA, smA);
+            int offsetB = getDataOffset(rasterB, dbB, smB);
+            ThreadPool.forEachBand(height, 64, (startY, endY) -> {
+                for (int y = startY; y < endY && !different.get(); y++) {
+                    int startA = offsetA + y * scanlineA;
+                    int startB = offsetB + y * scanlineB;
+                    if (!Arrays.equals(dataA, startA, startA + width,
+                        dataB, startB, startB + width)) {
+                        different.set(true);
+                    }
+                }
+            });
+        } else {
+            ThreadPool.forEachBand(height, 64, (startY, endY) -> {
+                int[] rowA = new int[width];
+                int[] rowB = new int[width];
+                for (int y = startY; y < endY && !different.get(); y++) {
+                    a.getRGB(0, y, width, 1, rowA, 0, width);
+                    b.getRGB(0, y, width, 1, rowB, 0, width);
+                    if (!Arrays.equals(rowA, rowB)) {
+                        different.set(true);
+                    }
+                }
+            });
+        }
+        return !different.get();
+    }
+
+    // the index of the first pixel of a (possibly sub-) image in its data array
+    private static int getDataOffset(WritableRaster raster, DataBufferInt db,
+                                     SinglePixelPackedSampleModel sm) {
+        return db.getOffset() + sm.getOffset(
+            -raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+    }
+
     public static Boolean isSubImage(BufferedImage src) {
         WritableRaster raster = src.getRaster();
         return raster.getSampleModelTranslateX() != 0
@@ -1233,7 +1221,9 @@ public class ImageUtils {
     public static BufferedImage calculateCompositeImage(List<Layer> layers, Canvas canvas) {
         if (layers.size() == 1) { // shortcut
             Layer layer = layers.getFirst();
-            if (Tools.currentTool.isDirectDrawing() && layer.isVisible()) {
+            // there is no current tool in headless mode
+            boolean directDrawing = Tools.currentTool == null || Tools.currentTool.isDirectDrawing();
+            if (directDrawing && layer.isVisible()) {
                 BufferedImage layerImg = layer.asImage(true, true);
 
                 // it can be null if there's a single adjustment layer
@@ -1245,26 +1235,7 @@ public class ImageUtils {
 
         var compositeImg = new BufferedImage(
             canvas.getWidth(), canvas.getHeight(), TYPE_INT_ARGB_PRE);
-        Graphics2D g = compositeImg.createGraphics();
-
-        boolean firstVisibleLayer = true;
-        for (Layer layer : layers) {
-            if (layer.isVisible()) {
-                BufferedImage result = layer.applyLayer(g, compositeImg, firstVisibleLayer);
-                if (result != null) { // adjustment layer or watermarking text layer
-                    compositeImg = result;
-                    if (g != null) {
-                        g.dispose();
-                    }
-                    g = compositeImg.createGraphics();
-                }
-                firstVisibleLayer = false;
-            }
-        }
-
-        g.dispose();
-
-        return compositeImg;
+        return LayerCompositor.composite(layers, compositeImg, true);
     }
 
     public static BufferedImage createCircleThumb(Color color) {
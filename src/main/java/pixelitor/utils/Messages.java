@@ -39,6 +39,10 @@ public class Messages {
         Messages.msgHandler = msgHandler;
     }
 
+    public static MessageHandler getMsgHandler() {
+        return msgHandler;
+    }
+
     public static void showInfo(String title, String message) {
         msgHandler.showInfo(title, message, null);
     }
@@ -0,0 +1,565 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import pixelitor.ThreadPool;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+import static java.awt.image.BufferedImage.*;
+
+/**
+ * A separable, multithreaded image resampler.
+ *
+ * The filter weights are precomputed once for each axis, then the image
+ * is filtered horizontally and vertically (in the order that needs the
+ * smaller intermediate buffer), with the rows distributed on the {@link ThreadPool}.
+ * The filtering is done with premultiplied alpha, so that
+ * transparent pixels don't bleed their color into their neighbors.
+ */
+public class Resampler {
+    // the minimum number of rows processed by a single thread
+    private static final int MIN_BAND_HEIGHT = 8;
+
+    // The maximum number of floats in the intermediate buffer (64 MB).
+    // Larger images are resampled in bands of rows.
+    private static final long MAX_BUFFER_FLOATS = 1L << 24;
+
+    // some JVMs can't allocate arrays of exactly Integer.MAX_VALUE elements
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    /**
+     * The reconstruction filters supported by the resampler.
+     */
+    public enum Kernel {
+        /**
+         * Nearest neighbor when enlarging, exact area average when shrinking
+         */
+        BOX("Box (Area Average)", 0.5) {
+            @Override
+            double weight(double x) {
+                return x >= -0.5 && x < 0.5 ? 1.0 : 0.0;
+            }
+        }, BILINEAR("Bilinear", 1.0) {
+            @Override
+            double weight(double x) {
+                x = Math.abs(x);
+                return x < 1.0 ? 1.0 - x : 0.0;
+            }
+        }, MITCHELL("Mitchell", 2.0) {
+            // the Mitchell-Netravali filter with B = C = 1/3
+            private static final double B = 1.0 / 3.0;
+            private static final double C = 1.0 / 3.0;
+
+            @Override
+            double weight(double x) {
+                x = Math.abs(x);
+                double x2 = x * x;
+                if (x < 1.0) {
+                    return ((12 - 9 * B - 6 * C) * x * x2
+                        + (-18 + 12 * B + 6 * C) * x2
+                        + (6 - 2 * B)) / 6.0;
+                }
+                if (x < 2.0) {
+                    return ((-B - 6 * C) * x * x2
+                        + (6 * B + 30 * C) * x2
+                        + (-12 * B - 48 * C) * x
+                        + (8 * B + 24 * C)) / 6.0;
+                }
+                return 0.0;
+            }
+        }, LANCZOS3("Lanczos3", 3.0) {
+            @Override
+            double weight(double x) {
+                x = Math.abs(x);
+                if (x < 1.0e-8) {
+                    return 1.0;
+                }
+                if (x >= 3.0) {
+                    return 0.0;
+                }
+                double pix = Math.PI * x;
+                return 3.0 * Math.sin(pix) * Math.sin(pix / 3.0) / (pix * pix);
+            }
+        };
+
+        private final String displayName;
+        private final double support;
+
+        Kernel(String displayName, double support) {
+            this.displayName = displayName;
+            this.support = support;
+        }
+
+        abstract double weight(double x);
+
+        /**
+         * Returns the kernel that gives the best results
+         * for the given size change by default.
+         */
+        public static Kernel forScaling(int srcWidth, int srcHeight,
+                                        int targetWidth, int targetHeight) {
+            if (targetWidth < srcWidth || targetHeight < srcHeight) {
+                return LANCZOS3;
+            }
+            // Lanczos would create ringing artifacts when enlarging
+            return MITCHELL;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    private Resampler() {
+        // do not instantiate
+    }
+
+    /**
+     * Resizes the given image with a kernel chosen automatically.
+     */
+    public static BufferedImage resize(BufferedImage src, int targetWidth, int targetHeight) {
+        Kernel kernel = Kernel.forScaling(src.getWidth(), src.getHeight(),
+            targetWidth, targetHeight);
+        return resize(src, targetWidth, targetHeight, kernel);
+    }
+
+    /**
+     * Resizes the given image with the given kernel. The result has
+     * the same type as the source for packed int and gray images,
+     * and the same color model for all other image types.
+     */
+    public static BufferedImage resize(BufferedImage src,
+                                       int targetWidth, int targetHeight,
+                                       Kernel kernel) {
+        assert src != null;
+        assert targetWidth > 0 && targetHeight > 0 : "target = " + targetWidth + "x" + targetHeight;
+
+        int srcWidth = src.getWidth();
+        int srcHeight = src.getHeight();
+        int type = src.getType();
+
+        if (type == TYPE_BYTE_GRAY) {
+            return resizeGray(src, targetWidth, targetHeight, kernel);
+        }
+
+        boolean packed = (type == TYPE_INT_ARGB || type == TYPE_INT_ARGB_PRE || type == TYPE_INT_RGB)
+            && !isSubImage(src);
+        BufferedImage input = packed ? src : copyToARGB(src);
+        int[] srcPixels = ((DataBufferInt) input.getRaster().getDataBuffer()).getData();
+
+        int dstType = packed ? type : TYPE_INT_ARGB;
+        BufferedImage dst = new BufferedImage(targetWidth, targetHeight, dstType);
+        int[] dstPixels = ((DataBufferInt) dst.getRaster().getDataBuffer()).getData();
+
+        int inputType = input.getType();
+        resample(srcPixels, srcWidth, srcHeight, dstPixels, targetWidth, targetHeight, kernel,
+            inputType == TYPE_INT_ARGB_PRE, inputType != TYPE_INT_RGB,
+            dstType == TYPE_INT_ARGB_PRE);
+
+        if (packed) {
+            return dst;
+        }
+
+        // convert back to the original color model
+        BufferedImage converted = createImageWithSameCM(src, targetWidth, targetHeight);
+        Graphics2D g = converted.createGraphics();
+        g.drawImage(dst, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+
+    private static BufferedImage resizeGray(BufferedImage src,
+                                            int targetWidth, int targetHeight,
+                                            Kernel kernel) {
+        int srcWidth = src.getWidth();
+        int srcHeight = src.getHeight();
+
+        byte[] srcGray = isSubImage(src)
+            ? getGrayData(copyGray(src))
+            : getGrayData(src);
+        int[] srcPixels = new int[srcWidth * srcHeight];
+        ThreadPool.forEachBand(srcPixels.length, 64 * 1024, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                int v = srcGray[i] & 0xFF;
+                srcPixels[i] = 0xFF_00_00_00 | v << 16 | v << 8 | v;
+            }
+        });
+
+        int[] dstPixels = new int[targetWidth * targetHeight];
+        resample(srcPixels, srcWidth, srcHeight, dstPixels, targetWidth, targetHeight,
+            kernel, true, false, true);
+
+        BufferedImage dst = createImageWithSameCM(src, targetWidth, targetHeight);
+        byte[] dstGray = getGrayData(dst);
+        ThreadPool.forEachBand(dstPixels.length, 64 * 1024, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                dstGray[i] = (byte) (dstPixels[i] >>> 16);
+            }
+        });
+        return dst;
+    }
+
+    /**
+     * Resamples packed int ARGB pixels. All color filtering
+     * happens in premultiplied space, independently of how the source
+     * and destination pixels are stored.
+     */
+    static void resample(int[] src, int srcWidth, int srcHeight,
+                         int[] dst, int dstWidth, int dstHeight,
+                         Kernel kernel,
+                         boolean srcPremultiplied, boolean srcHasAlpha,
+                         boolean dstPremultiplied) {
+        resample(src, srcWidth, srcHeight, dst, dstWidth, dstHeight, kernel,
+            srcPremultiplied, srcHasAlpha, dstPremultiplied, MAX_BUFFER_FLOATS);
+    }
+
+    // the maximum buffer size is a parameter only for the tests
+    static void resample(int[] src, int srcWidth, int srcHeight,
+                         int[] dst, int dstWidth, int dstHeight,
+                         Kernel kernel,
+                         boolean srcPremultiplied, boolean srcHasAlpha,
+                         boolean dstPremultiplied, long maxBufferFloats) {
+        AxisWeights wx = new AxisWeights(srcWidth, dstWidth, kernel);
+        AxisWeights wy = new AxisWeights(srcHeight, dstHeight, kernel);
+
+        // choose the pass order that results in the smaller intermediate buffer
+        // (4 floats for each pixel)
+        long horFirstSize = 4L * dstWidth * srcHeight;
+        long verFirstSize = 4L * srcWidth * dstHeight;
+        if (Math.min(horFirstSize, verFirstSize) > maxBufferFloats) {
+            resampleInBands(src, srcWidth, dst, dstWidth, dstHeight, wx, wy,
+                srcPremultiplied, srcHasAlpha, dstPremultiplied, maxBufferFloats);
+        } else if (horFirstSize <= verFirstSize) {
+            float[] tmp = new float[(int) horFirstSize];
+            ThreadPool.forEachBand(srcHeight, MIN_BAND_HEIGHT, (start, end) ->
+                horizontalFromInts(src, srcWidth, tmp, dstWidth, wx,
+                    srcPremultiplied, srcHasAlpha, start, end));
+            ThreadPool.forEachBand(dstHeight, MIN_BAND_HEIGHT, (start, end) ->
+                verticalToInts(tmp, dst, dstWidth, wy, dstPremultiplied, start, end));
+        } else {
+            float[] tmp = new float[(int) verFirstSize];
+            ThreadPool.forEachBand(dstHeight, MIN_BAND_HEIGHT, (start, end) ->
+                verticalFromInts(src, srcWidth, tmp, 0, wy,
+                    srcPremultiplied, srcHasAlpha, start, end));
+            ThreadPool.forEachBand(dstHeight, MIN_BAND_HEIGHT, (start, end) ->
+                horizontalToInts(tmp, 0, srcWidth, dst, dstWidth, wx, dstPremultiplied, start, end));
+        }
+    }
+
+    /**
+     * Resamples images that would need a too large intermediate buffer.
+     * The destination rows are processed in bands, and each band is
+     * filtered vertically and then horizontally, reusing the same buffer.
+     */
+    private static void resampleInBands(int[] src, int srcWidth,
+                                        int[] dst, int dstWidth, int dstHeight,
+                                        AxisWeights wx, AxisWeights wy,
+                                        boolean srcPremultiplied, boolean srcHasAlpha,
+                                        boolean dstPremultiplied, long maxBufferFloats) {
+        long rowFloats = 4L * srcWidth;
+        if (rowFloats > MAX_ARRAY_LENGTH) {
+            throw new IllegalArgumentException("the image is too wide: " + srcWidth);
+        }
+        int bandHeight = (int) Math.max(1, Math.min(dstHeight,
+            Math.min(maxBufferFloats, MAX_ARRAY_LENGTH) / rowFloats));
+        float[] tmp = new float[(int) (bandHeight * rowFloats)];
+
+        for (int bandStart = 0; bandStart < dstHeight; bandStart += bandHeight) {
+            int firstRow = bandStart;
+            int bandEnd = Math.min(dstHeight, bandStart + bandHeight);
+
+            // the vertical pass accumulates into the buffer
+            Arrays.fill(tmp, 0, (int) ((bandEnd - firstRow) * rowFloats), 0);
+
+            ThreadPool.forEachBand(bandEnd - firstRow, MIN_BAND_HEIGHT, (start, end) ->
+                verticalFromInts(src, srcWidth, tmp, firstRow, wy,
+                    srcPremultiplied, srcHasAlpha, firstRow + start, firstRow + end));
+            ThreadPool.forEachBand(bandEnd - firstRow, MIN_BAND_HEIGHT, (start, end) ->
+                horizontalToInts(tmp, firstRow, srcWidth, dst, dstWidth, wx,
+                    dstPremultiplied, firstRow + start, firstRow + end));
+        }
+    }
+
+    private static void horizontalFromInts(int[] in, int inWidth,
+                                           float[] out, int outWidth,
+                                           AxisWeights wx,
+                                           boolean premultiplied, boolean hasAlpha,
+                                           int startRow, int endRow) {
+        int taps = wx.taps;
+        int[] indices = wx.indices;
+        float[] weights = wx.weights;
+        for (int y = startRow; y < endRow; y++) {
+            int inOffset = y * inWidth;
+            int outIndex = y * outWidth * 4;
+            for (int x = 0; x < outWidth; x++) {
+                float a = 0, r = 0, g = 0, b = 0;
+                int wi = x * taps;
+                for (int t = 0; t < taps; t++) {
+                    float w = weights[wi + t];
+                    if (w == 0) {
+                        continue;
+                    }
+                    int rgb = in[inOffset + indices[wi + t]];
+                    int pa = hasAlpha ? rgb >>> 24 : 255;
+                    float m = w;
+                    if (!premultiplied && pa != 255) {
+                        m *= pa / 255.0f;
+                    }
+                    a += w * pa;
+                    r += m * ((rgb >>> 16) & 0xFF);
+                    g += m * ((rgb >>> 8) & 0xFF);
+                    b += m * (rgb & 0xFF);
+                }
+                out[outIndex++] = a;
+                out[outIndex++] = r;
+                out[outIndex++] = g;
+                out[outIndex++] = b;
+            }
+        }
+    }
+
+    // the output rows are stored in the buffer starting with firstRow
+    private static void verticalFromInts(int[] in, int width,
+                                         float[] out, int firstRow, AxisWeights wy,
+                                         boolean premultiplied, boolean hasAlpha,
+                                         int startRow, int endRow) {
+        int taps = wy.taps;
+        int[] indices = wy.indices;
+        float[] weights = wy.weights;
+        for (int y = startRow; y < endRow; y++) {
+            int outOffset = (y - firstRow) * width * 4;
+            int wi = y * taps;
+            // accumulating whole rows keeps the memory access sequential
+            for (int t = 0; t < taps; t++) {
+                float w = weights[wi + t];
+                if (w == 0) {
+                    continue;
+                }
+                int inOffset = indices[wi + t] * width;
+                int outIndex = outOffset;
+                for (int x = 0; x < width; x++) {
+                    int rgb = in[inOffset + x];
+                    int pa = hasAlpha ? rgb >>> 24 : 255;
+                    float m = w;
+                    if (!premultiplied && pa != 255) {
+                        m *= pa / 255.0f;
+                    }
+                    out[outIndex++] += w * pa;
+                    out[outIndex++] += m * ((rgb >>> 16) & 0xFF);
+                    out[outIndex++] += m * ((rgb >>> 8) & 0xFF);
+                    out[outIndex++] += m * (rgb & 0xFF);
+                }
+            }
+        }
+    }
+
+    // the input rows are stored in the buffer starting with firstRow
+    private static void horizontalToInts(float[] in, int firstRow, int inWidth,
+                                         int[] out, int outWidth,
+                                         AxisWeights wx, boolean dstPremultiplied,
+                                         int startRow, int endRow) {
+        int taps = wx.taps;
+        int[] indices = wx.indices;
+        float[] weights = wx.weights;
+        for (int y = startRow; y < endRow; y++) {
+            int inOffset = (y - firstRow) * inWidth * 4;
+            int outIndex = y * outWidth;
+            for (int x = 0; x < outWidth; x++) {
+                float a = 0, r = 0, g = 0, b = 0;
+                int wi = x * taps;
+                for (int t = 0; t < taps; t++) {
+                    float w = weights[wi + t];
+                    if (w == 0) {
+                        continue;
+                    }
+                    int i = inOffset + indices[wi + t] * 4;
+                    a += w * in[i];
+                    r += w * in[i + 1];
+                    g += w * in[i + 2];
+                    b += w * in[i + 3];
+                }
+                out[outIndex++] = toPackedInt(a, r, g, b, dstPremultiplied);
+            }
+        }
+    }
+
+    private static void verticalToInts(float[] in, int[] out, int width,
+                                       AxisWeights wy, boolean dstPremultiplied,
+                                       int startRow, int endRow) {
+        int taps = wy.taps;
+        int[] indices = wy.indices;
+        float[] weights = wy.weights;
+        float[] acc = new float[width * 4];
+        for (int y = startRow; y < endRow; y++) {
+            Arrays.fill(acc, 0);
+            int wi = y * taps;
+            for (int t = 0; t < taps; t++) {
+                float w = weights[wi + t];
+                if (w == 0) {
+                    continue;
+                }
+                int inOffset = indices[wi + t] * width * 4;
+                for (int i = 0; i < acc.length; i++) {
+                    acc[i] += w * in[inOffset + i];
+                }
+            }
+            int outIndex = y * width;
+            for (int x = 0, i = 0; x < width; x++, i += 4) {
+                out[outIndex++] = toPackedInt(acc[i], acc[i + 1], acc[i + 2], acc[i + 3], dstPremultiplied);
+            }
+        }
+    }
+
+    /**
+     * Converts premultiplied float components into a packed int. The
+     * negative lobes of some kernels can produce values outside the valid
+     * range, therefore the alpha is clamped to [0, 255] and the colors to [0, alpha].
+     */
+    private static int toPackedInt(float a, float r, float g, float b, boolean premultiplied) {
+        int ia = clamp((int) (a + 0.5f), 255);
+        if (ia == 0) {
+            return 0;
+        }
+        if (premultiplied) {
+            return ia << 24
+                | clamp((int) (r + 0.5f), ia) << 16
+                | clamp((int) (g + 0.5f), ia) << 8
+                | clamp((int) (b + 0.5f), ia);
+        }
+        if (ia == 255) {
+            return 0xFF_00_00_00
+                | clamp((int) (r + 0.5f), 255) << 16
+                | clamp((int) (g + 0.5f), 255) << 8
+                | clamp((int) (b + 0.5f), 255);
+        }
+        float f = 255.0f / a;
+        return ia << 24
+            | clamp((int) (r * f + 0.5f), 255) << 16
+            | clamp((int) (g * f + 0.5f), 255) << 8
+            | clamp((int) (b * f + 0.5f), 255);
+    }
+
+    private static int clamp(int v, int max) {
+        if (v < 0) {
+            return 0;
+        }
+        return Math.min(v, max);
+    }
+
+    /**
+     * The precomputed, normalized filter weights for one axis.
+     * Every destination coordinate has the same number of taps,
+     * and the source indices are already clamped to the edges.
+     */
+    static class AxisWeights {
+        final int taps;
+        final int[] indices;
+        final float[] weights;
+
+        AxisWeights(int srcSize, int dstSize, Kernel kernel) {
+            double scale = dstSize / (double) srcSize;
+
+            // when shrinking, the kernel is stretched so that it acts as a low-pass filter
+            double filterScale = Math.max(1.0, 1.0 / scale);
+            double support = kernel.support * filterScale;
+            boolean areaAverage = kernel == Kernel.BOX && filterScale > 1.0;
+
+            taps = (int) Math.ceil(2 * support) + 1;
+            indices = new int[dstSize * taps];
+            weights = new float[dstSize * taps];
+
+            double[] rawWeights = new double[taps];
+            for (int i = 0; i < dstSize; i++) {
+                // the center of the destination pixel in source coordinates
+                double center = (i + 0.5) / scale;
+                int left = (int) Math.floor(center - support);
+                double sum = 0;
+                for (int t = 0; t < taps; t++) {
+                    int j = left + t;
+                    double w;
+                    if (areaAverage) {
+                        // the exact overlap of the source pixel with the destination pixel
+                        double halfWidth = filterScale / 2.0;
+                        w = Math.max(0.0, Math.min(j + 1, center + halfWidth)
+                            - Math.max(j, center - halfWidth));
+                    } else {
+                        w = kernel.weight((j + 0.5 - center) / filterScale);
+                    }
+                    rawWeights[t] = w;
+                    sum += w;
+                    indices[i * taps + t] = Math.max(0, Math.min(srcSize - 1, j));
+                }
+
+                if (sum == 0) {
+                    // can't happen with the current kernels, but fall back to nearest neighbor
+                    int nearest = Math.max(0, Math.min(srcSize - 1, (int) center));
+                    for (int t = 0; t < taps; t++) {
+                        indices[i * taps + t] = nearest;
+                        weights[i * taps + t] = t == 0 ? 1.0f : 0.0f;
+                    }
+                } else {
+                    for (int t = 0; t < taps; t++) {
+                        weights[i * taps + t] = (float) (rawWeights[t] / sum);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isSubImage(BufferedImage src) {
+        WritableRaster raster = src.getRaster();
+        return raster.getSampleModelTranslateX() != 0
+            || raster.getSampleModelTranslateY() != 0
+            || raster.getParent() != null;
+    }
+
+    private static BufferedImage copyToARGB(BufferedImage src) {
+        BufferedImage copy = new BufferedImage(src.getWidth(), src.getHeight(), TYPE_INT_ARGB);
+        Graphics2D g = copy.createGraphics();
+        g.drawImage(src, 0, 0, null);
+        g.dispose();
+        return copy;
+    }
+
+    private static BufferedImage copyGray(BufferedImage src) {
+        BufferedImage copy = createImageWithSameCM(src, src.getWidth(), src.getHeight());
+        copy.setData(src.getData());
+        return copy;
+    }
+
+    private static byte[] getGrayData(BufferedImage img) {
+        return ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+    }
+
+    // the same as in ImageUtils, duplicated here so that the
+    // resampler doesn't depend on the screen's graphics configuration
+    private static BufferedImage createImageWithSameCM(BufferedImage src, int width, int height) {
+        ColorModel cm = src.getColorModel();
+        return new BufferedImage(cm,
+            cm.createCompatibleWritableRaster(width, height),
+            cm.isAlphaPremultiplied(), null);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import pixelitor.ThreadPool;
+
+import java.awt.geom.Point2D;
+import java.util.List;
+
+/**
+ * Finds the nearest seed point for any position, for example to
+ * calculate Voronoi cells. The seeds are bucketed into a uniform grid,
+ * and the search visits the grid cells in growing rings around the
+ * query position until no unvisited cell can contain a closer seed,
+ * so the result is exact for every {@link Metric}.
+ */
+public class SeedGrid {
+    private static final int MIN_BAND_HEIGHT = 8;
+
+    private final double[] seedX;
+    private final double[] seedY;
+    private final Metric metric;
+
+    private final int numHorCells;
+    private final int numVerCells;
+    private final double cellSize;
+
+    // the seeds of cell i are cellSeeds[cellStart[i]..cellStart[i + 1])
+    private final int[] cellStart;
+    private final int[] cellSeeds;
+
+    /**
+     * Creates a grid for seeds within the given area. The expected
+     * average distance between the seeds determines the cell size.
+     */
+    public SeedGrid(List<Point2D> seeds, int width, int height,
+                    double avgSeedDistance, Metric metric) {
+        this.metric = metric;
+        int numSeeds = seeds.size();
+        if (numSeeds == 0) {
+            throw new IllegalArgumentException("no seeds");
+        }
+        seedX = new double[numSeeds];
+        seedY = new double[numSeeds];
+        for (int i = 0; i < numSeeds; i++) {
+            Point2D seed = seeds.get(i);
+            seedX[i] = seed.getX();
+            seedY[i] = seed.getY();
+        }
+
+        cellSize = Math.max(1.0, avgSeedDistance);
+        numHorCells = Math.max(1, (int) Math.ceil(width / cellSize));
+        numVerCells = Math.max(1, (int) Math.ceil(height / cellSize));
+
+        // counting sort of the seeds by cell
+        int numCells = numHorCells * numVerCells;
+        cellStart = new int[numCells + 1];
+        int[] seedCells = new int[numSeeds];
+        for (int i = 0; i < numSeeds; i++) {
+            int cell = cellIndex(seedX[i], seedY[i]);
+            seedCells[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        for (int i = 0; i < numCells; i++) {
+            cellStart[i + 1] += cellStart[i];
+        }
+        cellSeeds = new int[numSeeds];
+        int[] fillPos = new int[numCells];
+        for (int i = 0; i < numSeeds; i++) {
+            int cell = seedCells[i];
+            cellSeeds[cellStart[cell] + fillPos[cell]++] = i;
+        }
+    }
+
+    private int cellIndex(double x, double y) {
+        return cellY(y) * numHorCells + cellX(x);
+    }
+
+    private int cellX(double x) {
+        return Math.clamp((int) (x / cellSize), 0, numHorCells - 1);
+    }
+
+    private int cellY(double y) {
+        return Math.clamp((int) (y / cellSize), 0, numVerCells - 1);
+    }
+
+    /**
+     * Returns the index of the seed closest to the given position.
+     */
+    public int findNearest(double x, double y) {
+        int cx = cellX(x);
+        int cy = cellY(y);
+
+        // the distance of the position from the edges of its own cell,
+        // which is zero or negative if the position is outside the grid
+        double edgeDist = Math.min(
+            Math.min(x - cx * cellSize, (cx + 1) * cellSize - x),
+            Math.min(y - cy * cellSize, (cy + 1) * cellSize - y));
+
+        double bestDist = Double.POSITIVE_INFINITY;
+        int bestIndex = -1;
+        int maxRing = Math.max(numHorCells, numVerCells);
+        for (int ring = 0; ring <= maxRing; ring++) {
+            if (bestIndex != -1) {
+                // any seed in this ring or farther is at least this far along one axis
+                double axisDist = edgeDist + (ring - 1) * cellSize;
+                if (axisDist > 0 && axisToMetric(axisDist) > bestDist) {
+                    break;
+                }
+            }
+            int minGX = cx - ring;
+            int maxGX = cx + ring;
+            int minGY = cy - ring;
+            int maxGY = cy + ring;
+            for (int gy = Math.max(0, minGY); gy <= Math.min(numVerCells - 1, maxGY); gy++) {
+                boolean fullRow = gy == minGY || gy == maxGY;
+                int step = fullRow ? 1 : maxGX - minGX;
+                for (int gx = minGX; gx <= maxGX; gx += Math.max(1, step)) {
+                    if (gx < 0 || gx >= numHorCells) {
+                        continue;
+                    }
+                    int cell = gy * numHorCells + gx;
+                    for (int i = cellStart[cell], end = cellStart[cell + 1]; i < end; i++) {
+                        int seed = cellSeeds[i];
+                        double dist = metric.distanceDouble(x, y, seedX[seed], seedY[seed]);
+                        if (dist < bestDist) {
+                            bestDist = dist;
+                            bestIndex = seed;
+                        }
+                    }
+                }
+            }
+        }
+        return bestIndex;
+    }
+
+    // converts a distance along one axis to the metric's (possibly squared) units
+    private double axisToMetric(double axisDist) {
+        return metric == Metric.EUCLIDEAN_SQUARED ? axisDist * axisDist : axisDist;
+    }
+
+    /**
+     * Calculates the index of the nearest seed for
+     * every pixel position in the given area, in parallel.
+     */
+    public int[] createLabelMap(int width, int height) {
+        int[] labels = new int[width * height];
+        ThreadPool.forEachBand(height, MIN_BAND_HEIGHT, (startY, endY) -> {
+            for (int y = startY; y < endY; y++) {
+                int offset = y * width;
+                for (int x = 0; x < width; x++) {
+                    labels[offset + x] = findNearest(x, y);
+                }
+            }
+        });
+        return labels;
+    }
+
+    public int getNumSeeds() {
+        return seedX.length;
+    }
+}
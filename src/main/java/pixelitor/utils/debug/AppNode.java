@@ -21,6 +21,7 @@ import pixelitor.Pixelitor;
 import pixelitor.Views;
 import pixelitor.gui.PixelitorWindow;
 import pixelitor.tools.Tools;
+import pixelitor.utils.CacheManager;
 
 /**
  * A debugging node for the application as a whole, the root of the debug tree
@@ -31,6 +32,7 @@ public class AppNode extends DebugNode {
 
         addQuotedString("version", Pixelitor.VERSION_NUMBER);
         add(DebugNodes.createSystemNode());
+        add(CacheManager.createDebugNode());
         add(Tools.getCurrent().createDebugNode("active tool"));
 //        add(History.createDebugNode());
 
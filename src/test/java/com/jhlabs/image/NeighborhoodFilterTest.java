@@ -0,0 +1,123 @@
+/*
+Copyright 2023 Laszlo Balazs-Csiki
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jhlabs.image;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import pixelitor.TestHelper;
+import pixelitor.filters.impl.MorphologyFilter;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+@DisplayName("NeighborhoodFilter tests")
+class NeighborhoodFilterTest {
+    @BeforeAll
+    static void beforeAllTests() {
+        TestHelper.setUnitTestingMode();
+    }
+
+    static Stream<NeighborhoodFilter> filtersToTest() {
+        var emboss = new EmbossFilter("Emboss");
+        emboss.setEmboss(true);
+        emboss.setBumpHeight(2.5f);
+
+        var oil = new OilFilter("Oil");
+        oil.setRangeX(4);
+        oil.setRangeY(2);
+        oil.setLevels(50);
+
+        var erode = new MorphologyFilter("Erode");
+        erode.setOp(MorphologyFilter.OP_ERODE);
+        erode.setKernel(MorphologyFilter.KERNEL_DIAMOND);
+        erode.setIterations(3);
+
+        var dilate = new MorphologyFilter("Dilate");
+        dilate.setOp(MorphologyFilter.OP_DILATE);
+        dilate.setKernel(MorphologyFilter.KERNEL_SQUARE);
+        dilate.setIterations(5);
+
+        return Stream.of(new MedianFilter("Median"), new ReduceNoiseFilter("Reduce Noise"),
+            new EdgeFilter("Edge"), emboss, oil, erode, dilate);
+    }
+
+    @ParameterizedTest(name = "#{index}: {0}")
+    @MethodSource("filtersToTest")
+    void bandsMatchSingleStrip(NeighborhoodFilter filter) {
+        // taller than a band if there are at least two cores
+        BufferedImage src = createRandomImage(97, 300);
+        assertArrayEquals(filterAsSingleStrip(filter, src), filter(filter, src));
+    }
+
+    @Test
+    void stripsMatchSingleStrip() {
+        // a narrow image that is taller than MAX_STRIP_PIXELS / width,
+        // so that the bands are split into several strips
+        BufferedImage src = createRandomImage(16, 150_001);
+
+        var erode = new MorphologyFilter("Erode");
+        erode.setOp(MorphologyFilter.OP_ERODE);
+        erode.setKernel(MorphologyFilter.KERNEL_DIAMOND);
+        erode.setIterations(3);
+
+        for (NeighborhoodFilter filter : List.of(new EdgeFilter("Edge"), erode)) {
+            assertArrayEquals(filterAsSingleStrip(filter, src), filter(filter, src),
+                filter.filterName);
+        }
+    }
+
+    private static int[] filter(NeighborhoodFilter filter, BufferedImage src) {
+        BufferedImage dst = filter.filter(src, null);
+        return getPixels(dst);
+    }
+
+    // the whole image is filtered with a single call
+    private static int[] filterAsSingleStrip(NeighborhoodFilter filter, BufferedImage src) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int[] outPixels = new int[width * height];
+        filter.filterRows(width, height, getPixels(src), 0, outPixels, 0, height);
+        return outPixels;
+    }
+
+    private static int[] getPixels(BufferedImage img) {
+        int width = img.getWidth();
+        return img.getRGB(0, 0, width, img.getHeight(), null, 0, width);
+    }
+
+    private static BufferedImage createRandomImage(int width, int height) {
+        Random random = new Random(42);
+        BufferedImage img = new BufferedImage(width, height, TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb = random.nextInt(4) == 0
+                    ? random.nextInt()
+                    : (x * 3 ^ y * 5) | 0xFF_00_00_00;
+                img.setRGB(x, y, rgb);
+            }
+        }
+        return img;
+    }
+}
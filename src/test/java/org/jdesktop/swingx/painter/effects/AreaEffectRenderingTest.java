@@ -0,0 +1,203 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.jdesktop.swingx.painter.effects;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.function.BiConsumer;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the area effects, which are calculated from a distance
+ * transform, with the output of the original algorithm, which
+ * drew the shape many times with widening strokes.
+ */
+@DisplayName("Area effect rendering tests")
+class AreaEffectRenderingTest {
+    private static final int WIDTH = 220;
+    private static final int HEIGHT = 160;
+
+    @Test
+    void glowMatchesStrokes() {
+        var effect = new GlowPathEffect();
+        effect.setBrushColor(Color.RED);
+        effect.setEffectWidth(16);
+
+        checkSimilar(effect, (g, shape) -> paintStrokes(g, shape, effect));
+    }
+
+    @Test
+    void shadowMatchesStrokes() {
+        var effect = new ShadowPathEffect(1.0f);
+        effect.setEffectWidth(12);
+
+        checkSimilar(effect, (g, shape) -> {
+            g.setPaint(effect.getBrushColor());
+            g.setComposite(AlphaComposite.getInstance(AlphaComposite.DST_OVER, 1.0f));
+            g.fill(shape);
+            paintStrokes(g, shape, effect);
+        });
+    }
+
+    @Test
+    void neonMatchesStrokes() {
+        var effect = new NeonBorderEffect(Color.GREEN, Color.WHITE, 10, 1.0f);
+
+        checkSimilar(effect, (g, shape) -> {
+            g.setComposite(AlphaComposite.SrcOver);
+            int steps = effect.getEffectWidthInt();
+            float half = steps / 2.0f;
+            for (int i = 0; i < steps; i++) {
+                float t = i < half ? (half - i) / half : (i - half) / half;
+                g.setPaint(interpolateColor(t, effect.getEdgeColor(), effect.getCenterColor()));
+                g.setStroke(new BasicStroke(steps + 1 - i, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+                g.draw(shape);
+            }
+        });
+    }
+
+    @Test
+    void previousRenderDoesNotAffectTheNext() {
+        var effect = new GlowPathEffect();
+        Shape shape = createShape();
+        Shape moved = AffineTransform.getTranslateInstance(10, 5).createTransformedShape(shape);
+
+        // both shapes have the same bounds size
+        renderEffect(effect, shape);
+        BufferedImage second = renderEffect(effect, moved);
+        BufferedImage fresh = renderEffect(new GlowPathEffect(), moved);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(fresh.getRGB(x, y), second.getRGB(x, y), "x = " + x + ", y = " + y);
+            }
+        }
+    }
+
+    // the strokes of the original glow and shadow effects
+    private static void paintStrokes(Graphics2D g, Shape shape, AbstractAreaEffect effect) {
+        g.setPaint(effect.getBrushColor());
+        int steps = effect.getBrushSteps();
+        g.setComposite(AlphaComposite.getInstance(AlphaComposite.DST_OVER, 1.0f / steps));
+        for (int i = 0; i < steps; i++) {
+            float brushWidth = (float) (i * effect.getEffectWidth() / steps);
+            g.setStroke(new BasicStroke(brushWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+            g.draw(shape);
+        }
+    }
+
+    private static void checkSimilar(AbstractAreaEffect effect,
+                                     BiConsumer<Graphics2D, Shape> oldPainter) {
+        Shape shape = createShape();
+
+        BufferedImage actual = renderEffect(effect, shape);
+        BufferedImage expected = renderWithStrokes(effect, shape, oldPainter);
+
+        // The distance transform measures the distances between pixel
+        // centers, so along curves and corners the two algorithms can
+        // differ by up to half a pixel, which is visible only in the
+        // antialiased outer edge of the effect.
+        long sumDiff = 0;
+        int numBigDiffs = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int diff = calcMaxChannelDiff(expected.getRGB(x, y), actual.getRGB(x, y));
+                sumDiff += diff;
+                if (diff > 48) {
+                    numBigDiffs++;
+                }
+            }
+        }
+        double meanDiff = sumDiff / (double) (WIDTH * HEIGHT);
+        assertTrue(meanDiff < 1.5, "mean difference = " + meanDiff);
+        assertTrue(numBigDiffs < WIDTH * HEIGHT / 200, "big differences = " + numBigDiffs);
+    }
+
+    private static BufferedImage renderEffect(AbstractAreaEffect effect, Shape shape) {
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        effect.apply(g, shape, WIDTH, HEIGHT);
+        g.dispose();
+        return img;
+    }
+
+    /**
+     * The masked rendering of the original algorithm: the effect is painted
+     * into a temporary image with the given painter, then the shape is cleared.
+     */
+    private static BufferedImage renderWithStrokes(AbstractAreaEffect effect, Shape shape,
+                                                   BiConsumer<Graphics2D, Shape> painter) {
+        double offsetX = effect.getOffset().getX();
+        double offsetY = effect.getOffset().getY();
+
+        BufferedImage tmp = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        Graphics2D g2 = tmp.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        // the default stroke normalization would shift the strokes by a fraction of a pixel
+        g2.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        g2.translate(offsetX, offsetY);
+        painter.accept(g2, shape);
+        g2.translate(-offsetX, -offsetY);
+
+        g2.setComposite(AlphaComposite.Clear);
+        g2.fill(shape);
+        g2.dispose();
+        return tmp;
+    }
+
+    private static Shape createShape() {
+        Area area = new Area(new RoundRectangle2D.Double(40, 30, 100, 70, 20, 20));
+        area.add(new Area(new Ellipse2D.Double(110, 60, 60, 60)));
+        return area;
+    }
+
+    // compares premultiplied values, because the color of
+    // almost transparent pixels doesn't matter
+    private static int calcMaxChannelDiff(int rgb1, int rgb2) {
+        int a1 = rgb1 >>> 24;
+        int a2 = rgb2 >>> 24;
+        int maxDiff = Math.abs(a1 - a2);
+        for (int shift = 0; shift < 24; shift += 8) {
+            int c1 = ((rgb1 >>> shift) & 0xFF) * a1 / 255;
+            int c2 = ((rgb2 >>> shift) & 0xFF) * a2 / 255;
+            maxDiff = Math.max(maxDiff, Math.abs(c1 - c2));
+        }
+        return maxDiff;
+    }
+
+    private static Color interpolateColor(float t, Color start, Color end) {
+        float[] partsS = start.getRGBComponents(null);
+        float[] partsE = end.getRGBComponents(null);
+        float[] partsR = new float[4];
+        for (int i = 0; i < 4; i++) {
+            partsR[i] = (partsS[i] - partsE[i]) * t + partsE[i];
+        }
+        return new Color(partsR[0], partsR[1], partsR[2], partsR[3]);
+    }
+}
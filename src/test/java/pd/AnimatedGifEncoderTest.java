@@ -0,0 +1,147 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pd;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@DisplayName("AnimatedGifEncoder tests")
+class AnimatedGifEncoderTest {
+    private static final int WIDTH = 120;
+    private static final int HEIGHT = 80;
+
+    @Test
+    void changedArea() {
+        byte[] prev = new byte[WIDTH * HEIGHT * 3];
+        byte[] pixels = prev.clone();
+        assertNull(AnimatedGifEncoder.findChangedArea(pixels, prev, WIDTH, HEIGHT));
+
+        pixels[(10 * WIDTH + 7) * 3 + 1] = 1;
+        pixels[(30 * WIDTH + 50) * 3 + 2] = 1;
+        assertEquals(new Rectangle(7, 10, 44, 21),
+            AnimatedGifEncoder.findChangedArea(pixels, prev, WIDTH, HEIGHT));
+    }
+
+    @Test
+    void decodedFramesMatchOriginals(@TempDir File dir) throws IOException {
+        List<BufferedImage> frames = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            frames.add(createFrame(i == 3 ? 2 : i)); // frame 3 repeats frame 2
+        }
+
+        File file = new File(dir, "test.gif");
+        AnimatedGifEncoder encoder = new AnimatedGifEncoder();
+        encoder.start(file);
+        encoder.setDelay(100);
+        encoder.setRepeat(0);
+        for (BufferedImage frame : frames) {
+            assertTrue(encoder.addFrame(frame));
+        }
+        encoder.finish();
+
+        ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            reader.setInput(in);
+            assertEquals(frames.size(), reader.getNumImages(true));
+
+            BufferedImage screen = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+            Graphics2D g = screen.createGraphics();
+            for (int i = 0; i < frames.size(); i++) {
+                Rectangle bounds = getFrameBounds(reader.getImageMetadata(i));
+                if (i > 0) {
+                    // only the changed area is encoded
+                    assertTrue(bounds.width * bounds.height < WIDTH * HEIGHT / 4,
+                        "frame " + i + ": " + bounds);
+                }
+                g.drawImage(reader.read(i), bounds.x, bounds.y, null);
+                assertSimilar(frames.get(i), screen, i);
+            }
+            g.dispose();
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    // a background gradient with a small square at a position depending on i
+    private static BufferedImage createFrame(int i) {
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                img.setRGB(x, y, new Color(x * 2, y * 3, 100).getRGB());
+            }
+        }
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.YELLOW);
+        g.fillRect(10 + i * 8, 20, 12, 12);
+        g.dispose();
+        return img;
+    }
+
+    private static Rectangle getFrameBounds(IIOMetadata metadata) {
+        Node root = metadata.getAsTree("javax_imageio_gif_image_1.0");
+        for (Node node = root.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeName().equals("ImageDescriptor")) {
+                var attrs = node.getAttributes();
+                return new Rectangle(
+                    Integer.parseInt(attrs.getNamedItem("imageLeftPosition").getNodeValue()),
+                    Integer.parseInt(attrs.getNamedItem("imageTopPosition").getNodeValue()),
+                    Integer.parseInt(attrs.getNamedItem("imageWidth").getNodeValue()),
+                    Integer.parseInt(attrs.getNamedItem("imageHeight").getNodeValue()));
+            }
+        }
+        return fail("no image descriptor");
+    }
+
+    private static void assertSimilar(BufferedImage expected, BufferedImage actual, int frameIndex) {
+        long totalError = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int e = expected.getRGB(x, y);
+                int a = actual.getRGB(x, y);
+                assertEquals(0xFF, a >>> 24, "transparent pixel at " + x + ", " + y);
+                for (int shift = 0; shift < 24; shift += 8) {
+                    totalError += Math.abs(((e >> shift) & 0xFF) - ((a >> shift) & 0xFF));
+                }
+            }
+        }
+        // the palette has only 256 colors
+        double meanError = totalError / (3.0 * WIDTH * HEIGHT);
+        assertTrue(meanError < 6, "frame " + frameIndex + ": mean error = " + meanError);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pixelitor.automate;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pixelitor.TestHelper;
+import pixelitor.layers.Layer;
+import pixelitor.utils.Messages;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CommandLineBatch tests")
+class CommandLineBatchTest {
+    @BeforeAll
+    static void beforeAllTests() {
+        TestHelper.setUnitTestingMode();
+    }
+
+    @Test
+    void processesDirectory(@TempDir File dir) throws IOException {
+        File inputDir = new File(dir, "in");
+        File outputDir = new File(dir, "out");
+        assertTrue(inputDir.mkdir());
+        writeImage(new File(inputDir, "big.png"), 80, 40, 0x10_20_30);
+        writeImage(new File(inputDir, "small.png"), 20, 10, 0x10_20_30);
+
+        var msgHandler = Messages.getMsgHandler();
+        var uiFactory = Layer.uiFactory;
+
+        int exitCode = CommandLineBatch.run(new String[]{
+            CommandLineBatch.BATCH_ARG, "-o", outputDir.getPath(),
+            "--filter", "Invert", "--resize", "40x40", "-j", "2",
+            inputDir.getPath()});
+        assertEquals(0, exitCode);
+
+        // the big image is shrunk to fit into the box
+        BufferedImage big = ImageIO.read(new File(outputDir, "big.png"));
+        assertEquals(40, big.getWidth());
+        assertEquals(20, big.getHeight());
+        assertEquals(0xEF_DF_CF, big.getRGB(20, 10) & 0xFF_FF_FF);
+
+        // the small image is not enlarged
+        BufferedImage small = ImageIO.read(new File(outputDir, "small.png"));
+        assertEquals(20, small.getWidth());
+        assertEquals(10, small.getHeight());
+        assertEquals(0xEF_DF_CF, small.getRGB(5, 5) & 0xFF_FF_FF);
+
+        // the global state is restored after the batch
+        assertSame(msgHandler, Messages.getMsgHandler());
+        assertSame(uiFactory, Layer.uiFactory);
+    }
+
+    @Test
+    void failsWithoutOutputDir(@TempDir File dir) {
+        assertEquals(2, CommandLineBatch.run(new String[]{
+            CommandLineBatch.BATCH_ARG, dir.getPath()}));
+    }
+
+    private static void writeImage(File file, int width, int height, int rgb) throws IOException {
+        BufferedImage img = new BufferedImage(width, height, TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, rgb);
+            }
+        }
+        ImageIO.write(img, "png", file);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.filters.FilterResultCache.Key;
+import pixelitor.filters.gui.UserPreset;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.image.BufferedImage;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("FilterResultCache tests")
+class FilterResultCacheTest {
+    @BeforeEach
+    void beforeEachTest() {
+        FilterResultCache.clear();
+    }
+
+    @AfterEach
+    void afterEachTest() {
+        FilterResultCache.clear();
+    }
+
+    @Test
+    void storesAndFindsResults() {
+        Key key = createKey("radius=5", 1L);
+        assertNull(FilterResultCache.get(key));
+
+        BufferedImage result = createImage(TYPE_INT_ARGB, 10, 10);
+        FilterResultCache.put(key, result);
+        assertSame(result, FilterResultCache.get(createKey("radius=5", 1L)));
+
+        assertNull(FilterResultCache.get(createKey("radius=6", 1L)));
+        assertNull(FilterResultCache.get(createKey("radius=5", 2L)));
+    }
+
+    @Test
+    void numberOfEntriesIsLimited() {
+        for (int i = 0; i < 100; i++) {
+            FilterResultCache.put(createKey("i=" + i, i), createImage(TYPE_INT_ARGB, 4, 4));
+        }
+        assertTrue(FilterResultCache.getNumEntries() < 100);
+        assertNotNull(FilterResultCache.get(createKey("i=99", 99)));
+        assertNull(FilterResultCache.get(createKey("i=0", 0)));
+    }
+
+    @Test
+    void previewResultsAreNotStored() {
+        var filter = new SlowFilter();
+        BufferedImage src = createImage(TYPE_INT_ARGB, 10, 10);
+
+        filter.transformImage(src, false);
+        assertEquals(0, FilterResultCache.getNumEntries());
+
+        BufferedImage result = filter.transformImage(src, true);
+        assertEquals(1, FilterResultCache.getNumEntries());
+        assertEquals(2, filter.numRuns);
+
+        // the cached result is returned, also for previews
+        BufferedImage cached = filter.transformImage(src, false);
+        assertEquals(2, filter.numRuns);
+        assertNotSame(result, cached);
+        assertEquals(ImageUtils.calcFingerprint(result), ImageUtils.calcFingerprint(cached));
+    }
+
+    private static Key createKey(String state, long fingerprint) {
+        return new Key(Filter.class, state, 10, 10, TYPE_INT_ARGB, fingerprint);
+    }
+
+    // a deterministic filter that is slow enough for its results to be cached
+    private static class SlowFilter extends Filter {
+        private int numRuns;
+
+        @Override
+        protected BufferedImage transform(BufferedImage src, BufferedImage dest) {
+            numRuns++;
+            try {
+                Thread.sleep(FilterResultCache.MIN_CACHED_RUN_NANOS / 1_000_000 + 10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ImageUtils.copyImage(src);
+        }
+
+        @Override
+        protected boolean canCacheResults() {
+            return true;
+        }
+
+        @Override
+        public boolean canHaveUserPresets() {
+            return true;
+        }
+
+        @Override
+        public String getPresetDirName() {
+            return "Slow";
+        }
+
+        @Override
+        public void saveStateTo(UserPreset preset) {
+            // there are no settings
+        }
+    }
+
+    private static BufferedImage createImage(int type, int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, 0xFF_00_00_00 | (x * 7919 + y * 104729));
+            }
+        }
+        return img;
+    }
+}
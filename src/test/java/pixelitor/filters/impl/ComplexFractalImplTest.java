@@ -0,0 +1,183 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.image.BufferedImage;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("ComplexFractalImpl tests")
+class ComplexFractalImplTest {
+    private static final double CX_MIN = -2.2;
+    private static final double CX_MAX = 0.7;
+    private static final double CY_MIN = -1.2;
+    private static final double CY_MAX = 1.2;
+    private static final int SIZE = 120;
+
+    @Test
+    void subdivisionMatchesPlainIteration() {
+        int maxIt = 300;
+        ComplexFractalImpl fractal = createMandelbrot(maxIt, 1.0, 0.5, 0.5);
+        int[] its = render(fractal);
+
+        double xMul = (CX_MAX - CX_MIN) / SIZE;
+        double yMul = (CY_MAX - CY_MIN) / SIZE;
+        int numDifferent = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int expected = iterate(CX_MIN + x * xMul, CY_MIN + y * yMul, maxIt);
+                if (its[x + y * SIZE] != expected) {
+                    numDifferent++;
+                }
+            }
+        }
+        // the filled rectangles can miss tiny details
+        assertTrue(numDifferent < SIZE * SIZE / 200, "numDifferent = " + numDifferent);
+    }
+
+    @Test
+    void deepZoomMatchesHighPrecision() {
+        int maxIt = 4999;
+        double zoom = 1.0e14;
+        double targetX = -0.743643887037151;
+        double targetY = 0.131825904205330;
+        double relX = (targetX - CX_MIN) / (CX_MAX - CX_MIN);
+        double relY = (targetY - CY_MIN) / (CY_MAX - CY_MIN);
+        ComplexFractalImpl fractal = createMandelbrot(maxIt, zoom, relX, relY);
+        int[] its = render(fractal);
+
+        // the same calculations as in the tested class
+        double xMul = (CX_MAX - CX_MIN) / zoom / SIZE;
+        double yMul = (CY_MAX - CY_MIN) / zoom / SIZE;
+        double centerX = CX_MIN + relX * (CX_MAX - CX_MIN);
+        double centerY = CY_MIN + relY * (CY_MAX - CY_MIN);
+
+        Random random = new Random(5);
+        int numDifferent = 0;
+        int numSamples = 40;
+        int numEscaped = 0;
+        for (int i = 0; i < numSamples; i++) {
+            int x = random.nextInt(SIZE);
+            int y = random.nextInt(SIZE);
+            BigDecimal cx = new BigDecimal(centerX).add(new BigDecimal((x - SIZE / 2.0) * xMul));
+            BigDecimal cy = new BigDecimal(centerY).add(new BigDecimal((y - SIZE / 2.0) * yMul));
+            int expected = iterateBig(cx, cy, maxIt);
+            if (expected > 0) {
+                numEscaped++;
+            }
+            if (fractal.calcIterations(x, y) != expected) {
+                numDifferent++;
+            }
+        }
+        assertTrue(numEscaped > 0);
+        assertTrue(numDifferent <= 1, "numDifferent = " + numDifferent);
+
+        // plain doubles can't resolve the pixels at this zoom,
+        // but the rendered image must still have details
+        long numDistinct = Arrays.stream(its).distinct().count();
+        assertTrue(numDistinct > 10, "numDistinct = " + numDistinct);
+    }
+
+    @Test
+    void rendersGrayImages() {
+        // layer masks are edited as gray images
+        ComplexFractalImpl fractal = createMandelbrot(300, 1.0, 0.5, 0.5);
+        int[] colors = new int[301];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = 0xFF_00_00_00 | (i % 256) * 0x01_01_01;
+        }
+        fractal.setColors(colors);
+
+        int[] argb = render(fractal);
+        BufferedImage expected = new BufferedImage(SIZE, SIZE, TYPE_BYTE_GRAY);
+        expected.setRGB(0, 0, SIZE, SIZE, argb, 0, SIZE);
+
+        BufferedImage gray = fractal.filter(new BufferedImage(SIZE, SIZE, TYPE_BYTE_GRAY), null);
+        assertArrayEquals(
+            expected.getRaster().getPixels(0, 0, SIZE, SIZE, (int[]) null),
+            gray.getRaster().getPixels(0, 0, SIZE, SIZE, (int[]) null));
+    }
+
+    private static ComplexFractalImpl createMandelbrot(int maxIt, double zoom,
+                                                       double relX, double relY) {
+        ComplexFractalImpl fractal = new ComplexFractalImpl("Test",
+            CX_MIN, CX_MAX, CY_MIN, CY_MAX, true) {
+        };
+        fractal.setMaxIterations(maxIt);
+        fractal.setZoom(zoom);
+        fractal.setZoomCenter(relX, relY);
+
+        // each "color" is the iteration count itself
+        int[] colors = new int[maxIt + 1];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = i;
+        }
+        fractal.setColors(colors);
+        return fractal;
+    }
+
+    private static int[] render(ComplexFractalImpl fractal) {
+        BufferedImage src = new BufferedImage(SIZE, SIZE, TYPE_INT_ARGB);
+        return ImageUtils.getPixelArray(fractal.filter(src, null));
+    }
+
+    // the original escape time algorithm
+    private static int iterate(double cx, double cy, int maxIt) {
+        double x = 0;
+        double y = 0;
+        int it = maxIt;
+        while (x * x + y * y <= 4 && it > 0) {
+            it--;
+            double xTmp = x * x - y * y + cx;
+            y = 2 * x * y + cy;
+            x = xTmp;
+        }
+        return it;
+    }
+
+    private static int iterateBig(BigDecimal cx, BigDecimal cy, int maxIt) {
+        MathContext mc = new MathContext(60);
+        BigDecimal x = BigDecimal.ZERO;
+        BigDecimal y = BigDecimal.ZERO;
+        BigDecimal four = BigDecimal.valueOf(4);
+        int it = maxIt;
+        while (it > 0) {
+            BigDecimal x2 = x.multiply(x, mc);
+            BigDecimal y2 = y.multiply(y, mc);
+            if (x2.add(y2, mc).compareTo(four) > 0) {
+                break;
+            }
+            it--;
+            BigDecimal xy = x.multiply(y, mc);
+            x = x2.subtract(y2, mc).add(cx, mc);
+            y = xy.add(xy, mc).add(cy, mc);
+        }
+        return it;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import pixelitor.utils.Metric;
+
+import java.awt.image.BufferedImage;
+import java.util.SplittableRandom;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+@DisplayName("VoronoiFilter tests")
+class VoronoiFilterTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 150;
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 2, 4})
+    void rendersGrayImages(int aaRes) {
+        // layer masks are edited as gray images
+        int[] argb = render(TYPE_INT_ARGB, aaRes)
+            .getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+        BufferedImage expected = new BufferedImage(WIDTH, HEIGHT, TYPE_BYTE_GRAY);
+        expected.setRGB(0, 0, WIDTH, HEIGHT, argb, 0, WIDTH);
+
+        BufferedImage gray = render(TYPE_BYTE_GRAY, aaRes);
+        assertArrayEquals(
+            expected.getRaster().getPixels(0, 0, WIDTH, HEIGHT, (int[]) null),
+            gray.getRaster().getPixels(0, 0, WIDTH, HEIGHT, (int[]) null));
+    }
+
+    private static BufferedImage render(int imageType, int aaRes) {
+        var filter = new VoronoiFilter("Test");
+        filter.setRand(new SplittableRandom(7));
+        filter.setDistanceBetweenPoints(20);
+        filter.setMetric(Metric.EUCLIDEAN_SQUARED);
+        filter.setUseImageColors(false);
+        filter.setAaRes(aaRes);
+        return filter.filter(new BufferedImage(WIDTH, HEIGHT, imageType), null);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.lookup;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.TestHelper;
+import pixelitor.filters.BrightnessContrast;
+import pixelitor.filters.ChannelMixer;
+import pixelitor.filters.Filter;
+import pixelitor.filters.HueSat;
+import pixelitor.filters.Invert;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("FusedLookupOp tests")
+class FusedLookupOpTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    @BeforeAll
+    static void beforeAllTests() {
+        TestHelper.setUnitTestingMode();
+    }
+
+    @Test
+    void channelLookupsAreMerged() {
+        int[] darken = new int[256];
+        int[] gamma = new int[256];
+        for (int i = 0; i < 256; i++) {
+            darken[i] = i / 2;
+            gamma[i] = (int) (255 * Math.sqrt(i / 255.0));
+        }
+        List<ColorLookup> lookups = List.of(
+            ColorLookup.fromTables(darken, gamma, darken),
+            ColorLookup.identity(),
+            ColorLookup.fromTables(gamma, gamma, darken));
+        var op = new FusedLookupOp(lookups);
+        assertEquals(1, op.getNumStages());
+
+        BufferedImage src = createImage(TYPE_INT_ARGB);
+        BufferedImage fused = op.filter(src);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int rgb = src.getRGB(x, y);
+                int expected = rgb & 0xFF_00_00_00
+                    | lookups.get(2).map(lookups.get(0).map(rgb & 0xFF_FF_FF));
+                assertEquals(expected, fused.getRGB(x, y), "at " + x + ", " + y);
+            }
+        }
+    }
+
+    @Test
+    void cubeInterpolatesLinearFunctions() {
+        // inverts the red and blue channels
+        var lookup = ColorLookup.fromFunction(rgb -> rgb ^ 0x00_FF_00_FF);
+        assertEquals(0xFF_00_FF, lookup.map(0));
+        assertEquals(0x00_00_00, lookup.map(0xFF_00_FF));
+        assertEquals(0xFF_FF_FF, lookup.map(0x00_FF_00));
+        assertEquals(0x12_34_56 ^ 0xFF_00_FF, lookup.map(0x12_34_56));
+    }
+
+    @Test
+    void fusedFiltersMatchSequentialFilters() {
+        var brightnessContrast = new BrightnessContrast();
+        brightnessContrast.getParamSet().set("Brightness", "20");
+        brightnessContrast.getParamSet().set("Contrast", "-15");
+
+        var channelMixer = new ChannelMixer();
+        channelMixer.getParamSet().set("Red Channel", "60,30,10");
+        channelMixer.getParamSet().set("Blue Channel", "-20,40,80");
+
+        List<Filter> filters = List.of(brightnessContrast, channelMixer, new Invert());
+
+        BufferedImage src = createImage(TYPE_INT_ARGB);
+        BufferedImage expected = src;
+        List<ColorLookup> lookups = new ArrayList<>();
+        for (Filter filter : filters) {
+            expected = filter.transformImage(expected);
+            lookups.add(((FusableColorFilter) filter).createColorLookup());
+        }
+        var op = new FusedLookupOp(lookups);
+        assertEquals(3, op.getNumStages());
+
+        // the channel mixer stage is interpolated
+        assertSimilar(expected, op.filter(src), 3);
+    }
+
+    @Test
+    void hueSatIsNotFused() {
+        var hueSat = new HueSat();
+        assertEquals(ColorLookup.identity(), hueSat.createColorLookup());
+
+        // its changes near the gray axis can't be interpolated
+        hueSat.getParamSet().set("Saturation", "50");
+        assertNull(hueSat.createColorLookup());
+    }
+
+    @Test
+    void premultipliedImages() {
+        int[] inverted = new int[256];
+        for (int i = 0; i < 256; i++) {
+            inverted[i] = 255 - i;
+        }
+        var op = new FusedLookupOp(List.of(ColorLookup.fromTables(inverted, inverted, inverted)));
+
+        BufferedImage src = createImage(TYPE_INT_ARGB_PRE);
+        BufferedImage result = op.filter(src);
+        assertEquals(TYPE_INT_ARGB_PRE, result.getType());
+        assertSimilar(Invert.invertImage(src), result, 2);
+    }
+
+    @Test
+    void unsupportedImages() {
+        var op = new FusedLookupOp(List.of(ColorLookup.identity()));
+        assertNull(op.filter(new BufferedImage(4, 4, BufferedImage.TYPE_3BYTE_BGR)));
+    }
+
+    // a gradient with varying alpha
+    private static BufferedImage createImage(int type) {
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT, type);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int a = y < HEIGHT / 2 ? 255 : 40 + x * 3;
+                int r = x * 4;
+                int g = y * 5;
+                int b = (x * y) & 0xFF;
+                img.setRGB(x, y, a << 24 | r << 16 | g << 8 | b);
+            }
+        }
+        return img;
+    }
+
+    private static void assertSimilar(BufferedImage expected, BufferedImage actual, int tolerance) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int e = expected.getRGB(x, y);
+                int a = actual.getRGB(x, y);
+                assertEquals(e >>> 24, a >>> 24, "alpha at " + x + ", " + y);
+                if ((e >>> 24) < 64) {
+                    // the unpremultiplied values are imprecise
+                    continue;
+                }
+                for (int shift = 0; shift < 24; shift += 8) {
+                    int diff = Math.abs(((e >> shift) & 0xFF) - ((a >> shift) & 0xFF));
+                    assertTrue(diff <= tolerance, "diff = " + diff + " at " + x + ", " + y);
+                }
+            }
+        }
+    }
+}
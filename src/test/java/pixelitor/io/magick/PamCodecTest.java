@@ -0,0 +1,90 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.io.magick;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static java.awt.image.BufferedImage.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("PamCodec tests")
+class PamCodecTest {
+    private static final int WIDTH = 13;
+    private static final int HEIGHT = 7;
+
+    @ParameterizedTest
+    @ValueSource(ints = {TYPE_INT_ARGB, TYPE_INT_RGB, TYPE_4BYTE_ABGR})
+    void roundTrip(int imageType) throws IOException {
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT, imageType);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                img.setRGB(x, y, (x * 19) << 24 | (y * 31) << 16 | (x * y) << 8 | x + y);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PamCodec.write(img, out);
+
+        BufferedImage read = PamCodec.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(TYPE_INT_ARGB, read.getType());
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(img.getRGB(x, y), read.getRGB(x, y), "at " + x + ", " + y);
+            }
+        }
+    }
+
+    @Test
+    void readsGrayAndRGB() throws IOException {
+        byte[] gray = createPam(2, 1, 2, "GRAYSCALE_ALPHA", 10, 128, 200, 255);
+        BufferedImage img = PamCodec.read(new ByteArrayInputStream(gray));
+        assertEquals(0x80_0A_0A_0A, img.getRGB(0, 0));
+        assertEquals(0xFF_C8_C8_C8, img.getRGB(1, 0));
+
+        byte[] rgb = createPam(1, 2, 3, "RGB", 1, 2, 3, 4, 5, 6);
+        img = PamCodec.read(new ByteArrayInputStream(rgb));
+        assertEquals(0xFF_01_02_03, img.getRGB(0, 0));
+        assertEquals(0xFF_04_05_06, img.getRGB(0, 1));
+    }
+
+    @Test
+    void rejectsTruncatedData() {
+        byte[] truncated = createPam(2, 2, 3, "RGB", 1, 2, 3);
+        assertThrows(IOException.class, () -> PamCodec.read(new ByteArrayInputStream(truncated)));
+    }
+
+    private static byte[] createPam(int width, int height, int depth, String tupleType, int... samples) {
+        String header = "P7\nWIDTH " + width + "\nHEIGHT " + height + "\nDEPTH " + depth
+            + "\n# a comment\nMAXVAL 255\nTUPLTYPE " + tupleType + "\nENDHDR\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(header.getBytes(StandardCharsets.US_ASCII));
+        for (int sample : samples) {
+            out.write(sample);
+        }
+        return out.toByteArray();
+    }
+}
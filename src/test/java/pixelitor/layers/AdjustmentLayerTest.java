@@ -38,6 +38,8 @@ class AdjustmentLayerTest {
     @BeforeEach
     void beforeEachTest() {
         filter = new MockFilter("Filter");
+        // only the outputs of slow filters are cached
+        filter.setRunTimeMillis(30);
         Composition comp = TestHelper.createComp(1, false, true);
         layer = new AdjustmentLayer(comp, "adjustment", filter);
         comp.addLayerNoUI(layer);
@@ -52,10 +54,48 @@ class AdjustmentLayerTest {
         layer.getComp().getCompositeImage();
         checkFilterRuns(0);
 
-        // on the other hand a visible adjustment layer
-        // runs its filter exactly once
+        // the input didn't change since the setup,
+        // so the cached output of the filter is used
         layer.setVisible(true, false, true);
         layer.getComp().getCompositeImage();
+        checkFilterRuns(0);
+    }
+
+    @Test
+    void changedInputRunsFilterAgain() {
+        Composition comp = layer.getComp();
+        ImageLayer imageLayer = (ImageLayer) comp.getLayer(0);
+        imageLayer.getImage().setRGB(0, 0, 0xFF_12_34_56);
+        comp.update();
+        comp.getCompositeImage();
+        checkFilterRuns(1);
+
+        // changing how the layer bellow is composited also changes the input
+        imageLayer.setOpacity(0.5f, false, true);
+        comp.getCompositeImage();
+        checkFilterRuns(2);
+    }
+
+    @Test
+    void changesAboveUseCachedOutput() {
+        Composition comp = layer.getComp();
+        ImageLayer layerAbove = TestHelper.createEmptyImageLayer(comp, "above");
+        comp.addLayerNoUI(layerAbove);
+        comp.update();
+        comp.getCompositeImage();
+        checkFilterRuns(1);
+
+        layerAbove.setVisible(false, false, true);
+        comp.getCompositeImage();
+        layerAbove.setBlendingMode(BlendingMode.MULTIPLY, false, true);
+        comp.getCompositeImage();
+        checkFilterRuns(1);
+    }
+
+    @Test
+    void changedSettingsRunFilterAgain() {
+        layer.previewingFilterSettingsChanged(filter, false, null);
+        layer.getComp().getCompositeImage();
         checkFilterRuns(1);
     }
 
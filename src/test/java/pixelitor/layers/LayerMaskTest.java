@@ -0,0 +1,142 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.layers;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.Composition;
+import pixelitor.TestHelper;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Random;
+
+import static java.awt.AlphaComposite.DstIn;
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("LayerMask tests")
+class LayerMaskTest {
+    private static final int CANVAS_WIDTH = 40;
+    private static final int CANVAS_HEIGHT = 30;
+
+    private final Random random = new Random(42);
+    private Composition comp;
+    private ImageLayer layer;
+
+    @BeforeAll
+    static void beforeAllTests() {
+        TestHelper.setUnitTestingMode();
+    }
+
+    @BeforeEach
+    void beforeEachTest() {
+        comp = TestHelper.createEmptyComp(CANVAS_WIDTH, CANVAS_HEIGHT, false);
+        layer = TestHelper.createEmptyImageLayer(comp, "layer");
+    }
+
+    @Test
+    void applyToMatchesDstIn() {
+        LayerMask mask = createMask(CANVAS_WIDTH - 5, CANVAS_HEIGHT - 3, 0, 0);
+        BufferedImage img = createRandomImage(CANVAS_WIDTH, CANVAS_HEIGHT);
+
+        BufferedImage expected = copyWithDstIn(img, mask, 0, 0);
+        mask.applyTo(img);
+
+        assertSimilar(expected, img);
+    }
+
+    @Test
+    void maskedImageMatchesDstIn() {
+        // a layer bigger than the canvas, and a translated mask
+        int srcX = -7;
+        int srcY = -4;
+        BufferedImage src = createRandomImage(CANVAS_WIDTH + 12, CANVAS_HEIGHT + 9);
+        LayerMask mask = createMask(CANVAS_WIDTH + 6, CANVAS_HEIGHT + 5, -3, -2);
+
+        Rectangle area = new Rectangle(srcX, srcY, src.getWidth(), src.getHeight())
+            .intersection(comp.getCanvas().getBounds());
+        BufferedImage masked = mask.createMaskedImage(src, srcX, srcY, area);
+
+        BufferedImage canvasSized = new BufferedImage(CANVAS_WIDTH, CANVAS_HEIGHT, TYPE_INT_ARGB);
+        Graphics2D g = canvasSized.createGraphics();
+        g.drawImage(src, srcX, srcY, null);
+        g.dispose();
+        BufferedImage expected = copyWithDstIn(canvasSized, mask, mask.getTx(), mask.getTy())
+            .getSubimage(area.x, area.y, area.width, area.height);
+
+        assertSimilar(expected, masked);
+    }
+
+    private LayerMask createMask(int width, int height, int tx, int ty) {
+        BufferedImage bwImage = new BufferedImage(width, height, TYPE_BYTE_GRAY);
+        byte[] data = ((DataBufferByte) bwImage.getRaster().getDataBuffer()).getData();
+        random.nextBytes(data);
+        data[0] = 0;
+        data[1] = (byte) 0xFF;
+        return new LayerMask(comp, bwImage, layer, tx, ty);
+    }
+
+    private BufferedImage createRandomImage(int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, random.nextInt());
+            }
+        }
+        return img;
+    }
+
+    private static BufferedImage copyWithDstIn(BufferedImage img, LayerMask mask, int x, int y) {
+        BufferedImage copy = new BufferedImage(img.getWidth(), img.getHeight(), TYPE_INT_ARGB);
+        Graphics2D g = copy.createGraphics();
+        g.drawImage(img, 0, 0, null);
+        g.setComposite(DstIn);
+        g.drawImage(mask.getTransparencyImage(), x, y, null);
+        g.dispose();
+        return copy;
+    }
+
+    // compares the premultiplied values, because Java2D
+    // rounds the colors differently for very transparent pixels
+    private static void assertSimilar(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int e = expected.getRGB(x, y);
+                int a = actual.getRGB(x, y);
+                int ea = e >>> 24;
+                int aa = a >>> 24;
+                assertTrue(Math.abs(ea - aa) <= 1, "alpha at " + x + ", " + y);
+                for (int shift = 0; shift < 24; shift += 8) {
+                    int ec = ((e >> shift) & 0xFF) * ea / 255;
+                    int ac = ((a >> shift) & 0xFF) * aa / 255;
+                    assertTrue(Math.abs(ec - ac) <= 2,
+                        String.format("%08X != %08X at %d, %d", e, a, x, y));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.layers;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pixelitor.Composition;
+import pixelitor.TestHelper;
+import pixelitor.Views;
+import pixelitor.gui.View;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DisplayName("LinkedFileRegistry tests")
+class LinkedFileRegistryTest {
+    @BeforeAll
+    static void beforeAllTests() {
+        TestHelper.setUnitTestingMode();
+    }
+
+    @Test
+    void loadedContentIsShared(@TempDir File dir) throws IOException {
+        File file = new File(dir, "linked.png");
+        writeImage(file, Color.RED);
+
+        Composition first = LinkedFileRegistry.loadSync(file);
+        Composition second = LinkedFileRegistry.loadSync(file);
+        assertSame(first, second);
+        assertTrue(LinkedFileRegistry.isShared(file, first));
+        assertEquals(file, second.getFile());
+        assertEquals(Color.RED.getRGB(), second.getCompositeImage().getRGB(3, 4));
+
+        // editing a copy doesn't change the shared version
+        Composition copy = LinkedFileRegistry.copyForEditing(file, first);
+        assertFalse(LinkedFileRegistry.isShared(file, copy));
+        assertEquals(file, copy.getFile());
+        ((ImageLayer) copy.getLayer(0)).getImage().setRGB(3, 4, Color.GREEN.getRGB());
+        copy.invalidateImageCache();
+        assertEquals(Color.GREEN.getRGB(), copy.getCompositeImage().getRGB(3, 4));
+        assertEquals(Color.RED.getRGB(), first.getCompositeImage().getRGB(3, 4));
+
+        changeImage(file, Color.BLUE);
+        Composition reloaded = LinkedFileRegistry.loadSync(file);
+        assertNotSame(first, reloaded);
+        assertEquals(Color.BLUE.getRGB(), reloaded.getCompositeImage().getRGB(3, 4));
+    }
+
+    @Test
+    void onlyDependentsOfChangedFileRecompute(@TempDir File dir) throws IOException {
+        File changed = new File(dir, "changed.png");
+        File unchanged = new File(dir, "unchanged.png");
+        writeImage(changed, Color.RED);
+        writeImage(unchanged, Color.RED);
+
+        // two documents link the changed file
+        Composition docA = TestHelper.createEmptyComp(10, 8, false);
+        Composition docB = TestHelper.createEmptyComp(10, 8, false);
+        SmartObject changedInA = addLinked(docA, changed);
+        SmartObject changedInB = addLinked(docB, changed);
+        SmartObject unchangedInA = addLinked(docA, unchanged);
+        assertSame(changedInA.getContent(), changedInB.getContent());
+
+        // the content of A was edited, so it has its own copy
+        changedInA.setContent(LinkedFileRegistry.copyForEditing(changed, changedInA.getContent()));
+
+        BufferedImage unchangedImage = unchangedInA.getVisibleImage();
+        assertEquals(Color.RED.getRGB(), changedInA.getVisibleImage().getRGB(3, 4));
+        assertEquals(Color.RED.getRGB(), changedInB.getVisibleImage().getRGB(3, 4));
+
+        changeImage(changed, Color.BLUE);
+        assertNull(LinkedFileRegistry.checkForChanges(unchanged, null));
+        View view = mock(View.class);
+        when(view.isMock()).thenReturn(true);
+        LinkedFileRegistry.checkForChanges(changed, view).join();
+        Views.setActiveView(null, false);
+
+        assertEquals(Color.BLUE.getRGB(), changedInA.getVisibleImage().getRGB(3, 4));
+        assertEquals(Color.BLUE.getRGB(), changedInB.getVisibleImage().getRGB(3, 4));
+        // both share the new version again
+        assertSame(changedInA.getContent(), changedInB.getContent());
+        assertSame(unchangedImage, unchangedInA.getVisibleImage());
+
+        // a second check doesn't reload it again
+        assertNull(LinkedFileRegistry.checkForChanges(changed, view));
+    }
+
+    private static SmartObject addLinked(Composition doc, File file) {
+        SmartObject so = new SmartObject(file, doc, LinkedFileRegistry.loadSync(file));
+        doc.addLayerNoUI(so);
+        doc.setActiveLayer(so);
+        return so;
+    }
+
+    private static void changeImage(File file, Color color) throws IOException {
+        writeImage(file, color);
+        // make sure that the change is visible even with a coarse timer
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+    }
+
+    private static void writeImage(File file, Color color) throws IOException {
+        BufferedImage img = new BufferedImage(10, 8, TYPE_INT_ARGB);
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                img.setRGB(x, y, color.getRGB());
+            }
+        }
+        ImageIO.write(img, "png", file);
+    }
+}
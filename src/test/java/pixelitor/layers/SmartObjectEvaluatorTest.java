@@ -0,0 +1,122 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.layers;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.Composition;
+import pixelitor.TestHelper;
+import pixelitor.filters.Filter;
+import pixelitor.filters.HueSat;
+import pixelitor.filters.gui.RangeParam;
+import pixelitor.filters.jhlabsproxies.JHGaussianBlur;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+@DisplayName("SmartObjectEvaluator tests")
+class SmartObjectEvaluatorTest {
+    private static final int WIDTH = 90;
+    private static final int HEIGHT = 70;
+
+    @BeforeAll
+    static void beforeAllTests() {
+        TestHelper.setUnitTestingMode();
+    }
+
+    @Test
+    void nestedSmartObjectsWithSmartFilters() {
+        // the smart filters wait for thread pool tasks while they
+        // are evaluated concurrently, at two levels of nesting
+        BufferedImage concurrent = assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            Composition comp = TestHelper.createEmptyComp(WIDTH, HEIGHT, false);
+            return ImageUtils.calculateCompositeImage(createOuterSmartObjects(comp), comp.getCanvas());
+        });
+
+        // the same structure, but the top-level smart objects are evaluated one by one
+        Composition comp = TestHelper.createEmptyComp(WIDTH, HEIGHT, false);
+        List<Layer> layers = createOuterSmartObjects(comp);
+        for (Layer layer : layers) {
+            ((SmartObject) layer).getVisibleImage();
+        }
+        BufferedImage sequential = ImageUtils.calculateCompositeImage(layers, comp.getCanvas());
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(sequential.getRGB(x, y), concurrent.getRGB(x, y),
+                    "at " + x + ", " + y);
+            }
+        }
+    }
+
+    // each outer smart object has a blurred content with two hue-shifted smart objects
+    private static List<Layer> createOuterSmartObjects(Composition comp) {
+        Random random = new Random(42);
+        List<Layer> layers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Composition middle = TestHelper.createEmptyComp(WIDTH, HEIGHT, false);
+            for (int j = 0; j < 2; j++) {
+                SmartObject inner = new SmartObject(middle, createContent(random));
+                addSmartFilter(inner, createHueSat(30 + 40 * j));
+                inner.setOpacity(0.7f, false, false);
+                addLayer(middle, inner);
+            }
+            SmartObject outer = new SmartObject(comp, middle);
+            addSmartFilter(outer, new JHGaussianBlur());
+            outer.setBlendingMode(i == 0 ? BlendingMode.NORMAL : BlendingMode.SCREEN, false, false);
+            layers.add(outer);
+        }
+        return layers;
+    }
+
+    private static Composition createContent(Random random) {
+        Composition content = TestHelper.createEmptyComp(WIDTH, HEIGHT, false);
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                img.setRGB(x, y, random.nextInt() | 0xFF_00_00_00);
+            }
+        }
+        addLayer(content, TestHelper.createImageLayer(content, img, "image"));
+        return content;
+    }
+
+    private static HueSat createHueSat(int hue) {
+        HueSat hueSat = new HueSat();
+        ((RangeParam) hueSat.getParamSet().getParams().getFirst()).setValue(hue, false);
+        return hueSat;
+    }
+
+    private static void addSmartFilter(SmartObject so, Filter filter) {
+        so.addSmartFilter(new SmartFilter(filter, so.getComp(), so), false, false);
+    }
+
+    private static void addLayer(Composition comp, Layer layer) {
+        comp.addLayerNoUI(layer);
+        comp.setActiveLayer(layer);
+    }
+}
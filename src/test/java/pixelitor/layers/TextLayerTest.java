@@ -30,12 +30,15 @@ import pixelitor.filters.painters.TextSettings;
 import pixelitor.history.ContentLayerMoveEdit;
 import pixelitor.history.History;
 import pixelitor.testutils.WithMask;
+import pixelitor.utils.ImageUtils;
 import org.junit.jupiter.api.Assertions;
 import java.awt.Dimension;
 import pixelitor.layers.TextLayer;
 
 
 
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
 import java.util.Arrays;
 import java.util.Collection;
 
@@ -173,6 +176,32 @@ public class TextLayerTest {
         iconUpdates.check(0, 0);
     }
 
+    @Test
+    public void movedRenderingMatchesNewRendering() {
+        // renders the text once at the original position
+        render(layer);
+
+        layer.setTranslation(7, -3);
+        int[] moved = render(layer);
+
+        TextLayer newLayer = new TextLayer(comp, "New", layer.getSettings().copy());
+        newLayer.setTranslation(7, -3);
+        int[] expected = render(newLayer);
+
+        Assertions.assertArrayEquals(expected, moved);
+        assertThat(layer.getContentBounds(true))
+            .isEqualTo(newLayer.getContentBounds(true));
+    }
+
+    private int[] render(TextLayer textLayer) {
+        BufferedImage img = new BufferedImage(comp.getCanvasWidth(),
+            comp.getCanvasHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        textLayer.paintLayerOnGraphics(g, true);
+        g.dispose();
+        return ImageUtils.getPixelArray(img);
+    }
+
     /**
      * Newly added testCase
      */
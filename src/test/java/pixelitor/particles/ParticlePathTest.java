@@ -0,0 +1,83 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.particles;
+
+import com.jhlabs.awt.ZigzagStroke;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.awt.RenderingHints.KEY_ANTIALIASING;
+import static java.awt.RenderingHints.VALUE_ANTIALIAS_ON;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+@DisplayName("ParticlePath tests")
+class ParticlePathTest {
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 400;
+
+    // Only antialiased polylines are tested, because the clipping can slightly
+    // change the flattening of curves and the pixels of non-antialiased lines.
+    @Test
+    void paintingInBandsMatchesSequentialPainting() {
+        Random random = new Random(3);
+        Stroke[] strokes = {
+            new BasicStroke(5, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND),
+            new BasicStroke(4, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER),
+            new ZigzagStroke(new BasicStroke(2), 4, 6)
+        };
+
+        List<ParticlePath> paths = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Path2D path = new Path2D.Double();
+            path.moveTo(random.nextDouble() * WIDTH, random.nextDouble() * HEIGHT);
+            for (int j = 0; j < 4; j++) {
+                path.lineTo(random.nextDouble() * WIDTH, random.nextDouble() * HEIGHT);
+            }
+            Color color = new Color(random.nextInt(), true);
+            paths.add(ParticlePath.create(path, strokes[i % strokes.length], color));
+        }
+
+        BufferedImage expected = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        Graphics2D g = expected.createGraphics();
+        g.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
+        for (ParticlePath path : paths) {
+            g.setColor(path.color());
+            if (path.stroke() != null) {
+                g.setStroke(path.stroke());
+                g.draw(path.shape());
+            } else {
+                g.fill(path.shape());
+            }
+        }
+        g.dispose();
+
+        BufferedImage painted = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        ParticlePath.paintAll(paths, painted, true);
+
+        assertArrayEquals(ImageUtils.getPixelArray(expected), ImageUtils.getPixelArray(painted));
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.selection;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import static java.awt.RenderingHints.KEY_STROKE_CONTROL;
+import static java.awt.RenderingHints.VALUE_STROKE_PURE;
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("SelectionMask tests")
+class SelectionMaskTest {
+    private static final int SIZE = 60;
+
+    // polygons, because the Java2D rasterizer flattens the curves
+    private static final Shape ELLIPSE = createPolygon(25.4, 23.45, 20.1, 15.35, 0.1);
+    private static final Shape RING = createRing();
+
+    @Test
+    void pixelsAreSelectedByTheirCenters() {
+        var mask = SelectionMask.fromShape(ELLIPSE);
+        assertSameSelection(ELLIPSE, mask);
+        assertEquals(ELLIPSE.getBounds().union(mask.getBounds()), ELLIPSE.getBounds());
+
+        var rectMask = SelectionMask.fromShape(new Rectangle(3, 4, 10, 7));
+        assertEquals(new Rectangle(3, 4, 10, 7), rectMask.getBounds());
+    }
+
+    @Test
+    void booleanOperationsMatchArea() {
+        var ellipseMask = SelectionMask.fromShape(ELLIPSE);
+        var ringMask = SelectionMask.fromShape(RING);
+
+        Area union = new Area(ELLIPSE);
+        union.add(new Area(RING));
+        assertSameSelection(union, ellipseMask.union(ringMask));
+
+        Area intersection = new Area(ELLIPSE);
+        intersection.intersect(new Area(RING));
+        assertSameSelection(intersection, ellipseMask.intersect(ringMask));
+
+        Area difference = new Area(ELLIPSE);
+        difference.subtract(new Area(RING));
+        assertSameSelection(difference, ellipseMask.subtract(ringMask));
+
+        assertTrue(ringMask.subtract(ringMask).getBounds().isEmpty());
+    }
+
+    @Test
+    void outlineMatchesPixels() {
+        // the ring has a hole, and the checkerboard has diagonal touching pixels
+        Path2D checkerboard = new Path2D.Double();
+        for (int y = 0; y < 6; y++) {
+            for (int x = (y & 1); x < 6; x += 2) {
+                checkerboard.append(new Rectangle(40 + x, 45 + y, 1, 1), false);
+            }
+        }
+        var mask = SelectionMask.fromShape(RING).union(SelectionMask.fromShape(checkerboard));
+
+        // filling the outline selects the same pixels
+        BufferedImage filled = fill(mask);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                assertEquals(mask.isSelected(x, y), filled.getRaster().getSample(x, y, 0) != 0,
+                    "at " + x + ", " + y);
+            }
+        }
+    }
+
+    @Test
+    void growAndShrinkUseEuclideanDistances() {
+        var mask = SelectionMask.fromShape(RING).union(SelectionMask.fromShape(new Rectangle(50, 2, 1, 1)));
+        double radius = 3.0;
+        double limit = (radius + 0.5) * (radius + 0.5);
+
+        var grown = mask.grow(radius);
+        var shrunk = mask.shrink(radius);
+        for (int y = -5; y < SIZE + 5; y++) {
+            for (int x = -5; x < SIZE + 5; x++) {
+                double nearestSelected = Double.MAX_VALUE;
+                double nearestUnselected = Double.MAX_VALUE;
+                for (int yy = y - 5; yy <= y + 5; yy++) {
+                    for (int xx = x - 5; xx <= x + 5; xx++) {
+                        double d = (double) (xx - x) * (xx - x) + (yy - y) * (yy - y);
+                        if (mask.isSelected(xx, yy)) {
+                            nearestSelected = Math.min(nearestSelected, d);
+                        } else {
+                            nearestUnselected = Math.min(nearestUnselected, d);
+                        }
+                    }
+                }
+                assertEquals(nearestSelected <= limit, grown.isSelected(x, y), "grown at " + x + ", " + y);
+                assertEquals(nearestUnselected > limit, shrunk.isSelected(x, y), "shrunk at " + x + ", " + y);
+            }
+        }
+    }
+
+    @Test
+    void complexShapesAreCombinedAsMasks() {
+        assertFalse(SelectionMask.isComplex(ELLIPSE));
+        assertFalse(SelectionMask.isComplex(new Ellipse2D.Double(1, 2, 3, 4)));
+        assertFalse(SelectionMask.isComplex(new Rectangle2D.Double(1, 2, 3, 4)));
+
+        Path2D zigzag = new Path2D.Double();
+        zigzag.moveTo(0, 0);
+        for (int i = 0; i < 2000; i++) {
+            zigzag.lineTo(i * 0.02, (i & 1) * 20);
+        }
+        zigzag.closePath();
+        assertTrue(SelectionMask.isComplex(zigzag));
+
+        Shape combined = ShapeCombinator.ADD.combine(zigzag, ELLIPSE);
+        assertTrue(combined instanceof SelectionMask);
+        var mask = (SelectionMask) combined;
+        assertSame(mask, SelectionMask.fromShape(mask));
+        assertSame(mask, mask.clip(new Rectangle(0, 0, SIZE, SIZE)));
+    }
+
+    private static Shape createRing() {
+        Area ring = new Area(createPolygon(35.5, 31.4, 15, 16.2, 0.2));
+        ring.subtract(new Area(createPolygon(35.15, 29.5, 7.15, 7.5, 0.3)));
+        return ring;
+    }
+
+    private static Shape createPolygon(double cx, double cy, double rx, double ry, double startAngle) {
+        Path2D polygon = new Path2D.Double();
+        for (int i = 0; i < 24; i++) {
+            double angle = startAngle + i * Math.PI / 12;
+            double x = cx + rx * Math.cos(angle);
+            double y = cy + ry * Math.sin(angle);
+            if (i == 0) {
+                polygon.moveTo(x, y);
+            } else {
+                polygon.lineTo(x, y);
+            }
+        }
+        polygon.closePath();
+        return polygon;
+    }
+
+    private static BufferedImage fill(Shape shape) {
+        BufferedImage img = new BufferedImage(SIZE, SIZE, TYPE_BYTE_GRAY);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(KEY_STROKE_CONTROL, VALUE_STROKE_PURE);
+        g.setColor(Color.WHITE);
+        g.fill(shape);
+        g.dispose();
+        return img;
+    }
+
+    private static void assertSameSelection(Shape expected, SelectionMask mask) {
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                assertEquals(expected.contains(x + 0.5, y + 0.5), mask.isSelected(x, y),
+                    "at " + x + ", " + y);
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.tools.gradient.paints;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import pixelitor.tools.util.Drag;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.MultipleGradientPaint.CycleMethod;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("CustomGradientPaint tests")
+class CustomGradientPaintTest {
+    private static final int WIDTH = 97;
+    private static final int HEIGHT = 71;
+
+    // the filled part of the bigger destination images
+    private static final int OFFSET_X = 5;
+    private static final int OFFSET_Y = 3;
+
+    private static final Drag DRAG = new Drag(30, 20, 70, 45);
+
+    private static List<CustomGradientPaint> createPaints(Color start, Color end, CycleMethod cycle) {
+        return List.of(
+            new AngleGradientPaint(DRAG, start, end, cycle),
+            new SpiralGradientPaint(true, DRAG, start, end, cycle),
+            new SpiralGradientPaint(false, DRAG, start, end, cycle),
+            new DiamondGradientPaint(DRAG, start, end, cycle));
+    }
+
+    @ParameterizedTest
+    @EnumSource(CycleMethod.class)
+    void fillMatchesJava2D(CycleMethod cycle) {
+        for (CustomGradientPaint paint : createPaints(Color.RED, new Color(20, 200, 90), cycle)) {
+            BufferedImage expected = paintWithJava2D(paint, TYPE_INT_ARGB);
+            BufferedImage dest = new BufferedImage(WIDTH + 10, HEIGHT + 10, TYPE_INT_ARGB);
+            assertTrue(paint.fill(dest.getSubimage(OFFSET_X, OFFSET_Y, WIDTH, HEIGHT), false));
+
+            assertSameFill(expected, dest, paint);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(CycleMethod.class)
+    void grayFillMatchesJava2D(CycleMethod cycle) {
+        for (CustomGradientPaint paint : createPaints(Color.BLACK, Color.WHITE, cycle)) {
+            BufferedImage expected = paintWithJava2D(paint, TYPE_BYTE_GRAY);
+            BufferedImage dest = new BufferedImage(WIDTH + 10, HEIGHT + 10, TYPE_BYTE_GRAY);
+            assertTrue(paint.fill(dest.getSubimage(OFFSET_X, OFFSET_Y, WIDTH, HEIGHT), false));
+
+            assertSameFill(expected, dest, paint);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(CycleMethod.class)
+    void partialFillMatchesFullFill(CycleMethod cycle) {
+        for (CustomGradientPaint paint : createPaints(Color.RED, new Color(20, 200, 90), cycle)) {
+            BufferedImage full = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+            paint.fill(full, false);
+            BufferedImage part = new BufferedImage(WIDTH - 2 * OFFSET_X, HEIGHT - 2 * OFFSET_Y, TYPE_INT_ARGB);
+            assertTrue(paint.fill(part, OFFSET_X, OFFSET_Y, false));
+
+            for (int y = 0; y < part.getHeight(); y++) {
+                for (int x = 0; x < part.getWidth(); x++) {
+                    assertEquals(full.getRGB(x + OFFSET_X, y + OFFSET_Y), part.getRGB(x, y),
+                        paint + " at " + x + ", " + y);
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(CycleMethod.class)
+    void ditheringChangesAtMostOneLevel(CycleMethod cycle) {
+        // a gradient with fewer levels than pixels, so that it has banding
+        for (CustomGradientPaint paint : createPaints(new Color(100, 100, 100), new Color(110, 112, 100), cycle)) {
+            BufferedImage plain = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+            paint.fill(plain, false);
+            BufferedImage dithered = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+            paint.fill(dithered, true);
+
+            int numChanged = 0;
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    int p = plain.getRGB(x, y);
+                    int d = dithered.getRGB(x, y);
+                    if (p != d) {
+                        numChanged++;
+                    }
+                    for (int shift = 0; shift < 32; shift += 8) {
+                        int diff = ((d >>> shift) & 0xFF) - ((p >>> shift) & 0xFF);
+                        // the dithering offset is centered around zero
+                        assertTrue(Math.abs(diff) <= 1, "diff = " + diff + " at " + x + ", " + y);
+                    }
+                }
+            }
+            assertNotEquals(0, numChanged, paint.toString());
+        }
+    }
+
+    private static BufferedImage paintWithJava2D(CustomGradientPaint paint, int imageType) {
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT, imageType);
+        Graphics2D g = img.createGraphics();
+        g.setPaint(paint);
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.dispose();
+        return img;
+    }
+
+    private static void assertSameFill(BufferedImage expected, BufferedImage dest, CustomGradientPaint paint) {
+        for (int y = 0; y < dest.getHeight(); y++) {
+            for (int x = 0; x < dest.getWidth(); x++) {
+                int ex = x - OFFSET_X;
+                int ey = y - OFFSET_Y;
+                int expectedRGB;
+                if (ex >= 0 && ex < WIDTH && ey >= 0 && ey < HEIGHT) {
+                    expectedRGB = expected.getRGB(ex, ey);
+                } else {
+                    // the pixels outside the subimage are unchanged
+                    expectedRGB = new BufferedImage(1, 1, dest.getType()).getRGB(0, 0);
+                }
+                assertEquals(expectedRGB, dest.getRGB(x, y),
+                    paint + " at " + x + ", " + y);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.utils.CachedImage.Cost;
+
+import java.awt.image.BufferedImage;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CacheManager tests")
+class CacheManagerTest {
+    // a 256x256 int image takes exactly a quarter megabyte
+    private static final int IMG_SIZE = 256;
+
+    private int origBudgetMB;
+
+    @BeforeEach
+    void beforeEachTest() {
+        origBudgetMB = CacheManager.getBudgetMB();
+        CacheManager.evictAll();
+        CacheManager.setBudgetMB(1);
+    }
+
+    @AfterEach
+    void afterEachTest() {
+        CacheManager.setBudgetMB(origBudgetMB);
+    }
+
+    @Test
+    void accountsBytes() {
+        var cache = new CachedImage("test", Cost.LOW);
+        cache.set(createImage());
+        assertEquals(IMG_SIZE * IMG_SIZE * 4, CacheManager.getUsedBytes());
+
+        cache.clear(true);
+        assertFalse(cache.isPresent());
+        assertEquals(0, CacheManager.getUsedBytes());
+    }
+
+    @Test
+    void sharedImageIsCountedOnce() {
+        BufferedImage image = createImage();
+        var cache = new CachedImage("test", Cost.LOW);
+        cache.set(image);
+        var copy = new CachedImage("copy", Cost.LOW);
+        copy.set(cache.peek());
+        assertEquals(IMG_SIZE * IMG_SIZE * 4, CacheManager.getUsedBytes());
+
+        // the remaining copy is still counted
+        cache.clear(false);
+        assertTrue(copy.isPresent());
+        assertEquals(IMG_SIZE * IMG_SIZE * 4, CacheManager.getUsedBytes());
+
+        copy.clear(false);
+        assertEquals(0, CacheManager.getUsedBytes());
+    }
+
+    @Test
+    void sharedImageDoesNotCauseEvictions() {
+        CachedImage[] caches = createCaches(4, Cost.LOW);
+
+        // exactly fills the budget, unless the shared image is counted twice
+        var copy = new CachedImage("copy", Cost.LOW);
+        copy.set(caches[0].peek());
+
+        for (CachedImage cache : caches) {
+            assertTrue(cache.isPresent());
+        }
+        assertTrue(copy.isPresent());
+        assertEquals(1024 * 1024, CacheManager.getUsedBytes());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        CachedImage[] caches = createCaches(4, Cost.LOW);
+
+        // touch the first one so that the second becomes the oldest
+        assertNotNull(caches[0].get());
+
+        var newCache = new CachedImage("new", Cost.LOW);
+        newCache.set(createImage());
+
+        assertTrue(caches[0].isPresent());
+        assertFalse(caches[1].isPresent());
+        assertTrue(caches[2].isPresent());
+        assertTrue(caches[3].isPresent());
+        assertTrue(newCache.isPresent());
+        assertTrue(CacheManager.getUsedBytes() <= 1024 * 1024);
+    }
+
+    @Test
+    void expensiveImagesSurviveCheapOnes() {
+        var expensive = new CachedImage("expensive", Cost.HIGH);
+        expensive.set(createImage());
+
+        // many more cheap images than would fit, without touching the expensive one
+        createCaches(10, Cost.LOW);
+
+        assertTrue(expensive.isPresent());
+    }
+
+    @Test
+    void notifiesEvictionListener() {
+        var cache = new CachedImage("listened", Cost.LOW);
+        boolean[] notified = {false};
+        cache.setEvictionListener(() -> notified[0] = true);
+        cache.set(createImage());
+
+        createCaches(4, Cost.LOW);
+
+        assertTrue(notified[0]);
+        assertNull(cache.get());
+    }
+
+    private static CachedImage[] createCaches(int num, Cost cost) {
+        CachedImage[] caches = new CachedImage[num];
+        for (int i = 0; i < num; i++) {
+            caches[i] = new CachedImage("test " + i, cost);
+            caches[i].set(createImage());
+        }
+        return caches;
+    }
+
+    private static BufferedImage createImage() {
+        return new BufferedImage(IMG_SIZE, IMG_SIZE, TYPE_INT_ARGB);
+    }
+}
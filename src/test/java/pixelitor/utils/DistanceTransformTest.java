@@ -0,0 +1,75 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("DistanceTransform tests")
+class DistanceTransformTest {
+    private static final int WIDTH = 73;
+    private static final int HEIGHT = 41;
+
+    @Test
+    void sameResultAsBruteForce() {
+        Random random = new Random(11);
+        for (double density : new double[]{0.001, 0.02, 0.5}) {
+            boolean[] mask = new boolean[WIDTH * HEIGHT];
+            for (int i = 0; i < mask.length; i++) {
+                mask[i] = random.nextDouble() < density;
+            }
+            // at least one set pixel
+            mask[random.nextInt(mask.length)] = true;
+
+            float[] dist = DistanceTransform.calcSquaredDistances(mask, WIDTH, HEIGHT);
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    assertEquals(bruteForce(mask, x, y), dist[x + y * WIDTH],
+                        "x = " + x + ", y = " + y + ", density = " + density);
+                }
+            }
+        }
+    }
+
+    @Test
+    void emptyMask() {
+        float[] dist = DistanceTransform.calcSquaredDistances(new boolean[WIDTH * HEIGHT], WIDTH, HEIGHT);
+        for (float d : dist) {
+            assertTrue(d > WIDTH * WIDTH + HEIGHT * HEIGHT);
+        }
+    }
+
+    private static float bruteForce(boolean[] mask, int x, int y) {
+        int min = Integer.MAX_VALUE;
+        for (int my = 0; my < HEIGHT; my++) {
+            for (int mx = 0; mx < WIDTH; mx++) {
+                if (mask[mx + my * WIDTH]) {
+                    int dx = mx - x;
+                    int dy = my - y;
+                    min = Math.min(min, dx * dx + dy * dy);
+                }
+            }
+        }
+        return min;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Rectangle;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("FloodFill tests")
+class FloodFillTest {
+    private static final int WIDTH = 97;
+    private static final int HEIGHT = 61;
+    private static final int FILL = 0xFF_FF_00_00;
+
+    @Test
+    void sameResultAsSimpleFill() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            int[] pixels = createMaze(random);
+            int[] expected = pixels.clone();
+
+            int x = random.nextInt(WIDTH);
+            int y = random.nextInt(HEIGHT);
+            ColorRange range = ColorRange.ofTolerance(pixels[x + y * WIDTH], 10);
+
+            simpleFill(expected, x, y, range);
+            Rectangle bounds = FloodFill.fill(pixels, WIDTH, HEIGHT, x, y, range, FILL);
+
+            assertArrayEquals(expected, pixels);
+            assertEquals(calcBounds(expected), bounds);
+        }
+    }
+
+    @Test
+    void fillColorInRangeDoesNotLoop() {
+        // the fill color is within the tolerance of the original color
+        int[] pixels = new int[WIDTH * HEIGHT];
+        Arrays.fill(pixels, 0xFF_F0_00_00);
+
+        Rectangle bounds = FloodFill.fill(pixels, WIDTH, HEIGHT, 5, 5,
+            ColorRange.ofTolerance(0xFF_F0_00_00, 20), FILL);
+
+        assertEquals(new Rectangle(0, 0, WIDTH, HEIGHT), bounds);
+        for (int pixel : pixels) {
+            assertEquals(FILL, pixel);
+        }
+    }
+
+    @Test
+    void replaceAllReturnsReplacedBounds() {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        pixels[3 + 7 * WIDTH] = 0xFF_00_00_FF;
+        pixels[50 + 40 * WIDTH] = 0xFF_00_00_F8;
+
+        ColorRange range = ColorRange.ofTolerance(0xFF_00_00_FF, 10);
+        Rectangle bounds = range.replaceAll(pixels, WIDTH, HEIGHT, FILL);
+
+        assertEquals(new Rectangle(3, 7, 48, 34), bounds);
+        assertEquals(FILL, pixels[3 + 7 * WIDTH]);
+        assertEquals(FILL, pixels[50 + 40 * WIDTH]);
+        assertEquals(0, pixels[0]);
+
+        assertNull(ColorRange.ofTolerance(0xFF_12_34_56, 0)
+            .replaceAll(pixels, WIDTH, HEIGHT, FILL));
+    }
+
+    // random walls of different colors, some of them within the tolerance
+    private static int[] createMaze(Random random) {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = switch (random.nextInt(4)) {
+                case 0, 1 -> 0xFF_00_00_00;
+                case 2 -> 0xFF_05_05_05;
+                default -> 0xFF_80_80_80;
+            };
+        }
+        return pixels;
+    }
+
+    private static void simpleFill(int[] pixels, int startX, int startY, ColorRange range) {
+        boolean[] visited = new boolean[pixels.length];
+        Deque<int[]> queue = new ArrayDeque<>();
+        queue.add(new int[]{startX, startY});
+        visited[startX + startY * WIDTH] = true;
+        while (!queue.isEmpty()) {
+            int[] p = queue.poll();
+            pixels[p[0] + p[1] * WIDTH] = FILL;
+            int[][] neighbors = {{p[0] - 1, p[1]}, {p[0] + 1, p[1]}, {p[0], p[1] - 1}, {p[0], p[1] + 1}};
+            for (int[] n : neighbors) {
+                if (n[0] < 0 || n[0] >= WIDTH || n[1] < 0 || n[1] >= HEIGHT) {
+                    continue;
+                }
+                int index = n[0] + n[1] * WIDTH;
+                if (!visited[index] && range.contains(pixels[index])) {
+                    visited[index] = true;
+                    queue.add(n);
+                }
+            }
+        }
+    }
+
+    private static Rectangle calcBounds(int[] pixels) {
+        Rectangle bounds = null;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                if (pixels[x + y * WIDTH] == FILL) {
+                    Rectangle r = new Rectangle(x, y, 1, 1);
+                    bounds = bounds == null ? r : bounds.union(r);
+                }
+            }
+        }
+        return bounds;
+    }
+}
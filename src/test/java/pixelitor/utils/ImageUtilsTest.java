@@ -0,0 +1,95 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pixelitor.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ImageUtils tests")
+class ImageUtilsTest {
+    @Test
+    void fingerprintDependsOnEveryPixel() {
+        BufferedImage a = createImage(TYPE_INT_ARGB, 300, 200);
+        BufferedImage b = createImage(TYPE_INT_ARGB, 300, 200);
+        assertEquals(ImageUtils.calcFingerprint(a), ImageUtils.calcFingerprint(b));
+
+        b.setRGB(299, 199, b.getRGB(299, 199) ^ 1);
+        assertNotEquals(ImageUtils.calcFingerprint(a), ImageUtils.calcFingerprint(b));
+    }
+
+    @Test
+    void fingerprintOfGrayImages() {
+        BufferedImage a = createImage(TYPE_BYTE_GRAY, 50, 40);
+        BufferedImage b = createImage(TYPE_BYTE_GRAY, 50, 40);
+        assertEquals(ImageUtils.calcFingerprint(a), ImageUtils.calcFingerprint(b));
+
+        b.getRaster().setSample(10, 20, 0, 255 - b.getRaster().getSample(10, 20, 0));
+        assertNotEquals(ImageUtils.calcFingerprint(a), ImageUtils.calcFingerprint(b));
+    }
+
+    @Test
+    void samePixels() {
+        BufferedImage a = createImage(TYPE_INT_ARGB, 300, 200);
+        BufferedImage b = createImage(TYPE_INT_ARGB, 300, 200);
+        assertTrue(ImageUtils.haveSamePixels(a, b));
+
+        b.setRGB(150, 199, b.getRGB(150, 199) ^ 1);
+        assertFalse(ImageUtils.haveSamePixels(a, b));
+
+        BufferedImage smaller = createImage(TYPE_INT_ARGB, 300, 199);
+        assertFalse(ImageUtils.haveSamePixels(a, smaller));
+    }
+
+    @Test
+    void samePixelsOfSubImages() {
+        BufferedImage a = createImage(TYPE_INT_ARGB, 300, 200);
+        BufferedImage sub = a.getSubimage(0, 0, 100, 50);
+        BufferedImage copy = ImageUtils.copySubImage(sub);
+        assertTrue(ImageUtils.haveSamePixels(sub, copy));
+
+        BufferedImage shifted = a.getSubimage(1, 0, 100, 50);
+        assertFalse(ImageUtils.haveSamePixels(shifted, copy));
+    }
+
+    @Test
+    void samePixelsOfGrayImages() {
+        BufferedImage a = createImage(TYPE_BYTE_GRAY, 50, 40);
+        BufferedImage b = createImage(TYPE_BYTE_GRAY, 50, 40);
+        assertTrue(ImageUtils.haveSamePixels(a, b));
+
+        b.getRaster().setSample(10, 20, 0, 255 - b.getRaster().getSample(10, 20, 0));
+        assertFalse(ImageUtils.haveSamePixels(a, b));
+    }
+
+    private static BufferedImage createImage(int type, int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, 0xFF_00_00_00 | (x * 7919 + y * 104729));
+            }
+        }
+        return img;
+    }
+}
@@ -29,6 +29,9 @@ import java.awt.image.BufferedImage;
 public class MockFilter extends FilterWithGUI {
     private int numTransformCalls;
 
+    // simulates a slow filter
+    private long runTimeMillis;
+
     public MockFilter(String name) {
         setName(name);
     }
@@ -41,9 +44,20 @@ public class MockFilter extends FilterWithGUI {
     protected BufferedImage transform(BufferedImage src, BufferedImage dest) {
 //        System.out.println("MockFilter::transform: CALLED for " + getName());
         numTransformCalls++;
+        if (runTimeMillis > 0) {
+            try {
+                Thread.sleep(runTimeMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         return src;
     }
 
+    public void setRunTimeMillis(long runTimeMillis) {
+        this.runTimeMillis = runTimeMillis;
+    }
+
     @Override
     public FilterGUI createGUI(Filterable layer, boolean reset) {
         return null;
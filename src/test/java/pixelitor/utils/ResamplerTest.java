@@ -0,0 +1,138 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import pixelitor.utils.Resampler.Kernel;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("Resampler tests")
+class ResamplerTest {
+    @ParameterizedTest
+    @EnumSource(Kernel.class)
+    void uniformImageStaysUniform(Kernel kernel) {
+        BufferedImage src = createFilled(TYPE_INT_ARGB, 37, 23, 0xFF_33_99_CC);
+
+        checkAllPixels(Resampler.resize(src, 11, 7, kernel), 0xFF_33_99_CC);
+        checkAllPixels(Resampler.resize(src, 80, 50, kernel), 0xFF_33_99_CC);
+        checkAllPixels(Resampler.resize(src, 80, 5, kernel), 0xFF_33_99_CC);
+    }
+
+    @ParameterizedTest
+    @EnumSource(Kernel.class)
+    void transparentPixelsDontBleed(Kernel kernel) {
+        // a red image where every second column is transparent black
+        BufferedImage src = new BufferedImage(40, 40, TYPE_INT_ARGB);
+        for (int y = 0; y < 40; y++) {
+            for (int x = 0; x < 40; x++) {
+                src.setRGB(x, y, x % 2 == 0 ? 0xFF_FF_00_00 : 0);
+            }
+        }
+
+        BufferedImage dst = Resampler.resize(src, 10, 10, kernel);
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 10; x++) {
+                int rgb = dst.getRGB(x, y);
+                // with premultiplied filtering, the color stays pure red
+                assertEquals(0xFF, (rgb >>> 16) & 0xFF);
+                assertEquals(0, rgb & 0xFF_FF);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Kernel.class)
+    void keepsImageType(Kernel kernel) {
+        BufferedImage pre = createFilled(TYPE_INT_ARGB_PRE, 20, 20, 0x80_40_40_40);
+        assertEquals(TYPE_INT_ARGB_PRE, Resampler.resize(pre, 9, 31, kernel).getType());
+
+        BufferedImage gray = new BufferedImage(20, 20, TYPE_BYTE_GRAY);
+        BufferedImage resizedGray = Resampler.resize(gray, 9, 31, kernel);
+        assertEquals(TYPE_BYTE_GRAY, resizedGray.getType());
+        assertEquals(9, resizedGray.getWidth());
+        assertEquals(31, resizedGray.getHeight());
+    }
+
+    @ParameterizedTest
+    @EnumSource(Kernel.class)
+    void weightsAreNormalized(Kernel kernel) {
+        var weights = new Resampler.AxisWeights(117, 31, kernel);
+        for (int i = 0; i < 31; i++) {
+            float sum = 0;
+            for (int t = 0; t < weights.taps; t++) {
+                sum += weights.weights[i * weights.taps + t];
+            }
+            assertEquals(1.0f, sum, 1.0e-4f);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Kernel.class)
+    void bandsMatchSingleBuffer(Kernel kernel) {
+        int srcWidth = 50;
+        int srcHeight = 80;
+        int[] src = new int[srcWidth * srcHeight];
+        Random random = new Random(42);
+        for (int i = 0; i < src.length; i++) {
+            src[i] = random.nextInt();
+        }
+
+        // shrinking the height more makes the vertical pass come first
+        // in both cases, therefore the results must be identical
+        int dstWidth = 60;
+        int dstHeight = 20;
+        int[] expected = new int[dstWidth * dstHeight];
+        Resampler.resample(src, srcWidth, srcHeight, expected, dstWidth, dstHeight,
+            kernel, false, true, false);
+
+        // a buffer that is big enough only for 3 rows
+        int[] banded = new int[dstWidth * dstHeight];
+        Resampler.resample(src, srcWidth, srcHeight, banded, dstWidth, dstHeight,
+            kernel, false, true, false, 3 * 4 * srcWidth);
+
+        assertArrayEquals(expected, banded);
+    }
+
+    private static BufferedImage createFilled(int type, int width, int height, int rgb) {
+        BufferedImage img = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, rgb);
+            }
+        }
+        return img;
+    }
+
+    private static void checkAllPixels(BufferedImage img, int expected) {
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                assertEquals(expected, img.getRGB(x, y), "x = " + x + ", y = " + y);
+            }
+        }
+    }
+}
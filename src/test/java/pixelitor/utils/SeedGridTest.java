@@ -0,0 +1,92 @@
+/*
+ * Copyright 2023 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("SeedGrid tests")
+class SeedGridTest {
+    private static final int WIDTH = 150;
+    private static final int HEIGHT = 90;
+
+    @ParameterizedTest
+    @EnumSource(Metric.class)
+    void poissonSeedsMatchBruteForce(Metric metric) {
+        var sampling = new PoissonDiskSampling(WIDTH, HEIGHT, 12, 10, true, new SplittableRandom(7));
+        List<Point2D> seeds = sampling.getSamples();
+
+        checkLabelMap(new SeedGrid(seeds, WIDTH, HEIGHT, 12, metric), seeds, metric);
+    }
+
+    @ParameterizedTest
+    @EnumSource(Metric.class)
+    void clusteredSeedsMatchBruteForce(Metric metric) {
+        // a few seeds in one corner, so that most cells are empty
+        Random random = new Random(3);
+        List<Point2D> seeds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            seeds.add(new Point2D.Double(random.nextDouble() * 20, random.nextDouble() * 20));
+        }
+
+        SeedGrid grid = new SeedGrid(seeds, WIDTH, HEIGHT, 10, metric);
+        checkLabelMap(grid, seeds, metric);
+
+        // subpixel positions, also slightly outside the area
+        for (int i = 0; i < 1000; i++) {
+            double x = random.nextDouble() * (WIDTH + 2) - 1;
+            double y = random.nextDouble() * (HEIGHT + 2) - 1;
+            assertEquals(bruteForceDist(seeds, metric, x, y),
+                dist(seeds, metric, x, y, grid.findNearest(x, y)));
+        }
+    }
+
+    private static void checkLabelMap(SeedGrid grid, List<Point2D> seeds, Metric metric) {
+        int[] labels = grid.createLabelMap(WIDTH, HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                // compare the distances, because there can be ties
+                assertEquals(bruteForceDist(seeds, metric, x, y),
+                    dist(seeds, metric, x, y, labels[x + y * WIDTH]),
+                    "x = " + x + ", y = " + y);
+            }
+        }
+    }
+
+    private static double bruteForceDist(List<Point2D> seeds, Metric metric, double x, double y) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < seeds.size(); i++) {
+            min = Math.min(min, dist(seeds, metric, x, y, i));
+        }
+        return min;
+    }
+
+    private static double dist(List<Point2D> seeds, Metric metric, double x, double y, int index) {
+        Point2D seed = seeds.get(index);
+        return metric.distanceDouble(x, y, seed.getX(), seed.getY());
+    }
+}